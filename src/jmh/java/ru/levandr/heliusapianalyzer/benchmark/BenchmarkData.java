@@ -0,0 +1,182 @@
+package ru.levandr.heliusapianalyzer.benchmark;
+
+import ru.levandr.heliusapianalyzer.codec.Base58;
+import ru.levandr.heliusapianalyzer.codec.RaydiumAmmAccount;
+import ru.levandr.heliusapianalyzer.codec.RaydiumSwapInstruction;
+import ru.levandr.heliusapianalyzer.model.InstructionData;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.model.TokenTransfer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Данные для бенчмарков в формате Helius и Solana RPC
+ * Генерируются детерминированно по seed: страница транзакций повторяет структуру ответа
+ * /v0/addresses/{address}/transactions, включая поля, которые анализатор не читает
+ */
+public final class BenchmarkData {
+    public static final String WSOL_MINT = "So11111111111111111111111111111111111111112";
+    public static final String USDC_MINT = "EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v";
+    public static final String TOKEN_PROGRAM_ID = "TokenkegQfeZyiNwAJbNbGKPFXCWuBvf9Ss623VQ5DA";
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Случайный публичный ключ в base58
+     */
+    public static String pubkey(Random random) {
+        byte[] key = new byte[RaydiumAmmAccount.PUBKEY_LENGTH];
+        random.nextBytes(key);
+        return Base58.encode(key, 0, key.length);
+    }
+
+    /**
+     * Данные инструкции SwapBaseIn в base58
+     */
+    public static String swapBaseInData(long amountIn, long minAmountOut) {
+        byte[] data = new byte[RaydiumSwapInstruction.DATA_LENGTH];
+        data[0] = (byte) RaydiumSwapInstruction.Kind.SWAP_BASE_IN.discriminator();
+        LONG_LE.set(data, 1, amountIn);
+        LONG_LE.set(data, 9, minAmountOut);
+        return Base58.encode(data, 0, data.length);
+    }
+
+    /**
+     * Страница транзакций в JSON: SWAP через Raydium и доля транзакций других типов
+     *
+     * @param count количество транзакций (Helius отдает до 100 на страницу)
+     */
+    public static String page(Random random, int count) {
+        StringBuilder json = new StringBuilder(count * 4096).append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            // Примерно каждая пятая транзакция адреса - не своп
+            if (random.nextInt(5) == 0) {
+                appendTransfer(json, random);
+            } else {
+                appendSwap(json, random, swap(random, pubkey(random)));
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Транзакция свопа Raydium с токен-аккаунтами, как ее возвращает Helius
+     *
+     * @param amm адрес пула
+     */
+    public static RaydiumSwapTransaction swap(Random random, String amm) {
+        List<String> accounts = new ArrayList<>(18);
+        for (int i = 0; i < 18; i++) {
+            accounts.add(i == 1 ? amm : pubkey(random));
+        }
+        accounts.set(0, TOKEN_PROGRAM_ID);
+        String baseVault = accounts.get(5);
+        String quoteVault = accounts.get(6);
+        String userSource = accounts.get(15);
+        String userDestination = accounts.get(16);
+        String owner = accounts.get(17);
+
+        long amountIn = 1_000_000L + (long) (random.nextDouble() * 1e10);
+        InstructionData instruction = new InstructionData();
+        instruction.setProgramId(RaydiumSwapInstruction.PROGRAM_ID);
+        instruction.setAccounts(accounts);
+        instruction.setData(swapBaseInData(amountIn, 1));
+        instruction.setInnerInstructions(List.of());
+
+        String authority = accounts.get(2);
+        TokenTransfer in = transfer(WSOL_MINT, amountIn / 1e9, owner, authority, userSource, baseVault, 9);
+        TokenTransfer out = transfer(USDC_MINT, amountIn / 1e9 * 150, authority, owner, quoteVault,
+                userDestination, 6);
+
+        RaydiumSwapTransaction swapTx = new RaydiumSwapTransaction();
+        swapTx.setSignature(Base58.encode(randomBytes(random, 64), 0, 64));
+        swapTx.setType("SWAP");
+        swapTx.setTimestamp(System.currentTimeMillis() / 1000);
+        swapTx.setFee(5_000L);
+        swapTx.setTokenTransfers(List.of(in, out));
+        swapTx.setInstructions(List.of(instruction));
+        return swapTx;
+    }
+
+    private static TokenTransfer transfer(String mint, double amount, String fromUser, String toUser,
+                                          String fromToken, String toToken, int decimals) {
+        TokenTransfer transfer = new TokenTransfer();
+        transfer.setMint(mint);
+        transfer.setTokenAmount(amount);
+        transfer.setFromUserAccount(fromUser);
+        transfer.setToUserAccount(toUser);
+        transfer.setFromTokenAccount(fromToken);
+        transfer.setToTokenAccount(toToken);
+        transfer.setDecimals(decimals);
+        return transfer;
+    }
+
+    private static void appendSwap(StringBuilder json, Random random, RaydiumSwapTransaction swapTx) {
+        InstructionData instruction = swapTx.getInstructions().get(0);
+        json.append("{\"description\":\"swapped on Raydium\",\"type\":\"SWAP\",\"source\":\"RAYDIUM\"")
+                .append(",\"fee\":").append(swapTx.getFee())
+                .append(",\"feePayer\":\"").append(pubkey(random)).append('"')
+                .append(",\"signature\":\"").append(swapTx.getSignature()).append('"')
+                .append(",\"slot\":").append(300_000_000 + random.nextInt(1_000_000))
+                .append(",\"timestamp\":").append(swapTx.getTimestamp())
+                .append(",\"tokenTransfers\":[");
+        for (int i = 0; i < swapTx.getTokenTransfers().size(); i++) {
+            TokenTransfer transfer = swapTx.getTokenTransfers().get(i);
+            json.append(i > 0 ? "," : "")
+                    .append("{\"fromTokenAccount\":\"").append(transfer.getFromTokenAccount())
+                    .append("\",\"toTokenAccount\":\"").append(transfer.getToTokenAccount())
+                    .append("\",\"fromUserAccount\":\"").append(transfer.getFromUserAccount())
+                    .append("\",\"toUserAccount\":\"").append(transfer.getToUserAccount())
+                    .append("\",\"tokenAmount\":").append(transfer.getTokenAmount())
+                    .append(",\"mint\":\"").append(transfer.getMint())
+                    .append("\",\"tokenStandard\":\"Fungible\"}");
+        }
+        json.append("],\"nativeTransfers\":[{\"fromUserAccount\":\"").append(pubkey(random))
+                .append("\",\"toUserAccount\":\"").append(pubkey(random)).append("\",\"amount\":2039280}]")
+                .append(",\"accountData\":[");
+        for (int i = 0; i < instruction.getAccounts().size(); i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"account\":\"").append(instruction.getAccounts().get(i))
+                    .append("\",\"nativeBalanceChange\":0,\"tokenBalanceChanges\":[]}");
+        }
+        json.append("],\"transactionError\":null,\"instructions\":[{\"accounts\":[");
+        for (int i = 0; i < instruction.getAccounts().size(); i++) {
+            json.append(i > 0 ? "," : "").append('"').append(instruction.getAccounts().get(i)).append('"');
+        }
+        json.append("],\"data\":\"").append(instruction.getData())
+                .append("\",\"programId\":\"").append(instruction.getProgramId())
+                .append("\",\"innerInstructions\":[{\"accounts\":[\"").append(pubkey(random))
+                .append("\"],\"data\":\"3DdGGhkhJbjm\",\"programId\":\"").append(TOKEN_PROGRAM_ID)
+                .append("\"}]}],\"events\":{}}");
+    }
+
+    private static void appendTransfer(StringBuilder json, Random random) {
+        json.append("{\"description\":\"transferred SOL\",\"type\":\"TRANSFER\",\"source\":\"SYSTEM_PROGRAM\"")
+                .append(",\"fee\":5000,\"feePayer\":\"").append(pubkey(random))
+                .append("\",\"signature\":\"").append(Base58.encode(randomBytes(random, 64), 0, 64))
+                .append("\",\"slot\":").append(300_000_000 + random.nextInt(1_000_000))
+                .append(",\"timestamp\":").append(System.currentTimeMillis() / 1000)
+                .append(",\"tokenTransfers\":[],\"nativeTransfers\":[{\"fromUserAccount\":\"")
+                .append(pubkey(random)).append("\",\"toUserAccount\":\"").append(pubkey(random))
+                .append("\",\"amount\":1000000}],\"accountData\":[],\"transactionError\":null")
+                .append(",\"instructions\":[],\"events\":{}}");
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.levandr.heliusapianalyzer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.levandr.heliusapianalyzer.codec.RaydiumAmmAccount;
+import ru.levandr.heliusapianalyzer.codec.SplTokenAccount;
+import ru.levandr.heliusapianalyzer.model.PoolReserves;
+import ru.levandr.heliusapianalyzer.model.PoolSnapshot;
+import ru.levandr.heliusapianalyzer.service.amm.AmmMath;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор резервов пула из ответа getMultipleAccounts: base64 срезов аккаунта пула и хранилищ,
+ * чтение невыведенной прибыли и балансов, расчет резервов и цены, как при обновлении ликвидности
+ * Запуск: ./gradlew jmh -Pjmh.includes=PoolReservesBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PoolReservesBenchmark {
+    private static final int SIZE = 1024;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final String[] poolSlices = new String[SIZE];
+    private final String[] baseAmounts = new String[SIZE];
+    private final String[] quoteAmounts = new String[SIZE];
+    private final RaydiumAmmAccount account = new RaydiumAmmAccount();
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (int i = 0; i < SIZE; i++) {
+            byte[] slice = new byte[RaydiumAmmAccount.RESERVES_SLICE_LENGTH];
+            random.nextBytes(slice);
+            putLong(slice, RaydiumAmmAccount.BASE_NEED_TAKE_PNL, random.nextInt(1_000_000));
+            putLong(slice, RaydiumAmmAccount.QUOTE_NEED_TAKE_PNL, random.nextInt(1_000_000));
+            poolSlices[i] = encoder.encodeToString(slice);
+            baseAmounts[i] = encoder.encodeToString(amount(1_000_000_000L + (long) (random.nextDouble() * 1e15)));
+            quoteAmounts[i] = encoder.encodeToString(amount(1_000_000_000L + (long) (random.nextDouble() * 1e15)));
+        }
+    }
+
+    /**
+     * Резервы для пула с известными хранилищами
+     */
+    @Benchmark
+    public PoolReserves reserves() {
+        int i = next();
+        return snapshot(i).reserves();
+    }
+
+    /**
+     * Резервы и цена токена A в токенах B, как в updatePoolData
+     */
+    @Benchmark
+    public BigDecimal reservesAndPrice() {
+        PoolReserves reserves = snapshot(next()).reserves();
+        return BigDecimal.valueOf(AmmMath.spotPrice(reserves.quote(), reserves.base()), AmmMath.SCALE);
+    }
+
+    /**
+     * Первый снимок пула: дополнительно кодируются адреса хранилищ и токенов
+     */
+    @Benchmark
+    public PoolSnapshot firstSnapshot(Blackhole blackhole) {
+        int i = next();
+        account.wrap(Base64.getDecoder().decode(poolSlices[i]), RaydiumAmmAccount.RESERVES_SLICE_OFFSET);
+        blackhole.consume(account.pubkeyBase58(RaydiumAmmAccount.BASE_MINT));
+        blackhole.consume(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_MINT));
+        return new PoolSnapshot(account.pubkeyBase58(RaydiumAmmAccount.BASE_VAULT),
+                account.pubkeyBase58(RaydiumAmmAccount.QUOTE_VAULT),
+                vaultAmount(baseAmounts[i]), vaultAmount(quoteAmounts[i]),
+                account.baseNeedTakePnl(), account.quoteNeedTakePnl());
+    }
+
+    private PoolSnapshot snapshot(int i) {
+        account.wrap(Base64.getDecoder().decode(poolSlices[i]), RaydiumAmmAccount.RESERVES_SLICE_OFFSET);
+        return new PoolSnapshot(null, null, vaultAmount(baseAmounts[i]), vaultAmount(quoteAmounts[i]),
+                account.baseNeedTakePnl(), account.quoteNeedTakePnl());
+    }
+
+    private static long vaultAmount(String data) {
+        return SplTokenAccount.amount(Base64.getDecoder().decode(data), SplTokenAccount.AMOUNT_OFFSET);
+    }
+
+    private int next() {
+        index = (index + 1) & (SIZE - 1);
+        return index;
+    }
+
+    private static byte[] amount(long value) {
+        byte[] data = new byte[SplTokenAccount.AMOUNT_LENGTH];
+        LONG_LE.set(data, 0, value);
+        return data;
+    }
+
+    private static void putLong(byte[] slice, int fieldOffset, long value) {
+        LONG_LE.set(slice, fieldOffset - RaydiumAmmAccount.RESERVES_SLICE_OFFSET, value);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.levandr.heliusapianalyzer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.levandr.heliusapianalyzer.service.amm.AmmMath;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение расчета проскальзывания на BigDecimal и в фиксированной точке
+ * Запуск: ./gradlew jmh -Pjmh.includes=SlippageBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SlippageBenchmark {
+    private static final int SIZE = 1024;
+
+    private final long[] reservesIn = new long[SIZE];
+    private final long[] reservesOut = new long[SIZE];
+    private final long[] amounts = new long[SIZE];
+    private final BigDecimal[] decimalReservesIn = new BigDecimal[SIZE];
+    private final BigDecimal[] decimalReservesOut = new BigDecimal[SIZE];
+    private final BigDecimal[] decimalAmounts = new BigDecimal[SIZE];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SIZE; i++) {
+            // Типичные резервы пула: от 10^9 до 10^15 минимальных единиц
+            reservesIn[i] = 1_000_000_000L + (long) (random.nextDouble() * 1e15);
+            reservesOut[i] = 1_000_000_000L + (long) (random.nextDouble() * 1e15);
+            amounts[i] = 1 + (long) (random.nextDouble() * 1e11);
+            decimalReservesIn[i] = BigDecimal.valueOf(reservesIn[i]);
+            decimalReservesOut[i] = BigDecimal.valueOf(reservesOut[i]);
+            decimalAmounts[i] = BigDecimal.valueOf(amounts[i]);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int i = next();
+        return bigDecimalSlippage(decimalReservesIn[i], decimalReservesOut[i], decimalAmounts[i]);
+    }
+
+    @Benchmark
+    public long fixedPoint() {
+        int i = next();
+        return AmmMath.slippage(reservesIn[i], reservesOut[i], amounts[i]);
+    }
+
+    private int next() {
+        index = (index + 1) & (SIZE - 1);
+        return index;
+    }
+
+    /**
+     * Прежняя реализация RaydiumPoolService.calculateExpectedSlippage
+     */
+    private static BigDecimal bigDecimalSlippage(BigDecimal reserveIn, BigDecimal reserveOut, BigDecimal inputAmount) {
+        BigDecimal k = reserveIn.multiply(reserveOut);
+        BigDecimal newReserveIn = reserveIn.add(inputAmount);
+        BigDecimal newReserveOut = k.divide(newReserveIn, 8, RoundingMode.HALF_UP);
+        BigDecimal outputAmount = reserveOut.subtract(newReserveOut);
+
+        BigDecimal spotPrice = reserveOut.divide(reserveIn, 8, RoundingMode.HALF_UP);
+        BigDecimal effectivePrice = outputAmount.divide(inputAmount, 8, RoundingMode.HALF_UP);
+        return BigDecimal.ONE
+                .subtract(effectivePrice.divide(spotPrice, 8, RoundingMode.HALF_UP))
+                .multiply(BigDecimal.valueOf(100))
+                .abs();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.levandr.heliusapianalyzer.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import ru.levandr.heliusapianalyzer.codec.TransactionStreamDecoder;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Связывание страницы транзакций Helius с {@link RaydiumSwapTransaction}
+ * Сравнивает разбор всего ответа через ObjectMapper и потоковый разбор по буферам из сети
+ * Запуск: ./gradlew jmh -Pjmh.includes=TransactionBindingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionBindingBenchmark {
+    private static final TypeReference<List<RaydiumSwapTransaction>> PAGE = new TypeReference<>() {
+    };
+
+    // Размер буфера, которым Netty отдает тело ответа
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"100"})
+    private int pageSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkData.page(new Random(42), pageSize).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<RaydiumSwapTransaction> objectMapper() throws IOException {
+        return objectMapper.readValue(page, PAGE);
+    }
+
+    @Benchmark
+    public List<RaydiumSwapTransaction> streamDecoder() {
+        TransactionStreamDecoder decoder = new TransactionStreamDecoder(objectMapper);
+        List<RaydiumSwapTransaction> decoded = new ArrayList<>(pageSize);
+        for (int offset = 0; offset < page.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, page.length - offset);
+            decoded.addAll(decoder.feed(bufferFactory.wrap(ByteBuffer.wrap(page, offset, length))));
+        }
+        decoded.addAll(decoder.finish());
+        return decoded;
+    }
+}
@@ -0,0 +1,215 @@
+package ru.levandr.heliusapianalyzer.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.benchmark.BenchmarkData;
+import ru.levandr.heliusapianalyzer.codec.RaydiumSwapInstruction;
+import ru.levandr.heliusapianalyzer.model.PoolSnapshot;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.properties.CandleProperties;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.properties.PoolCacheProperties;
+import ru.levandr.heliusapianalyzer.properties.SwapEventProperties;
+import ru.levandr.heliusapianalyzer.repository.PoolSummaryCursor;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.cache.PoolStateCache;
+import ru.levandr.heliusapianalyzer.service.candle.CandleAggregator;
+import ru.levandr.heliusapianalyzer.service.candle.CandleStore;
+import ru.levandr.heliusapianalyzer.service.events.SwapEventPartitionManager;
+import ru.levandr.heliusapianalyzer.service.events.SwapEventWriter;
+import ru.levandr.heliusapianalyzer.service.execution.ProcessingExecution;
+import ru.levandr.heliusapianalyzer.service.graph.PoolGraph;
+import ru.levandr.heliusapianalyzer.service.partition.PoolLaneExecutor;
+import ru.levandr.heliusapianalyzer.service.ranking.PoolRanking;
+import ru.levandr.heliusapianalyzer.service.stream.PoolAccountStreamer;
+import ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Обработка свопа в {@link RaydiumPoolService}: поиск инструкции, проскальзывание и весь путь
+ * processPoolFromSwap с кэшем, полосами, объемами, свечами и журналом событий.
+ * Заглушены только репозиторий, JdbcTemplate и RPC; выгрузки в БД идут в фоне, как по расписанию
+ * в приложении. Резервы берутся из RPC снимка или из потока WebSocket (параметр reserves)
+ * Запуск: ./gradlew jmh -Pjmh.includes=RaydiumPoolServiceBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RaydiumPoolServiceBenchmark {
+    private static final int SIZE = 4096;
+    private static final int POOLS = 256;
+
+    /**
+     * Свопы по фиксированному набору пулов с их снимками
+     */
+    @State(Scope.Thread)
+    public static class Swaps {
+        private final RaydiumSwapTransaction[] transactions = new RaydiumSwapTransaction[SIZE];
+        private final RaydiumPool[] pools = new RaydiumPool[SIZE];
+        private final BigDecimal[] amounts = new BigDecimal[SIZE];
+        private final Map<String, PoolSnapshot> snapshots = new HashMap<>();
+        private int index;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            String[] addresses = new String[POOLS];
+            for (int i = 0; i < POOLS; i++) {
+                addresses[i] = BenchmarkData.pubkey(random);
+            }
+
+            for (int i = 0; i < SIZE; i++) {
+                String address = addresses[random.nextInt(POOLS)];
+                RaydiumSwapTransaction swapTx = BenchmarkData.swap(random, address);
+                RaydiumSwapInstruction swap = RaydiumPoolService.findSwapInstruction(swapTx);
+                // Хранилища пула одни и те же во всех его свопах
+                PoolSnapshot snapshot = snapshots.computeIfAbsent(address, key -> new PoolSnapshot(
+                        swap.baseVault(), swap.quoteVault(),
+                        1_000_000_000L + (long) (random.nextDouble() * 1e15),
+                        1_000_000_000L + (long) (random.nextDouble() * 1e15), 0, 0));
+                swapTx.getInstructions().get(0).getAccounts().set(5, snapshot.baseVault());
+                swapTx.getInstructions().get(0).getAccounts().set(6, snapshot.quoteVault());
+                swapTx.getTokenTransfers().get(0).setToTokenAccount(snapshot.baseVault());
+                swapTx.getTokenTransfers().get(1).setFromTokenAccount(snapshot.quoteVault());
+                transactions[i] = swapTx;
+
+                RaydiumPool pool = new RaydiumPool();
+                pool.setAddress(address);
+                pool.setLiquidityA(BigDecimal.valueOf(snapshot.baseVaultAmount()));
+                pool.setLiquidityB(BigDecimal.valueOf(snapshot.quoteVaultAmount()));
+                pools[i] = pool;
+                amounts[i] = BigDecimal.valueOf(RaydiumPoolService.findSwapInstruction(swapTx).amountIn());
+            }
+        }
+
+        private int next() {
+            index = (index + 1) & (SIZE - 1);
+            return index;
+        }
+    }
+
+    /**
+     * Сервис с реальными компонентами обработки и заглушенными внешними зависимостями
+     */
+    @State(Scope.Thread)
+    public static class Pipeline {
+        @Param({"rpc", "stream"})
+        private String reserves;
+
+        private RaydiumPoolService service;
+        private PoolLaneExecutor poolLaneExecutor;
+        private Scheduler persistenceScheduler;
+        private ScheduledExecutorService flusher;
+
+        @Setup
+        public void setUp(Swaps swaps) {
+            HeliusProperties heliusProperties = new HeliusProperties();
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            persistenceScheduler = Schedulers.newBoundedElastic(10, 100_000, "db-persistence");
+
+            RaydiumPoolRepository poolRepository = stub(RaydiumPoolRepository.class);
+            JdbcTemplate jdbcTemplate = stub(JdbcTemplate.class);
+
+            SolanaRpcService solanaRpcService = stub(SolanaRpcService.class);
+            when(solanaRpcService.getPoolSnapshot(anyString()))
+                    .thenAnswer(invocation -> Mono.just(swaps.snapshots.get(invocation.<String>getArgument(0))));
+
+            PoolAccountStreamer poolAccountStreamer = stub(PoolAccountStreamer.class);
+            when(poolAccountStreamer.updates()).thenReturn(Flux.never());
+            if ("stream".equals(reserves)) {
+                when(poolAccountStreamer.currentReserves(anyString())).thenAnswer(invocation ->
+                        Optional.of(swaps.snapshots.get(invocation.<String>getArgument(0)).reserves()));
+            }
+
+            SwapEventPartitionManager partitionManager = stub(SwapEventPartitionManager.class);
+            when(partitionManager.isSchemaReady()).thenReturn(true);
+
+            PoolStateCache poolStateCache = new PoolStateCache(poolRepository, jdbcTemplate, persistenceScheduler,
+                    new PoolCacheProperties(), meterRegistry, 50);
+            poolLaneExecutor = new PoolLaneExecutor(heliusProperties);
+            RollingVolumeEngine volumeEngine = new RollingVolumeEngine();
+            SwapEventWriter swapEventWriter = new SwapEventWriter(jdbcTemplate, partitionManager,
+                    new SwapEventProperties(), meterRegistry);
+            CandleAggregator candleAggregator = new CandleAggregator(stub(CandleStore.class), persistenceScheduler,
+                    new CandleProperties(), meterRegistry);
+
+            service = new RaydiumPoolService(poolRepository, solanaRpcService, poolStateCache, poolAccountStreamer,
+                    poolLaneExecutor, volumeEngine, swapEventWriter, candleAggregator,
+                    new PoolGraph(poolRepository, persistenceScheduler),
+                    new PoolRanking(poolRepository, volumeEngine, persistenceScheduler),
+                    stub(PoolSummaryCursor.class), persistenceScheduler, new ProcessingExecution(heliusProperties),
+                    heliusProperties, meterRegistry);
+            service.init();
+
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "benchmark-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(swapEventWriter::flush, 200, 200, TimeUnit.MILLISECONDS);
+            flusher.scheduleWithFixedDelay(candleAggregator::flush, 1, 1, TimeUnit.SECONDS);
+            flusher.scheduleWithFixedDelay(poolStateCache::flush, 1, 1, TimeUnit.SECONDS);
+        }
+
+        @TearDown
+        public void tearDown() throws ReflectiveOperationException {
+            flusher.shutdownNow();
+            // В приложении полосы останавливает Spring через @PreDestroy
+            Method shutdown = PoolLaneExecutor.class.getDeclaredMethod("shutdown");
+            shutdown.setAccessible(true);
+            shutdown.invoke(poolLaneExecutor);
+            persistenceScheduler.dispose();
+        }
+    }
+
+    @Benchmark
+    public RaydiumSwapInstruction findSwapInstruction(Swaps swaps) {
+        return RaydiumPoolService.findSwapInstruction(swaps.transactions[swaps.next()]);
+    }
+
+    @Benchmark
+    public BigDecimal calculateExpectedSlippage(Pipeline pipeline, Swaps swaps) {
+        int i = swaps.next();
+        return pipeline.service.calculateExpectedSlippage(swaps.pools[i], swaps.amounts[i], true);
+    }
+
+    @Benchmark
+    public void processPoolFromSwap(Pipeline pipeline, Swaps swaps) {
+        pipeline.service.processPoolFromSwap(swaps.transactions[swaps.next()]).block();
+    }
+
+    /**
+     * Заглушка без записи вызовов: иначе Mockito накапливает их за все итерации
+     */
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
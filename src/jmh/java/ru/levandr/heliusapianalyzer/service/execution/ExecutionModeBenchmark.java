@@ -0,0 +1,83 @@
+package ru.levandr.heliusapianalyzer.service.execution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.config.SchedulerConfig;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Режимы выполнения обработки свопов при большом числе одновременных свопов
+ * Своп моделируется как в RaydiumPoolService: загрузка пула из БД (блокирующий вызов на persistenceScheduler,
+ * 10 соединений, как в Hikari) параллельно с запросом снимка к RPC (ожидание сети без потока).
+ * Планировщики и ограничения берутся из SchedulerConfig и ProcessingExecution
+ * Запуск: ./gradlew jmh -Pjmh.includes=ExecutionModeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutionModeBenchmark {
+    private static final int DB_CONNECTIONS = 10;
+
+    // Время, на которое загрузка пула занимает соединение
+    private static final long DB_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // Задержка ответа RPC
+    private static final Duration RPC_LATENCY = Duration.ofMillis(2);
+
+    @Param({"REACTIVE", "VIRTUAL_THREADS"})
+    private HeliusProperties.Processing.Execution execution;
+
+    @Param({"1000", "10000"})
+    private int swaps;
+
+    private Scheduler persistenceScheduler;
+    private ProcessingExecution processingExecution;
+
+    @Setup
+    public void setUp() {
+        HeliusProperties heliusProperties = new HeliusProperties();
+        heliusProperties.getProcessing().setExecution(execution);
+        persistenceScheduler = new SchedulerConfig().persistenceScheduler(DB_CONNECTIONS, heliusProperties);
+        processingExecution = new ProcessingExecution(heliusProperties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        processingExecution.shutdown();
+        persistenceScheduler.dispose();
+    }
+
+    /**
+     * Все свопы обрабатываются одновременно; результат - время до завершения последнего
+     */
+    @Benchmark
+    public void concurrentSwaps() {
+        Flux.range(0, swaps)
+                .flatMap(i -> processingExecution.processSwap(() -> swap(i)), swaps)
+                .blockLast();
+    }
+
+    private Mono<Void> swap(int i) {
+        Mono<Integer> load = Mono.fromCallable(() -> {
+                    LockSupport.parkNanos(DB_NANOS);
+                    return i;
+                })
+                .subscribeOn(persistenceScheduler);
+        Mono<Long> reserves = processingExecution.limitRpc(Mono.delay(RPC_LATENCY));
+        return Mono.zip(load, reserves).then();
+    }
+}
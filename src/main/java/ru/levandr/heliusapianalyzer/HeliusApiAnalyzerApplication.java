@@ -2,8 +2,10 @@ package ru.levandr.heliusapianalyzer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class HeliusApiAnalyzerApplication {
 
     public static void main(String[] args) {
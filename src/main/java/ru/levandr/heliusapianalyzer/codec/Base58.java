@@ -0,0 +1,126 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import java.util.Arrays;
+
+/**
+ * Кодирование и декодирование base58 (алфавит Bitcoin/Solana)
+ */
+public final class Base58 {
+    private static final char[] ALPHABET =
+            "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+    private static final byte[] INDEXES = new byte[128];
+
+    static {
+        Arrays.fill(INDEXES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEXES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private Base58() {
+    }
+
+    /**
+     * Кодирует участок массива в строку base58
+     *
+     * @param data   исходные байты
+     * @param offset начало участка
+     * @param length длина участка
+     */
+    public static String encode(byte[] data, int offset, int length) {
+        // Ведущие нули кодируются символом '1'
+        int zeros = 0;
+        while (zeros < length && data[offset + zeros] == 0) {
+            zeros++;
+        }
+
+        // log(256) / log(58) ~ 1.37, цифры base58 храним от младших к старшим
+        byte[] digits = new byte[length * 138 / 100 + 1];
+        int digitCount = 0;
+        for (int i = offset + zeros; i < offset + length; i++) {
+            int carry = data[i] & 0xFF;
+            for (int j = 0; j < digitCount; j++) {
+                carry += (digits[j] & 0xFF) << 8;
+                digits[j] = (byte) (carry % 58);
+                carry /= 58;
+            }
+            while (carry > 0) {
+                digits[digitCount++] = (byte) (carry % 58);
+                carry /= 58;
+            }
+        }
+
+        char[] result = new char[zeros + digitCount];
+        for (int i = 0; i < zeros; i++) {
+            result[i] = ALPHABET[0];
+        }
+        for (int i = 0; i < digitCount; i++) {
+            result[zeros + i] = ALPHABET[digits[digitCount - 1 - i]];
+        }
+        return new String(result);
+    }
+
+    /**
+     * Декодирует строку base58 в переданный буфер без аллокаций
+     *
+     * @param input  строка base58
+     * @param output буфер результата; байты пишутся с начала
+     * @return длина результата или -1, если строка некорректна или результат не помещается в буфер
+     */
+    public static int decode(CharSequence input, byte[] output) {
+        int zeros = 0;
+        while (zeros < input.length() && input.charAt(zeros) == ALPHABET[0]) {
+            zeros++;
+        }
+
+        // Байты копим от младших к старшим: число = число * 58 + цифра
+        int length = 0;
+        for (int i = zeros; i < input.length(); i++) {
+            char c = input.charAt(i);
+            int carry = c < INDEXES.length ? INDEXES[c] : -1;
+            if (carry < 0) {
+                return -1;
+            }
+            for (int j = 0; j < length; j++) {
+                carry += (output[j] & 0xFF) * 58;
+                output[j] = (byte) carry;
+                carry >>>= 8;
+            }
+            while (carry > 0) {
+                if (length == output.length) {
+                    return -1;
+                }
+                output[length++] = (byte) carry;
+                carry >>>= 8;
+            }
+        }
+        if (zeros + length > output.length) {
+            return -1;
+        }
+
+        // Разворачиваем в big-endian и дописываем ведущие нули (символы '1')
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            byte tmp = output[i];
+            output[i] = output[j];
+            output[j] = tmp;
+        }
+        System.arraycopy(output, 0, output, zeros, length);
+        Arrays.fill(output, 0, zeros, (byte) 0);
+        return zeros + length;
+    }
+
+    /**
+     * Декодирует строку base58
+     *
+     * @throws IllegalArgumentException если строка содержит символы вне алфавита
+     */
+    public static byte[] decode(String input) {
+        // Каждый символ base58 несет меньше одного байта
+        byte[] output = new byte[input.length()];
+        int length = decode(input, output);
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid base58 string");
+        }
+        return Arrays.copyOf(output, length);
+    }
+}
@@ -0,0 +1,168 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Представление аккаунта пула Raydium AMM v4 (752 байта) поверх массива байт без копирования
+ * Поля читаются по смещению при обращении, строки не создаются. Один экземпляр переиспользуется
+ * для разных аккаунтов через {@link #wrap(byte[], int)} и не потокобезопасен.
+ * <p>
+ * Резервов в аккаунте пула нет: они равны балансам хранилищ (baseVault/quoteVault)
+ * за вычетом base/quoteNeedTakePnl
+ */
+public final class RaydiumAmmAccount {
+    public static final int ACCOUNT_LENGTH = 752;
+    public static final int PUBKEY_LENGTH = 32;
+
+    // Смещения полей LIQUIDITY_STATE_LAYOUT_V4
+    public static final int STATUS = 0;
+    public static final int NONCE = 8;
+    public static final int BASE_DECIMAL = 32;
+    public static final int QUOTE_DECIMAL = 40;
+    public static final int STATE = 48;
+    public static final int TRADE_FEE_NUMERATOR = 144;
+    public static final int TRADE_FEE_DENOMINATOR = 152;
+    public static final int SWAP_FEE_NUMERATOR = 176;
+    public static final int SWAP_FEE_DENOMINATOR = 184;
+    public static final int BASE_NEED_TAKE_PNL = 192;
+    public static final int QUOTE_NEED_TAKE_PNL = 200;
+    public static final int POOL_OPEN_TIME = 224;
+    public static final int BASE_VAULT = 336;
+    public static final int QUOTE_VAULT = 368;
+    public static final int BASE_MINT = 400;
+    public static final int QUOTE_MINT = 432;
+    public static final int LP_MINT = 464;
+    public static final int OPEN_ORDERS = 496;
+    public static final int MARKET_ID = 528;
+    public static final int MARKET_PROGRAM_ID = 560;
+    public static final int TARGET_ORDERS = 592;
+    public static final int LP_RESERVE = 720;
+
+    /**
+     * Срез, достаточный для расчета резервов и комиссий и определения токенов пула:
+     * от trade fee до quoteMint включительно
+     */
+    public static final int RESERVES_SLICE_OFFSET = TRADE_FEE_NUMERATOR;
+    public static final int RESERVES_SLICE_LENGTH = QUOTE_MINT + PUBKEY_LENGTH - RESERVES_SLICE_OFFSET;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private byte[] data;
+    private int sliceOffset;
+
+    /**
+     * Направляет представление на данные аккаунта
+     *
+     * @param data        данные аккаунта или его срез
+     * @param sliceOffset смещение среза внутри аккаунта (0 для полного аккаунта)
+     * @return this для цепочки вызовов
+     */
+    public RaydiumAmmAccount wrap(byte[] data, int sliceOffset) {
+        if (data == null || sliceOffset < 0 || sliceOffset + data.length > ACCOUNT_LENGTH) {
+            throw new IllegalArgumentException("Invalid Raydium AMM account slice");
+        }
+        this.data = data;
+        this.sliceOffset = sliceOffset;
+        return this;
+    }
+
+    /**
+     * Проверяет, что срез содержит поле [fieldOffset, fieldOffset + length)
+     */
+    public boolean covers(int fieldOffset, int length) {
+        return fieldOffset >= sliceOffset && fieldOffset + length <= sliceOffset + data.length;
+    }
+
+    public long status() {
+        return u64(STATUS);
+    }
+
+    public long nonce() {
+        return u64(NONCE);
+    }
+
+    public long baseDecimal() {
+        return u64(BASE_DECIMAL);
+    }
+
+    public long quoteDecimal() {
+        return u64(QUOTE_DECIMAL);
+    }
+
+    public long state() {
+        return u64(STATE);
+    }
+
+    public long tradeFeeNumerator() {
+        return u64(TRADE_FEE_NUMERATOR);
+    }
+
+    public long tradeFeeDenominator() {
+        return u64(TRADE_FEE_DENOMINATOR);
+    }
+
+    public long swapFeeNumerator() {
+        return u64(SWAP_FEE_NUMERATOR);
+    }
+
+    public long swapFeeDenominator() {
+        return u64(SWAP_FEE_DENOMINATOR);
+    }
+
+    public long baseNeedTakePnl() {
+        return u64(BASE_NEED_TAKE_PNL);
+    }
+
+    public long quoteNeedTakePnl() {
+        return u64(QUOTE_NEED_TAKE_PNL);
+    }
+
+    public long poolOpenTime() {
+        return u64(POOL_OPEN_TIME);
+    }
+
+    public long lpReserve() {
+        return u64(LP_RESERVE);
+    }
+
+    /**
+     * Сравнивает публичный ключ поля с переданным без копирования
+     *
+     * @param fieldOffset смещение поля-ключа (например, {@link #BASE_VAULT})
+     * @param key         32 байта ключа
+     */
+    public boolean pubkeyEquals(int fieldOffset, byte[] key) {
+        int position = position(fieldOffset, PUBKEY_LENGTH);
+        return Arrays.equals(data, position, position + PUBKEY_LENGTH, key, 0, PUBKEY_LENGTH);
+    }
+
+    /**
+     * Копирует публичный ключ поля в переданный массив
+     */
+    public void copyPubkey(int fieldOffset, byte[] target, int targetOffset) {
+        System.arraycopy(data, position(fieldOffset, PUBKEY_LENGTH), target, targetOffset, PUBKEY_LENGTH);
+    }
+
+    /**
+     * Публичный ключ поля в base58
+     * Создает строку, поэтому предназначен для редких обращений (например, при первом появлении пула)
+     */
+    public String pubkeyBase58(int fieldOffset) {
+        return Base58.encode(data, position(fieldOffset, PUBKEY_LENGTH), PUBKEY_LENGTH);
+    }
+
+    private long u64(int fieldOffset) {
+        return (long) LONG_LE.get(data, position(fieldOffset, Long.BYTES));
+    }
+
+    private int position(int fieldOffset, int length) {
+        if (!covers(fieldOffset, length)) {
+            throw new IndexOutOfBoundsException("Field at offset " + fieldOffset + " is outside of the account slice");
+        }
+        return fieldOffset - sliceOffset;
+    }
+}
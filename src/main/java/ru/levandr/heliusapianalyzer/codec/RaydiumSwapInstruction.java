@@ -0,0 +1,112 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Декодированная инструкция свопа Raydium AMM v4 (SwapBaseIn / SwapBaseOut)
+ * Данные инструкции: дискриминатор (1 байт) и две суммы u64 little-endian.
+ * Для SwapBaseIn это amountIn и minAmountOut, для SwapBaseOut - maxAmountIn и amountOut.
+ * Роли аккаунтов зависят от варианта: 18 аккаунтов с ammTargetOrders или 17 без него.
+ * Адреса аккаунтов не копируются - это ссылки на строки из списка инструкции
+ *
+ * @param kind              вариант свопа
+ * @param amountIn          для SwapBaseIn - точная сумма входа, для SwapBaseOut - максимальная
+ * @param amountOut         для SwapBaseIn - минимальная сумма выхода, для SwapBaseOut - точная
+ * @param amm               аккаунт пула
+ * @param baseVault         хранилище базового токена пула (poolCoinTokenAccount)
+ * @param quoteVault        хранилище котируемого токена пула (poolPcTokenAccount)
+ * @param userSource        токен-аккаунт, с которого списывается вход
+ * @param userDestination   токен-аккаунт, на который зачисляется выход
+ * @param userOwner         владелец токен-аккаунтов пользователя
+ */
+public record RaydiumSwapInstruction(Kind kind, long amountIn, long amountOut, String amm,
+                                     String baseVault, String quoteVault,
+                                     String userSource, String userDestination, String userOwner) {
+    public static final String PROGRAM_ID = "675kPX9MHTjS2zt1qfr1NYHuzeLXfQM9H24wFSUt1Mp8";
+    public static final int DATA_LENGTH = 17;
+
+    private static final int ACCOUNTS_WITH_TARGET_ORDERS = 18;
+    private static final int ACCOUNTS_WITHOUT_TARGET_ORDERS = 17;
+    private static final int AMM = 1;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Данные свопа занимают 17 байт; больший буфер позволяет отличить более длинные инструкции
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[DATA_LENGTH + 1]);
+
+    /**
+     * Вариант свопа и его дискриминатор
+     */
+    public enum Kind {
+        SWAP_BASE_IN(9),
+        SWAP_BASE_OUT(11);
+
+        private final int discriminator;
+
+        Kind(int discriminator) {
+            this.discriminator = discriminator;
+        }
+
+        public int discriminator() {
+            return discriminator;
+        }
+    }
+
+    /**
+     * Сумма, заданная точно: вход для SwapBaseIn, выход для SwapBaseOut
+     */
+    public boolean exactIn() {
+        return kind == Kind.SWAP_BASE_IN;
+    }
+
+    /**
+     * Декодирует инструкцию программы Raydium AMM v4
+     *
+     * @param data     данные инструкции в base58
+     * @param accounts аккаунты инструкции в порядке программы
+     * @return инструкция свопа или null, если это не своп или данные некорректны
+     */
+    public static RaydiumSwapInstruction decode(String data, List<String> accounts) {
+        if (data == null || accounts == null) {
+            return null;
+        }
+
+        byte[] bytes = SCRATCH.get();
+        if (Base58.decode(data, bytes) != DATA_LENGTH) {
+            return null;
+        }
+
+        Kind kind;
+        if (bytes[0] == Kind.SWAP_BASE_IN.discriminator) {
+            kind = Kind.SWAP_BASE_IN;
+        } else if (bytes[0] == Kind.SWAP_BASE_OUT.discriminator) {
+            kind = Kind.SWAP_BASE_OUT;
+        } else {
+            return null;
+        }
+
+        // Без ammTargetOrders все аккаунты после ammOpenOrders сдвигаются на один
+        int shift;
+        if (accounts.size() == ACCOUNTS_WITH_TARGET_ORDERS) {
+            shift = 0;
+        } else if (accounts.size() == ACCOUNTS_WITHOUT_TARGET_ORDERS) {
+            shift = -1;
+        } else {
+            return null;
+        }
+
+        return new RaydiumSwapInstruction(kind,
+                (long) LONG_LE.get(bytes, 1),
+                (long) LONG_LE.get(bytes, 9),
+                accounts.get(AMM),
+                accounts.get(5 + shift),
+                accounts.get(6 + shift),
+                accounts.get(15 + shift),
+                accounts.get(16 + shift),
+                accounts.get(17 + shift));
+    }
+}
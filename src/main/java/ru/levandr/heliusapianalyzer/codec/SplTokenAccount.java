@@ -0,0 +1,37 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Раскладка аккаунта SPL Token (165 байт)
+ * Нужен только баланс, поэтому RPC запрашивает срез [AMOUNT_OFFSET, AMOUNT_OFFSET + 8)
+ */
+public final class SplTokenAccount {
+    public static final int MINT_OFFSET = 0;
+    public static final int OWNER_OFFSET = 32;
+    public static final int AMOUNT_OFFSET = 64;
+    public static final int AMOUNT_LENGTH = 8;
+    public static final int ACCOUNT_LENGTH = 165;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private SplTokenAccount() {
+    }
+
+    /**
+     * Читает баланс токен-аккаунта
+     *
+     * @param data        данные аккаунта или его срез
+     * @param sliceOffset смещение среза внутри аккаунта
+     */
+    public static long amount(byte[] data, int sliceOffset) {
+        int position = AMOUNT_OFFSET - sliceOffset;
+        if (position < 0 || position + AMOUNT_LENGTH > data.length) {
+            throw new IllegalArgumentException("Token account data does not cover amount field");
+        }
+        return (long) LONG_LE.get(data, position);
+    }
+}
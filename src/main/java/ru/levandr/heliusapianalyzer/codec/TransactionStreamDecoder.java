@@ -0,0 +1,232 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Потоковый разбор массива транзакций Helius по мере поступления байт из сети
+ * <p>
+ * Ответ не накапливается целиком: неблокирующий парсер Jackson получает буферы по одному,
+ * а в {@link TokenBuffer} копируются только используемые поля текущего элемента.
+ * Элементы, тип которых не SWAP, не связываются с моделью: для них известны только
+ * signature, type и timestamp, нужные для постраничной загрузки. Память на разбор
+ * ограничена одной транзакцией и не зависит от размера страницы.
+ * Экземпляр не потокобезопасен и разбирает один ответ
+ */
+public final class TransactionStreamDecoder {
+    private static final String SWAP = "SWAP";
+    private static final String SIGNATURE = "signature";
+    private static final String TYPE = "type";
+    private static final String TIMESTAMP = "timestamp";
+
+    // Поля, которые используются при обработке свопа
+    private static final Set<String> BOUND_FIELDS =
+            Set.of(SIGNATURE, TYPE, TIMESTAMP, "fee", "tokenTransfers", "instructions");
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+
+    private int depth;
+    private boolean arrayClosed;
+    private TokenBuffer element;
+    private boolean copyingField;
+    private String topLevelField;
+    private String signature;
+    private String type;
+    private Long timestamp;
+
+    public TransactionStreamDecoder(ObjectMapper objectMapper) {
+        try {
+            this.objectMapper = objectMapper;
+            this.parser = objectMapper.getFactory().createNonBlockingByteBufferParser();
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Разбирает поток буферов ответа в поток транзакций
+     * Буферы освобождаются сразу после разбора
+     */
+    public static Flux<RaydiumSwapTransaction> decode(Flux<DataBuffer> body, ObjectMapper objectMapper) {
+        return Flux.defer(() -> {
+            TransactionStreamDecoder decoder = new TransactionStreamDecoder(objectMapper);
+            return body.concatMapIterable(decoder::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.finish())))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    /**
+     * Передает парсеру очередной буфер
+     *
+     * @return транзакции, завершившиеся в этом буфере
+     */
+    public List<RaydiumSwapTransaction> feed(DataBuffer buffer) {
+        List<RaydiumSwapTransaction> decoded = new ArrayList<>(1);
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer chunk = iterator.next();
+                feeder.feedInput(chunk);
+                // Парсер должен вычитать буфер полностью, прежде чем получит следующий
+                parseAvailable(decoded);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        return decoded;
+    }
+
+    /**
+     * Завершает разбор после окончания ответа
+     *
+     * @return транзакции, оставшиеся в парсере
+     */
+    public List<RaydiumSwapTransaction> finish() {
+        List<RaydiumSwapTransaction> decoded = new ArrayList<>(1);
+        try {
+            feeder.endOfInput();
+            parseAvailable(decoded);
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!arrayClosed) {
+            throw new IllegalStateException("Truncated transaction array");
+        }
+        return decoded;
+    }
+
+    private void parseAvailable(List<RaydiumSwapTransaction> decoded) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token, decoded);
+        }
+    }
+
+    private void handle(JsonToken token, List<RaydiumSwapTransaction> decoded) throws IOException {
+        // Корневой массив
+        if (depth == 0) {
+            if (token != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Expected JSON array of transactions, got " + token);
+            }
+            depth = 1;
+            return;
+        }
+
+        // Элементы массива
+        if (depth == 1) {
+            if (token == JsonToken.END_ARRAY) {
+                depth = 0;
+                arrayClosed = true;
+            } else if (token == JsonToken.START_OBJECT) {
+                startElement();
+            } else {
+                throw new IllegalStateException("Expected transaction object, got " + token);
+            }
+            return;
+        }
+
+        // Поля транзакции
+        if (depth == 2) {
+            if (token == JsonToken.END_OBJECT) {
+                depth = 1;
+                decoded.add(finishElement());
+                return;
+            }
+            if (token == JsonToken.FIELD_NAME) {
+                topLevelField = parser.currentName();
+                copyingField = element != null && BOUND_FIELDS.contains(topLevelField);
+                copy();
+                return;
+            }
+            readTopLevelValue(token);
+        }
+
+        copy();
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+    }
+
+    /**
+     * Запоминает значения полей, нужных для любой транзакции
+     * Как только тип известен и это не SWAP, остаток элемента не копируется
+     */
+    private void readTopLevelValue(JsonToken token) {
+        if (!token.isScalarValue() || token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        try {
+            switch (topLevelField) {
+                case SIGNATURE -> signature = parser.getValueAsString();
+                case TIMESTAMP -> timestamp = parser.getValueAsLong();
+                case TYPE -> {
+                    type = parser.getValueAsString();
+                    if (!SWAP.equals(type)) {
+                        element = null;
+                        copyingField = false;
+                    }
+                }
+                default -> {
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void startElement() throws IOException {
+        depth = 2;
+        signature = null;
+        type = null;
+        timestamp = null;
+        topLevelField = null;
+        copyingField = false;
+        element = new TokenBuffer(objectMapper, false);
+        element.writeStartObject();
+    }
+
+    private RaydiumSwapTransaction finishElement() throws IOException {
+        TokenBuffer buffer = element;
+        element = null;
+        if (buffer == null || !SWAP.equals(type)) {
+            RaydiumSwapTransaction skipped = new RaydiumSwapTransaction();
+            skipped.setSignature(signature);
+            skipped.setType(type);
+            skipped.setTimestamp(timestamp);
+            return skipped;
+        }
+
+        buffer.writeEndObject();
+        try (JsonParser elementParser = buffer.asParser(objectMapper)) {
+            return objectMapper.readValue(elementParser, RaydiumSwapTransaction.class);
+        }
+    }
+
+    private void copy() throws IOException {
+        if (copyingField && element != null) {
+            element.copyCurrentEvent(parser);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.levandr.heliusapianalyzer.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Размыкатели для внешних RPC вызовов
+ */
+@Configuration
+public class ResilienceConfig {
+
+    /**
+     * Реестр размыкателей с общими настройками: по одному размыкателю на RPC адрес
+     * Состояние и статистика размыкателей публикуются в метриках resilience4j.circuitbreaker.*
+     * Ответы 429 размыкателем не учитываются: это штатное ограничение квоты, его пережидает и повторяет
+     * {@link ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler}
+     */
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(HeliusProperties heliusProperties,
+                                                         MeterRegistry meterRegistry) {
+        HeliusProperties.RpcResilience resilience = heliusProperties.getRpcResilience();
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(resilience.getSlidingWindowSize())
+                .minimumNumberOfCalls(resilience.getMinimumCalls())
+                .failureRateThreshold(resilience.getFailureRateThreshold())
+                .slowCallDurationThreshold(resilience.getSlowCallDuration())
+                .slowCallRateThreshold(resilience.getSlowCallRateThreshold())
+                .waitDurationInOpenState(resilience.getOpenStateDuration())
+                .permittedNumberOfCallsInHalfOpenState(resilience.getHalfOpenCalls())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordExceptions(Exception.class, TimeoutException.class)
+                .ignoreException(ResilienceConfig::isThrottled)
+                .build();
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    /**
+     * Ответ 429 от RPC
+     */
+    private static boolean isThrottled(Throwable error) {
+        return error instanceof WebClientResponseException response
+                && response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+}
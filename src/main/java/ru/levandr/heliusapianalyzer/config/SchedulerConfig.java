@@ -0,0 +1,33 @@
+package ru.levandr.heliusapianalyzer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.service.execution.GatedExecutorService;
+
+/**
+ * Планировщики для блокирующей работы внутри реактивного конвейера
+ */
+@Configuration
+public class SchedulerConfig {
+    private static final int PERSISTENCE_QUEUE_CAPACITY = 100_000;
+
+    /**
+     * Ограниченный планировщик для JPA операций
+     * Одновременно выполняется не больше задач, чем соединений в пуле Hikari, чтобы задачи не ждали соединение.
+     * В режиме VIRTUAL_THREADS каждая задача получает виртуальный поток, а лимит задает семафор
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler persistenceScheduler(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maxPoolSize,
+            HeliusProperties heliusProperties) {
+        if (heliusProperties.getProcessing().getExecution() == HeliusProperties.Processing.Execution.VIRTUAL_THREADS) {
+            return Schedulers.fromExecutorService(new GatedExecutorService("db-persistence", maxPoolSize),
+                    "db-persistence");
+        }
+        return Schedulers.newBoundedElastic(maxPoolSize, PERSISTENCE_QUEUE_CAPACITY, "db-persistence");
+    }
+}
@@ -1,16 +1,91 @@
 package ru.levandr.heliusapianalyzer.config;
 
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ru.levandr.heliusapianalyzer.properties.HttpClientProperties;
 
+/**
+ * HTTP клиенты внешних сервисов
+ * REST API Helius и Solana RPC используют отдельные именованные пулы соединений,
+ * метрики пулов публикуются в Micrometer с тегом имени пула
+ */
+@Slf4j
 @Configuration
 public class WebClientConfig {
-    @Bean
-    public WebClient webClient() {
+    public static final String HELIUS_API = "heliusApiWebClient";
+    public static final String SOLANA_RPC = "solanaRpcWebClient";
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider heliusApiConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider("helius-api", properties.getHeliusApi());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider solanaRpcConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider("solana-rpc", properties.getSolanaRpc());
+    }
+
+    /**
+     * Клиент REST API Helius. Ответы истории транзакций разбираются потоково,
+     * поэтому лимит буфера кодеков остается по умолчанию
+     */
+    @Bean(HELIUS_API)
+    public WebClient heliusApiWebClient(@Qualifier("heliusApiConnectionProvider") ConnectionProvider provider,
+                                        HttpClientProperties properties) {
+        return webClient("helius-api", provider, properties.getHeliusApi());
+    }
+
+    /**
+     * Клиент Solana JSON-RPC
+     */
+    @Bean(SOLANA_RPC)
+    public WebClient solanaRpcWebClient(@Qualifier("solanaRpcConnectionProvider") ConnectionProvider provider,
+                                        HttpClientProperties properties) {
+        return webClient("solana-rpc", provider, properties.getSolanaRpc());
+    }
+
+    private ConnectionProvider connectionProvider(String name, HttpClientProperties.Upstream upstream) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(upstream.getMaxConnections())
+                .pendingAcquireMaxCount(upstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(upstream.getPendingAcquireTimeout())
+                .maxIdleTime(upstream.getMaxIdleTime())
+                .maxLifeTime(upstream.getMaxLifeTime())
+                .evictInBackground(upstream.getEvictionInterval())
+                // Новые запросы берут последнее освободившееся, то есть "теплое" соединение
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    private WebClient webClient(String name, ConnectionProvider provider, HttpClientProperties.Upstream upstream) {
+        HttpClient httpClient = HttpClient.create(provider)
+                .protocol(upstream.isHttp2()
+                        ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11})
+                .compress(upstream.isCompress())
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(upstream.getConnectTimeout().toMillis()))
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(upstream.getResponseTimeout())
+                // Адреса и ключи в URI не должны попадать в теги метрик
+                .metrics(true, uri -> name);
+
+        // Event loop, DNS резолвер и SSL контекст инициализируются при старте, а не на первом запросе
+        httpClient.warmup().block();
+        log.info("HTTP client {} ready: maxConnections={}, http2={}, compress={}",
+                name, upstream.getMaxConnections(), upstream.isHttp2(), upstream.isCompress());
+
         return WebClient.builder()
-                .codecs(configurer ->
-                        configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
 }
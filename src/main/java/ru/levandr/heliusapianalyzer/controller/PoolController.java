@@ -1,14 +1,27 @@
 package ru.levandr.heliusapianalyzer.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.levandr.heliusapianalyzer.model.Candle;
+import ru.levandr.heliusapianalyzer.model.PoolPage;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
+import ru.levandr.heliusapianalyzer.model.RankedPool;
+import ru.levandr.heliusapianalyzer.model.RouteQuote;
+import ru.levandr.heliusapianalyzer.model.VolumeStats;
 import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
 import ru.levandr.heliusapianalyzer.service.RaydiumPoolService;
+import ru.levandr.heliusapianalyzer.service.candle.Timeframe;
+import ru.levandr.heliusapianalyzer.service.graph.PoolGraph;
+import ru.levandr.heliusapianalyzer.service.ranking.PoolRanking;
 
 import java.util.List;
 import java.util.Map;
@@ -17,6 +30,9 @@ import java.util.Map;
 @RequestMapping("/api/v1/pools")
 @RequiredArgsConstructor
 public class PoolController {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_ACTIVE_PAGE_SIZE = 1_000;
+
     private final RaydiumPoolService poolService;
 
     @GetMapping("/{address}")
@@ -26,18 +42,102 @@ public class PoolController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{address}/volume")
+    public VolumeStats getPoolVolume(@PathVariable String address) {
+        return poolService.getPoolVolume(address);
+    }
+
+    /**
+     * Свечи пула от старых к новым
+     *
+     * @param timeframe 1s, 1m, 5m или 1h
+     * @param from      начало интервала (unix, секунды), по умолчанию без ограничения
+     * @param to        конец интервала, не включая (unix, секунды), по умолчанию без ограничения
+     * @param limit     максимум последних свечей
+     */
+    @GetMapping("/{address}/candles")
+    public Mono<ResponseEntity<List<Candle>>> getPoolCandles(@PathVariable String address,
+                                                             @RequestParam(defaultValue = "1m") String timeframe,
+                                                             @RequestParam(defaultValue = "0") long from,
+                                                             @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                                             @RequestParam(defaultValue = "500") int limit) {
+        return Timeframe.fromLabel(timeframe)
+                .map(resolved -> poolService.getPoolCandles(address, resolved, from, to, limit)
+                        .map(ResponseEntity::ok))
+                .orElseGet(() -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Лучший маршрут обмена по пулам в памяти, без обращений к БД
+     *
+     * @param amount  входная сумма в минимальных единицах токена
+     * @param maxHops максимальное число обменов, от 1 до 3
+     */
+    @GetMapping("/quote")
+    public ResponseEntity<RouteQuote> quote(@RequestParam String inputMint,
+                                            @RequestParam String outputMint,
+                                            @RequestParam long amount,
+                                            @RequestParam(defaultValue = "" + PoolGraph.MAX_HOPS) int maxHops) {
+        if (amount <= 0 || maxHops < 1 || maxHops > PoolGraph.MAX_HOPS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return poolService.quote(inputMint, outputMint, amount, maxHops)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Рейтинг пулов без обращений к БД
+     *
+     * @param by    liquidity, volume или price-change
+     * @param quote котируемый токен пулов для liquidity и volume, их значения в единицах этого токена
+     * @param order desc - сначала наибольшие значения, asc - наименьшие
+     */
+    @GetMapping("/top")
+    public ResponseEntity<List<RankedPool>> getTopPools(@RequestParam(defaultValue = "liquidity") String by,
+                                                        @RequestParam(defaultValue = PoolRanking.WSOL_MINT)
+                                                        String quote,
+                                                        @RequestParam(defaultValue = "0") int offset,
+                                                        @RequestParam(defaultValue = "20") int limit,
+                                                        @RequestParam(defaultValue = "desc") String order) {
+        if (offset < 0 || limit < 1 || limit > MAX_PAGE_SIZE
+                || !("asc".equalsIgnoreCase(order) || "desc".equalsIgnoreCase(order))) {
+            return ResponseEntity.badRequest().build();
+        }
+        return PoolRanking.Metric.fromParameter(by)
+                .map(metric -> ResponseEntity.ok(
+                        poolService.getTopPools(metric, quote, offset, limit, "asc".equalsIgnoreCase(order))))
+                .orElseGet(() -> ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Страница активных пулов в порядке адресов
+     *
+     * @param after адрес из поля next предыдущей страницы
+     */
     @GetMapping("/active")
-    public List<RaydiumPool> getActivePools() {
-        return poolService.getAllActivePools();
+    public Mono<ResponseEntity<PoolPage>> getActivePools(@RequestParam(defaultValue = "") String after,
+                                                         @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_ACTIVE_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return poolService.getActivePools(after, limit).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Все активные пулы потоком NDJSON, по строке на пул
+     */
+    @GetMapping(value = "/active/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<PoolSummary> streamActivePools() {
+        return poolService.streamActivePools();
     }
 
     @PostMapping("/{address}/deactivate")
-    public ResponseEntity<Void> deactivatePool(@PathVariable String address) {
+    public Mono<ResponseEntity<Void>> deactivatePool(@PathVariable String address) {
         if (poolService.isPoolActive(address)) {
-            poolService.deactivatePool(address);
-            return ResponseEntity.ok().build();
+            return poolService.deactivatePool(address).thenReturn(ResponseEntity.ok().build());
         }
-        return ResponseEntity.notFound().build();
+        return Mono.just(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/{address}/status")
@@ -0,0 +1,19 @@
+package ru.levandr.heliusapianalyzer.model;
+
+/**
+ * Свеча OHLCV пула
+ * Цена - цена токена A в токенах B, объемы - отдельно по токенам A и B
+ *
+ * @param time    начало интервала (unix, секунды)
+ * @param trades  количество свопов за интервал
+ */
+public record Candle(
+        long time,
+        double open,
+        double high,
+        double low,
+        double close,
+        double volumeA,
+        double volumeB,
+        int trades) {
+}
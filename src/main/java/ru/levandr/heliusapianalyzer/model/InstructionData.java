@@ -20,4 +20,7 @@ public class InstructionData {
 
     // ID программы, которая выполняет инструкцию
     private String programId;
+
+    // Вложенные инструкции (вызовы других программ из этой инструкции)
+    private List<InstructionData> innerInstructions;
 }
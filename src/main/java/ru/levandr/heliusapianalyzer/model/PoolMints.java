@@ -0,0 +1,10 @@
+package ru.levandr.heliusapianalyzer.model;
+
+/**
+ * Токены пула по данным аккаунта пула
+ *
+ * @param base  mint базового токена
+ * @param quote mint котируемого токена
+ */
+public record PoolMints(String base, String quote) {
+}
@@ -0,0 +1,11 @@
+package ru.levandr.heliusapianalyzer.model;
+
+import java.util.List;
+
+/**
+ * Страница списка пулов с ключом для следующей страницы
+ *
+ * @param next адрес, с которого продолжать (параметр after); null на последней странице
+ */
+public record PoolPage(List<PoolSummary> pools, String next) {
+}
@@ -0,0 +1,10 @@
+package ru.levandr.heliusapianalyzer.model;
+
+/**
+ * Резервы пула в минимальных единицах токенов
+ *
+ * @param base  резерв базового токена (baseVault - baseNeedTakePnl)
+ * @param quote резерв котируемого токена (quoteVault - quoteNeedTakePnl)
+ */
+public record PoolReserves(long base, long quote) {
+}
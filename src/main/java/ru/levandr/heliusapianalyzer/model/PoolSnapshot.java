@@ -0,0 +1,27 @@
+package ru.levandr.heliusapianalyzer.model;
+
+/**
+ * Снимок состояния пула, из которого считаются резервы
+ *
+ * @param baseVault        адрес хранилища базового токена
+ * @param quoteVault       адрес хранилища котируемого токена
+ * @param baseVaultAmount  баланс хранилища базового токена
+ * @param quoteVaultAmount баланс хранилища котируемого токена
+ * @param baseNeedTakePnl  невыведенная прибыль пула в базовом токене
+ * @param quoteNeedTakePnl невыведенная прибыль пула в котируемом токене
+ */
+public record PoolSnapshot(String baseVault,
+                           String quoteVault,
+                           long baseVaultAmount,
+                           long quoteVaultAmount,
+                           long baseNeedTakePnl,
+                           long quoteNeedTakePnl) {
+
+    /**
+     * Резервы пула: балансы хранилищ за вычетом невыведенной прибыли
+     */
+    public PoolReserves reserves() {
+        return new PoolReserves(Math.max(baseVaultAmount - baseNeedTakePnl, 0),
+                Math.max(quoteVaultAmount - quoteNeedTakePnl, 0));
+    }
+}
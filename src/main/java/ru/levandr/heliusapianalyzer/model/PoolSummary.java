@@ -0,0 +1,18 @@
+package ru.levandr.heliusapianalyzer.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Проекция пула для списков: только колонки, без управляемой сущности
+ */
+public record PoolSummary(
+        String address,
+        String tokenAMint,
+        String tokenBMint,
+        BigDecimal price,
+        BigDecimal liquidityA,
+        BigDecimal liquidityB,
+        BigDecimal volume24h,
+        LocalDateTime lastUpdate) {
+}
@@ -0,0 +1,21 @@
+package ru.levandr.heliusapianalyzer.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Пул в рейтинге
+ *
+ * @param rank           место в рейтинге, начиная с 1
+ * @param priceChange24h изменение цены за 24 часа в процентах
+ */
+public record RankedPool(
+        int rank,
+        String address,
+        String tokenAMint,
+        String tokenBMint,
+        BigDecimal price,
+        BigDecimal liquidityA,
+        BigDecimal liquidityB,
+        BigDecimal volume24h,
+        double priceChange24h) {
+}
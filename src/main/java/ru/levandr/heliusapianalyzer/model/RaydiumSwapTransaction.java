@@ -9,6 +9,7 @@ import java.util.List;
 /**
  * Базовая модель для парсинга SWAP транзакций из Helius API
  * Содержит только необходимые поля для анализа свопов
+ * (набор полей согласован с {@link ru.levandr.heliusapianalyzer.codec.TransactionStreamDecoder})
  */
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -22,9 +23,6 @@ public class RaydiumSwapTransaction {
     // Временная метка транзакции
     private Long timestamp;
 
-    // Описание транзакции в человекочитаемом формате
-    private String description;
-
     // Комиссия транзакции в lamports
     private Long fee;
 
@@ -0,0 +1,27 @@
+package ru.levandr.heliusapianalyzer.model;
+
+import java.util.List;
+
+/**
+ * Лучший найденный маршрут обмена
+ * Суммы - в минимальных единицах токенов
+ *
+ * @param inputMint  входной токен
+ * @param outputMint выходной токен
+ * @param amountIn   входная сумма
+ * @param amountOut  ожидаемый выход маршрута
+ * @param hops       шаги маршрута по порядку
+ */
+public record RouteQuote(
+        String inputMint,
+        String outputMint,
+        long amountIn,
+        long amountOut,
+        List<Hop> hops) {
+
+    /**
+     * Обмен в одном пуле
+     */
+    public record Hop(String pool, String inputMint, String outputMint, long amountIn, long amountOut) {
+    }
+}
@@ -0,0 +1,28 @@
+package ru.levandr.heliusapianalyzer.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Событие свопа для журнала swap_events
+ *
+ * @param signature   подпись транзакции
+ * @param poolAddress адрес пула
+ * @param blockTime   время блока (unix, секунды)
+ * @param mintIn      входной токен
+ * @param mintOut     выходной токен
+ * @param amountIn    входная сумма
+ * @param amountOut   выходная сумма
+ * @param fee         комиссия транзакции в lamports
+ * @param slippage    ожидаемое проскальзывание в процентах, если его удалось рассчитать
+ */
+public record SwapEvent(
+        String signature,
+        String poolAddress,
+        long blockTime,
+        String mintIn,
+        String mintOut,
+        Double amountIn,
+        Double amountOut,
+        Long fee,
+        BigDecimal slippage) {
+}
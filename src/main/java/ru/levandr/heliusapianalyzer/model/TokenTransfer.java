@@ -23,6 +23,12 @@ public class TokenTransfer {
     // Аккаунт получателя
     private String toUserAccount;
 
+    // Токен-аккаунт отправителя
+    private String fromTokenAccount;
+
+    // Токен-аккаунт получателя
+    private String toTokenAccount;
+
     // Количество десятичных знаков токена
     private Integer decimals;
 }
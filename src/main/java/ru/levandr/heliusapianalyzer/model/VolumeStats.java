@@ -0,0 +1,13 @@
+package ru.levandr.heliusapianalyzer.model;
+
+/**
+ * Объемы торгов пула за скользящие окна, отдельно по токенам A и B
+ */
+public record VolumeStats(
+        double volume1hA,
+        double volume1hB,
+        double volume6hA,
+        double volume6hB,
+        double volume24hA,
+        double volume24hB) {
+}
@@ -0,0 +1,26 @@
+package ru.levandr.heliusapianalyzer.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Курсор загрузки истории транзакций адреса
+ * Все транзакции до lastSignature включительно уже обработаны
+ */
+@Entity
+@Table(name = "ingestion_cursors")
+@Data
+public class IngestionCursor {
+    @Id
+    @Column(length = 44)
+    private String address;         // Адрес, историю которого загружаем
+
+    @Column(length = 88)
+    private String lastSignature;   // Самая новая обработанная транзакция
+
+    private Long lastTimestamp;     // Время этой транзакции (unix, секунды)
+
+    private LocalDateTime updatedAt; // Время последнего продвижения курсора
+}
@@ -0,0 +1,31 @@
+package ru.levandr.heliusapianalyzer.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Необработанный участок истории транзакций между двумя подписями
+ * Возникает после простоя, когда за один проход не удалось дойти до курсора.
+ * Заполняется от beforeSignature к более старым транзакциям вплоть до untilSignature
+ */
+@Entity
+@Table(name = "ingestion_gaps")
+@Data
+public class IngestionGap {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 44)
+    private String address;          // Адрес, историю которого загружаем
+
+    @Column(length = 88)
+    private String beforeSignature;  // Самая старая уже обработанная транзакция участка
+
+    @Column(length = 88)
+    private String untilSignature;   // Граница участка: транзакция, обработанная ранее
+
+    private LocalDateTime createdAt; // Время обнаружения пропуска
+}
@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
  * Хранит основную информацию о торговом пуле и его состоянии
  */
 @Entity
-@Table(name = "raydium_pools")
+@Table(name = "raydium_pools", indexes = {
+        @Index(name = "idx_raydium_pools_token_a_mint", columnList = "tokenAMint"),
+        @Index(name = "idx_raydium_pools_token_b_mint", columnList = "tokenBMint")
+})
 @Data
 public class RaydiumPool {
     @Id
@@ -0,0 +1,33 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки построения свечей
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.candles")
+public class CandleProperties {
+    // Включает построение свечей
+    private boolean enabled = true;
+
+    // Емкость очереди завершенных свечей; при переполнении свечи отбрасываются
+    private int queueCapacity = 100_000;
+
+    // Максимум свечей в одной пакетной записи
+    private int batchSize = 1_000;
+
+    // Интервал закрытия свечей и их записи в БД
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    // Сколько ждать запоздавшие свопы после окончания интервала свечи
+    private Duration closeDelay = Duration.ofSeconds(2);
+
+    // Максимум свечей в ответе API
+    private int maxQueryLimit = 5_000;
+}
@@ -0,0 +1,32 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import ru.levandr.heliusapianalyzer.service.capture.CaptureCompression;
+
+import java.time.Duration;
+
+/**
+ * Настройки журнала сырых ответов Helius
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.capture")
+public class CaptureProperties {
+    // Каталог сегментов журнала
+    private String directory = "data/capture";
+
+    // Размер сегмента; запись, которая не помещается в остаток, начинает новый сегмент
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    // Сжатие записей
+    private CaptureCompression compression = CaptureCompression.LZ4;
+
+    // Шаг разреженного индекса по времени: запись индекса не реже чем через столько байт сегмента
+    private DataSize indexInterval = DataSize.ofKilobytes(64);
+
+    // Сколько хранятся закрытые сегменты
+    private Duration retention = Duration.ofDays(7);
+}
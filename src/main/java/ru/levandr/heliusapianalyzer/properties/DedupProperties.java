@@ -0,0 +1,42 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки фильтра повторных подписей транзакций
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.dedup")
+public class DedupProperties {
+    // Включает отбрасывание уже обработанных транзакций
+    private boolean enabled = true;
+
+    // Сколько подпись хранится в точном множестве
+    private Duration exactWindow = Duration.ofMinutes(10);
+
+    // Ограничение размера точного множества
+    private int exactMaxSize = 200_000;
+
+    // Время, которое покрывает одно поколение фильтра Блума
+    private Duration generationSpan = Duration.ofHours(1);
+
+    // Количество поколений; фильтр помнит подписи generations * generationSpan
+    private int generations = 24;
+
+    // Ожидаемое количество подписей в одном поколении
+    private int expectedPerGeneration = 200_000;
+
+    // Допустимая доля ложных срабатываний одного поколения
+    private double falsePositiveRate = 0.0001;
+
+    // Файл снимка состояния; пустое значение отключает снимки
+    private String snapshotPath = "data/signature-dedup.bin";
+
+    // Интервал записи снимка
+    private Duration snapshotInterval = Duration.ofMinutes(1);
+}
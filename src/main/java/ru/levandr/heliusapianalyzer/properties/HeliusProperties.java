@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "app.helius")
@@ -11,4 +13,185 @@ public class HeliusProperties {
     private String apiKey;
     private String rpcEndpoint;
     private String wsEndpoint;
+    private RpcBatch rpcBatch = new RpcBatch();
+    private Processing processing = new Processing();
+    private Stream stream = new Stream();
+    private Ingest ingest = new Ingest();
+    private Quota quota = new Quota();
+    private RpcResilience rpcResilience = new RpcResilience();
+
+    /**
+     * Настройки объединения запросов аккаунтов в getMultipleAccounts
+     */
+    @Data
+    public static class RpcBatch {
+        // Окно накопления запросов перед отправкой пакета
+        private Duration window = Duration.ofMillis(10);
+
+        // Максимум ключей в одном вызове (лимит RPC - 100)
+        private int maxKeys = 100;
+    }
+
+    /**
+     * Настройки конвейера обработки свопов
+     */
+    @Data
+    public static class Processing {
+        // Максимум свопов, обрабатываемых одновременно (лимит flatMap)
+        private int concurrency = 256;
+
+        // Число полос обработки пулов (0 - по числу ядер)
+        private int lanes = 0;
+
+        // Максимум задач полосы, готовящихся одновременно
+        private int lanePrefetch = 64;
+
+        // Где выполняются подготовка свопов и блокирующая работа с БД
+        private Execution execution = Execution.REACTIVE;
+
+        // Максимум одновременных запросов снимков пулов к RPC в режиме VIRTUAL_THREADS
+        private int rpcConcurrency = 64;
+
+        public enum Execution {
+            // Подготовка на потоке, выдавшем своп; БД на ограниченном пуле платформенных потоков
+            REACTIVE,
+            // Подготовка и БД на виртуальных потоках, БД и RPC ограничены семафорами
+            VIRTUAL_THREADS
+        }
+    }
+
+    /**
+     * Настройки потокового обновления резервов через WebSocket accountSubscribe
+     */
+    @Data
+    public static class Stream {
+        // Включает подписку на аккаунты активных пулов
+        private boolean enabled = false;
+
+        // Начальная задержка переподключения
+        private Duration minBackoff = Duration.ofSeconds(1);
+
+        // Максимальная задержка переподключения
+        private Duration maxBackoff = Duration.ofSeconds(30);
+
+        // Резервы без уведомлений дольше этого срока перечитываются из RPC
+        private Duration maxStaleness = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Настройки непрерывной загрузки истории транзакций
+     */
+    @Data
+    public static class Ingest {
+        // Включает периодический опрос истории транзакций
+        private boolean enabled = false;
+
+        // Адрес, историю которого загружаем (программа Raydium AMM v4)
+        private String address = "675kPX9MHTjS2zt1qfr1NYHuzeLXfQM9H24wFSUt1Mp8";
+
+        // Пауза между завершением одного опроса и началом следующего
+        private Duration pollInterval = Duration.ofSeconds(2);
+
+        // Транзакций на страницу (лимит API - 100)
+        private int pageSize = 100;
+
+        // Максимум страниц новых транзакций за опрос; остаток становится пропуском
+        private int maxPagesPerPoll = 20;
+
+        // Максимум страниц заполнения пропусков за опрос
+        private int backfillPagesPerPoll = 5;
+    }
+
+    /**
+     * Квоты запросов к Helius
+     * Лимиты RPC и REST API в тарифах Helius независимы, поэтому настраиваются отдельно
+     */
+    @Data
+    public static class Quota {
+        // Solana JSON-RPC
+        private Limit rpc = new Limit(10, 10);
+
+        // REST API (история транзакций)
+        private Limit api = new Limit(2, 2);
+
+        // Повторы запроса после ответа 429
+        private int maxRetries = 5;
+    }
+
+    /**
+     * Защита вызовов Solana RPC: таймауты, размыкатели и дублирование медленных запросов
+     */
+    @Data
+    public static class RpcResilience {
+        // Резервный RPC (полный адрес); пустое значение отключает дублирование запросов
+        private String secondaryEndpoint;
+
+        // Максимальное время одного вызова
+        private Duration timeout = Duration.ofSeconds(2);
+
+        // Максимальное время вызова основного RPC вместе с ожиданием квоты и повторами после 429
+        private Duration totalTimeout = Duration.ofSeconds(5);
+
+        // Задержка дублирования, пока не накоплена статистика задержек
+        private Duration hedgeDelay = Duration.ofMillis(200);
+
+        // Минимальная задержка дублирования
+        private Duration minHedgeDelay = Duration.ofMillis(20);
+
+        // Квантиль задержек основного RPC, после которого запрос дублируется на резервный
+        private double hedgeQuantile = 0.95;
+
+        // Доля ошибок в процентах, при которой размыкатель открывается
+        private float failureRateThreshold = 50;
+
+        // Вызов дольше этого времени считается медленным
+        private Duration slowCallDuration = Duration.ofSeconds(1);
+
+        // Доля медленных вызовов в процентах, при которой размыкатель открывается
+        private float slowCallRateThreshold = 80;
+
+        // Размер скользящего окна размыкателя (вызовов)
+        private int slidingWindowSize = 50;
+
+        // Минимум вызовов в окне до оценки доли ошибок
+        private int minimumCalls = 20;
+
+        // Время в открытом состоянии до пробных вызовов
+        private Duration openStateDuration = Duration.ofSeconds(10);
+
+        // Пробных вызовов в полуоткрытом состоянии
+        private int halfOpenCalls = 5;
+
+        // Подряд неудачных обновлений пула до его деактивации
+        private int maxPoolFailures = 5;
+    }
+
+    /**
+     * Адаптивный лимит запросов в секунду
+     * После 429 скорость уменьшается в decreaseFactor раз, после успешных ответов
+     * растет примерно на increaseStep запросов в секунду за секунду, но не выше maxRate
+     */
+    @Data
+    public static class Limit {
+        // Потолок тарифа, запросов в секунду
+        private double maxRate;
+
+        // Нижняя граница скорости после снижений
+        private double minRate = 0.5;
+
+        // Допустимый всплеск запросов сверх средней скорости
+        private int burst;
+
+        private double decreaseFactor = 0.5;
+
+        private double increaseStep = 1.0;
+
+        public Limit() {
+        }
+
+        public Limit(double maxRate, int burst) {
+            this.maxRate = maxRate;
+            this.burst = burst;
+        }
+    }
 }
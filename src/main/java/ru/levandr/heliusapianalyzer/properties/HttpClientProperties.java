@@ -0,0 +1,55 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки HTTP транспорта до внешних сервисов
+ * У каждого сервиса свой пул соединений, чтобы медленные запросы истории не занимали соединения RPC
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.http")
+public class HttpClientProperties {
+    // REST API Helius (история транзакций)
+    private Upstream heliusApi = new Upstream();
+
+    // Solana JSON-RPC
+    private Upstream solanaRpc = new Upstream();
+
+    @Data
+    public static class Upstream {
+        // Максимум соединений в пуле (для HTTP/2 - число мультиплексируемых соединений)
+        private int maxConnections = 50;
+
+        // Максимум запросов, ожидающих свободное соединение
+        private int pendingAcquireMaxCount = 1000;
+
+        // Время ожидания свободного соединения
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        // Простаивающее соединение закрывается после этого времени
+        private Duration maxIdleTime = Duration.ofSeconds(60);
+
+        // Максимальное время жизни соединения
+        private Duration maxLifeTime = Duration.ofMinutes(10);
+
+        // Период фоновой очистки простаивающих соединений
+        private Duration evictionInterval = Duration.ofSeconds(30);
+
+        // Таймаут установления TCP соединения
+        private Duration connectTimeout = Duration.ofSeconds(3);
+
+        // Таймаут ответа на запрос
+        private Duration responseTimeout = Duration.ofSeconds(10);
+
+        // HTTP/2 через ALPN с откатом на HTTP/1.1
+        private boolean http2 = true;
+
+        // Запрос сжатого ответа (gzip)
+        private boolean compress = true;
+    }
+}
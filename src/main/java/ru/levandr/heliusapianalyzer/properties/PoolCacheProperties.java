@@ -0,0 +1,24 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша состояния пулов
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.pool-cache")
+public class PoolCacheProperties {
+    // Интервал сброса измененных пулов в БД
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    // Пулы без обращений дольше этого времени вытесняются из кэша
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    // Максимальное число пулов в кэше
+    private int maxSize = 100_000;
+}
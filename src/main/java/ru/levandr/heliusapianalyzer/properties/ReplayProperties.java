@@ -0,0 +1,36 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки воспроизведения записанных ответов Helius через локальные заглушки
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.replay")
+public class ReplayProperties {
+    // Включает воспроизведение при старте приложения (профиль replay)
+    private boolean enabled = false;
+
+    // Каталог журнала записанных страниц (или *_raw_response.json) и необязательного accounts.json
+    private String corpus = "data/capture";
+
+    // Порт заглушек REST API и RPC на 127.0.0.1
+    private int port = 18899;
+
+    // Скорость относительно реального времени; 0 - без пауз, так быстро, как успевает конвейер
+    private double speed = 1.0;
+
+    // Искусственная задержка ответа заглушки REST API
+    private Duration apiLatency = Duration.ZERO;
+
+    // Искусственная задержка ответа заглушки RPC
+    private Duration rpcLatency = Duration.ZERO;
+
+    // Интервал промежуточных отчетов
+    private Duration reportInterval = Duration.ofSeconds(10);
+}
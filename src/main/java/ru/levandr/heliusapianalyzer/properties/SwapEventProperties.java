@@ -0,0 +1,36 @@
+package ru.levandr.heliusapianalyzer.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки журнала событий свопов
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.swap-events")
+public class SwapEventProperties {
+    // Включает запись событий свопов
+    private boolean enabled = true;
+
+    // Емкость буфера событий; при переполнении новые события отбрасываются
+    private int queueCapacity = 200_000;
+
+    // Максимум строк в одном COPY
+    private int batchSize = 10_000;
+
+    // Интервал записи буфера в БД
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    // На сколько дней вперед создаются партиции
+    private int partitionsAhead = 3;
+
+    // Партиции старше этого срока удаляются
+    private Duration retention = Duration.ofDays(30);
+
+    // Интервал проверки партиций
+    private Duration partitionCheckInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,10 @@
+package ru.levandr.heliusapianalyzer.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.levandr.heliusapianalyzer.model.entity.IngestionCursor;
+
+/**
+ * Репозиторий курсоров загрузки истории транзакций
+ */
+public interface IngestionCursorRepository extends JpaRepository<IngestionCursor, String> {
+}
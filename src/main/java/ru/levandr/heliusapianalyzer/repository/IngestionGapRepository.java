@@ -0,0 +1,14 @@
+package ru.levandr.heliusapianalyzer.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.levandr.heliusapianalyzer.model.entity.IngestionGap;
+
+import java.util.Optional;
+
+/**
+ * Репозиторий пропущенных участков истории транзакций
+ */
+public interface IngestionGapRepository extends JpaRepository<IngestionGap, Long> {
+    // Самый свежий пропуск адреса заполняется первым
+    Optional<IngestionGap> findFirstByAddressOrderByCreatedAtDesc(String address);
+}
@@ -0,0 +1,106 @@
+package ru.levandr.heliusapianalyzer.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Потоковое чтение активных пулов через курсор JDBC
+ * PostgreSQL отдает строки порциями по fetchSize только вне автокоммита, поэтому
+ * соединение держится открытым в транзакции только для чтения до конца потока.
+ * Строки читаются по запросу подписчика, память не зависит от числа пулов
+ */
+@Slf4j
+@Repository
+public class PoolSummaryCursor {
+    // Имена колонок соответствуют физическим именам, которые Hibernate генерирует для RaydiumPool
+    private static final String SELECT_SQL = """
+            SELECT address, tokenamint, tokenbmint, price, liquiditya, liquidityb, volume24h, last_update
+            FROM raydium_pools
+            WHERE active = true
+            ORDER BY address
+            """;
+    private static final int FETCH_SIZE = 500;
+
+    private final DataSource dataSource;
+    private final Scheduler persistenceScheduler;
+
+    public PoolSummaryCursor(DataSource dataSource, Scheduler persistenceScheduler) {
+        this.dataSource = dataSource;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    /**
+     * Поток всех активных пулов в порядке адресов
+     * Чтение выполняется в планировщике БД; соединение закрывается по завершении, ошибке или отмене
+     */
+    public Flux<PoolSummary> streamActive() {
+        return Flux.using(this::open,
+                        cursor -> Flux.<PoolSummary>generate(sink -> {
+                            try {
+                                if (cursor.resultSet.next()) {
+                                    sink.next(map(cursor.resultSet));
+                                } else {
+                                    sink.complete();
+                                }
+                            } catch (SQLException e) {
+                                sink.error(e);
+                            }
+                        }),
+                        Cursor::close)
+                .subscribeOn(persistenceScheduler);
+    }
+
+    private Cursor open() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            PreparedStatement statement = connection.prepareStatement(SELECT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            return new Cursor(connection, statement, statement.executeQuery());
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static PoolSummary map(ResultSet rs) throws SQLException {
+        Timestamp lastUpdate = rs.getTimestamp("last_update");
+        return new PoolSummary(
+                rs.getString("address"),
+                rs.getString("tokenamint"),
+                rs.getString("tokenbmint"),
+                rs.getBigDecimal("price"),
+                rs.getBigDecimal("liquiditya"),
+                rs.getBigDecimal("liquidityb"),
+                rs.getBigDecimal("volume24h"),
+                lastUpdate != null ? lastUpdate.toLocalDateTime() : null);
+    }
+
+    /**
+     * Открытый курсор и его ресурсы
+     */
+    private record Cursor(Connection connection, PreparedStatement statement, ResultSet resultSet) {
+        private void close() {
+            try (connection; statement; resultSet) {
+                // Транзакция только читала, фиксировать нечего
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.warn("Error closing pool cursor: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package ru.levandr.heliusapianalyzer.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
 import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
 
 import java.time.LocalDateTime;
@@ -19,6 +21,16 @@ public interface RaydiumPoolRepository extends JpaRepository<RaydiumPool, String
     @Query("SELECT p FROM RaydiumPool p WHERE p.active = true AND p.lastUpdate > :threshold")
     List<RaydiumPool> findRecentActivePools(LocalDateTime threshold);
 
+    // Страница активных пулов после адреса (keyset), без загрузки сущностей
+    @Query("""
+            SELECT new ru.levandr.heliusapianalyzer.model.PoolSummary(p.address, p.tokenAMint, p.tokenBMint,
+                   p.price, p.liquidityA, p.liquidityB, p.volume24h, p.lastUpdate)
+            FROM RaydiumPool p
+            WHERE p.active = true AND p.address > :after
+            ORDER BY p.address
+            """)
+    List<PoolSummary> findActiveSummariesAfter(String after, Limit limit);
+
     // Получить пулы по токену
     List<RaydiumPool> findByTokenAMintOrTokenBMint(String tokenMint, String tokenMint2);
 }
@@ -1,27 +1,48 @@
 package ru.levandr.heliusapianalyzer.service;
 
-import io.github.resilience4j.ratelimiter.RateLimiter;
-import io.github.resilience4j.ratelimiter.RateLimiterConfig;
-import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.codec.TransactionStreamDecoder;
+import ru.levandr.heliusapianalyzer.config.WebClientConfig;
 import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.service.dedup.SignatureDeduplicator;
+import ru.levandr.heliusapianalyzer.service.execution.ProcessingExecution;
+import ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler;
+import ru.levandr.heliusapianalyzer.service.quota.RequestPriority;
 
-import java.time.Duration;
-import java.util.List;
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class HeliusService {
+    @Qualifier(WebClientConfig.HELIUS_API)
     private final WebClient webClient;
     private final RaydiumPoolService poolService;
+    private final HeliusProperties heliusProperties;
+    private final ObjectMapper objectMapper;
+    private final HeliusRequestScheduler requestScheduler;
+    private final SignatureDeduplicator signatureDeduplicator;
+    private final ProcessingExecution processingExecution;
+    private final MeterRegistry meterRegistry;
 
     @Value("${app.helius.api-key}")
     private String apiKey;
@@ -29,44 +50,105 @@ public class HeliusService {
     @Value("${app.helius.api-base-url}")
     private String apiBaseUrl;
 
+    private Counter swapsProcessed;
+
+    @PostConstruct
+    void init() {
+        swapsProcessed = Counter.builder("helius.swaps.processed")
+                .description("Свопы, переданные на обработку после дедупликации")
+                .register(meterRegistry);
+        FunctionCounter.builder("helius.swaps.duplicates", signatureDeduplicator,
+                        SignatureDeduplicator::duplicateCount)
+                .description("Отброшенные повторные подписи")
+                .register(meterRegistry);
+    }
+
     /**
      * Получает и обрабатывает последние транзакции Raydium
      */
     public void processRaydiumTransactions() {
-        String raydiumAddress = "675kPX9MHTjS2zt1qfr1NYHuzeLXfQM9H24wFSUt1Mp8";
-
-        RateLimiterConfig config = RateLimiterConfig.custom()
-                .limitForPeriod(7)
-                .limitRefreshPeriod(Duration.ofSeconds(10))
-                .timeoutDuration(Duration.ofMillis(500)) //Тайм-аут, если запрос занимает слишком много времени
-                .build();
-
-        RateLimiter rateLimiter = RateLimiterRegistry.of(config).rateLimiter("RaydiumRequests");
-
-
-        webClient.get()
-                .uri(buildTransactionHistoryUrl(raydiumAddress))
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<RaydiumSwapTransaction>>() {})
-                .flatMapIterable(transactions -> transactions)
-                .filter(tx -> "SWAP".equals(tx.getType()))
-                .publishOn(Schedulers.boundedElastic())
-                .flatMap(tx -> Mono.fromCallable(() -> {
-                    rateLimiter.acquirePermission();
-                    log.info("Processing swap transaction: {}", tx.getSignature());
-                    poolService.processPoolFromSwap(tx);
-                    return tx;
-                }))
+        processSwaps(fetchTransactions(heliusProperties.getIngest().getAddress(), null, null,
+                heliusProperties.getIngest().getPageSize(), RequestPriority.NORMAL))
                 .doOnError(error ->
                         log.error("Error processing transactions: {}", error.getMessage(), error))
                 .subscribe();
     }
 
+    /**
+     * Получает страницу истории транзакций адреса, от новых к старым
+     *
+     * @param address  адрес
+     * @param before   вернуть транзакции старше этой подписи (null - с самой новой)
+     * @param until    остановиться на этой подписи, не включая ее (null - без границы)
+     * @param limit    размер страницы
+     * @param priority приоритет запроса в очереди квоты
+     * @return транзакции страницы всех типов по мере разбора ответа;
+     * у транзакций, отличных от SWAP, заполнены только signature, type и timestamp
+     */
+    public Flux<RaydiumSwapTransaction> fetchTransactions(String address, String before, String until, int limit,
+                                                          RequestPriority priority) {
+        URI uri = buildTransactionHistoryUrl(address, before, until, limit);
+        return Flux.defer(() -> {
+            // Время страницы включает ожидание квоты и разбор ответа
+            long started = System.nanoTime();
+            AtomicInteger transactions = new AtomicInteger();
+            return requestScheduler.scheduleMany(HeliusRequestScheduler.Upstream.API, priority, () -> webClient.get()
+                            .uri(uri)
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class)
+                            .transform(body -> TransactionStreamDecoder.decode(body, objectMapper)))
+                    .doOnNext(tx -> transactions.incrementAndGet())
+                    .doFinally(signal -> Timer.builder("helius.api.pages")
+                            .description("Загрузка страниц истории транзакций Helius")
+                            .tag("priority", priority.name().toLowerCase())
+                            .tag("outcome", switch (signal) {
+                                case ON_COMPLETE -> "success";
+                                case ON_ERROR -> "error";
+                                default -> "cancelled";
+                            })
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - started, TimeUnit.NANOSECONDS))
+                    .doOnComplete(() -> meterRegistry.counter("helius.api.transactions").increment(transactions.get()));
+        });
+    }
+
+    /**
+     * Обрабатывает свопы с ограниченным параллелизмом
+     * Транзакции запрашиваются из потока по мере освобождения мест, поэтому разбор ответа
+     * не опережает обработку. Уже обработанные подписи отбрасываются до любых запросов к RPC и БД.
+     * Поток, на котором готовится своп, задается режимом выполнения.
+     * Mono завершается, когда обработаны все свопы
+     */
+    public Mono<Void> processSwaps(Flux<RaydiumSwapTransaction> transactions) {
+        return transactions
+                .filter(tx -> "SWAP".equals(tx.getType()))
+                .filter(tx -> signatureDeduplicator.markIfNew(tx.getSignature(), tx.getTimestamp()))
+                .flatMap(tx -> {
+                    log.debug("Processing swap transaction: {}", tx.getSignature());
+                    swapsProcessed.increment();
+                    return processingExecution.processSwap(() -> poolService.processPoolFromSwap(tx))
+                            .onErrorResume(e -> {
+                                // Подпись отмечена до обработки; после ошибки повтор транзакции не отбрасываем
+                                signatureDeduplicator.forget(tx.getSignature());
+                                log.error("Error processing pool from swap tx {}: {}",
+                                        tx.getSignature(), e.getMessage(), e);
+                                return Mono.empty();
+                            });
+                }, heliusProperties.getProcessing().getConcurrency())
+                .then();
+    }
+
     /**
      * Формирует URL для получения истории транзакций
      */
-    private String buildTransactionHistoryUrl(String address) {
-        return String.format("%s/v0/addresses/%s/transactions/?api-key=%s",
-                apiBaseUrl, address, apiKey);
+    private URI buildTransactionHistoryUrl(String address, String before, String until, int limit) {
+        return UriComponentsBuilder.fromUriString(apiBaseUrl)
+                .path("/v0/addresses/{address}/transactions")
+                .queryParam("api-key", apiKey)
+                .queryParam("limit", limit)
+                .queryParamIfPresent("before", Optional.ofNullable(before))
+                .queryParamIfPresent("until", Optional.ofNullable(until))
+                .buildAndExpand(address)
+                .toUri();
     }
 }
@@ -1,22 +1,53 @@
 package ru.levandr.heliusapianalyzer.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.codec.RaydiumSwapInstruction;
+import ru.levandr.heliusapianalyzer.model.Candle;
 import ru.levandr.heliusapianalyzer.model.InstructionData;
+import ru.levandr.heliusapianalyzer.model.PoolMints;
+import ru.levandr.heliusapianalyzer.model.PoolPage;
+import ru.levandr.heliusapianalyzer.model.PoolReserves;
+import ru.levandr.heliusapianalyzer.model.PoolSnapshot;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
+import ru.levandr.heliusapianalyzer.model.RankedPool;
 import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.model.RouteQuote;
+import ru.levandr.heliusapianalyzer.model.SwapEvent;
 import ru.levandr.heliusapianalyzer.model.TokenTransfer;
+import ru.levandr.heliusapianalyzer.model.VolumeStats;
 import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.repository.PoolSummaryCursor;
 import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.amm.AmmMath;
+import ru.levandr.heliusapianalyzer.service.cache.PoolStateCache;
+import ru.levandr.heliusapianalyzer.service.candle.CandleAggregator;
+import ru.levandr.heliusapianalyzer.service.candle.Timeframe;
+import ru.levandr.heliusapianalyzer.service.events.SwapEventWriter;
+import ru.levandr.heliusapianalyzer.service.execution.ProcessingExecution;
+import ru.levandr.heliusapianalyzer.service.graph.PoolGraph;
+import ru.levandr.heliusapianalyzer.service.partition.PoolLaneExecutor;
+import ru.levandr.heliusapianalyzer.service.ranking.PoolRanking;
+import ru.levandr.heliusapianalyzer.service.stream.PoolAccountStreamer;
+import ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Сервис для работы с пулами Raydium
@@ -26,106 +57,260 @@ import java.util.Optional;
 @Service
 @RequiredArgsConstructor
 public class RaydiumPoolService {
-    private static final String RAYDIUM_PROGRAM_ID = "675kPX9MHTjS2zt1qfr1NYHuzeLXfQM9H24wFSUt1Mp8";
-    private static final int MIN_POOL_DATA_LENGTH = 192; // Минимальная длина данных пула
-    private static final int AUTHORITY_LENGTH = 32; // Длина поля authority
-    private static final int STATUS_LENGTH = 1;    // Длина поля status
-    private static final int TOKEN_MINT_LENGTH = 32; // Длина адреса токена
     private static final BigDecimal MAX_PRICE_CHANGE = BigDecimal.valueOf(0.2); // 20% максимальное изменение цены
+    private static final BigDecimal MAX_LONG_VALUE = BigDecimal.valueOf(Long.MAX_VALUE);
 
     private final RaydiumPoolRepository poolRepository;
     private final SolanaRpcService solanaRpcService;
+    private final PoolStateCache poolStateCache;
+    private final PoolAccountStreamer poolAccountStreamer;
+    private final PoolLaneExecutor poolLaneExecutor;
+    private final RollingVolumeEngine volumeEngine;
+    private final SwapEventWriter swapEventWriter;
+    private final CandleAggregator candleAggregator;
+    private final PoolGraph poolGraph;
+    private final PoolRanking poolRanking;
+    private final PoolSummaryCursor poolSummaryCursor;
+    private final Scheduler persistenceScheduler;
+    private final ProcessingExecution processingExecution;
+    private final HeliusProperties heliusProperties;
+    private final MeterRegistry meterRegistry;
+
+    // Подряд неудачные обновления пулов; запись удаляется при успешном обновлении
+    private final Map<String, Integer> poolFailures = new ConcurrentHashMap<>();
+
+    // Длительность этапов обработки свопа: загрузка (вместе с ожиданием полосы), применение и весь путь
+    private Timer loadTimer;
+    private Timer applyTimer;
+    private Timer totalTimer;
+
+    @PostConstruct
+    void init() {
+        loadTimer = stageTimer("load");
+        applyTimer = stageTimer("apply");
+        totalTimer = stageTimer("total");
+        poolAccountStreamer.updates().subscribe(this::applyStreamedReserves);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("pool.swap.stage")
+                .description("Этапы обработки свопа")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
 
     /**
      * Обрабатывает информацию о пуле из транзакции свопа
+     * Загрузка пула и резервов не блокирует поток и идет параллельно, а изменение состояния пула
+     * выполняется в его полосе строго по порядку свопов, поэтому конкурентные свопы одного пула
+     * не теряют обновления. Пул записывается в БД отложенно из кэша
+     *
+     * @return Mono, завершающийся после применения свопа к состоянию пула или с ошибкой загрузки/применения
      */
-    @Transactional
-    public void processPoolFromSwap(RaydiumSwapTransaction swapTx) {
+    public Mono<Void> processPoolFromSwap(RaydiumSwapTransaction swapTx) {
         if (swapTx == null || swapTx.getSignature() == null) {
             log.warn("Received invalid swap transaction");
+            return Mono.empty();
+        }
+
+        RaydiumSwapInstruction swap = findSwapInstruction(swapTx);
+        if (swap == null || !hasValidTransfers(swapTx)) {
+            return Mono.empty();
+        }
+        String poolAddress = swap.amm();
+
+        log.debug("Processing pool {} from transaction {}", poolAddress, swapTx.getSignature());
+
+        // Получаем или создаем пул и параллельно запрашиваем резервы
+        long started = System.nanoTime();
+        Mono<LoadedPool> load = Mono.zip(
+                        poolStateCache.getOrLoad(poolAddress),
+                        resolveReserves(poolAddress).map(Optional::of).defaultIfEmpty(Optional.empty()),
+                        LoadedPool::new)
+                .doOnNext(loaded -> loadTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+
+        return poolLaneExecutor.submit(poolAddress, load, loaded -> {
+                    long applyStarted = System.nanoTime();
+                    try {
+                        applySwap(loaded, swapTx, swap);
+                    } finally {
+                        applyTimer.record(System.nanoTime() - applyStarted, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .doOnSuccess(ignored -> totalTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Возвращает резервы пула из потока WebSocket, а для неотслеживаемого пула - из RPC
+     * Снимок из RPC ставит активный пул на отслеживание при применении свопа, следующие свопы
+     * обходятся без запросов. Число одновременных запросов снимков ограничивается режимом выполнения
+     */
+    private Mono<ResolvedReserves> resolveReserves(String poolAddress) {
+        Optional<PoolReserves> streamed = poolAccountStreamer.currentReserves(poolAddress);
+        if (streamed.isPresent()) {
+            return Mono.just(new ResolvedReserves(streamed.get(), null));
+        }
+
+        return processingExecution.limitRpc(solanaRpcService.getPoolSnapshot(poolAddress))
+                .map(snapshot -> new ResolvedReserves(snapshot.reserves(), snapshot));
+    }
+
+    /**
+     * Применяет резервы из потока к закэшированному пулу
+     * Пулы вне кэша не загружаются: актуальные резервы будут взяты из потока при следующем свопе
+     */
+    private void applyStreamedReserves(PoolAccountStreamer.ReservesUpdate update) {
+        poolLaneExecutor.execute(update.poolAddress(), () ->
+                        poolStateCache.getIfPresent(update.poolAddress())
+                                .ifPresent(pool -> applyStreamedReserves(pool, update.reserves())))
+                .subscribe(null, e -> log.error("Error applying streamed reserves for {}: {}",
+                        update.poolAddress(), e.getMessage()));
+    }
+
+    /**
+     * Проверяет резервы из потока так же, как резервы свопа, и только затем записывает их в пул
+     * Выполняется в полосе пула
+     */
+    private void applyStreamedReserves(RaydiumPool pool, PoolReserves reserves) {
+        if (!validateReserves(reserves.base(), reserves.quote())) {
             return;
         }
 
-        try {
-            String poolAddress = extractPoolAddress(swapTx);
-            if (poolAddress == null) {
-                return;
-            }
+        BigDecimal price = newPrice(pool, reserves);
+        if (price == null || !isPriceChangeValid(pool.getPrice(), price)) {
+            log.warn("Invalid price change detected for pool {} in streamed reserves", pool.getAddress());
+            return;
+        }
 
-            log.info("Processing pool {} from transaction {}", poolAddress, swapTx.getSignature());
+        updatePoolData(pool, reserves, price);
+        pool.setLastUpdate(LocalDateTime.now());
+        poolStateCache.markDirty(pool);
+        poolRanking.update(pool);
+        candleAggregator.onPrice(pool.getAddress(), System.currentTimeMillis() / 1000, price.doubleValue());
+    }
 
-            // Получаем или создаем пул
-            RaydiumPool pool = getOrCreatePool(poolAddress);
+    /**
+     * Применяет своп к пулу и помечает его для записи при валидном изменении цены
+     * Выполняется в полосе пула
+     */
+    private void applySwap(LoadedPool loaded, RaydiumSwapTransaction swapTx, RaydiumSwapInstruction swap) {
+        RaydiumPool pool = loaded.pool();
+
+        // Обновляем токены пула
+        updatePoolTokens(pool, swapTx, swap);
+
+        // Резервы и цена сначала проверяются и только затем записываются в пул и граф:
+        // отклоненная цена не должна остаться в кэше и стать базой для следующей проверки
+        PoolReserves reserves = loaded.reserves()
+                .map(ResolvedReserves::reserves)
+                .filter(resolved -> validateReserves(resolved.base(), resolved.quote()))
+                .orElse(null);
+        if (reserves == null) {
+            log.warn("Failed to update liquidity for pool {}", pool.getAddress());
+            handlePoolUpdateError(pool);
+        } else {
+            poolFailures.remove(pool.getAddress());
+        }
 
-            // Проверяем и обновляем токены пула
-            if (!updatePoolTokens(pool, swapTx)) {
-                log.warn("Failed to update tokens for pool {}", poolAddress);
-                return;
-            }
+        BigDecimal price = reserves != null ? newPrice(pool, reserves) : pool.getPrice();
+        boolean priceValid = price != null && isPriceChangeValid(pool.getPrice(), price);
+        if (reserves != null && priceValid) {
+            updatePoolData(pool, reserves, price);
+        }
 
-            // Обновляем ликвидность и цену
-            if (!updatePoolLiquidity(pool)) {
-                log.warn("Failed to update liquidity for pool {}", poolAddress);
-                handlePoolUpdateError(pool);
-            }
+        // Неактивный пул на отслеживание не ставим, как и в графе и рейтинге
+        Optional<ResolvedReserves> resolved = loaded.reserves();
+        if (pool.isActive() && resolved.isPresent() && resolved.get().snapshot() != null) {
+            poolAccountStreamer.track(pool.getAddress(), resolved.get().snapshot());
+        }
 
-            // Обновляем объем торгов
-            updateVolume24h(pool, swapTx);
-
-            // Проверяем изменение цены
-            if (pool.getPrice() != null && isPriceChangeValid(pool)) {
-                // Если все проверки прошли успешно, сохраняем пул
-                pool.setLastUpdate(LocalDateTime.now());
-                RaydiumPool savedPool = poolRepository.save(pool);
-                logPoolUpdate(savedPool);
-            } else {
-                log.warn("Invalid price change detected for pool {}", poolAddress);
-            }
+        long timestamp = swapTimestamp(swapTx);
+        double amountA = transferredAmount(swapTx, pool.getTokenAMint());
+        double amountB = transferredAmount(swapTx, pool.getTokenBMint());
 
-            if (pool.getLiquidityA() != null && pool.getLiquidityB() != null) {
-                TokenTransfer transfer = swapTx.getTokenTransfers().get(0);
-                BigDecimal amount = BigDecimal.valueOf(transfer.getTokenAmount());
-                boolean isAtoB = pool.getTokenAMint().equals(transfer.getMint());
+        // Обновляем объем торгов
+        updateVolume24h(pool, timestamp, amountA, amountB);
 
-                try {
-                    BigDecimal slippage = calculateExpectedSlippage(pool, amount, isAtoB);
-                    log.info("Slippage for swap {}: {}%", swapTx.getSignature(), slippage);
-                } catch (Exception e) {
-                    log.warn("Could not calculate slippage: {}", e.getMessage());
-                }
+        if (priceValid) {
+            // Если все проверки прошли успешно, пул будет записан при ближайшем сбросе кэша
+            pool.setLastUpdate(LocalDateTime.now());
+            poolStateCache.markDirty(pool);
+            poolRanking.update(pool);
+            // Цена текущая; для свопа из истории агрегатор учтет только объем
+            candleAggregator.onSwap(pool.getAddress(), timestamp, price.doubleValue(),
+                    Math.max(amountA, 0), Math.max(amountB, 0));
+            logPoolUpdate(pool);
+        } else {
+            log.warn("Invalid price change detected for pool {}", pool.getAddress());
+        }
+
+        BigDecimal slippage = expectedSlippage(pool, swapTx, swap);
+        recordSwapEvent(pool, swapTx, swap, timestamp, slippage);
+    }
+
+    /**
+     * Рассчитывает и логирует ожидаемое проскальзывание для свопа
+     * Сумма входа берется из инструкции в минимальных единицах, как и резервы. Для SwapBaseOut
+     * точен только выход, поэтому вход выводится из него по формуле постоянного произведения
+     *
+     * @return проскальзывание или null, если его не удалось рассчитать
+     */
+    private BigDecimal expectedSlippage(RaydiumPool pool, RaydiumSwapTransaction swapTx,
+                                        RaydiumSwapInstruction swap) {
+        if (pool.getLiquidityA() == null || pool.getLiquidityB() == null) {
+            return null;
+        }
+
+        boolean isAtoB = isBaseIn(pool, swapTx, swap);
+        try {
+            long amountIn = swap.amountIn();
+            if (!swap.exactIn()) {
+                long reserveIn = toU64(isAtoB ? pool.getLiquidityA() : pool.getLiquidityB());
+                long reserveOut = toU64(isAtoB ? pool.getLiquidityB() : pool.getLiquidityA());
+                amountIn = AmmMath.getAmountIn(reserveIn, reserveOut, swap.amountOut());
+            }
+            if (amountIn <= 0) {
+                return null;
             }
 
+            BigDecimal slippage = calculateExpectedSlippage(pool, BigDecimal.valueOf(amountIn), isAtoB);
+            log.debug("Slippage for swap {}: {}%", swapTx.getSignature(), slippage);
+            return slippage;
         } catch (Exception e) {
-            log.error("Error processing pool from swap tx {}: {}",
-                    swapTx.getSignature(), e.getMessage(), e);
+            log.warn("Could not calculate slippage: {}", e.getMessage());
+            return null;
         }
     }
 
     /**
-     * Получает существующий или создает новый пул
+     * Ставит своп в очередь журнала событий; запись в БД идет вне полосы пула
+     * Вход - перевод с токен-аккаунта источника инструкции, выход - перевод на аккаунт получателя.
+     * Если Helius не вернул токен-аккаунты, первый перевод считается входом, второй - выходом
      */
-    private RaydiumPool getOrCreatePool(String poolAddress) {
-        return poolRepository.findById(poolAddress)
-                .orElseGet(() -> {
-                    RaydiumPool newPool = new RaydiumPool();
-                    newPool.setAddress(poolAddress);
-                    newPool.setActive(true);
-                    newPool.setLastUpdate(LocalDateTime.now());
-                    return newPool;
-                });
+    private void recordSwapEvent(RaydiumPool pool, RaydiumSwapTransaction swapTx, RaydiumSwapInstruction swap,
+                                 long timestamp, BigDecimal slippage) {
+        TokenTransfer in = swapTx.getTokenTransfers().get(0);
+        TokenTransfer out = swapTx.getTokenTransfers().get(1);
+        for (TokenTransfer transfer : swapTx.getTokenTransfers()) {
+            if (swap.userSource().equals(transfer.getFromTokenAccount())) {
+                in = transfer;
+            } else if (swap.userDestination().equals(transfer.getToTokenAccount())) {
+                out = transfer;
+            }
+        }
+
+        swapEventWriter.append(new SwapEvent(swapTx.getSignature(), pool.getAddress(), timestamp,
+                in.getMint(), out.getMint(), in.getTokenAmount(), out.getTokenAmount(), swapTx.getFee(), slippage));
     }
 
     /**
      * Проверяет валидность изменения цены
      */
-    private boolean isPriceChangeValid(RaydiumPool pool) {
-        Optional<RaydiumPool> oldPool = poolRepository.findById(pool.getAddress());
-        if (oldPool.isEmpty() || oldPool.get().getPrice() == null) {
+    private boolean isPriceChangeValid(BigDecimal oldPrice, BigDecimal newPrice) {
+        if (oldPrice == null || oldPrice.signum() == 0) {
             return true;
         }
 
-        BigDecimal oldPrice = oldPool.get().getPrice();
-        BigDecimal newPrice = pool.getPrice();
         BigDecimal priceChange = newPrice.subtract(oldPrice).abs()
                 .divide(oldPrice, 8, RoundingMode.HALF_UP);
 
@@ -133,95 +318,88 @@ public class RaydiumPoolService {
     }
 
     /**
-     * Обновляет информацию о токенах пула
+     * Проверяет, что в свопе есть оба перевода токенов
      */
-    private boolean updatePoolTokens(RaydiumPool pool, RaydiumSwapTransaction swapTx) {
+    private boolean hasValidTransfers(RaydiumSwapTransaction swapTx) {
         List<TokenTransfer> transfers = swapTx.getTokenTransfers();
         if (transfers == null || transfers.size() < 2) {
             log.warn("Invalid token transfers in transaction {}", swapTx.getSignature());
             return false;
         }
 
-        TokenTransfer firstTransfer = transfers.get(0);
-        TokenTransfer secondTransfer = transfers.get(1);
-
-        if (firstTransfer.getMint() == null || secondTransfer.getMint() == null) {
+        if (transfers.get(0).getMint() == null || transfers.get(1).getMint() == null) {
             log.warn("Missing token mints in transaction {}", swapTx.getSignature());
             return false;
         }
-
-        // Обновляем только если токены еще не установлены или изменились
-        if (pool.getTokenAMint() == null || pool.getTokenBMint() == null ||
-                !pool.getTokenAMint().equals(firstTransfer.getMint()) ||
-                !pool.getTokenBMint().equals(secondTransfer.getMint())) {
-
-            pool.setTokenAMint(firstTransfer.getMint());
-            pool.setTokenBMint(secondTransfer.getMint());
-            log.info("Updated tokens for pool {}: A={}, B={}",
-                    pool.getAddress(), firstTransfer.getMint(), secondTransfer.getMint());
-        }
-
         return true;
     }
 
     /**
-     * Обновляет данные о ликвидности пула
+     * Обновляет информацию о токенах пула
+     * Если аккаунт пула уже декодирован, токен A - базовый, токен B - котируемый, как и резервы.
+     * Иначе токены берутся из переводов в хранилища пула, а без токен-аккаунтов - из порядка переводов.
+     * Переводы должны быть проверены {@link #hasValidTransfers}
      */
-    private boolean updatePoolLiquidity(RaydiumPool pool) {
-        try {
-            byte[] accountData = solanaRpcService.getPoolAccountData(pool.getAddress());
-            if (!validatePoolData(accountData)) {
-                return false;
+    private void updatePoolTokens(RaydiumPool pool, RaydiumSwapTransaction swapTx, RaydiumSwapInstruction swap) {
+        Optional<PoolMints> mints = solanaRpcService.getPoolMints(pool.getAddress());
+        if (mints.isPresent()) {
+            if (!mints.get().base().equals(pool.getTokenAMint()) || !mints.get().quote().equals(pool.getTokenBMint())) {
+                pool.setTokenAMint(mints.get().base());
+                pool.setTokenBMint(mints.get().quote());
+                log.info("Updated tokens for pool {}: A={}, B={}",
+                        pool.getAddress(), pool.getTokenAMint(), pool.getTokenBMint());
             }
+            return;
+        }
 
-            ByteBuffer buffer = ByteBuffer.wrap(accountData);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-            // Пропускаем authority и status
-            buffer.position(AUTHORITY_LENGTH + STATUS_LENGTH);
-
-            // Пропускаем адреса токенов
-            buffer.position(buffer.position() + 2 * TOKEN_MINT_LENGTH);
+        String baseMint = vaultMint(swapTx, swap.baseVault());
+        String quoteMint = vaultMint(swapTx, swap.quoteVault());
+        if (baseMint == null || quoteMint == null) {
+            baseMint = swapTx.getTokenTransfers().get(0).getMint();
+            quoteMint = swapTx.getTokenTransfers().get(1).getMint();
+        }
 
-            // Читаем резервы
-            BigDecimal reserveA = BigDecimal.valueOf(buffer.getLong());
-            BigDecimal reserveB = BigDecimal.valueOf(buffer.getLong());
+        // Обновляем только если токены еще не установлены или изменились
+        if (!baseMint.equals(pool.getTokenAMint()) || !quoteMint.equals(pool.getTokenBMint())) {
+            pool.setTokenAMint(baseMint);
+            pool.setTokenBMint(quoteMint);
+            log.info("Updated tokens for pool {}: A={}, B={}", pool.getAddress(), baseMint, quoteMint);
+        }
+    }
 
-            // Проверяем валидность резервов
-            if (!validateReserves(reserveA, reserveB)) {
-                return false;
+    /**
+     * Токен перевода в хранилище пула или из него; null, если такого перевода нет
+     */
+    private static String vaultMint(RaydiumSwapTransaction swapTx, String vault) {
+        for (TokenTransfer transfer : swapTx.getTokenTransfers()) {
+            if (vault.equals(transfer.getToTokenAccount()) || vault.equals(transfer.getFromTokenAccount())) {
+                return transfer.getMint();
             }
-
-            // Обновляем данные пула
-            updatePoolData(pool, reserveA, reserveB);
-            return true;
-
-        } catch (Exception e) {
-            log.error("Error updating liquidity for pool {}: {}",
-                    pool.getAddress(), e.getMessage(), e);
-            return false;
         }
+        return null;
     }
 
     /**
-     * Проверяет валидность данных пула
+     * Направление свопа: true, если вход - базовый токен пула (A)
+     * Определяется по переводу в хранилище пула, без токен-аккаунтов - по токену первого перевода
      */
-    private boolean validatePoolData(byte[] data) {
-        if (data == null || data.length < MIN_POOL_DATA_LENGTH) {
-            log.warn("Invalid pool data length: expected >= {}, got {}",
-                    MIN_POOL_DATA_LENGTH, data != null ? data.length : 0);
-            return false;
+    private static boolean isBaseIn(RaydiumPool pool, RaydiumSwapTransaction swapTx, RaydiumSwapInstruction swap) {
+        for (TokenTransfer transfer : swapTx.getTokenTransfers()) {
+            if (swap.baseVault().equals(transfer.getToTokenAccount())) {
+                return true;
+            }
+            if (swap.quoteVault().equals(transfer.getToTokenAccount())) {
+                return false;
+            }
         }
-        return true;
+        return swapTx.getTokenTransfers().get(0).getMint().equals(pool.getTokenAMint());
     }
 
     /**
      * Проверяет валидность резервов
      */
-    private boolean validateReserves(BigDecimal reserveA, BigDecimal reserveB) {
-        if (reserveA == null || reserveB == null ||
-                reserveA.compareTo(BigDecimal.ZERO) < 0 ||
-                reserveB.compareTo(BigDecimal.ZERO) < 0) {
+    private boolean validateReserves(long reserveA, long reserveB) {
+        if (reserveA < 0 || reserveB < 0) {
             log.warn("Invalid reserves: A={}, B={}", reserveA, reserveB);
             return false;
         }
@@ -229,47 +407,86 @@ public class RaydiumPoolService {
     }
 
     /**
-     * Обновляет данные пула
+     * Цена токена A в токенах B по резервам: reserveA / reserveB
+     * При нулевом резерве B цена не определена и остается прежней
      */
-    private void updatePoolData(RaydiumPool pool, BigDecimal reserveA, BigDecimal reserveB) {
-        pool.setLiquidityA(reserveA);
-        pool.setLiquidityB(reserveB);
+    private BigDecimal newPrice(RaydiumPool pool, PoolReserves reserves) {
+        return reserves.quote() > 0 ? spotPrice(pool, reserves.base(), reserves.quote()) : pool.getPrice();
+    }
 
-        if (reserveB.compareTo(BigDecimal.ZERO) > 0) {
-            pool.setPrice(reserveA.divide(reserveB, 8, RoundingMode.HALF_UP));
+    /**
+     * Записывает проверенные резервы и цену в пул и граф маршрутов
+     * Токен A соответствует базовому токену пула, токен B - котируемому
+     */
+    private void updatePoolData(RaydiumPool pool, PoolReserves reserves, BigDecimal price) {
+        pool.setLiquidityA(BigDecimal.valueOf(reserves.base()));
+        pool.setLiquidityB(BigDecimal.valueOf(reserves.quote()));
+        pool.setPrice(price);
+
+        if (pool.isActive()) {
+            poolGraph.update(pool.getAddress(), pool.getTokenAMint(), pool.getTokenBMint(),
+                    reserves.base(), reserves.quote());
         }
 
-        log.info("Updated pool data: A={}, B={}, price={}",
-                reserveA, reserveB, pool.getPrice());
+        log.debug("Updated pool data: A={}, B={}, price={}",
+                reserves.base(), reserves.quote(), pool.getPrice());
     }
 
     /**
-     * Обновляет объем торгов за 24 часа
+     * Спотовая цена reserveA / reserveB в фиксированной точке, а вне ее диапазона - на BigDecimal
      */
-    private void updateVolume24h(RaydiumPool pool, RaydiumSwapTransaction swapTx) {
-        if (swapTx.getTokenTransfers() == null || swapTx.getTokenTransfers().isEmpty()) {
-            return;
+    private BigDecimal spotPrice(RaydiumPool pool, long reserveA, long reserveB) {
+        try {
+            return BigDecimal.valueOf(AmmMath.spotPrice(reserveB, reserveA), AmmMath.SCALE);
+        } catch (ArithmeticException e) {
+            log.debug("Fixed-point overflow for pool {}, falling back to BigDecimal", pool.getAddress());
+            return BigDecimal.valueOf(reserveA).divide(BigDecimal.valueOf(reserveB), 8, RoundingMode.HALF_UP);
         }
+    }
 
-        TokenTransfer transfer = swapTx.getTokenTransfers().get(0);
-        if (transfer.getTokenAmount() == null || transfer.getTokenAmount() <= 0) {
+    /**
+     * Учитывает своп в скользящих объемах и обновляет объем пула за 24 часа
+     * Объем каждой стороны берется из перевода соответствующего токена, volume24h пула - в токене B
+     */
+    private void updateVolume24h(RaydiumPool pool, long timestamp, double amountA, double amountB) {
+        if (amountA <= 0 && amountB <= 0) {
             log.warn("Invalid token amount in transfer");
             return;
         }
 
-        BigDecimal amount = BigDecimal.valueOf(transfer.getTokenAmount());
-        BigDecimal currentVolume = pool.getVolume24h() != null ?
-                pool.getVolume24h() : BigDecimal.ZERO;
+        volumeEngine.record(pool.getAddress(), timestamp, Math.max(amountA, 0), Math.max(amountB, 0));
 
-        pool.setVolume24h(currentVolume.add(amount));
-        log.debug("Updated volume: +{} = {}", amount, pool.getVolume24h());
+        pool.setVolume24h(BigDecimal.valueOf(volumeEngine.volumeB(pool.getAddress(), RollingVolumeEngine.Window.DAY))
+                .setScale(AmmMath.SCALE, RoundingMode.HALF_UP));
+        log.debug("Updated volume: +{} A, +{} B, 24h = {}", amountA, amountB, pool.getVolume24h());
+    }
+
+    /**
+     * Время блока свопа (unix, секунды); если Helius его не вернул - текущее время
+     */
+    private static long swapTimestamp(RaydiumSwapTransaction swapTx) {
+        return swapTx.getTimestamp() != null
+                ? swapTx.getTimestamp()
+                : System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Сумма первого перевода токена в свопе
+     */
+    private double transferredAmount(RaydiumSwapTransaction swapTx, String mint) {
+        for (TokenTransfer transfer : swapTx.getTokenTransfers()) {
+            if (mint != null && mint.equals(transfer.getMint()) && transfer.getTokenAmount() != null) {
+                return transfer.getTokenAmount();
+            }
+        }
+        return 0;
     }
 
     /**
      * Логирует обновление пула
      */
     private void logPoolUpdate(RaydiumPool pool) {
-        log.info("Updated pool {}: A={}, B={}, price={}, volume={}",
+        log.debug("Updated pool {}: A={}, B={}, price={}, volume={}",
                 pool.getAddress(),
                 pool.getLiquidityA(),
                 pool.getLiquidityB(),
@@ -279,45 +496,72 @@ public class RaydiumPoolService {
 
     /**
      * Обрабатывает ошибки обновления пула
+     * Пул деактивируется только после нескольких ошибок подряд. Пока RPC недоступен
+     * (размыкатели открыты), ошибки не засчитываются: они вызваны не пулом
      */
     private void handlePoolUpdateError(RaydiumPool pool) {
-        // TODO: Добавить счетчик ошибок и деактивировать пул после N ошибок
+        if (!solanaRpcService.isRpcHealthy()) {
+            log.debug("RPC unavailable, not counting failure for pool {}", pool.getAddress());
+            return;
+        }
+
+        int maxFailures = heliusProperties.getRpcResilience().getMaxPoolFailures();
+        int failures = poolFailures.merge(pool.getAddress(), 1, Integer::sum);
+        if (failures < maxFailures) {
+            log.debug("Pool {} update failed {} of {} times", pool.getAddress(), failures, maxFailures);
+            return;
+        }
+
+        poolFailures.remove(pool.getAddress());
         pool.setActive(false);
-        log.warn("Pool {} marked as inactive due to errors", pool.getAddress());
-        poolRepository.save(pool);
+        poolAccountStreamer.untrack(pool.getAddress());
+        poolGraph.remove(pool.getAddress());
+        poolRanking.remove(pool.getAddress());
+        log.warn("Pool {} marked as inactive after {} consecutive errors", pool.getAddress(), failures);
+        poolStateCache.markDirty(pool);
     }
 
     /**
-     * Извлекает адрес пула из транзакции
+     * Находит и декодирует инструкцию свопа Raydium в транзакции
+     * Инструкция ищется и среди вложенных: свопы через агрегаторы вызывают Raydium из своей программы
      */
-    private String extractPoolAddress(RaydiumSwapTransaction swapTx) {
+    static RaydiumSwapInstruction findSwapInstruction(RaydiumSwapTransaction swapTx) {
         if (swapTx.getInstructions() == null) {
             log.debug("No instructions in transaction {}", swapTx.getSignature());
             return null;
         }
 
-        Optional<InstructionData> raydiumInstruction = swapTx.getInstructions().stream()
-                .filter(instruction -> RAYDIUM_PROGRAM_ID.equals(instruction.getProgramId()))
-                .findFirst();
-
-        if (raydiumInstruction.isEmpty()) {
-            log.debug("No Raydium instruction in transaction {}", swapTx.getSignature());
-            return null;
+        for (InstructionData instruction : swapTx.getInstructions()) {
+            RaydiumSwapInstruction swap = decodeSwap(instruction);
+            if (swap == null && instruction.getInnerInstructions() != null) {
+                for (InstructionData inner : instruction.getInnerInstructions()) {
+                    swap = decodeSwap(inner);
+                    if (swap != null) {
+                        break;
+                    }
+                }
+            }
+            if (swap != null) {
+                log.debug("Found pool address: {}", swap.amm());
+                return swap;
+            }
         }
 
-        InstructionData instruction = raydiumInstruction.get();
-        if (instruction.getAccounts() == null || instruction.getAccounts().size() < 3) {
-            log.debug("Invalid accounts in Raydium instruction");
+        log.debug("No Raydium swap instruction in transaction {}", swapTx.getSignature());
+        return null;
+    }
+
+    private static RaydiumSwapInstruction decodeSwap(InstructionData instruction) {
+        if (!RaydiumSwapInstruction.PROGRAM_ID.equals(instruction.getProgramId())) {
             return null;
         }
-
-        String poolAddress = instruction.getAccounts().get(2);
-        log.info("Found pool address: {}", poolAddress);
-        return poolAddress;
+        return RaydiumSwapInstruction.decode(instruction.getData(), instruction.getAccounts());
     }
 
     /**
      * Рассчитывает ожидаемое проскальзывание
+     * Целые суммы считаются в фиксированной точке через {@link AmmMath} без аллокаций,
+     * дробные суммы и значения вне u64 - на BigDecimal с тем же округлением
      */
     public BigDecimal calculateExpectedSlippage(RaydiumPool pool, BigDecimal inputAmount, boolean isAtoB) {
         validateSlippageInput(pool, inputAmount);
@@ -325,6 +569,18 @@ public class RaydiumPoolService {
         BigDecimal reserveIn = isAtoB ? pool.getLiquidityA() : pool.getLiquidityB();
         BigDecimal reserveOut = isAtoB ? pool.getLiquidityB() : pool.getLiquidityA();
 
+        long rawReserveIn = toU64(reserveIn);
+        long rawReserveOut = toU64(reserveOut);
+        long rawAmount = toU64(inputAmount);
+        if (rawReserveIn > 0 && rawReserveOut > 0 && rawAmount > 0) {
+            try {
+                return BigDecimal.valueOf(AmmMath.slippage(rawReserveIn, rawReserveOut, rawAmount), AmmMath.SCALE);
+            } catch (ArithmeticException e) {
+                // Цена не помещается в фиксированную точку, считаем на BigDecimal
+                log.debug("Fixed-point overflow for pool {}, falling back to BigDecimal", pool.getAddress());
+            }
+        }
+
         // Рассчитываем выход по формуле x * y = k
         BigDecimal k = reserveIn.multiply(reserveOut);
         BigDecimal newReserveIn = reserveIn.add(inputAmount);
@@ -334,6 +590,17 @@ public class RaydiumPoolService {
         return calculateSlippagePercentage(inputAmount, outputAmount, reserveIn, reserveOut);
     }
 
+    /**
+     * Возвращает целое неотрицательное значение как long или -1, если оно дробное или не помещается
+     */
+    private static long toU64(BigDecimal value) {
+        BigDecimal integral = value.scale() > 0 ? value.stripTrailingZeros() : value;
+        if (integral.scale() > 0 || integral.signum() < 0 || integral.compareTo(MAX_LONG_VALUE) > 0) {
+            return -1;
+        }
+        return integral.longValue();
+    }
+
     /**
      * Проверяет входные данные для расчета проскальзывания
      */
@@ -372,25 +639,76 @@ public class RaydiumPoolService {
      * Возвращает информацию о пуле по его адресу
      */
     public Optional<RaydiumPool> getPoolByAddress(String address) {
-        return poolRepository.findById(address);
+        return poolStateCache.getIfPresent(address)
+                .or(() -> poolRepository.findById(address));
     }
 
     /**
-     * Возвращает все активные пулы
+     * Возвращает объемы торгов пула за скользящие окна
      */
-    public List<RaydiumPool> getAllActivePools() {
-        return poolRepository.findByActiveTrue();
+    public VolumeStats getPoolVolume(String address) {
+        return volumeEngine.stats(address);
+    }
+
+    /**
+     * Возвращает свечи пула за интервал [from, to), от старых к новым
+     */
+    public Mono<List<Candle>> getPoolCandles(String address, Timeframe timeframe, long from, long to, int limit) {
+        return candleAggregator.candles(address, timeframe, from, to, limit);
+    }
+
+    /**
+     * Лучший маршрут обмена через 1-maxHops пулов по резервам в памяти
+     */
+    public Optional<RouteQuote> quote(String inputMint, String outputMint, long amountIn, int maxHops) {
+        return poolGraph.quote(inputMint, outputMint, amountIn, maxHops);
+    }
+
+    /**
+     * Страница рейтинга пулов по показателю среди пулов с котируемым токеном quoteMint
+     */
+    public List<RankedPool> getTopPools(PoolRanking.Metric metric, String quoteMint, int offset, int limit,
+                                        boolean ascending) {
+        return poolRanking.top(metric, quoteMint, offset, limit, ascending);
+    }
+
+    /**
+     * Возвращает страницу активных пулов в порядке адресов
+     *
+     * @param after адрес последнего пула предыдущей страницы; пустая строка - с начала
+     */
+    public Mono<PoolPage> getActivePools(String after, int limit) {
+        return Mono.fromCallable(() -> poolRepository.findActiveSummariesAfter(after, Limit.of(limit)))
+                .subscribeOn(persistenceScheduler)
+                .map(pools -> new PoolPage(pools,
+                        pools.size() < limit ? null : pools.get(pools.size() - 1).address()));
+    }
+
+    /**
+     * Поток всех активных пулов в порядке адресов
+     */
+    public Flux<PoolSummary> streamActivePools() {
+        return poolSummaryCursor.streamActive();
     }
 
     /**
      * Деактивирует пул
+     * Изменение выполняется в полосе пула, чтобы не конкурировать с применением свопов
      */
-    @Transactional
-    public void deactivatePool(String poolAddress) {
-        poolRepository.findById(poolAddress).ifPresent(pool -> {
+    public Mono<Void> deactivatePool(String poolAddress) {
+        // Изменяем пул через кэш, иначе следующий сброс перезапишет деактивацию
+        Mono<RaydiumPool> load = Mono.fromCallable(() -> getPoolByAddress(poolAddress).isPresent())
+                .subscribeOn(persistenceScheduler)
+                .filter(exists -> exists)
+                .flatMap(exists -> poolStateCache.getOrLoad(poolAddress));
+
+        return poolLaneExecutor.submit(poolAddress, load, pool -> {
             pool.setActive(false);
             pool.setLastUpdate(LocalDateTime.now());
-            poolRepository.save(pool);
+            poolStateCache.markDirty(pool);
+            poolAccountStreamer.untrack(poolAddress);
+            poolGraph.remove(poolAddress);
+            poolRanking.remove(poolAddress);
             log.info("Pool {} has been deactivated", poolAddress);
         });
     }
@@ -399,8 +717,20 @@ public class RaydiumPoolService {
      * Проверяет активность пула
      */
     public boolean isPoolActive(String poolAddress) {
-        return poolRepository.findById(poolAddress)
+        return getPoolByAddress(poolAddress)
                 .map(RaydiumPool::isActive)
                 .orElse(false);
     }
-}
\ No newline at end of file
+
+    /**
+     * Пул и его резервы, загруженные перед применением свопа
+     */
+    private record LoadedPool(RaydiumPool pool, Optional<ResolvedReserves> reserves) {
+    }
+
+    /**
+     * Резервы пула; снимок есть, если резервы получены из RPC, а не из потока
+     */
+    private record ResolvedReserves(PoolReserves reserves, PoolSnapshot snapshot) {
+    }
+}
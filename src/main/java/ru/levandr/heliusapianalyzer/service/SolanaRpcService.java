@@ -1,21 +1,46 @@
 package ru.levandr.heliusapianalyzer.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import ru.levandr.heliusapianalyzer.codec.RaydiumAmmAccount;
+import ru.levandr.heliusapianalyzer.codec.SplTokenAccount;
+import ru.levandr.heliusapianalyzer.config.WebClientConfig;
+import ru.levandr.heliusapianalyzer.model.PoolMints;
+import ru.levandr.heliusapianalyzer.model.PoolReserves;
+import ru.levandr.heliusapianalyzer.model.PoolSnapshot;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler;
+import ru.levandr.heliusapianalyzer.service.rpc.AccountBatchFetcher;
+import ru.levandr.heliusapianalyzer.service.rpc.HedgedRpcClient;
+import ru.levandr.heliusapianalyzer.service.rpc.RpcEndpoint;
 
-import java.util.Base64;
-import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SolanaRpcService {
+    // Представление аккаунта переиспользуется в пределах потока
+    private static final ThreadLocal<RaydiumAmmAccount> AMM_ACCOUNT = ThreadLocal.withInitial(RaydiumAmmAccount::new);
+
+    @Qualifier(WebClientConfig.SOLANA_RPC)
     private final WebClient webClient;
+    private final HeliusProperties heliusProperties;
+    private final HeliusRequestScheduler requestScheduler;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
 
     @Value("${app.helius.rpc-endpoint}")
     private String rpcEndpoint;
@@ -23,72 +48,146 @@ public class SolanaRpcService {
     @Value("${app.helius.api-key}")
     private String apiKey;
 
+    // Хранилища и токены пула не меняются, поэтому декодируются один раз на пул
+    private final Map<String, PoolVaults> poolVaults = new ConcurrentHashMap<>();
+
+    private HedgedRpcClient rpcClient;
+    private AccountBatchFetcher poolAccountFetcher;
+    private AccountBatchFetcher vaultAmountFetcher;
+
+    @PostConstruct
+    void init() {
+        HeliusProperties.RpcBatch batch = heliusProperties.getRpcBatch();
+        HeliusProperties.RpcResilience resilience = heliusProperties.getRpcResilience();
+        String rpcUrl = String.format("%s/?api-key=%s", rpcEndpoint, apiKey);
+
+        RpcEndpoint primary = new RpcEndpoint("rpc-primary", rpcUrl,
+                circuitBreakerRegistry.circuitBreaker("rpc-primary"), resilience.getHedgeQuantile(), meterRegistry);
+        RpcEndpoint secondary = StringUtils.hasText(resilience.getSecondaryEndpoint())
+                ? new RpcEndpoint("rpc-secondary", resilience.getSecondaryEndpoint(),
+                        circuitBreakerRegistry.circuitBreaker("rpc-secondary"), resilience.getHedgeQuantile(),
+                        meterRegistry)
+                : null;
+        rpcClient = new HedgedRpcClient(webClient, requestScheduler, primary, secondary, resilience);
+
+        // Запрашиваем только поля, нужные для расчета резервов, а не весь аккаунт пула
+        poolAccountFetcher = new AccountBatchFetcher(rpcClient, batch.getWindow(), batch.getMaxKeys(),
+                Map.of("offset", RaydiumAmmAccount.RESERVES_SLICE_OFFSET,
+                        "length", RaydiumAmmAccount.RESERVES_SLICE_LENGTH));
+        // От токен-аккаунтов хранилищ нужен только баланс
+        vaultAmountFetcher = new AccountBatchFetcher(rpcClient, batch.getWindow(), batch.getMaxKeys(),
+                Map.of("offset", SplTokenAccount.AMOUNT_OFFSET,
+                        "length", SplTokenAccount.AMOUNT_LENGTH));
+        log.info("Pool account batching enabled: window={}, maxKeys={}", batch.getWindow(), batch.getMaxKeys());
+        log.info("RPC timeout {}, hedging to secondary endpoint {}", resilience.getTimeout(),
+                secondary == null ? "disabled" : "enabled");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poolAccountFetcher.close();
+        vaultAmountFetcher.close();
+    }
+
+    /**
+     * Доступен ли хотя бы один RPC адрес
+     * При открытых размыкателях ошибки обновления пулов вызваны RPC, а не самими пулами
+     */
+    public boolean isRpcHealthy() {
+        return rpcClient.isHealthy();
+    }
+
     /**
      * Получает данные аккаунта пула из блокчейна
+     * Возвращается срез аккаунта, начинающийся с {@link RaydiumAmmAccount#RESERVES_SLICE_OFFSET}.
+     * Параллельные запросы объединяются в общий вызов getMultipleAccounts, поток не блокируется
+     *
+     * @param poolAddress адрес пула
+     * @return данные аккаунта; пустой Mono при отсутствии данных или ошибке
+     */
+    public Mono<byte[]> getPoolAccountData(String poolAddress) {
+        log.debug("Fetching data for pool: {}", poolAddress);
+
+        return poolAccountFetcher.fetch(poolAddress)
+                .doOnNext(decoded ->
+                        log.debug("Decoded data length for pool {}: {}", poolAddress, decoded.length))
+                .switchIfEmpty(Mono.fromRunnable(() -> log.error("No data for pool {}", poolAddress)))
+                .onErrorResume(e -> {
+                    log.error("Error getting pool account data for {}: {}", poolAddress, e.getMessage(), e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Получает резервы пула: балансы хранилищ за вычетом невыведенной прибыли
+     *
+     * @param poolAddress адрес пула
+     * @return резервы; пустой Mono при отсутствии данных или ошибке
+     */
+    public Mono<PoolReserves> getPoolReserves(String poolAddress) {
+        return getPoolSnapshot(poolAddress).map(PoolSnapshot::reserves);
+    }
+
+    /**
+     * Получает снимок пула: хранилища, их балансы и невыведенную прибыль
+     * Если хранилища пула уже известны, аккаунт пула и оба хранилища запрашиваются параллельно
      *
      * @param poolAddress адрес пула
-     * @return данные аккаунта или null при ошибке
+     * @return снимок; пустой Mono при отсутствии данных или ошибке
      */
-    public byte[] getPoolAccountData(String poolAddress) {
-        try {
-            log.info("Fetching data for pool: {}", poolAddress);
-
-            // Добавляем commitment: "confirmed" для получения подтвержденных данных
-            Map<String, Object> request = Map.of(
-                    "jsonrpc", "2.0",
-                    "id", 1,
-                    "method", "getAccountInfo",
-                    "params", List.of(
-                            poolAddress,
-                            Map.of(
-                                    "encoding", "base64",
-                                    "commitment", "confirmed",
-                                    "dataSlice", Map.of(
-                                            "offset", 0,
-                                            "length", 300 // Увеличиваем размер получаемых данных
-                                    )
-                            )
-                    )
-            );
-
-            String url = String.format("%s/?api-key=%s", rpcEndpoint, apiKey);
-
-            log.info("Sending RPC request to: {}", url);
-            log.debug("Request body: {}", request);
-
-            JsonNode response = webClient.post()
-                    .uri(url)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block();
-
-            if (response == null || !response.has("result") || !response.get("result").has("value")) {
-                log.error("Invalid response format for pool {}: {}", poolAddress, response);
-                return null;
-            }
-
-            JsonNode value = response.get("result").get("value");
-            if (!value.has("data") || value.get("data").size() < 1) {
-                log.error("No data field in response for pool {}: {}", poolAddress, value);
-                return null;
-            }
-
-            String data = value.get("data").get(0).asText();
-            if (data.isEmpty()) {
-                log.error("Empty data for pool {}", poolAddress);
-                return null;
-            }
-
-            byte[] decoded = Base64.getDecoder().decode(data);
-            log.info("Decoded data length for pool {}: {}", poolAddress, decoded.length);
-
-            return decoded;
-
-        } catch (Exception e) {
-            log.error("Error getting pool account data for {}: {}",
-                    poolAddress, e.getMessage(), e);
-            return null;
+    public Mono<PoolSnapshot> getPoolSnapshot(String poolAddress) {
+        PoolVaults vaults = poolVaults.get(poolAddress);
+        if (vaults == null) {
+            return getPoolAccountData(poolAddress)
+                    .flatMap(data -> {
+                        RaydiumAmmAccount account = AMM_ACCOUNT.get()
+                                .wrap(data, RaydiumAmmAccount.RESERVES_SLICE_OFFSET);
+                        PoolVaults decoded = new PoolVaults(
+                                account.pubkeyBase58(RaydiumAmmAccount.BASE_VAULT),
+                                account.pubkeyBase58(RaydiumAmmAccount.QUOTE_VAULT),
+                                new PoolMints(account.pubkeyBase58(RaydiumAmmAccount.BASE_MINT),
+                                        account.pubkeyBase58(RaydiumAmmAccount.QUOTE_MINT)));
+                        poolVaults.put(poolAddress, decoded);
+                        long basePnl = account.baseNeedTakePnl();
+                        long quotePnl = account.quoteNeedTakePnl();
+                        return Mono.zip(getVaultAmount(decoded.baseVault()), getVaultAmount(decoded.quoteVault()))
+                                .map(amounts -> new PoolSnapshot(decoded.baseVault(), decoded.quoteVault(),
+                                        amounts.getT1(), amounts.getT2(), basePnl, quotePnl));
+                    });
         }
+
+        return Mono.zip(getPoolAccountData(poolAddress),
+                        getVaultAmount(vaults.baseVault()),
+                        getVaultAmount(vaults.quoteVault()))
+                .map(result -> {
+                    RaydiumAmmAccount account = AMM_ACCOUNT.get()
+                            .wrap(result.getT1(), RaydiumAmmAccount.RESERVES_SLICE_OFFSET);
+                    return new PoolSnapshot(vaults.baseVault(), vaults.quoteVault(), result.getT2(), result.getT3(),
+                            account.baseNeedTakePnl(), account.quoteNeedTakePnl());
+                });
+    }
+
+    /**
+     * Токены пула, если его аккаунт уже запрашивался
+     * Не выполняет запросов: токены известны после первого {@link #getPoolSnapshot}
+     */
+    public Optional<PoolMints> getPoolMints(String poolAddress) {
+        PoolVaults vaults = poolVaults.get(poolAddress);
+        return vaults == null ? Optional.empty() : Optional.of(vaults.mints());
+    }
+
+    /**
+     * Получает баланс токен-аккаунта хранилища
+     */
+    private Mono<Long> getVaultAmount(String vaultAddress) {
+        return vaultAmountFetcher.fetch(vaultAddress)
+                .map(data -> SplTokenAccount.amount(data, SplTokenAccount.AMOUNT_OFFSET))
+                .onErrorResume(e -> {
+                    log.error("Error getting vault balance for {}: {}", vaultAddress, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private record PoolVaults(String baseVault, String quoteVault, PoolMints mints) {
     }
 }
@@ -0,0 +1,209 @@
+package ru.levandr.heliusapianalyzer.service.amm;
+
+/**
+ * Целочисленная математика пула постоянного произведения (x * y = k) без аллокаций
+ * Резервы и суммы - u64 в минимальных единицах токена, как на блокчейне.
+ * Цены и проскальзывание - фиксированная точка с {@link #SCALE} знаками (значение * 10^8).
+ * Промежуточные произведения считаются в 128 битах, округление совпадает
+ * с расчетом на BigDecimal через divide(..., 8, HALF_UP)
+ */
+public final class AmmMath {
+    public static final int SCALE = 8;
+    public static final long ONE = 100_000_000L; // 1.0 в фиксированной точке
+    private static final long HALF_WORD = 1L << 32;
+    private static final long LOW_MASK = 0xFFFFFFFFL;
+
+    private AmmMath() {
+    }
+
+    /**
+     * Выход свопа по формуле постоянного произведения, округленный вниз
+     *
+     * @param reserveIn  резерв входного токена
+     * @param reserveOut резерв выходного токена
+     * @param amountIn   количество входного токена
+     * @return количество выходного токена
+     */
+    public static long getAmountOut(long reserveIn, long reserveOut, long amountIn) {
+        validate(reserveIn, reserveOut, amountIn);
+        long newReserveIn = reserveIn + amountIn; // Не переполняет u64: оба слагаемых <= Long.MAX_VALUE
+        return divide128(Math.unsignedMultiplyHigh(reserveOut, amountIn), reserveOut * amountIn, newReserveIn);
+    }
+
+    /**
+     * Вход, необходимый для получения заданного выхода, округленный вверх
+     * Обратная к {@link #getAmountOut}: reserveIn * amountOut / (reserveOut - amountOut)
+     *
+     * @param reserveIn  резерв входного токена
+     * @param reserveOut резерв выходного токена
+     * @param amountOut  требуемое количество выходного токена, меньше reserveOut
+     * @return количество входного токена
+     */
+    public static long getAmountIn(long reserveIn, long reserveOut, long amountOut) {
+        if (amountOut <= 0) {
+            throw new IllegalArgumentException("Output amount must be positive");
+        }
+        if (reserveIn <= 0 || reserveOut <= 0) {
+            throw new IllegalStateException("Invalid pool liquidity");
+        }
+        if (amountOut >= reserveOut) {
+            throw new IllegalStateException("Output exceeds pool liquidity");
+        }
+        long remainingOut = reserveOut - amountOut;
+        long high = Math.unsignedMultiplyHigh(reserveIn, amountOut);
+        long low = reserveIn * amountOut;
+        if (Long.compareUnsigned(high, remainingOut) >= 0) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+        long quotient = divide128(high, low, remainingOut);
+        if (low - quotient * remainingOut != 0) {
+            quotient++;
+        }
+        if (quotient < 0) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+        return quotient;
+    }
+
+    /**
+     * Спотовая цена reserveOut / reserveIn
+     *
+     * @return цена в фиксированной точке (* 10^8)
+     */
+    public static long spotPrice(long reserveIn, long reserveOut) {
+        if (reserveIn <= 0 || reserveOut < 0) {
+            throw new IllegalStateException("Invalid pool liquidity");
+        }
+        return divideHalfUp(Math.unsignedMultiplyHigh(reserveOut, ONE), reserveOut * ONE, reserveIn);
+    }
+
+    /**
+     * Эффективная цена свопа: выход / вход
+     * Выход берется с точностью 8 знаков так же, как reserveOut - k / (reserveIn + amountIn)
+     *
+     * @return цена в фиксированной точке (* 10^8)
+     */
+    public static long effectivePrice(long reserveIn, long reserveOut, long amountIn) {
+        validate(reserveIn, reserveOut, amountIn);
+        long newReserveIn = reserveIn + amountIn;
+
+        // reserveOut - k / newReserveIn = reserveOut * amountIn / newReserveIn
+        // Целая часть и остаток выхода
+        long productHigh = Math.unsignedMultiplyHigh(reserveOut, amountIn);
+        long productLow = reserveOut * amountIn;
+        long whole = divide128(productHigh, productLow, newReserveIn);
+        long remainder = productLow - whole * newReserveIn;
+
+        // Дробная часть выхода в 8 знаках
+        long fractionHigh = Math.unsignedMultiplyHigh(remainder, ONE);
+        long fractionLow = remainder * ONE;
+        long fraction = divide128(fractionHigh, fractionLow, newReserveIn);
+        long fractionRemainder = fractionLow - fraction * newReserveIn;
+
+        // Вычитание из reserveOut округленного вверх k / newReserveIn дает округление половины вниз
+        if (Long.compareUnsigned(fractionRemainder, newReserveIn - fractionRemainder) > 0) {
+            fraction++;
+        }
+
+        // Выход в фиксированной точке: whole * 10^8 + fraction (128 бит)
+        long outputHigh = Math.unsignedMultiplyHigh(whole, ONE);
+        long outputLow = whole * ONE + fraction;
+        if (Long.compareUnsigned(outputLow, fraction) < 0) {
+            outputHigh++;
+        }
+
+        return divideHalfUp(outputHigh, outputLow, amountIn);
+    }
+
+    /**
+     * Ожидаемое проскальзывание свопа: |1 - эффективная цена / спотовая цена| * 100
+     *
+     * @return проскальзывание в процентах в фиксированной точке (* 10^8)
+     */
+    public static long slippage(long reserveIn, long reserveOut, long amountIn) {
+        long effectivePrice = effectivePrice(reserveIn, reserveOut, amountIn);
+        long spotPrice = spotPrice(reserveIn, reserveOut);
+        if (spotPrice == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+
+        long ratio = divideHalfUp(Math.unsignedMultiplyHigh(effectivePrice, ONE), effectivePrice * ONE, spotPrice);
+        return Math.multiplyExact(Math.abs(ONE - ratio), 100L);
+    }
+
+    /**
+     * Деление 128-битного числа на 64-битное с округлением половины вверх
+     * Результат должен помещаться в положительный long
+     */
+    static long divideHalfUp(long high, long low, long divisor) {
+        if (Long.compareUnsigned(high, divisor) >= 0) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+        long quotient = divide128(high, low, divisor);
+        long remainder = low - quotient * divisor;
+        if (Long.compareUnsigned(remainder, divisor - remainder) >= 0) {
+            quotient++;
+        }
+        if (quotient < 0) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+        return quotient;
+    }
+
+    /**
+     * Беззнаковое деление 128-битного числа high:low на 64-битный делитель
+     * Требует high < divisor, иначе частное не помещается в 64 бита (Hacker's Delight, divlu)
+     */
+    static long divide128(long high, long low, long divisor) {
+        if (high == 0) {
+            return Long.divideUnsigned(low, divisor);
+        }
+
+        // Нормализуем делитель, чтобы старший бит был установлен
+        int shift = Long.numberOfLeadingZeros(divisor);
+        long normalized = divisor << shift;
+        long numeratorHigh = shift == 0 ? high : (high << shift) | (low >>> (64 - shift));
+        long numeratorLow = low << shift;
+
+        long divisorHigh = normalized >>> 32;
+        long divisorLow = normalized & LOW_MASK;
+        long numeratorLow1 = numeratorLow >>> 32;
+        long numeratorLow0 = numeratorLow & LOW_MASK;
+
+        // Старшая 32-битная цифра частного
+        long quotient1 = Long.divideUnsigned(numeratorHigh, divisorHigh);
+        long remainderHat = numeratorHigh - quotient1 * divisorHigh;
+        while (quotient1 >= HALF_WORD
+                || Long.compareUnsigned(quotient1 * divisorLow, (remainderHat << 32) | numeratorLow1) > 0) {
+            quotient1--;
+            remainderHat += divisorHigh;
+            if (remainderHat >= HALF_WORD) {
+                break;
+            }
+        }
+
+        // Младшая 32-битная цифра частного
+        long partial = (numeratorHigh << 32) + numeratorLow1 - quotient1 * normalized;
+        long quotient0 = Long.divideUnsigned(partial, divisorHigh);
+        remainderHat = partial - quotient0 * divisorHigh;
+        while (quotient0 >= HALF_WORD
+                || Long.compareUnsigned(quotient0 * divisorLow, (remainderHat << 32) | numeratorLow0) > 0) {
+            quotient0--;
+            remainderHat += divisorHigh;
+            if (remainderHat >= HALF_WORD) {
+                break;
+            }
+        }
+
+        return (quotient1 << 32) | quotient0;
+    }
+
+    private static void validate(long reserveIn, long reserveOut, long amountIn) {
+        if (amountIn <= 0) {
+            throw new IllegalArgumentException("Input amount must be positive");
+        }
+        if (reserveIn <= 0 || reserveOut <= 0) {
+            throw new IllegalStateException("Invalid pool liquidity");
+        }
+    }
+}
@@ -1,25 +1,33 @@
 package ru.levandr.heliusapianalyzer.service.analyzer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.config.WebClientConfig;
+import ru.levandr.heliusapianalyzer.service.capture.CaptureLog;
+import ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler;
+import ru.levandr.heliusapianalyzer.service.quota.RequestPriority;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class HeliusAnalyzer {
 
+    @Qualifier(WebClientConfig.HELIUS_API)
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
+    private final HeliusRequestScheduler requestScheduler;
+    private final CaptureLog captureLog;
 
     @Value("${app.helius.api-key}")
     private String apiKey;
@@ -31,37 +39,35 @@ public class HeliusAnalyzer {
         String url = String.format("%s/addresses/%s/transactions/?api-key=%s",
                 API_BASE_URL, RAYDIUM_ADDRESS, apiKey);
 
-        webClient.get()
-                .uri(url)
-                .retrieve()
-                .bodyToMono(String.class)
-                .doOnNext(response -> {
-                    try {
-                        // Сохраняем сырой ответ
-                        saveToFile(response);
-
-                        // Логируем структуру
-                        Object json = objectMapper.readTree(response);
-                        log.info("Response structure: {}",
-                                objectMapper.writerWithDefaultPrettyPrinter()
-                                        .writeValueAsString(json));
+        // Сырой ответ сохраняется одной записью журнала без разбора и форматирования
+        capture(requestScheduler.scheduleMany(HeliusRequestScheduler.Upstream.API, RequestPriority.NORMAL,
+                () -> webClient.get()
+                        .uri(url)
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class)))
+                .subscribe(null, e -> log.error("Error processing response", e));
+    }
 
-                    } catch (Exception e) {
-                        log.error("Error processing response", e);
+    private Mono<Void> capture(Flux<DataBuffer> content) {
+        return DataBufferUtils.join(content)
+                .map(buffer -> {
+                    try {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        return bytes;
+                    } finally {
+                        DataBufferUtils.release(buffer);
                     }
                 })
-                .subscribe();
-    }
-
-    private void saveToFile(String content) {
-        try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            Path file = Path.of("analysis", timestamp + "_" + "raw_response.json");
-            Files.createDirectories(file.getParent());
-            Files.writeString(file, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            log.info("Saved response to {}", file);
-        } catch (Exception e) {
-            log.error("Error saving to file", e);
-        }
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(bytes -> {
+                    try {
+                        long timestamp = captureLog.append(bytes);
+                        log.info("Captured response: {} bytes at {}", bytes.length, timestamp);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .then();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,231 @@
+package ru.levandr.heliusapianalyzer.service.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.properties.PoolCacheProperties;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.metrics.DbFlushMetrics;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Кэш состояния пулов Raydium с отложенной записью в БД
+ * Является основным источником состояния пула: свопы изменяют закэшированный объект,
+ * а измененные пулы периодически сбрасываются в raydium_pools пакетами JDBC
+ */
+@Slf4j
+@Component
+public class PoolStateCache {
+    // Имена колонок соответствуют физическим именам, которые Hibernate генерирует для RaydiumPool
+    private static final String UPSERT_SQL = """
+            INSERT INTO raydium_pools (address, tokenamint, tokenbmint, price, liquiditya, liquidityb,
+                                       volume24h, last_update, active)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (address) DO UPDATE SET
+                tokenamint = EXCLUDED.tokenamint,
+                tokenbmint = EXCLUDED.tokenbmint,
+                price = EXCLUDED.price,
+                liquiditya = EXCLUDED.liquiditya,
+                liquidityb = EXCLUDED.liquidityb,
+                volume24h = EXCLUDED.volume24h,
+                last_update = EXCLUDED.last_update,
+                active = EXCLUDED.active
+            """;
+
+    private final Map<String, CachedPool> entries = new ConcurrentHashMap<>();
+    private final RaydiumPoolRepository poolRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Scheduler persistenceScheduler;
+    private final PoolCacheProperties properties;
+    private final int batchSize;
+    private final Timer flushTimer;
+    private final Timer failedFlushTimer;
+
+    public PoolStateCache(RaydiumPoolRepository poolRepository,
+                          JdbcTemplate jdbcTemplate,
+                          Scheduler persistenceScheduler,
+                          PoolCacheProperties properties,
+                          MeterRegistry meterRegistry,
+                          @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.poolRepository = poolRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.persistenceScheduler = persistenceScheduler;
+        this.properties = properties;
+        this.batchSize = batchSize;
+        this.flushTimer = DbFlushMetrics.timer(meterRegistry, "raydium_pools", true);
+        this.failedFlushTimer = DbFlushMetrics.timer(meterRegistry, "raydium_pools", false);
+        Gauge.builder("pool.cache.size", entries, Map::size)
+                .description("Пулы в кэше состояния")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает пул из кэша или загружает его из БД
+     * Если пула нет и в БД, создается новый активный пул
+     */
+    public Mono<RaydiumPool> getOrLoad(String address) {
+        CachedPool cached = entries.get(address);
+        if (cached != null) {
+            cached.touch();
+            return Mono.just(cached.pool);
+        }
+
+        return Mono.fromCallable(() -> poolRepository.findById(address).orElseGet(() -> newPool(address)))
+                .subscribeOn(persistenceScheduler)
+                .map(loaded -> {
+                    // Параллельная загрузка того же пула: побеждает первый попавший в кэш объект
+                    CachedPool entry = entries.computeIfAbsent(address, key -> new CachedPool(loaded));
+                    entry.touch();
+                    return entry.pool;
+                });
+    }
+
+    /**
+     * Возвращает пул, если он уже есть в кэше
+     */
+    public Optional<RaydiumPool> getIfPresent(String address) {
+        CachedPool cached = entries.get(address);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        cached.touch();
+        return Optional.of(cached.pool);
+    }
+
+    /**
+     * Помечает пул измененным, он будет записан в БД при следующем сбросе
+     * Вызывается после завершения изменения объекта пула
+     */
+    public void markDirty(RaydiumPool pool) {
+        CachedPool cached = entries.computeIfAbsent(pool.getAddress(), key -> new CachedPool(pool));
+        cached.touch();
+        cached.dirty.set(true);
+    }
+
+    /**
+     * Количество пулов в кэше
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Сбрасывает измененные пулы в БД и вытесняет неиспользуемые
+     */
+    @Scheduled(fixedDelayString = "${app.pool-cache.flush-interval:1s}")
+    public void flush() {
+        List<CachedPool> flushed = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (CachedPool cached : entries.values()) {
+            if (cached.dirty.compareAndSet(true, false)) {
+                flushed.add(cached);
+                rows.add(toRow(cached.pool));
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            long started = System.nanoTime();
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, rows, batchSize, (ps, row) -> {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                });
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                log.debug("Flushed {} pools to database", rows.size());
+            } catch (Exception e) {
+                failedFlushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                // Возвращаем пометку, чтобы повторить запись при следующем сбросе
+                flushed.forEach(cached -> cached.dirty.set(true));
+                log.error("Error flushing {} pools: {}", rows.size(), e.getMessage(), e);
+            }
+        }
+
+        evict();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * Вытесняет пулы без обращений и ограничивает размер кэша
+     * Несброшенные пулы никогда не вытесняются
+     */
+    private void evict() {
+        long idleThreshold = System.nanoTime() - properties.getIdleTimeout().toNanos();
+        entries.values().removeIf(cached -> !cached.dirty.get() && cached.lastAccess - idleThreshold < 0);
+
+        int excess = entries.size() - properties.getMaxSize();
+        if (excess <= 0) {
+            return;
+        }
+
+        entries.values().stream()
+                .filter(cached -> !cached.dirty.get())
+                .sorted(Comparator.comparingLong(cached -> cached.lastAccess))
+                .limit(excess)
+                .toList()
+                .forEach(cached -> entries.remove(cached.pool.getAddress(), cached));
+    }
+
+    /**
+     * Снимок колонок пула для пакетной записи
+     */
+    private Object[] toRow(RaydiumPool pool) {
+        LocalDateTime lastUpdate = pool.getLastUpdate();
+        return new Object[]{
+                pool.getAddress(),
+                pool.getTokenAMint(),
+                pool.getTokenBMint(),
+                pool.getPrice(),
+                pool.getLiquidityA(),
+                pool.getLiquidityB(),
+                pool.getVolume24h(),
+                lastUpdate != null ? Timestamp.valueOf(lastUpdate) : null,
+                pool.isActive()
+        };
+    }
+
+    private RaydiumPool newPool(String address) {
+        RaydiumPool pool = new RaydiumPool();
+        pool.setAddress(address);
+        pool.setActive(true);
+        pool.setLastUpdate(LocalDateTime.now());
+        return pool;
+    }
+
+    private static final class CachedPool {
+        private final RaydiumPool pool;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private volatile long lastAccess = System.nanoTime();
+
+        private CachedPool(RaydiumPool pool) {
+            this.pool = pool;
+        }
+
+        private void touch() {
+            lastAccess = System.nanoTime();
+        }
+    }
+}
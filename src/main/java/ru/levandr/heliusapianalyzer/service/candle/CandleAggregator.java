@@ -0,0 +1,445 @@
+package ru.levandr.heliusapianalyzer.service.candle;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.model.Candle;
+import ru.levandr.heliusapianalyzer.properties.CandleProperties;
+import ru.levandr.heliusapianalyzer.service.candle.CandleStore.FinishedCandle;
+import ru.levandr.heliusapianalyzer.service.metrics.DbFlushMetrics;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Инкрементальное построение свечей OHLCV по пулам
+ * Свопы и обновления резервов попадают только в секундную свечу. Закрытая свеча таймфрейма
+ * вливается в открытую свечу следующего, поэтому старшие таймфреймы не пересчитываются по сделкам.
+ * Свеча закрывается, когда приходит событие следующего интервала или когда интервал закончился
+ * больше closeDelay назад. Закрытые свечи пишутся в pool_candles пакетами вне полосы пула.
+ * <p>
+ * Событие старше открытой свечи (например, из дозагрузки истории) не меняет открытые свечи
+ * и записывается отдельной свечой, которая сливается с уже записанной в БД.
+ * <p>
+ * Цена свопа - текущая цена пула, поэтому она относится к времени блока, только пока своп свежий.
+ * Своп старше открытой свечи или старше closeDelay учитывается только объемом, без цены
+ */
+@Slf4j
+@Component
+public class CandleAggregator {
+    private static final Timeframe[] TIMEFRAMES = Timeframe.values();
+
+    private final CandleStore candleStore;
+    private final Scheduler persistenceScheduler;
+    private final CandleProperties properties;
+    private final Clock clock;
+
+    private final Map<String, PoolCandles> pools = new ConcurrentHashMap<>();
+    private final BlockingQueue<FinishedCandle> finished;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Timer flushTimer;
+    private final Timer failedFlushTimer;
+
+    // Пакет, не записанный из-за ошибки; повторяется первым при следующей записи
+    private List<FinishedCandle> pending = List.of();
+    private long reportedDropped;
+
+    @Autowired
+    public CandleAggregator(CandleStore candleStore, Scheduler persistenceScheduler, CandleProperties properties,
+                            MeterRegistry meterRegistry) {
+        this(candleStore, persistenceScheduler, properties, meterRegistry, Clock.systemUTC());
+    }
+
+    CandleAggregator(CandleStore candleStore, Scheduler persistenceScheduler, CandleProperties properties,
+                     MeterRegistry meterRegistry, Clock clock) {
+        this.candleStore = candleStore;
+        this.persistenceScheduler = persistenceScheduler;
+        this.properties = properties;
+        this.clock = clock;
+        this.finished = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.flushTimer = DbFlushMetrics.timer(meterRegistry, "pool_candles", true);
+        this.failedFlushTimer = DbFlushMetrics.timer(meterRegistry, "pool_candles", false);
+        Gauge.builder("candles.backlog", finished, BlockingQueue::size)
+                .description("Закрытые свечи, ожидающие записи")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учитывает своп: цену пула после свопа и объемы обеих сторон
+     *
+     * @param epochSecond время блока свопа (unix, секунды)
+     * @param price       текущая цена токена A в токенах B; для старого свопа не используется
+     */
+    public void onSwap(String poolAddress, long epochSecond, double price, double volumeA, double volumeB) {
+        MutableCandle tick = new MutableCandle(epochSecond, price, volumeA, volumeB, 1);
+        if (epochSecond < clock.instant().getEpochSecond() - properties.getCloseDelay().toSeconds()) {
+            tick = tick.withoutPrice();
+        }
+        apply(poolAddress, tick);
+    }
+
+    /**
+     * Учитывает изменение цены без сделки, например обновление резервов из потока
+     */
+    public void onPrice(String poolAddress, long epochSecond, double price) {
+        apply(poolAddress, new MutableCandle(epochSecond, price, 0, 0, 0));
+    }
+
+    private void apply(String poolAddress, MutableCandle tick) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!(tick.close > 0) || Double.isInfinite(tick.close)) {
+            // Без цены своп еще дает объем
+            if (tick.trades == 0) {
+                return;
+            }
+            tick = tick.withoutPrice();
+        }
+
+        while (true) {
+            PoolCandles candles = pools.computeIfAbsent(poolAddress, PoolCandles::new);
+            synchronized (candles) {
+                // Состояние могло быть удалено при закрытии свечей, берем новое
+                if (candles.retired) {
+                    continue;
+                }
+                candles.roll(0, tick);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Свечи пула за интервал [from, to), от старых к новым
+     * Включает текущую незакрытую свечу, если она попадает в интервал
+     */
+    public Mono<List<Candle>> candles(String poolAddress, Timeframe timeframe, long from, long to, int limit) {
+        int boundedLimit = Math.max(1, Math.min(limit, properties.getMaxQueryLimit()));
+        return Mono.fromCallable(() -> candleStore.find(poolAddress, timeframe, from, to, boundedLimit))
+                .subscribeOn(persistenceScheduler)
+                .map(stored -> {
+                    List<Candle> result = new ArrayList<>(stored);
+                    Collections.reverse(result);
+                    openCandle(poolAddress, timeframe)
+                            .filter(open -> open.time() >= from && open.time() < to)
+                            .ifPresent(open -> mergeOpen(result, open, boundedLimit));
+                    return result;
+                });
+    }
+
+    /**
+     * Текущая незакрытая свеча таймфрейма вместе с еще не влитыми в нее младшими свечами
+     */
+    Optional<Candle> openCandle(String poolAddress, Timeframe timeframe) {
+        PoolCandles candles = pools.get(poolAddress);
+        if (candles == null) {
+            return Optional.empty();
+        }
+
+        synchronized (candles) {
+            MutableCandle result = null;
+            // Старший таймфрейм содержит более ранние сделки, младшие - более поздние
+            for (int level = timeframe.ordinal(); level >= 0; level--) {
+                MutableCandle open = candles.open[level];
+                if (open == null) {
+                    continue;
+                }
+                long bucket = timeframe.bucketStart(open.start);
+                if (result == null) {
+                    result = open.copy(bucket);
+                } else if (result.start == bucket) {
+                    result.merge(open);
+                } else if (bucket > result.start) {
+                    result = open.copy(bucket);
+                }
+            }
+            return Optional.ofNullable(result).map(MutableCandle::toCandle);
+        }
+    }
+
+    /**
+     * Закрывает истекшие свечи и записывает завершенные свечи в БД
+     */
+    @Scheduled(fixedDelayString = "${app.candles.flush-interval:1s}")
+    public synchronized void flush() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        closeExpired(clock.instant().getEpochSecond() - properties.getCloseDelay().toSeconds());
+        reportDropped();
+
+        while (true) {
+            List<FinishedCandle> batch = pending;
+            if (batch.isEmpty()) {
+                batch = new ArrayList<>(Math.min(finished.size(), properties.getBatchSize()));
+                finished.drainTo(batch, properties.getBatchSize());
+                if (batch.isEmpty()) {
+                    return;
+                }
+            }
+
+            long started = System.nanoTime();
+            try {
+                candleStore.save(batch);
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                pending = List.of();
+                log.debug("Saved {} candles", batch.size());
+            } catch (Exception e) {
+                failedFlushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                pending = batch;
+                log.error("Error saving {} candles: {}", batch.size(), e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Закрываем все открытые свечи, при перезапуске они сольются с продолжением интервала
+        closeExpired(Long.MAX_VALUE / 2);
+        flush();
+    }
+
+    /**
+     * Количество пулов с открытыми свечами
+     */
+    public int trackedPools() {
+        return pools.size();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Закрывает свечи, интервал которых закончился до момента threshold,
+     * и забывает пулы без открытых свечей
+     */
+    void closeExpired(long threshold) {
+        for (PoolCandles candles : pools.values()) {
+            synchronized (candles) {
+                for (int level = 0; level < TIMEFRAMES.length; level++) {
+                    MutableCandle open = candles.open[level];
+                    if (open != null && open.start + TIMEFRAMES[level].seconds() <= threshold) {
+                        candles.close(level);
+                    }
+                }
+                if (candles.isEmpty()) {
+                    candles.retired = true;
+                    pools.remove(candles.poolAddress, candles);
+                }
+            }
+        }
+    }
+
+    private void emit(String poolAddress, Timeframe timeframe, MutableCandle candle) {
+        if (!finished.offer(new FinishedCandle(poolAddress, timeframe, candle.toCandle(),
+                candle.openTime, candle.closeTime))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Сообщает о свечах, отброшенных с прошлой записи
+     */
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            log.warn("Candle queue is full, dropped {} candles", total - reportedDropped);
+            reportedDropped = total;
+        }
+    }
+
+    /**
+     * Добавляет открытую свечу в конец списка или сливает с последней свечой того же интервала
+     * Открытая свеча без цены только добавляет объем к записанной
+     */
+    private static void mergeOpen(List<Candle> result, Candle open, int limit) {
+        Candle last = result.isEmpty() ? null : result.get(result.size() - 1);
+        boolean priced = !Double.isNaN(open.close());
+        if (last != null && last.time() == open.time()) {
+            result.set(result.size() - 1, new Candle(last.time(), last.open(),
+                    priced ? Math.max(last.high(), open.high()) : last.high(),
+                    priced ? Math.min(last.low(), open.low()) : last.low(),
+                    priced ? open.close() : last.close(),
+                    last.volumeA() + open.volumeA(), last.volumeB() + open.volumeB(),
+                    last.trades() + open.trades()));
+        } else if (priced && (last == null || last.time() < open.time())) {
+            result.add(open);
+            if (result.size() > limit) {
+                result.remove(0);
+            }
+        }
+    }
+
+    /**
+     * Открытые свечи одного пула по таймфреймам; изменяются под блокировкой объекта
+     */
+    private final class PoolCandles {
+        private final String poolAddress;
+        private final MutableCandle[] open = new MutableCandle[TIMEFRAMES.length];
+        private boolean retired;
+
+        private PoolCandles(String poolAddress) {
+            this.poolAddress = poolAddress;
+        }
+
+        /**
+         * Вливает свечу (или одиночное событие) в открытую свечу таймфрейма
+         */
+        private void roll(int level, MutableCandle candle) {
+            Timeframe timeframe = TIMEFRAMES[level];
+            long bucket = timeframe.bucketStart(candle.start);
+            MutableCandle current = open[level];
+
+            if (current != null && bucket < current.start) {
+                // Запоздавшее событие: пишем его отдельно во все таймфреймы, открытые свечи не трогаем.
+                // Цена пула относится к более позднему времени, поэтому учитываем только объем
+                if (candle.trades == 0) {
+                    return;
+                }
+                MutableCandle late = candle.withoutPrice();
+                for (int lateLevel = level; lateLevel < TIMEFRAMES.length; lateLevel++) {
+                    Timeframe lateTimeframe = TIMEFRAMES[lateLevel];
+                    emit(poolAddress, lateTimeframe, late.copy(lateTimeframe.bucketStart(late.start)));
+                }
+                return;
+            }
+
+            if (current != null && bucket > current.start) {
+                close(level);
+                current = null;
+            }
+
+            if (current == null) {
+                open[level] = candle.copy(bucket);
+            } else {
+                current.merge(candle);
+            }
+        }
+
+        /**
+         * Закрывает свечу таймфрейма и вливает ее в следующий
+         */
+        private void close(int level) {
+            MutableCandle closed = open[level];
+            open[level] = null;
+            emit(poolAddress, TIMEFRAMES[level], closed);
+            if (level + 1 < TIMEFRAMES.length) {
+                roll(level + 1, closed);
+            }
+        }
+
+        private boolean isEmpty() {
+            for (MutableCandle candle : open) {
+                if (candle != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Изменяемая свеча; одиночное событие представлено свечой с одинаковыми ценами
+     * Цены открытия и закрытия выбираются по времени первого и последнего события с ценой.
+     * У свечи только с объемом цены NaN, а openTime больше closeTime
+     */
+    private static final class MutableCandle {
+        private final long start;
+        private double open;
+        private double high;
+        private double low;
+        private double close;
+        private double volumeA;
+        private double volumeB;
+        private int trades;
+        private long openTime;
+        private long closeTime;
+
+        private MutableCandle(long start, double price, double volumeA, double volumeB, int trades) {
+            this.start = start;
+            this.open = price;
+            this.high = price;
+            this.low = price;
+            this.close = price;
+            this.volumeA = volumeA;
+            this.volumeB = volumeB;
+            this.trades = trades;
+            this.openTime = start;
+            this.closeTime = start;
+        }
+
+        private boolean hasPrice() {
+            return openTime <= closeTime;
+        }
+
+        /**
+         * Вливает свечу того же интервала
+         */
+        private void merge(MutableCandle other) {
+            if (other.hasPrice()) {
+                if (!hasPrice()) {
+                    high = other.high;
+                    low = other.low;
+                } else {
+                    high = Math.max(high, other.high);
+                    low = Math.min(low, other.low);
+                }
+                if (other.openTime < openTime) {
+                    open = other.open;
+                    openTime = other.openTime;
+                }
+                if (other.closeTime >= closeTime) {
+                    close = other.close;
+                    closeTime = other.closeTime;
+                }
+            }
+            volumeA += other.volumeA;
+            volumeB += other.volumeB;
+            trades += other.trades;
+        }
+
+        private MutableCandle copy(long bucket) {
+            MutableCandle copy = new MutableCandle(bucket, open, volumeA, volumeB, trades);
+            copy.high = high;
+            copy.low = low;
+            copy.close = close;
+            copy.openTime = openTime;
+            copy.closeTime = closeTime;
+            return copy;
+        }
+
+        /**
+         * Та же свеча только с объемами
+         */
+        private MutableCandle withoutPrice() {
+            MutableCandle copy = new MutableCandle(start, Double.NaN, volumeA, volumeB, trades);
+            copy.openTime = Long.MAX_VALUE;
+            copy.closeTime = Long.MIN_VALUE;
+            return copy;
+        }
+
+        private Candle toCandle() {
+            return new Candle(start, open, high, low, close, volumeA, volumeB, trades);
+        }
+    }
+}
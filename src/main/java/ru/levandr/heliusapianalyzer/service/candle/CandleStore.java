@@ -0,0 +1,149 @@
+package ru.levandr.heliusapianalyzer.service.candle;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.levandr.heliusapianalyzer.model.Candle;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Хранение завершенных свечей в таблице pool_candles
+ * Строка занимает фиксированные ~106 байт: время хранится в секундах, цены и объемы - в double.
+ * Повторная запись той же свечи (запоздавший своп, перезапуск посреди интервала) объединяется
+ * с уже записанной: экстремумы и объемы складываются, а цены открытия и закрытия берутся
+ * у части с более ранним первым и более поздним последним событием.
+ * Свеча только с объемом хранится без цен и не возвращается, пока к ней не добавится цена
+ */
+@Slf4j
+@Component
+public class CandleStore {
+    private static final List<String> SCHEMA_SQL = List.of("""
+                    CREATE TABLE IF NOT EXISTS pool_candles (
+                        pool_address VARCHAR(44)      NOT NULL,
+                        timeframe    INTEGER          NOT NULL,
+                        bucket_start BIGINT           NOT NULL,
+                        open         DOUBLE PRECISION,
+                        high         DOUBLE PRECISION,
+                        low          DOUBLE PRECISION,
+                        close        DOUBLE PRECISION,
+                        volume_a     DOUBLE PRECISION NOT NULL,
+                        volume_b     DOUBLE PRECISION NOT NULL,
+                        trades       INTEGER          NOT NULL,
+                        open_time    BIGINT,
+                        close_time   BIGINT,
+                        PRIMARY KEY (pool_address, timeframe, bucket_start)
+                    )
+                    """,
+            // Таблица, созданная до появления времен событий
+            "ALTER TABLE pool_candles ADD COLUMN IF NOT EXISTS open_time BIGINT",
+            "ALTER TABLE pool_candles ADD COLUMN IF NOT EXISTS close_time BIGINT",
+            """
+                    ALTER TABLE pool_candles ALTER COLUMN open DROP NOT NULL, ALTER COLUMN high DROP NOT NULL,
+                        ALTER COLUMN low DROP NOT NULL, ALTER COLUMN close DROP NOT NULL
+                    """);
+
+    // GREATEST и LEAST пропускают NULL, сравнение с NULL ложно - часть без цены цены не меняет
+    private static final String UPSERT_SQL = """
+            INSERT INTO pool_candles (pool_address, timeframe, bucket_start, open, high, low, close,
+                                      volume_a, volume_b, trades, open_time, close_time)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (pool_address, timeframe, bucket_start) DO UPDATE SET
+                open = CASE WHEN pool_candles.open_time IS NULL OR EXCLUDED.open_time < pool_candles.open_time
+                            THEN COALESCE(EXCLUDED.open, pool_candles.open) ELSE pool_candles.open END,
+                close = CASE WHEN pool_candles.close_time IS NULL OR EXCLUDED.close_time >= pool_candles.close_time
+                             THEN COALESCE(EXCLUDED.close, pool_candles.close) ELSE pool_candles.close END,
+                open_time = LEAST(pool_candles.open_time, EXCLUDED.open_time),
+                close_time = GREATEST(pool_candles.close_time, EXCLUDED.close_time),
+                high = GREATEST(pool_candles.high, EXCLUDED.high),
+                low = LEAST(pool_candles.low, EXCLUDED.low),
+                volume_a = pool_candles.volume_a + EXCLUDED.volume_a,
+                volume_b = pool_candles.volume_b + EXCLUDED.volume_b,
+                trades = pool_candles.trades + EXCLUDED.trades
+            """;
+
+    private static final String SELECT_SQL = """
+            SELECT bucket_start, open, high, low, close, volume_a, volume_b, trades
+            FROM pool_candles
+            WHERE pool_address = ? AND timeframe = ? AND bucket_start >= ? AND bucket_start < ?
+              AND close IS NOT NULL
+            ORDER BY bucket_start DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean schemaReady;
+
+    public CandleStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Записывает пакет свечей в одной транзакции
+     * Слияние при конфликте не идемпотентно, поэтому пакет либо записывается целиком, либо не записывается
+     */
+    public void save(List<FinishedCandle> candles) {
+        ensureSchema();
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(UPSERT_SQL, candles, candles.size(), (ps, finished) -> {
+                    Candle candle = finished.candle();
+                    boolean priced = finished.hasPrice();
+                    ps.setString(1, finished.poolAddress());
+                    ps.setInt(2, finished.timeframe().seconds());
+                    ps.setLong(3, candle.time());
+                    ps.setObject(4, priced ? candle.open() : null, Types.DOUBLE);
+                    ps.setObject(5, priced ? candle.high() : null, Types.DOUBLE);
+                    ps.setObject(6, priced ? candle.low() : null, Types.DOUBLE);
+                    ps.setObject(7, priced ? candle.close() : null, Types.DOUBLE);
+                    ps.setDouble(8, candle.volumeA());
+                    ps.setDouble(9, candle.volumeB());
+                    ps.setInt(10, candle.trades());
+                    ps.setObject(11, priced ? finished.openTime() : null, Types.BIGINT);
+                    ps.setObject(12, priced ? finished.closeTime() : null, Types.BIGINT);
+                }));
+    }
+
+    /**
+     * Возвращает свечи пула за интервал [from, to), от новых к старым
+     */
+    public List<Candle> find(String poolAddress, Timeframe timeframe, long from, long to, int limit) {
+        ensureSchema();
+        return jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Candle(
+                        rs.getLong("bucket_start"),
+                        rs.getDouble("open"),
+                        rs.getDouble("high"),
+                        rs.getDouble("low"),
+                        rs.getDouble("close"),
+                        rs.getDouble("volume_a"),
+                        rs.getDouble("volume_b"),
+                        rs.getInt("trades")),
+                poolAddress, timeframe.seconds(), from, to, limit);
+    }
+
+    private void ensureSchema() {
+        if (!schemaReady) {
+            SCHEMA_SQL.forEach(jdbcTemplate::execute);
+            schemaReady = true;
+            log.info("Candle table is ready");
+        }
+    }
+
+    /**
+     * Завершенная свеча пула
+     *
+     * @param openTime  время первого события с ценой (unix, секунды)
+     * @param closeTime время последнего события с ценой; меньше openTime у свечи только с объемом
+     */
+    public record FinishedCandle(String poolAddress, Timeframe timeframe, Candle candle,
+                                 long openTime, long closeTime) {
+
+        public boolean hasPrice() {
+            return openTime <= closeTime;
+        }
+    }
+}
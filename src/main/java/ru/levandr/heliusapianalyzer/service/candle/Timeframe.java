@@ -0,0 +1,52 @@
+package ru.levandr.heliusapianalyzer.service.candle;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Таймфреймы свечей от младшего к старшему
+ * Каждый следующий кратен предыдущему, поэтому свечи старшего таймфрейма собираются из младших
+ */
+public enum Timeframe {
+    S1(1, "1s"),
+    M1(60, "1m"),
+    M5(300, "5m"),
+    H1(3600, "1h");
+
+    private static final Timeframe[] VALUES = values();
+
+    private final int seconds;
+    private final String label;
+
+    Timeframe(int seconds, String label) {
+        this.seconds = seconds;
+        this.label = label;
+    }
+
+    public int seconds() {
+        return seconds;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /**
+     * Начало интервала, содержащего момент времени
+     */
+    public long bucketStart(long epochSecond) {
+        return Math.floorDiv(epochSecond, seconds) * seconds;
+    }
+
+    /**
+     * Следующий, более крупный таймфрейм
+     */
+    public Optional<Timeframe> next() {
+        int index = ordinal() + 1;
+        return index < VALUES.length ? Optional.of(VALUES[index]) : Optional.empty();
+    }
+
+    public static Optional<Timeframe> fromLabel(String label) {
+        return Arrays.stream(VALUES).filter(timeframe -> timeframe.label.equals(label)).findFirst();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.levandr.heliusapianalyzer.service.capture;
+
+/**
+ * Сжатие записей журнала; код хранится в заголовке каждой записи
+ */
+public enum CaptureCompression {
+    NONE(0),
+    LZ4(1);
+
+    private final int code;
+
+    CaptureCompression(int code) {
+        this.code = code;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    static CaptureCompression of(int code) {
+        for (CaptureCompression compression : values()) {
+            if (compression.code == code) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown capture compression " + code);
+    }
+}
@@ -0,0 +1,134 @@
+package ru.levandr.heliusapianalyzer.service.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Формат файлов журнала
+ * <p>
+ * Сегмент {@code <номер>.seg}: заголовок (magic, версия, 8 байт резерва), затем записи подряд.
+ * Запись: полный размер записи, CRC32C данных, время записи (unix, мс), код сжатия,
+ * исходный размер данных и сами данные. Нулевой размер означает конец записанной части сегмента.
+ * <p>
+ * Индекс {@code <номер>.idx}: пары (время, смещение записи), первая запись сегмента индексируется всегда.
+ * Все числа в порядке big-endian
+ */
+final class CaptureFormat {
+    static final int MAGIC = 0x48434150; // "HCAP"
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER = 16;
+
+    static final int RECORD_LENGTH = 0;
+    static final int RECORD_CRC = 4;
+    static final int RECORD_TIMESTAMP = 8;
+    static final int RECORD_CODEC = 16;
+    static final int RECORD_RAW_LENGTH = 17;
+    static final int RECORD_HEADER = 21;
+
+    static final int INDEX_ENTRY = 12;
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private CaptureFormat() {
+    }
+
+    /**
+     * Сегмент журнала
+     */
+    record Segment(long id, Path data, Path index) {
+    }
+
+    static Segment segment(Path directory, long id) {
+        String name = String.format("%016d", id);
+        return new Segment(id, directory.resolve(name + SEGMENT_SUFFIX), directory.resolve(name + INDEX_SUFFIX));
+    }
+
+    /**
+     * Сегменты каталога в порядке записи; пустой список, если каталога нет
+     */
+    static List<Segment> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - SEGMENT_SUFFIX.length()))
+                    .filter(id -> !id.isEmpty() && id.chars().allMatch(Character::isDigit))
+                    .map(id -> segment(directory, Long.parseLong(id)))
+                    .sorted(Comparator.comparingLong(Segment::id))
+                    .toList();
+        }
+    }
+
+    /**
+     * Разреженный индекс сегмента
+     *
+     * @param timestamps время индексированных записей по возрастанию
+     * @param offsets    смещения этих записей в сегменте
+     */
+    record Index(long[] timestamps, int[] offsets) {
+        static final Index EMPTY = new Index(new long[0], new int[0]);
+
+        /**
+         * В индексе нет ни одной записи
+         */
+        boolean isEmpty() {
+            return timestamps.length == 0;
+        }
+
+        /**
+         * Время первой записи сегмента или Long.MIN_VALUE, если индекс пуст
+         */
+        long firstTimestamp() {
+            return timestamps.length == 0 ? Long.MIN_VALUE : timestamps[0];
+        }
+
+        /**
+         * Смещение, с которого стоит читать записи не раньше from:
+         * последняя индексированная запись строго раньше from или начало сегмента
+         */
+        int seek(long from) {
+            int low = 0;
+            int high = timestamps.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] < from) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low == 0 ? SEGMENT_HEADER : offsets[low - 1];
+        }
+    }
+
+    /**
+     * Читает индекс сегмента; незаписанный хвост последней пары отбрасывается
+     */
+    static Index readIndex(Segment segment) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(segment.index());
+        } catch (NoSuchFileException e) {
+            return Index.EMPTY;
+        }
+
+        int count = bytes.length / INDEX_ENTRY;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] timestamps = new long[count];
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = buffer.getLong();
+            offsets[i] = buffer.getInt();
+        }
+        return new Index(timestamps, offsets);
+    }
+}
@@ -0,0 +1,209 @@
+package ru.levandr.heliusapianalyzer.service.capture;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.levandr.heliusapianalyzer.properties.CaptureProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал сырых ответов Helius только на дозапись
+ * <p>
+ * Записи пишутся в отображенный в память сегмент фиксированного размера; запись, которая не помещается
+ * в остаток, закрывает сегмент и начинает следующий. Файл сегмента создается разреженным, поэтому
+ * незаписанный хвост закрытого сегмента места на диске не занимает.
+ * Размер записи пишется последним, так что читатель видит только полностью записанные записи.
+ * Время записи не убывает внутри журнала, что позволяет искать по разреженному индексу.
+ * <p>
+ * Каталог открывается при первой записи; после перезапуска запись продолжается в новом сегменте.
+ * Закрытые сегменты старше retention удаляются при смене сегмента
+ */
+@Slf4j
+@Component
+public class CaptureLog {
+    private final CaptureProperties properties;
+    private final Clock clock;
+    private final Path directory;
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(CaptureFormat.INDEX_ENTRY);
+
+    // Буфер сжатия, растет под самую большую запись
+    private byte[] scratch = new byte[0];
+
+    private long nextSegmentId = -1;
+    private MappedByteBuffer segment;
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+    private int lastIndexedPosition;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    @Autowired
+    public CaptureLog(CaptureProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    CaptureLog(CaptureProperties properties, Clock clock) {
+        long segmentSize = properties.getSegmentSize().toBytes();
+        if (segmentSize <= CaptureFormat.SEGMENT_HEADER || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capture segment size must be between "
+                    + CaptureFormat.SEGMENT_HEADER + " bytes and 2 GB");
+        }
+        this.properties = properties;
+        this.clock = clock;
+        this.directory = Path.of(properties.getDirectory());
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Читатель этого журнала
+     */
+    public CaptureReader reader() {
+        return new CaptureReader(directory);
+    }
+
+    /**
+     * Дописывает запись со временем получения
+     *
+     * @return время записи (unix, мс)
+     */
+    public long append(byte[] data) throws IOException {
+        return append(clock.millis(), data, 0, data.length);
+    }
+
+    /**
+     * Дописывает запись
+     *
+     * @param timestamp время записи (unix, мс); меньшее, чем у предыдущей записи, заменяется им
+     * @return фактическое время записи
+     */
+    public synchronized long append(long timestamp, byte[] data, int offset, int length) throws IOException {
+        timestamp = Math.max(timestamp, lastTimestamp);
+
+        byte[] payload = data;
+        int payloadOffset = offset;
+        int payloadLength = length;
+        CaptureCompression compression = CaptureCompression.NONE;
+        if (properties.getCompression() == CaptureCompression.LZ4) {
+            int maxLength = compressor.maxCompressedLength(length);
+            if (scratch.length < maxLength) {
+                scratch = new byte[maxLength];
+            }
+            int compressed = compressor.compress(data, offset, length, scratch, 0, maxLength);
+            // Несжимаемые данные хранятся как есть
+            if (compressed < length) {
+                payload = scratch;
+                payloadOffset = 0;
+                payloadLength = compressed;
+                compression = CaptureCompression.LZ4;
+            }
+        }
+
+        int recordLength = CaptureFormat.RECORD_HEADER + payloadLength;
+        if (segment == null || segment.remaining() < recordLength) {
+            roll(recordLength, timestamp);
+        }
+
+        crc.reset();
+        crc.update(payload, payloadOffset, payloadLength);
+
+        int position = segment.position();
+        segment.putInt(position + CaptureFormat.RECORD_CRC, (int) crc.getValue());
+        segment.putLong(position + CaptureFormat.RECORD_TIMESTAMP, timestamp);
+        segment.put(position + CaptureFormat.RECORD_CODEC, (byte) compression.code());
+        segment.putInt(position + CaptureFormat.RECORD_RAW_LENGTH, length);
+        segment.put(position + CaptureFormat.RECORD_HEADER, payload, payloadOffset, payloadLength);
+        segment.putInt(position + CaptureFormat.RECORD_LENGTH, recordLength);
+        segment.position(position + recordLength);
+
+        if (position == CaptureFormat.SEGMENT_HEADER
+                || position - lastIndexedPosition >= properties.getIndexInterval().toBytes()) {
+            indexEntry.clear().putLong(timestamp).putInt(position).flip();
+            indexChannel.write(indexEntry);
+            lastIndexedPosition = position;
+        }
+        lastTimestamp = timestamp;
+        return timestamp;
+    }
+
+    /**
+     * Сбрасывает текущий сегмент на диск и закрывает его; следующая запись начнет новый сегмент
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.force();
+        segmentChannel.close();
+        indexChannel.close();
+        segment = null;
+    }
+
+    /**
+     * Закрывает текущий сегмент и открывает следующий, вмещающий хотя бы одну запись recordLength
+     */
+    private void roll(int recordLength, long timestamp) throws IOException {
+        close();
+        if (nextSegmentId < 0) {
+            Files.createDirectories(directory);
+            List<CaptureFormat.Segment> existing = CaptureFormat.segments(directory);
+            nextSegmentId = existing.isEmpty() ? 0 : existing.get(existing.size() - 1).id() + 1;
+        }
+
+        long size = Math.max(properties.getSegmentSize().toBytes(),
+                (long) CaptureFormat.SEGMENT_HEADER + recordLength);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Capture record of " + recordLength + " bytes does not fit a segment");
+        }
+
+        CaptureFormat.Segment next = CaptureFormat.segment(directory, nextSegmentId++);
+        segmentChannel = FileChannel.open(next.data(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(next.index(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.putInt(CaptureFormat.MAGIC).putInt(CaptureFormat.VERSION).putLong(0);
+        lastIndexedPosition = CaptureFormat.SEGMENT_HEADER;
+        log.debug("Opened capture segment {} ({} bytes)", next.data(), size);
+
+        purge(next, timestamp);
+    }
+
+    /**
+     * Удаляет закрытые сегменты, все записи которых старше retention
+     * Записи сегмента не позже первой записи следующего, поэтому достаточно времени начала следующего
+     */
+    private void purge(CaptureFormat.Segment current, long currentFirstTimestamp) throws IOException {
+        long cutoff = clock.millis() - properties.getRetention().toMillis();
+        List<CaptureFormat.Segment> segments = CaptureFormat.segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            CaptureFormat.Segment following = segments.get(i + 1);
+            long followingStart = following.id() == current.id()
+                    ? currentFirstTimestamp
+                    : CaptureFormat.readIndex(following).firstTimestamp();
+            if (followingStart == Long.MIN_VALUE || followingStart >= cutoff) {
+                return;
+            }
+            Files.deleteIfExists(segments.get(i).data());
+            Files.deleteIfExists(segments.get(i).index());
+            log.info("Deleted expired capture segment {}", segments.get(i).data());
+        }
+    }
+}
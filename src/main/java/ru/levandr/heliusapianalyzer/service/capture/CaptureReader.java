@@ -0,0 +1,138 @@
+package ru.levandr.heliusapianalyzer.service.capture;
+
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Последовательное чтение журнала и чтение с заданного времени
+ * <p>
+ * Сегменты читаются через отображение в память. Начальный сегмент и смещение в нем находятся
+ * по разреженному индексу, дальше записи просматриваются подряд до первой записи позже to.
+ * Читать можно и во время записи: незаписанный хвост текущего сегмента заполнен нулями,
+ * а поврежденная запись (например, после падения процесса) завершает чтение сегмента
+ */
+@Slf4j
+public final class CaptureReader {
+    private final Path directory;
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+    private final CRC32C crc = new CRC32C();
+
+    public CaptureReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Все записи журнала в порядке записи
+     */
+    public void forEach(Consumer<CaptureRecord> consumer) throws IOException {
+        scan(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Записи со временем from <= timestamp <= to (unix, мс) в порядке записи
+     */
+    public void scan(long from, long to, Consumer<CaptureRecord> consumer) throws IOException {
+        List<CaptureFormat.Segment> segments = CaptureFormat.segments(directory);
+        CaptureFormat.Index[] indexes = new CaptureFormat.Index[segments.size()];
+        int start = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            indexes[i] = CaptureFormat.readIndex(segments.get(i));
+            if (!indexes[i].isEmpty() && indexes[i].firstTimestamp() < from) {
+                start = i;
+            }
+        }
+
+        for (int i = start; i < segments.size(); i++) {
+            // Первая запись сегмента всегда индексируется, поэтому в сегменте с пустым индексом записей нет
+            if (indexes[i].isEmpty()) {
+                continue;
+            }
+            if (indexes[i].firstTimestamp() > to) {
+                return;
+            }
+            if (!scanSegment(segments.get(i), indexes[i].seek(from), from, to, consumer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false, если встретилась запись позже to и дальше читать не нужно
+     */
+    private boolean scanSegment(CaptureFormat.Segment segment, int position, long from, long to,
+                                Consumer<CaptureRecord> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment.data(), StandardOpenOption.READ)) {
+            if (channel.size() < CaptureFormat.SEGMENT_HEADER) {
+                return true;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            // Сегмент удален по сроку хранения во время чтения
+            return true;
+        }
+        if (buffer.getInt(0) != CaptureFormat.MAGIC || buffer.getInt(4) != CaptureFormat.VERSION) {
+            throw new IOException("Not a capture segment: " + segment.data());
+        }
+
+        int limit = buffer.limit();
+        while (position <= limit - CaptureFormat.RECORD_HEADER) {
+            int length = buffer.getInt(position + CaptureFormat.RECORD_LENGTH);
+            if (length == 0) {
+                return true;
+            }
+            if (length < CaptureFormat.RECORD_HEADER || length > limit - position) {
+                log.warn("Corrupted capture record at {}:{}", segment.data(), position);
+                return true;
+            }
+
+            long timestamp = buffer.getLong(position + CaptureFormat.RECORD_TIMESTAMP);
+            if (timestamp > to) {
+                return false;
+            }
+            if (timestamp >= from) {
+                byte[] data = decode(buffer, position, length);
+                if (data == null) {
+                    log.warn("Capture record checksum mismatch at {}:{}", segment.data(), position);
+                    return true;
+                }
+                consumer.accept(new CaptureRecord(timestamp, data));
+            }
+            position += length;
+        }
+        return true;
+    }
+
+    /**
+     * Данные записи без сжатия или null, если контрольная сумма не сходится
+     */
+    private byte[] decode(ByteBuffer buffer, int position, int length) {
+        int payloadOffset = position + CaptureFormat.RECORD_HEADER;
+        int payloadLength = length - CaptureFormat.RECORD_HEADER;
+        crc.reset();
+        crc.update(buffer.slice(payloadOffset, payloadLength));
+        if ((int) crc.getValue() != buffer.getInt(position + CaptureFormat.RECORD_CRC)) {
+            return null;
+        }
+
+        byte[] data = new byte[buffer.getInt(position + CaptureFormat.RECORD_RAW_LENGTH)];
+        switch (CaptureCompression.of(buffer.get(position + CaptureFormat.RECORD_CODEC))) {
+            case NONE -> buffer.get(payloadOffset, data);
+            case LZ4 -> decompressor.decompress(buffer, payloadOffset, payloadLength,
+                    ByteBuffer.wrap(data), 0, data.length);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.levandr.heliusapianalyzer.service.capture;
+
+/**
+ * Запись журнала
+ *
+ * @param timestamp время записи (unix, мс)
+ * @param data      исходные данные без сжатия
+ */
+public record CaptureRecord(long timestamp, byte[] data) {
+}
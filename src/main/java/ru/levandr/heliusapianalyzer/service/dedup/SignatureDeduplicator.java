@@ -0,0 +1,370 @@
+package ru.levandr.heliusapianalyzer.service.dedup;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.levandr.heliusapianalyzer.properties.DedupProperties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Фильтр уже обработанных транзакций по подписи
+ * Недавние подписи хранятся точно, в порядке появления, не дольше exactWindow.
+ * Все подписи также попадают в кольцо поколений фильтра Блума: каждое поколение покрывает
+ * generationSpan, самое старое очищается при переходе к новому, поэтому память ограничена
+ * и не зависит от потока транзакций.
+ * <p>
+ * Попадание в фильтр Блума без попадания в точное множество может быть ложным, поэтому
+ * считается повтором только для транзакций старше exactWindow: повтор более свежей транзакции
+ * был бы найден в точном множестве. Свежие транзакции из-за ложного срабатывания не теряются,
+ * старые теряются с вероятностью примерно generations * falsePositiveRate.
+ * <p>
+ * Подпись транзакции, обработка которой не удалась, забывается: она удаляется из точного множества,
+ * а биты в фильтре Блума перекрываются списком забытых подписей на время жизни поколений.
+ * <p>
+ * Состояние сохраняется в сжатый снимок и восстанавливается при старте
+ */
+@Slf4j
+@Component
+public class SignatureDeduplicator {
+    private static final int SNAPSHOT_MAGIC = 0x53494744; // "SIGD"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final DedupProperties properties;
+    private final Clock clock;
+    private final long exactWindowSeconds;
+    private final long generationSeconds;
+    private final int bitCount;
+    private final int hashCount;
+
+    // Биты поколений и номер интервала generationSpan, который покрывает каждое поколение
+    private final long[][] generations;
+    private final long[] generationEpochs;
+    private int current;
+
+    // Подпись -> время появления (unix, секунды), от старых к новым
+    private final LinkedHashMap<String, Long> recent = new LinkedHashMap<>();
+
+    // Забытые подписи -> время забывания; их попадание в фильтр Блума не считается повтором
+    private final LinkedHashMap<String, Long> forgotten = new LinkedHashMap<>();
+
+    private final AtomicLong duplicates = new AtomicLong();
+
+    @Autowired
+    public SignatureDeduplicator(DedupProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    SignatureDeduplicator(DedupProperties properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.exactWindowSeconds = properties.getExactWindow().toSeconds();
+        this.generationSeconds = Math.max(1, properties.getGenerationSpan().toSeconds());
+
+        // Оптимальные размер и число хеш-функций для ожидаемой заполненности поколения
+        double expected = Math.max(1, properties.getExpectedPerGeneration());
+        double bits = -expected * Math.log(properties.getFalsePositiveRate()) / (Math.log(2) * Math.log(2));
+        int words = (int) Math.ceil(bits / Long.SIZE);
+        this.bitCount = words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round(bitCount / expected * Math.log(2)));
+
+        this.generations = new long[properties.getGenerations()][words];
+        this.generationEpochs = new long[properties.getGenerations()];
+        Arrays.fill(generationEpochs, Long.MIN_VALUE);
+        this.generationEpochs[current] = epochSecond() / generationSeconds;
+    }
+
+    /**
+     * Проверяет подпись и запоминает ее, если она встречается впервые
+     *
+     * @param signature подпись транзакции
+     * @param timestamp время блока транзакции (unix, секунды), может быть null
+     * @return true, если транзакцию нужно обработать; false для повтора
+     */
+    public boolean markIfNew(String signature, Long timestamp) {
+        if (!properties.isEnabled() || signature == null) {
+            return true;
+        }
+
+        long h1 = mix(fnv1a(signature));
+        long h2 = mix(h1 + 0x9e3779b97f4a7c15L) | 1;
+
+        synchronized (this) {
+            long now = epochSecond();
+            rotate(now / generationSeconds);
+            expireRecent(now);
+            expireForgotten(now);
+
+            if (recent.containsKey(signature) || (timestamp != null && timestamp < now - exactWindowSeconds
+                    && !forgotten.containsKey(signature) && mightContain(h1, h2))) {
+                duplicates.incrementAndGet();
+                return false;
+            }
+
+            recent.put(signature, now);
+            // Забытая подпись принимается один раз, дальше повторы снова отсекаются
+            forgotten.remove(signature);
+            if (recent.size() > properties.getExactMaxSize()) {
+                Iterator<String> eldest = recent.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            put(generations[current], h1, h2);
+            return true;
+        }
+    }
+
+    /**
+     * Забывает подпись, обработка которой не удалась, чтобы повтор транзакции был обработан
+     */
+    public void forget(String signature) {
+        if (!properties.isEnabled() || signature == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (recent.remove(signature) == null) {
+                return;
+            }
+            forgotten.put(signature, epochSecond());
+            if (forgotten.size() > properties.getExactMaxSize()) {
+                Iterator<String> eldest = forgotten.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Количество отброшенных повторов
+     */
+    public long duplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * Количество подписей в точном множестве
+     */
+    public synchronized int recentSize() {
+        expireRecent(epochSecond());
+        return recent.size();
+    }
+
+    /**
+     * Восстанавливает состояние из снимка, если он есть и построен с теми же параметрами
+     */
+    @PostConstruct
+    public void restore() {
+        Path path = snapshotPath();
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION
+                    || in.readInt() != generations.length || in.readInt() != bitCount
+                    || in.readInt() != hashCount || in.readLong() != generationSeconds) {
+                log.warn("Ignoring signature snapshot {}: parameters changed", path);
+                return;
+            }
+
+            synchronized (this) {
+                current = in.readInt();
+                for (int g = 0; g < generations.length; g++) {
+                    generationEpochs[g] = in.readLong();
+                    long[] bits = generations[g];
+                    for (int w = 0; w < bits.length; w++) {
+                        bits[w] = in.readLong();
+                    }
+                }
+
+                recent.clear();
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    recent.put(in.readUTF(), in.readLong());
+                }
+            }
+            log.info("Restored signature filter from {}", path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not restore signature snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает снимок состояния во временный файл и атомарно заменяет им предыдущий
+     */
+    @Scheduled(fixedDelayString = "${app.dedup.snapshot-interval:1m}")
+    public void snapshot() {
+        Path path = snapshotPath();
+        if (path == null || !properties.isEnabled()) {
+            return;
+        }
+
+        // Копируем состояние под блокировкой, а пишем файл без нее
+        long[][] bitsCopy = new long[generations.length][];
+        long[] epochsCopy;
+        int currentCopy;
+        Map<String, Long> recentCopy;
+        synchronized (this) {
+            for (int g = 0; g < generations.length; g++) {
+                bitsCopy[g] = generations[g].clone();
+            }
+            epochsCopy = generationEpochs.clone();
+            currentCopy = current;
+            recentCopy = new LinkedHashMap<>(recent);
+        }
+
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(generations.length);
+                out.writeInt(bitCount);
+                out.writeInt(hashCount);
+                out.writeLong(generationSeconds);
+                out.writeInt(currentCopy);
+                for (int g = 0; g < bitsCopy.length; g++) {
+                    out.writeLong(epochsCopy[g]);
+                    for (long word : bitsCopy[g]) {
+                        out.writeLong(word);
+                    }
+                }
+                out.writeInt(recentCopy.size());
+                for (Map.Entry<String, Long> entry : recentCopy.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved signature snapshot with {} recent signatures", recentCopy.size());
+        } catch (IOException e) {
+            log.error("Error saving signature snapshot {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        snapshot();
+    }
+
+    /**
+     * Переходит к поколению текущего интервала, очищая поколения, вышедшие из окна
+     */
+    private void rotate(long epoch) {
+        long currentEpoch = generationEpochs[current];
+        if (epoch <= currentEpoch) {
+            return;
+        }
+
+        long steps = Math.min(epoch - currentEpoch, generations.length);
+        for (long step = steps - 1; step >= 0; step--) {
+            current = (current + 1) % generations.length;
+            Arrays.fill(generations[current], 0L);
+            generationEpochs[current] = epoch - step;
+        }
+    }
+
+    /**
+     * Удаляет из точного множества подписи старше exactWindow
+     */
+    private void expireRecent(long now) {
+        Iterator<Long> seenAt = recent.values().iterator();
+        while (seenAt.hasNext() && seenAt.next() < now - exactWindowSeconds) {
+            seenAt.remove();
+        }
+    }
+
+    /**
+     * Удаляет забытые подписи, биты которых уже очищены вместе с поколениями
+     */
+    private void expireForgotten(long now) {
+        long lifetime = generationSeconds * generations.length;
+        Iterator<Long> forgottenAt = forgotten.values().iterator();
+        while (forgottenAt.hasNext() && forgottenAt.next() < now - lifetime) {
+            forgottenAt.remove();
+        }
+    }
+
+    private boolean mightContain(long h1, long h2) {
+        long oldestEpoch = generationEpochs[current] - generations.length + 1;
+        for (int g = 0; g < generations.length; g++) {
+            if (generationEpochs[g] >= oldestEpoch && contains(generations[g], h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(long[] bits, long h1, long h2) {
+        for (int i = 0; i < hashCount; i++) {
+            int index = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(long[] bits, long h1, long h2) {
+        for (int i = 0; i < hashCount; i++) {
+            int index = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+
+    private Path snapshotPath() {
+        String path = properties.getSnapshotPath();
+        return path == null || path.isBlank() ? null : Path.of(path);
+    }
+
+    private long epochSecond() {
+        return clock.instant().getEpochSecond();
+    }
+
+    private static long fnv1a(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Финальное перемешивание MurmurHash3 для равномерного распределения битов
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
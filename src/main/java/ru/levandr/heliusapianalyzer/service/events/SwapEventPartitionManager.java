@@ -0,0 +1,157 @@
+package ru.levandr.heliusapianalyzer.service.events;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.levandr.heliusapianalyzer.properties.SwapEventProperties;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Схема и партиции журнала swap_events
+ * Таблица секционирована по времени блока на суточные партиции (UTC), которые создаются заранее
+ * и удаляются целиком по истечении срока хранения. Строки вне созданных партиций, например
+ * из дозагрузки старой истории, попадают в партицию по умолчанию.
+ * Уникальный ключ (signature, block_time) включает ключ секционирования и делает запись идемпотентной.
+ * <p>
+ * Секционированную таблицу Hibernate создать не может, поэтому схема создается здесь
+ */
+@Slf4j
+@Component
+public class SwapEventPartitionManager {
+    static final String TABLE = "swap_events";
+    static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final List<String> SCHEMA_SQL = List.of("""
+                    CREATE TABLE IF NOT EXISTS swap_events (
+                        signature    VARCHAR(88)      NOT NULL,
+                        pool_address VARCHAR(44)      NOT NULL,
+                        block_time   TIMESTAMPTZ      NOT NULL,
+                        mint_in      VARCHAR(44),
+                        mint_out     VARCHAR(44),
+                        amount_in    DOUBLE PRECISION,
+                        amount_out   DOUBLE PRECISION,
+                        fee          BIGINT,
+                        slippage     NUMERIC(24, 8)
+                    ) PARTITION BY RANGE (block_time)
+                    """,
+            "CREATE INDEX IF NOT EXISTS swap_events_pool_time_idx ON swap_events (pool_address, block_time)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS swap_events_signature_key ON swap_events (signature, block_time)",
+            "CREATE TABLE IF NOT EXISTS swap_events_default PARTITION OF swap_events DEFAULT");
+
+    private static final String PARTITIONS_SQL = """
+            SELECT child.relname
+            FROM pg_inherits
+                     JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+                     JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+            WHERE parent.relname = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SwapEventProperties properties;
+    private final Clock clock;
+
+    private volatile boolean schemaReady;
+
+    @Autowired
+    public SwapEventPartitionManager(JdbcTemplate jdbcTemplate, SwapEventProperties properties) {
+        this(jdbcTemplate, properties, Clock.systemUTC());
+    }
+
+    SwapEventPartitionManager(JdbcTemplate jdbcTemplate, SwapEventProperties properties, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /**
+     * Схема создана и партиции на текущие сутки существуют
+     */
+    public boolean isSchemaReady() {
+        return schemaReady;
+    }
+
+    /**
+     * Создает схему, партиции на ближайшие дни и удаляет устаревшие
+     * Первый запуск выполняется сразу при старте, до первой записи событий
+     */
+    @Scheduled(fixedDelayString = "${app.swap-events.partition-check-interval:1h}")
+    public void maintain() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        try {
+            if (!schemaReady) {
+                SCHEMA_SQL.forEach(jdbcTemplate::execute);
+            }
+
+            LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+            for (int day = 0; day <= properties.getPartitionsAhead(); day++) {
+                createPartition(today.plusDays(day));
+            }
+            schemaReady = true;
+
+            dropExpired(today);
+        } catch (Exception e) {
+            log.error("Error maintaining {} partitions: {}", TABLE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Создает суточную партицию, если ее еще нет
+     */
+    private void createPartition(LocalDate day) {
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%sT00:00:00Z') TO ('%sT00:00:00Z')",
+                partitionName(day), TABLE, day, day.plusDays(1)));
+    }
+
+    /**
+     * Удаляет партиции, целиком вышедшие за срок хранения, и старые строки партиции по умолчанию
+     */
+    private void dropExpired(LocalDate today) {
+        LocalDate cutoff = today.minusDays(properties.getRetention().toDays());
+
+        for (String partition : jdbcTemplate.queryForList(PARTITIONS_SQL, String.class, TABLE)) {
+            Optional<LocalDate> day = partitionDay(partition);
+            if (day.isPresent() && day.get().isBefore(cutoff)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                log.info("Dropped expired partition {}", partition);
+            }
+        }
+
+        int deleted = jdbcTemplate.update("DELETE FROM swap_events_default WHERE block_time < ?::timestamptz",
+                cutoff + "T00:00:00Z");
+        if (deleted > 0) {
+            log.info("Deleted {} expired rows from swap_events_default", deleted);
+        }
+    }
+
+    static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + PARTITION_SUFFIX.format(day);
+    }
+
+    /**
+     * Сутки суточной партиции по ее имени; пусто для партиции по умолчанию и чужих таблиц
+     */
+    static Optional<LocalDate> partitionDay(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ru.levandr.heliusapianalyzer.service.events;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.levandr.heliusapianalyzer.model.SwapEvent;
+import ru.levandr.heliusapianalyzer.properties.SwapEventProperties;
+import ru.levandr.heliusapianalyzer.service.metrics.DbFlushMetrics;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Буферизованная запись событий свопов в swap_events
+ * Полоса пула только кладет событие в ограниченную очередь и не ждет БД. Очередь периодически
+ * выгружается пакетами через COPY FROM STDIN во временную таблицу сессии, откуда строки переносятся
+ * в swap_events с пропуском уже записанных; если драйвер не PostgreSQL, пакет пишется
+ * многострочными INSERT. При переполнении очереди новые события отбрасываются и учитываются
+ */
+@Slf4j
+@Component
+public class SwapEventWriter {
+    private static final String COLUMNS =
+            "signature, pool_address, block_time, mint_in, mint_out, amount_in, amount_out, fee, slippage";
+    private static final String STAGING_TABLE = "swap_events_staging";
+    private static final String STAGING_SQL =
+            "CREATE TEMP TABLE IF NOT EXISTS " + STAGING_TABLE + " (LIKE swap_events)";
+    private static final String COPY_SQL = "COPY " + STAGING_TABLE + " (" + COLUMNS + ") FROM STDIN";
+    private static final String MERGE_SQL = "INSERT INTO swap_events (" + COLUMNS + ") SELECT " + COLUMNS
+            + " FROM " + STAGING_TABLE + " ON CONFLICT DO NOTHING";
+    private static final String INSERT_SQL = "INSERT INTO swap_events (" + COLUMNS + ")"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String NULL = "\\N";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SwapEventPartitionManager partitionManager;
+    private final SwapEventProperties properties;
+    private final BlockingQueue<SwapEvent> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final Timer flushTimer;
+    private final Timer failedFlushTimer;
+
+    // Пакет, не записанный из-за ошибки; повторяется первым при следующей выгрузке
+    private List<SwapEvent> pending = List.of();
+    private long reportedDropped;
+
+    public SwapEventWriter(JdbcTemplate jdbcTemplate,
+                           SwapEventPartitionManager partitionManager,
+                           SwapEventProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitionManager = partitionManager;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.flushTimer = DbFlushMetrics.timer(meterRegistry, "swap_events", true);
+        this.failedFlushTimer = DbFlushMetrics.timer(meterRegistry, "swap_events", false);
+        Gauge.builder("swap.events.backlog", queue, BlockingQueue::size)
+                .description("События свопов, ожидающие записи")
+                .register(meterRegistry);
+        FunctionCounter.builder("swap.events.dropped", dropped, AtomicLong::get)
+                .description("События свопов, отброшенные при переполнении очереди")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит событие в очередь на запись, не блокируя вызывающий поток
+     *
+     * @return false, если запись выключена или очередь переполнена
+     */
+    public boolean append(SwapEvent event) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Количество событий в очереди
+     */
+    public int backlog() {
+        return queue.size();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public long writtenCount() {
+        return written.get();
+    }
+
+    /**
+     * Выгружает очередь в БД пакетами не больше batchSize
+     * Ошибка записи оставляет пакет для повтора. Повтор может застать уже записанные строки
+     * (например, при обрыве после фиксации), их отсекает уникальный ключ (signature, block_time)
+     */
+    @Scheduled(fixedDelayString = "${app.swap-events.flush-interval:200ms}")
+    public synchronized void flush() {
+        reportDropped();
+        if (!partitionManager.isSchemaReady()) {
+            return;
+        }
+
+        while (true) {
+            List<SwapEvent> batch = pending;
+            if (batch.isEmpty()) {
+                batch = new ArrayList<>(Math.min(queue.size(), properties.getBatchSize()));
+                queue.drainTo(batch, properties.getBatchSize());
+                if (batch.isEmpty()) {
+                    return;
+                }
+            }
+
+            long started = System.nanoTime();
+            try {
+                write(batch);
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                written.addAndGet(batch.size());
+                pending = List.of();
+                log.debug("Wrote {} swap events", batch.size());
+            } catch (Exception e) {
+                failedFlushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                pending = batch;
+                log.error("Error writing {} swap events: {}", batch.size(), e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void write(List<SwapEvent> batch) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                copy(connection, batch);
+            } else {
+                insert(batch);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Записывает пакет одним COPY в текстовом формате во временную таблицу и переносит
+     * его в swap_events одним INSERT, пропуская события, записанные раньше
+     */
+    private void copy(Connection connection, List<SwapEvent> batch) throws SQLException {
+        StringBuilder rows = new StringBuilder(batch.size() * 256);
+        for (SwapEvent event : batch) {
+            appendRow(rows, event);
+        }
+        try (Statement statement = connection.createStatement()) {
+            // Временная таблица живет в сессии соединения; остаток неудачной попытки очищается
+            statement.execute(STAGING_SQL);
+            statement.execute("TRUNCATE " + STAGING_TABLE);
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(rows.toString()));
+            int inserted = statement.executeUpdate(MERGE_SQL);
+            if (inserted < batch.size()) {
+                log.debug("Skipped {} already written swap events", batch.size() - inserted);
+            }
+        } catch (IOException e) {
+            throw new SQLException("COPY into " + STAGING_TABLE + " failed", e);
+        }
+    }
+
+    private void insert(List<SwapEvent> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, properties.getBatchSize(), (ps, event) -> {
+            ps.setString(1, event.signature());
+            ps.setString(2, event.poolAddress());
+            ps.setTimestamp(3, Timestamp.from(Instant.ofEpochSecond(event.blockTime())));
+            ps.setString(4, event.mintIn());
+            ps.setString(5, event.mintOut());
+            ps.setObject(6, event.amountIn());
+            ps.setObject(7, event.amountOut());
+            ps.setObject(8, event.fee());
+            ps.setBigDecimal(9, event.slippage());
+        });
+    }
+
+    /**
+     * Добавляет строку события в формате COPY text: поля через табуляцию, NULL как \N
+     */
+    static void appendRow(StringBuilder rows, SwapEvent event) {
+        appendText(rows, event.signature()).append('\t');
+        appendText(rows, event.poolAddress()).append('\t');
+        rows.append(Instant.ofEpochSecond(event.blockTime())).append('\t');
+        appendText(rows, event.mintIn()).append('\t');
+        appendText(rows, event.mintOut()).append('\t');
+        appendValue(rows, event.amountIn()).append('\t');
+        appendValue(rows, event.amountOut()).append('\t');
+        appendValue(rows, event.fee()).append('\t');
+        appendValue(rows, event.slippage() != null ? event.slippage().toPlainString() : null).append('\n');
+    }
+
+    private static StringBuilder appendValue(StringBuilder rows, Object value) {
+        return rows.append(value != null ? value.toString() : NULL);
+    }
+
+    /**
+     * Экранирует служебные символы формата COPY text
+     */
+    private static StringBuilder appendText(StringBuilder rows, String value) {
+        if (value == null) {
+            return rows.append(NULL);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> rows.append("\\\\");
+                case '\t' -> rows.append("\\t");
+                case '\n' -> rows.append("\\n");
+                case '\r' -> rows.append("\\r");
+                default -> rows.append(c);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Сообщает о событиях, отброшенных с прошлой выгрузки
+     */
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            log.warn("Swap event queue is full, dropped {} events", total - reportedDropped);
+            reportedDropped = total;
+        }
+    }
+}
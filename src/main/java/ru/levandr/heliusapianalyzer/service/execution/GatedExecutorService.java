@@ -0,0 +1,76 @@
+package ru.levandr.heliusapianalyzer.service.execution;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Исполнитель, запускающий каждую задачу на своем виртуальном потоке, но не больше permits одновременно
+ * <p>
+ * Задачи сверх лимита ждут разрешения на своих виртуальных потоках, а не в очереди,
+ * поэтому ожидание не занимает платформенных потоков. Разрешения выдаются в порядке поступления
+ */
+public final class GatedExecutorService extends AbstractExecutorService {
+    private final ExecutorService threads;
+    private final Semaphore permits;
+
+    public GatedExecutorService(String name, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive: " + permits);
+        }
+        this.threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        this.permits = new Semaphore(permits, true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        threads.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Задачи, ожидающие разрешения
+     */
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void shutdown() {
+        threads.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return threads.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return threads.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return threads.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return threads.awaitTermination(timeout, unit);
+    }
+}
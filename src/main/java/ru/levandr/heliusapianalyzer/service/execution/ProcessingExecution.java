@@ -0,0 +1,79 @@
+package ru.levandr.heliusapianalyzer.service.execution;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Режим выполнения обработки свопов ({@code app.helius.processing.execution})
+ * <p>
+ * REACTIVE: своп готовится на потоке, который его выдал, запросы к RPC ограничены только
+ * параллелизмом конвейера. VIRTUAL_THREADS: каждый своп готовится на своем виртуальном потоке,
+ * а одновременные запросы снимков пулов к RPC ограничены семафором rpcConcurrency; ожидание
+ * разрешения блокирует только виртуальный поток. Ограничение БД задается планировщиком
+ * persistenceScheduler (см. {@code SchedulerConfig})
+ */
+@Slf4j
+@Component
+public class ProcessingExecution {
+    private final HeliusProperties.Processing.Execution mode;
+    private final Scheduler swapScheduler;
+    private final Semaphore rpcPermits;
+
+    public ProcessingExecution(HeliusProperties heliusProperties) {
+        HeliusProperties.Processing processing = heliusProperties.getProcessing();
+        this.mode = processing.getExecution();
+        if (mode == HeliusProperties.Processing.Execution.VIRTUAL_THREADS) {
+            this.swapScheduler = Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("swap-", 0).factory()), "swap");
+            this.rpcPermits = new Semaphore(processing.getRpcConcurrency(), true);
+        } else {
+            this.swapScheduler = null;
+            this.rpcPermits = null;
+        }
+        log.info("Swap processing execution mode: {}", mode);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (swapScheduler != null) {
+            swapScheduler.dispose();
+        }
+    }
+
+    public HeliusProperties.Processing.Execution mode() {
+        return mode;
+    }
+
+    /**
+     * Подписывается на обработку свопа в потоке режима
+     */
+    public <T> Mono<T> processSwap(Supplier<Mono<T>> processing) {
+        return swapScheduler == null
+                ? Mono.defer(processing)
+                : Mono.defer(processing).subscribeOn(swapScheduler);
+    }
+
+    /**
+     * Ограничивает число одновременных запросов к RPC
+     * Разрешение занимается при подписке и возвращается при завершении, ошибке или отмене запроса
+     */
+    public <T> Mono<T> limitRpc(Mono<T> request) {
+        if (rpcPermits == null) {
+            return request;
+        }
+        return Mono.using(() -> {
+                    rpcPermits.acquire();
+                    return rpcPermits;
+                }, permits -> request, Semaphore::release)
+                .subscribeOn(swapScheduler);
+    }
+}
@@ -0,0 +1,324 @@
+package ru.levandr.heliusapianalyzer.service.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.model.RouteQuote;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.amm.AmmMath;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Граф пулов в памяти: токены - вершины, пулы - ребра
+ * Токены получают целочисленные идентификаторы, смежность хранится массивами ребер по идентификатору,
+ * дополнительно ребра индексируются по паре токенов. Структура меняется под блокировкой
+ * с заменой массивов целиком, резервы ребра - одной volatile ссылкой, поэтому поиск маршрута
+ * идет без блокировок и без обращений к БД.
+ * <p>
+ * Маршрут ищется послойной релаксацией: слой k хранит лучший выход в каждом токене за k обменов.
+ * Токен раскрывается повторно, только если новый путь дает в нем больше, чем любой более короткий.
+ * На последнем слое раскрываются только ребра к выходному токену через индекс пар
+ */
+@Slf4j
+@Component
+public class PoolGraph {
+    public static final int MAX_HOPS = 3;
+    private static final Edge[] NO_EDGES = new Edge[0];
+    private static final BigDecimal MAX_LONG_VALUE = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final RaydiumPoolRepository poolRepository;
+    private final Scheduler persistenceScheduler;
+
+    private final Map<String, Integer> mintIds = new ConcurrentHashMap<>();
+    private final Map<String, Edge> edges = new ConcurrentHashMap<>();
+    private final Map<Long, Edge[]> edgesByPair = new ConcurrentHashMap<>();
+    private volatile AtomicReferenceArray<Edge[]> adjacency = new AtomicReferenceArray<>(1024);
+    private volatile String[] mints = new String[1024];
+    private int mintCount;
+
+    public PoolGraph(RaydiumPoolRepository poolRepository, Scheduler persistenceScheduler) {
+        this.poolRepository = poolRepository;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    /**
+     * Строит граф по активным пулам из БД; дальше он обновляется вместе с пулами
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Mono.fromCallable(poolRepository::findByActiveTrue)
+                .subscribeOn(persistenceScheduler)
+                .subscribe(pools -> {
+                    for (RaydiumPool pool : pools) {
+                        long reserveA = toU64(pool.getLiquidityA());
+                        long reserveB = toU64(pool.getLiquidityB());
+                        if (reserveA > 0 && reserveB > 0) {
+                            update(pool.getAddress(), pool.getTokenAMint(), pool.getTokenBMint(), reserveA, reserveB);
+                        }
+                    }
+                    log.info("Pool graph loaded: {} pools, {} tokens", edges.size(), mintIds.size());
+                }, e -> log.error("Error loading pool graph: {}", e.getMessage(), e));
+    }
+
+    /**
+     * Добавляет пул или обновляет его резервы
+     *
+     * @param reserveA резерв токена mintA в минимальных единицах
+     * @param reserveB резерв токена mintB в минимальных единицах
+     */
+    public void update(String poolAddress, String mintA, String mintB, long reserveA, long reserveB) {
+        if (poolAddress == null || mintA == null || mintB == null || mintA.equals(mintB)) {
+            return;
+        }
+
+        Edge existing = edges.get(poolAddress);
+        if (existing != null && existing.mintA == idOf(mintA) && existing.mintB == idOf(mintB)) {
+            // Частый случай: изменились только резервы
+            existing.reserves = new Reserves(reserveA, reserveB);
+            return;
+        }
+
+        synchronized (this) {
+            Edge current = edges.get(poolAddress);
+            if (current != null) {
+                unlink(current);
+            }
+            Edge edge = new Edge(poolAddress, intern(mintA), intern(mintB), new Reserves(reserveA, reserveB));
+            edges.put(poolAddress, edge);
+            link(edge);
+        }
+    }
+
+    /**
+     * Удаляет пул из графа
+     */
+    public void remove(String poolAddress) {
+        synchronized (this) {
+            Edge edge = edges.remove(poolAddress);
+            if (edge != null) {
+                unlink(edge);
+            }
+        }
+    }
+
+    /**
+     * Пулы, в которых торгуется токен
+     */
+    public List<String> poolsOf(String mint) {
+        Edge[] mintEdges = edgesOf(idOf(mint));
+        List<String> pools = new ArrayList<>(mintEdges.length);
+        for (Edge edge : mintEdges) {
+            pools.add(edge.poolAddress);
+        }
+        return pools;
+    }
+
+    public int poolCount() {
+        return edges.size();
+    }
+
+    /**
+     * Ищет маршрут с максимальным выходом не длиннее maxHops обменов
+     *
+     * @param amountIn входная сумма в минимальных единицах
+     * @param maxHops  максимальное число обменов, от 1 до {@link #MAX_HOPS}
+     * @return лучший маршрут или пусто, если токены не связаны
+     */
+    public Optional<RouteQuote> quote(String inputMint, String outputMint, long amountIn, int maxHops) {
+        if (amountIn <= 0 || maxHops < 1 || maxHops > MAX_HOPS) {
+            throw new IllegalArgumentException("Amount must be positive and hops between 1 and " + MAX_HOPS);
+        }
+
+        int source = idOf(inputMint);
+        int target = idOf(outputMint);
+        if (source < 0 || target < 0 || source == target) {
+            return Optional.empty();
+        }
+
+        Label start = new Label(source, amountIn, null, null);
+        Map<Integer, Label> best = new HashMap<>();
+        best.put(source, start);
+        Map<Integer, Label> frontier = Map.of(source, start);
+        Label bestOut = null;
+
+        for (int hop = 1; hop <= maxHops && !frontier.isEmpty(); hop++) {
+            boolean lastHop = hop == maxHops;
+            Map<Integer, Label> next = new LinkedHashMap<>();
+
+            for (Label label : frontier.values()) {
+                Edge[] candidates = lastHop ? edgesByPair.getOrDefault(pairKey(label.mint, target), NO_EDGES)
+                        : edgesOf(label.mint);
+                for (Edge edge : candidates) {
+                    Label reached = swap(label, edge);
+                    if (reached == null) {
+                        continue;
+                    }
+                    if (reached.mint == target) {
+                        if (bestOut == null || reached.amount > bestOut.amount) {
+                            bestOut = reached;
+                        }
+                        continue;
+                    }
+                    if (!lastHop) {
+                        Label known = best.get(reached.mint);
+                        if (known == null || reached.amount > known.amount) {
+                            best.put(reached.mint, reached);
+                            next.put(reached.mint, reached);
+                        }
+                    }
+                }
+            }
+            frontier = next;
+        }
+
+        return Optional.ofNullable(bestOut).map(found -> toQuote(found, amountIn));
+    }
+
+    /**
+     * Обмен суммы метки в пуле ребра по формуле постоянного произведения
+     */
+    private Label swap(Label label, Edge edge) {
+        Reserves reserves = edge.reserves;
+        boolean fromA = edge.mintA == label.mint;
+        long reserveIn = fromA ? reserves.a() : reserves.b();
+        long reserveOut = fromA ? reserves.b() : reserves.a();
+        if (reserveIn <= 0 || reserveOut <= 0 || label.amount > Long.MAX_VALUE - reserveIn) {
+            return null;
+        }
+
+        long amountOut = AmmMath.getAmountOut(reserveIn, reserveOut, label.amount);
+        return amountOut > 0 ? new Label(fromA ? edge.mintB : edge.mintA, amountOut, label, edge) : null;
+    }
+
+    private RouteQuote toQuote(Label last, long amountIn) {
+        String[] names = mints;
+        List<RouteQuote.Hop> hops = new ArrayList<>(MAX_HOPS);
+        for (Label label = last; label.previous != null; label = label.previous) {
+            hops.add(new RouteQuote.Hop(label.edge.poolAddress, names[label.previous.mint], names[label.mint],
+                    label.previous.amount, label.amount));
+        }
+        Collections.reverse(hops);
+        return new RouteQuote(hops.get(0).inputMint(), names[last.mint], amountIn, last.amount, hops);
+    }
+
+    private int idOf(String mint) {
+        Integer id = mint == null ? null : mintIds.get(mint);
+        return id == null ? -1 : id;
+    }
+
+    private Edge[] edgesOf(int mint) {
+        AtomicReferenceArray<Edge[]> current = adjacency;
+        if (mint < 0 || mint >= current.length()) {
+            return NO_EDGES;
+        }
+        Edge[] mintEdges = current.get(mint);
+        return mintEdges == null ? NO_EDGES : mintEdges;
+    }
+
+    /**
+     * Выдает токену идентификатор; вызывается под блокировкой
+     */
+    private int intern(String mint) {
+        Integer id = mintIds.get(mint);
+        if (id != null) {
+            return id;
+        }
+
+        int assigned = mintCount++;
+        if (assigned == mints.length) {
+            mints = Arrays.copyOf(mints, assigned * 2);
+            AtomicReferenceArray<Edge[]> grown = new AtomicReferenceArray<>(assigned * 2);
+            for (int i = 0; i < assigned; i++) {
+                grown.set(i, adjacency.get(i));
+            }
+            adjacency = grown;
+        }
+        mints[assigned] = mint;
+        // Идентификатор публикуется последним, когда имя и смежность уже доступны
+        mintIds.put(mint, assigned);
+        return assigned;
+    }
+
+    private void link(Edge edge) {
+        adjacency.set(edge.mintA, append(edgesOf(edge.mintA), edge));
+        adjacency.set(edge.mintB, append(edgesOf(edge.mintB), edge));
+        edgesByPair.merge(pairKey(edge.mintA, edge.mintB), new Edge[]{edge}, PoolGraph::concat);
+    }
+
+    private void unlink(Edge edge) {
+        adjacency.set(edge.mintA, without(edgesOf(edge.mintA), edge));
+        adjacency.set(edge.mintB, without(edgesOf(edge.mintB), edge));
+        edgesByPair.computeIfPresent(pairKey(edge.mintA, edge.mintB), (key, pairEdges) -> {
+            Edge[] remaining = without(pairEdges, edge);
+            return remaining.length == 0 ? null : remaining;
+        });
+    }
+
+    private static Edge[] append(Edge[] array, Edge edge) {
+        Edge[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = edge;
+        return result;
+    }
+
+    private static Edge[] concat(Edge[] first, Edge[] second) {
+        Edge[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static Edge[] without(Edge[] array, Edge edge) {
+        return Arrays.stream(array).filter(candidate -> candidate != edge).toArray(Edge[]::new);
+    }
+
+    private static long pairKey(int first, int second) {
+        return ((long) Math.min(first, second) << 32) | Math.max(first, second);
+    }
+
+    private static long toU64(BigDecimal value) {
+        if (value == null || value.signum() <= 0 || value.compareTo(MAX_LONG_VALUE) > 0) {
+            return -1;
+        }
+        return value.longValue();
+    }
+
+    private record Reserves(long a, long b) {
+    }
+
+    /**
+     * Пул как ребро между двумя токенами
+     */
+    private static final class Edge {
+        private final String poolAddress;
+        private final int mintA;
+        private final int mintB;
+        private volatile Reserves reserves;
+
+        private Edge(String poolAddress, int mintA, int mintB, Reserves reserves) {
+            this.poolAddress = poolAddress;
+            this.mintA = mintA;
+            this.mintB = mintB;
+            this.reserves = reserves;
+        }
+    }
+
+    /**
+     * Лучшая известная сумма в токене и путь к ней
+     */
+    private record Label(int mint, long amount, Label previous, Edge edge) {
+    }
+}
@@ -0,0 +1,227 @@
+package ru.levandr.heliusapianalyzer.service.ingest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.model.entity.IngestionCursor;
+import ru.levandr.heliusapianalyzer.model.entity.IngestionGap;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.repository.IngestionCursorRepository;
+import ru.levandr.heliusapianalyzer.repository.IngestionGapRepository;
+import ru.levandr.heliusapianalyzer.service.HeliusService;
+import ru.levandr.heliusapianalyzer.service.quota.RequestPriority;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Непрерывная загрузка истории транзакций адреса по курсору
+ * <p>
+ * Каждый опрос листает страницы от самой новой транзакции назад до сохраненного курсора (until),
+ * обрабатывая страницы по одной: следующая страница запрашивается только после обработки свопов
+ * предыдущей. Если за опрос до курсора дойти не удалось (простой, ошибка, лимит страниц),
+ * курсор все равно переносится на самую новую транзакцию, а необработанный участок сохраняется
+ * как пропуск и заполняется в следующих опросах после новых транзакций
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionIngester {
+    private final HeliusService heliusService;
+    private final HeliusProperties heliusProperties;
+    private final IngestionCursorRepository cursorRepository;
+    private final IngestionGapRepository gapRepository;
+    private final Scheduler persistenceScheduler;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Запускает очередной опрос, если предыдущий уже завершился
+     */
+    @Scheduled(fixedDelayString = "${app.helius.ingest.poll-interval:2s}")
+    public void poll() {
+        HeliusProperties.Ingest ingest = heliusProperties.getIngest();
+        if (!ingest.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        ingest(ingest.getAddress())
+                .doFinally(signal -> running.set(false))
+                .subscribe(null, error -> log.error("Error ingesting transactions: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Один опрос: сначала новые транзакции, затем заполнение пропусков
+     */
+    public Mono<Void> ingest(String address) {
+        return loadCursor(address)
+                .flatMap(this::ingestLatest)
+                .then(Mono.defer(() -> backfill(address)));
+    }
+
+    /**
+     * Обрабатывает транзакции новее курсора и переносит курсор
+     */
+    private Mono<Void> ingestLatest(IngestionCursor cursor) {
+        String until = cursor.getLastSignature();
+        // При первом запуске всю историю не загружаем - начинаем с последней страницы
+        int maxPages = until == null ? 1 : heliusProperties.getIngest().getMaxPagesPerPoll();
+
+        return walk(cursor.getAddress(), null, until, maxPages, RequestPriority.NORMAL, state -> Mono.empty())
+                .flatMap(state -> {
+                    if (state.newestSignature == null) {
+                        return Mono.empty();
+                    }
+
+                    IngestionGap gap = null;
+                    if (until != null && !state.reachedEnd) {
+                        gap = new IngestionGap();
+                        gap.setAddress(cursor.getAddress());
+                        gap.setBeforeSignature(state.oldestSignature);
+                        gap.setUntilSignature(until);
+                        gap.setCreatedAt(LocalDateTime.now());
+                        log.warn("Ingestion of {} stopped after {} pages, gap before {} saved for backfill",
+                                cursor.getAddress(), state.pages, state.oldestSignature);
+                    }
+
+                    cursor.setLastSignature(state.newestSignature);
+                    cursor.setLastTimestamp(state.newestTimestamp);
+                    cursor.setUpdatedAt(LocalDateTime.now());
+                    return saveCursor(cursor, gap);
+                });
+    }
+
+    /**
+     * Заполняет самый свежий пропуск, сохраняя прогресс после каждой страницы
+     */
+    private Mono<Void> backfill(String address) {
+        return Mono.fromCallable(() -> gapRepository.findFirstByAddressOrderByCreatedAtDesc(address))
+                .subscribeOn(persistenceScheduler)
+                .flatMap(Mono::justOrEmpty)
+                .flatMap(gap -> walk(address, gap.getBeforeSignature(), gap.getUntilSignature(),
+                        heliusProperties.getIngest().getBackfillPagesPerPoll(), RequestPriority.BACKFILL,
+                        state -> {
+                            gap.setBeforeSignature(state.oldestSignature);
+                            return persist(() -> gapRepository.save(gap));
+                        })
+                        .flatMap(state -> {
+                            if (!state.reachedEnd) {
+                                return Mono.empty();
+                            }
+                            log.info("Backfill of gap until {} for {} completed", gap.getUntilSignature(), address);
+                            return persist(() -> gapRepository.delete(gap));
+                        }));
+    }
+
+    /**
+     * Листает страницы от before к until, обрабатывая их по одной
+     * Ошибка загрузки прерывает проход, но не теряет прогресс уже обработанных страниц
+     *
+     * @param checkpoint действие после обработки каждой страницы
+     * @return состояние прохода
+     */
+    private Mono<WalkState> walk(String address, String before, String until, int maxPages,
+                                 RequestPriority priority, Function<WalkState, Mono<Void>> checkpoint) {
+        WalkState state = new WalkState();
+        return walkFrom(address, before, until, maxPages, priority, checkpoint, state)
+                .onErrorResume(error -> {
+                    log.error("Ingestion of {} interrupted after {} pages: {}",
+                            address, state.pages, error.getMessage());
+                    return Mono.just(state);
+                });
+    }
+
+    private Mono<WalkState> walkFrom(String address, String before, String until, int maxPages,
+                                     RequestPriority priority, Function<WalkState, Mono<Void>> checkpoint,
+                                     WalkState state) {
+        int pageSize = heliusProperties.getIngest().getPageSize();
+        PageResult page = new PageResult();
+
+        // Транзакции страницы обрабатываются по мере разбора ответа
+        return heliusService.processSwaps(heliusService.fetchTransactions(address, before, until, pageSize, priority)
+                        .doOnNext(page::observe))
+                .then(Mono.defer(() -> {
+                    state.completed(page, pageSize);
+                    if (page.count == 0) {
+                        return Mono.just(state);
+                    }
+                    return checkpoint.apply(state)
+                            .then(Mono.defer(() -> state.reachedEnd || state.pages >= maxPages
+                                    ? Mono.just(state)
+                                    : walkFrom(address, page.oldestSignature, until, maxPages, priority,
+                                    checkpoint, state)));
+                }));
+    }
+
+    private Mono<IngestionCursor> loadCursor(String address) {
+        return Mono.fromCallable(() -> cursorRepository.findById(address).orElseGet(() -> {
+                    IngestionCursor cursor = new IngestionCursor();
+                    cursor.setAddress(address);
+                    return cursor;
+                }))
+                .subscribeOn(persistenceScheduler);
+    }
+
+    private Mono<Void> saveCursor(IngestionCursor cursor, IngestionGap gap) {
+        return persist(() -> {
+            if (gap != null) {
+                gapRepository.save(gap);
+            }
+            cursorRepository.save(cursor);
+        });
+    }
+
+    private Mono<Void> persist(Runnable action) {
+        return Mono.fromRunnable(action).subscribeOn(persistenceScheduler).then();
+    }
+
+    /**
+     * Границы одной страницы: первая и последняя транзакции
+     */
+    private static final class PageResult {
+        private int count;
+        private String newestSignature;
+        private Long newestTimestamp;
+        private String oldestSignature;
+
+        private void observe(RaydiumSwapTransaction tx) {
+            if (count++ == 0) {
+                newestSignature = tx.getSignature();
+                newestTimestamp = tx.getTimestamp();
+            }
+            oldestSignature = tx.getSignature();
+        }
+    }
+
+    /**
+     * Прогресс прохода по страницам
+     */
+    private static final class WalkState {
+        private int pages;
+        private boolean reachedEnd;
+        private String newestSignature;
+        private Long newestTimestamp;
+        private String oldestSignature;
+
+        private void completed(PageResult page, int pageSize) {
+            if (page.count < pageSize) {
+                reachedEnd = true;
+            }
+            if (page.count == 0) {
+                return;
+            }
+
+            pages++;
+            if (newestSignature == null) {
+                newestSignature = page.newestSignature;
+                newestTimestamp = page.newestTimestamp;
+            }
+            oldestSignature = page.oldestSignature;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.levandr.heliusapianalyzer.service.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Общая метрика пакетной записи в БД: db.flush с таблицей и исходом записи
+ */
+public final class DbFlushMetrics {
+    public static final String NAME = "db.flush";
+
+    private DbFlushMetrics() {
+    }
+
+    /**
+     * Таймер записи пакета в таблицу
+     *
+     * @param table   таблица назначения
+     * @param success true для успешных записей, false для неудачных
+     */
+    public static Timer timer(MeterRegistry meterRegistry, String table, boolean success) {
+        return Timer.builder(NAME)
+                .description("Пакетная запись в БД")
+                .tag("table", table)
+                .tag("outcome", success ? "success" : "error")
+                .register(meterRegistry);
+    }
+}
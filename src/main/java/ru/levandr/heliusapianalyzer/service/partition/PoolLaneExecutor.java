@@ -0,0 +1,141 @@
+package ru.levandr.heliusapianalyzer.service.partition;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Разбивает работу с пулами на упорядоченные полосы по адресу пула
+ * <p>
+ * Все задачи одного пула попадают в одну полосу. Задача состоит из подготовки (загрузка пула,
+ * сетевые запросы), которая в пределах полосы идет параллельно, и применения изменений,
+ * которое выполняется строго последовательно в порядке поступления на отдельном потоке полосы.
+ * Поэтому состояние пула меняет один поток и без блокировок, а разные пулы обрабатываются параллельно
+ */
+@Slf4j
+@Component
+public class PoolLaneExecutor {
+    private static final Sinks.EmitFailureHandler EMIT_RETRY =
+            Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
+
+    private final Sinks.Many<LaneTask>[] lanes;
+    private final Scheduler laneScheduler;
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    @SuppressWarnings("unchecked")
+    public PoolLaneExecutor(HeliusProperties heliusProperties) {
+        HeliusProperties.Processing processing = heliusProperties.getProcessing();
+        int laneCount = processing.getLanes() > 0
+                ? processing.getLanes()
+                : Runtime.getRuntime().availableProcessors();
+
+        this.laneScheduler = Schedulers.newParallel("pool-lane", laneCount);
+        this.lanes = new Sinks.Many[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            Sinks.Many<LaneTask> lane = Sinks.many().unicast().onBackpressureBuffer();
+            lanes[i] = lane;
+            subscriptions.add(lane.asFlux()
+                    // Подготовка идет параллельно, но результаты выдаются в порядке поступления задач
+                    .flatMapSequential(LaneTask::prepare, processing.getLanePrefetch())
+                    .publishOn(laneScheduler)
+                    .subscribe(LaneTask::apply));
+        }
+        log.info("Pool processing partitioned into {} lanes", laneCount);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.dispose();
+        laneScheduler.dispose();
+    }
+
+    /**
+     * Ставит задачу в полосу пула
+     *
+     * @param poolAddress адрес пула, определяющий полосу
+     * @param prepare     подготовка; пустой результат означает, что применять нечего
+     * @param apply       применение результата; выполняется последовательно с другими задачами пула
+     * @return Mono, завершающийся после применения (или с ошибкой подготовки/применения)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<Void> submit(String poolAddress, Mono<T> prepare, Consumer<T> apply) {
+        return Mono.defer(() -> {
+            LaneTask task = new LaneTask(prepare.cast(Object.class), value -> apply.accept((T) value));
+            lanes[laneOf(poolAddress)].emitNext(task, EMIT_RETRY);
+            return task.done.asMono();
+        });
+    }
+
+    /**
+     * Выполняет действие в полосе пула без подготовки
+     */
+    public Mono<Void> execute(String poolAddress, Runnable action) {
+        return submit(poolAddress, Mono.just(Boolean.TRUE), ignored -> action.run());
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Номер полосы пула; старшие биты хэша подмешиваются для равномерного распределения
+     */
+    int laneOf(String poolAddress) {
+        int hash = poolAddress.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * Задача полосы с результатом подготовки
+     */
+    private static final class LaneTask {
+        private final Mono<Object> preparation;
+        private final Consumer<Object> action;
+        private final Sinks.Empty<Void> done = Sinks.empty();
+        private Object value;
+        private Throwable error;
+
+        private LaneTask(Mono<Object> preparation, Consumer<Object> action) {
+            this.preparation = preparation;
+            this.action = action;
+        }
+
+        /**
+         * Выполняет подготовку; ошибка сохраняется, чтобы не прерывать полосу
+         */
+        private Mono<LaneTask> prepare() {
+            return preparation
+                    .doOnNext(result -> value = result)
+                    .onErrorResume(e -> {
+                        error = e;
+                        return Mono.empty();
+                    })
+                    .then(Mono.just(this));
+        }
+
+        private void apply() {
+            if (error != null) {
+                done.tryEmitError(error);
+                return;
+            }
+            try {
+                if (value != null) {
+                    action.accept(value);
+                }
+                done.tryEmitEmpty();
+            } catch (Exception e) {
+                done.tryEmitError(e);
+            }
+        }
+    }
+}
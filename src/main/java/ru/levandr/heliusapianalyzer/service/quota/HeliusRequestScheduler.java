@@ -0,0 +1,306 @@
+package ru.levandr.heliusapianalyzer.service.quota;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Единая очередь всех исходящих запросов к Helius
+ * <p>
+ * Для каждого вида запросов (RPC и REST API) ведется счет кредитов: кредиты пополняются
+ * с текущей скоростью, запрос тратит один кредит. Ожидающие запросы выпускаются строго
+ * по приоритету. Скорость адаптивная: ответ 429 снижает ее и приостанавливает выдачу
+ * на Retry-After, успешные ответы постепенно возвращают ее к потолку тарифа.
+ * Время ожидания в очереди, ее длина, скорость и число ответов 429 публикуются в метриках helius.quota.*
+ */
+@Slf4j
+@Component
+public class HeliusRequestScheduler {
+
+    /**
+     * Вид запросов со своей квотой
+     */
+    public enum Upstream {
+        RPC, API
+    }
+
+    private final Map<Upstream, CreditBucket> buckets = new EnumMap<>(Upstream.class);
+    private final Scheduler timer = Schedulers.parallel();
+    private final int maxRetries;
+
+    public HeliusRequestScheduler(HeliusProperties heliusProperties, MeterRegistry meterRegistry) {
+        HeliusProperties.Quota quota = heliusProperties.getQuota();
+        this.maxRetries = quota.getMaxRetries();
+        buckets.put(Upstream.RPC, new CreditBucket(Upstream.RPC, quota.getRpc(), meterRegistry));
+        buckets.put(Upstream.API, new CreditBucket(Upstream.API, quota.getApi(), meterRegistry));
+    }
+
+    /**
+     * Выполняет запрос, когда квота позволяет
+     *
+     * @param upstream вид запроса
+     * @param priority приоритет
+     * @param request  запрос; вызывается заново при повторе после 429
+     */
+    public <T> Mono<T> schedule(Upstream upstream, RequestPriority priority, Supplier<Mono<T>> request) {
+        CreditBucket bucket = buckets.get(upstream);
+        return bucket.acquire(priority)
+                .then(Mono.defer(request))
+                .doOnSuccess(value -> bucket.onSuccess())
+                .retryWhen(throttlingRetry(bucket));
+    }
+
+    /**
+     * Выполняет потоковый запрос, когда квота позволяет
+     * Ответ 429 приходит до тела, поэтому повтор не дублирует элементы
+     */
+    public <T> Flux<T> scheduleMany(Upstream upstream, RequestPriority priority, Supplier<Flux<T>> request) {
+        CreditBucket bucket = buckets.get(upstream);
+        return bucket.acquire(priority)
+                .thenMany(Flux.defer(request))
+                .doOnComplete(bucket::onSuccess)
+                .retryWhen(throttlingRetry(bucket));
+    }
+
+    /**
+     * Количество запросов, ожидающих квоту
+     */
+    public int queueDepth(Upstream upstream) {
+        return buckets.get(upstream).queueDepth();
+    }
+
+    /**
+     * Текущая разрешенная скорость, запросов в секунду
+     */
+    public double currentRate(Upstream upstream) {
+        return buckets.get(upstream).currentRate();
+    }
+
+    private Retry throttlingRetry(CreditBucket bucket) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            if (!(signal.failure() instanceof WebClientResponseException response)
+                    || response.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value()
+                    || signal.totalRetriesInARow() >= maxRetries) {
+                return Mono.error(signal.failure());
+            }
+            bucket.onThrottled(retryAfter(response));
+            // Повтор снова встает в очередь и дождется окончания паузы
+            return Mono.just(signal.totalRetriesInARow());
+        }));
+    }
+
+    /**
+     * Разбирает Retry-After: число секунд или HTTP-дата
+     */
+    static Duration retryAfter(WebClientResponseException response) {
+        String value = response.getHeaders().getFirst("Retry-After");
+        if (value == null || value.isBlank()) {
+            return Duration.ZERO;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (Exception ignored) {
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    /**
+     * Счет кредитов одного вида запросов с очередями по приоритетам
+     */
+    private final class CreditBucket {
+        private final Upstream upstream;
+        private final HeliusProperties.Limit limit;
+        private final Map<RequestPriority, Deque<MonoSink<Void>>> waiting = new EnumMap<>(RequestPriority.class);
+        private final Map<RequestPriority, Timer> waitTimers = new EnumMap<>(RequestPriority.class);
+        private final Counter throttled;
+
+        private double rate;
+        private double credits;
+        private long refilledAt = System.nanoTime();
+        private long pausedUntil = refilledAt;
+        private boolean wakeUpScheduled;
+
+        private CreditBucket(Upstream upstream, HeliusProperties.Limit limit, MeterRegistry meterRegistry) {
+            this.upstream = upstream;
+            this.limit = limit;
+            this.rate = limit.getMaxRate();
+            this.credits = limit.getBurst();
+            String tag = upstream.name().toLowerCase();
+            for (RequestPriority priority : RequestPriority.values()) {
+                waiting.put(priority, new ArrayDeque<>());
+                waitTimers.put(priority, Timer.builder("helius.quota.wait")
+                        .description("Время ожидания квоты Helius")
+                        .tag("upstream", tag)
+                        .tag("priority", priority.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+            this.throttled = Counter.builder("helius.quota.throttled")
+                    .description("Ответы 429 от Helius")
+                    .tag("upstream", tag)
+                    .register(meterRegistry);
+            Gauge.builder("helius.quota.queue", this, CreditBucket::queueDepth)
+                    .description("Запросы, ожидающие квоту Helius")
+                    .tag("upstream", tag)
+                    .register(meterRegistry);
+            Gauge.builder("helius.quota.rate", this, CreditBucket::currentRate)
+                    .description("Разрешенная скорость запросов к Helius, в секунду")
+                    .tag("upstream", tag)
+                    .register(meterRegistry);
+        }
+
+        private Mono<Void> acquire(RequestPriority priority) {
+            Timer waitTimer = waitTimers.get(priority);
+            return Mono.defer(() -> {
+                long enqueuedAt = System.nanoTime();
+                return Mono.<Void>create(sink -> {
+                            synchronized (this) {
+                                waiting.get(priority).addLast(sink);
+                            }
+                            sink.onCancel(() -> {
+                                synchronized (this) {
+                                    waiting.get(priority).remove(sink);
+                                }
+                            });
+                            drain();
+                        })
+                        .doOnSuccess(ignored -> waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS));
+            });
+        }
+
+        /**
+         * Выпускает ожидающие запросы, пока хватает кредитов, и планирует следующую попытку
+         */
+        private void drain() {
+            List<MonoSink<Void>> released = new ArrayList<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                refill(now);
+
+                long wait = 0;
+                MonoSink<Void> next;
+                while ((next = peek()) != null) {
+                    if (now < pausedUntil) {
+                        wait = pausedUntil - now;
+                        break;
+                    }
+                    if (credits < 1) {
+                        wait = (long) Math.ceil((1 - credits) / rate * TimeUnit.SECONDS.toNanos(1));
+                        break;
+                    }
+                    credits -= 1;
+                    poll();
+                    released.add(next);
+                }
+
+                if (wait > 0 && !wakeUpScheduled) {
+                    wakeUpScheduled = true;
+                    timer.schedule(this::wakeUp, wait, TimeUnit.NANOSECONDS);
+                }
+            }
+            // Запросы стартуют вне блокировки
+            released.forEach(MonoSink::success);
+        }
+
+        private void wakeUp() {
+            synchronized (this) {
+                wakeUpScheduled = false;
+            }
+            drain();
+        }
+
+        private synchronized void onSuccess() {
+            if (rate < limit.getMaxRate()) {
+                // Аддитивный рост: за секунду работы на текущей скорости прибавляется increaseStep
+                rate = Math.min(limit.getMaxRate(), rate + limit.getIncreaseStep() / rate);
+            }
+        }
+
+        private void onThrottled(Duration retryAfter) {
+            throttled.increment();
+            synchronized (this) {
+                long now = System.nanoTime();
+                rate = Math.max(limit.getMinRate(), rate * limit.getDecreaseFactor());
+                credits = 0;
+                refilledAt = now;
+                long pause = retryAfter.isZero()
+                        ? (long) (TimeUnit.SECONDS.toNanos(1) / rate)
+                        : retryAfter.toNanos();
+                pausedUntil = Math.max(pausedUntil, now + pause);
+                log.warn("Helius {} quota exceeded, rate lowered to {} req/s, paused for {} ms",
+                        upstream, String.format("%.2f", rate), TimeUnit.NANOSECONDS.toMillis(pause));
+            }
+            drain();
+        }
+
+        private synchronized double currentRate() {
+            return rate;
+        }
+
+        private synchronized int queueDepth() {
+            int depth = 0;
+            for (Deque<MonoSink<Void>> queue : waiting.values()) {
+                depth += queue.size();
+            }
+            return depth;
+        }
+
+        private void refill(long now) {
+            // Во время паузы кредиты не копятся, иначе после нее уйдет всплеск запросов
+            long from = Math.max(refilledAt, pausedUntil);
+            if (now <= from) {
+                return;
+            }
+            double capacity = Math.max(limit.getBurst(), 1);
+            credits = Math.min(capacity, credits + (now - from) * rate / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+        }
+
+        private MonoSink<Void> peek() {
+            for (Deque<MonoSink<Void>> queue : waiting.values()) {
+                if (!queue.isEmpty()) {
+                    return queue.peekFirst();
+                }
+            }
+            return null;
+        }
+
+        private void poll() {
+            for (Deque<MonoSink<Void>> queue : waiting.values()) {
+                if (!queue.isEmpty()) {
+                    queue.pollFirst();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.levandr.heliusapianalyzer.service.quota;
+
+/**
+ * Приоритет исходящего запроса к Helius
+ * Пока в очереди есть запросы более высокого приоритета, запросы ниже не отправляются
+ */
+public enum RequestPriority {
+    // Обновление состояния пулов по свежим свопам
+    LIVE,
+
+    // Загрузка новых транзакций
+    NORMAL,
+
+    // Заполнение пропусков истории
+    BACKFILL
+}
@@ -0,0 +1,311 @@
+package ru.levandr.heliusapianalyzer.service.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.model.RankedPool;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинги пулов по ликвидности, объему за 24 часа и изменению цены за 24 часа
+ * Каждый рейтинг - упорядоченное множество (значение, адрес), которое обновляется при каждом
+ * изменении пула, поэтому страница рейтинга читается за O(offset + limit) без обращений к БД.
+ * Ликвидность и объем выражены в котируемом токене (liquidityB, volume24h), поэтому эти рейтинги
+ * ведутся отдельно для каждого котируемого токена: единицы разных токенов несравнимы
+ */
+@Slf4j
+@Component
+public class PoolRanking {
+    // Wrapped SOL - котируемый токен большинства пулов Raydium
+    public static final String WSOL_MINT = "So11111111111111111111111111111111111111112";
+
+    private static final int HOURS = 24;
+    // Общий рейтинг для показателей без единиц котируемого токена
+    private static final String ALL_QUOTES = "";
+    private static final Comparator<Key> DESCENDING = Comparator.comparing(Key::quoteMint)
+            .thenComparing(Comparator.comparingDouble(Key::score).reversed())
+            .thenComparing(Key::address);
+
+    /**
+     * Показатель рейтинга
+     */
+    public enum Metric {
+        LIQUIDITY(true), VOLUME(true), PRICE_CHANGE(false);
+
+        private final boolean perQuoteMint;
+
+        Metric(boolean perQuoteMint) {
+            this.perQuoteMint = perQuoteMint;
+        }
+
+        /**
+         * Значение выражено в котируемом токене, и рейтинг ведется по каждому токену отдельно
+         */
+        public boolean isPerQuoteMint() {
+            return perQuoteMint;
+        }
+
+        public static Optional<Metric> fromParameter(String value) {
+            return Arrays.stream(values())
+                    .filter(metric -> metric.name().replace('_', '-').equalsIgnoreCase(value))
+                    .findFirst();
+        }
+    }
+
+    private final RaydiumPoolRepository poolRepository;
+    private final RollingVolumeEngine volumeEngine;
+    private final Scheduler persistenceScheduler;
+    private final Clock clock;
+
+    private final Map<String, RankedState> states = new ConcurrentHashMap<>();
+    private final Map<Metric, NavigableSet<Key>> rankings = new EnumMap<>(Metric.class);
+
+    @Autowired
+    public PoolRanking(RaydiumPoolRepository poolRepository, RollingVolumeEngine volumeEngine,
+                       Scheduler persistenceScheduler) {
+        this(poolRepository, volumeEngine, persistenceScheduler, Clock.systemUTC());
+    }
+
+    PoolRanking(RaydiumPoolRepository poolRepository, RollingVolumeEngine volumeEngine,
+                Scheduler persistenceScheduler, Clock clock) {
+        this.poolRepository = poolRepository;
+        this.volumeEngine = volumeEngine;
+        this.persistenceScheduler = persistenceScheduler;
+        this.clock = clock;
+        for (Metric metric : Metric.values()) {
+            rankings.put(metric, new ConcurrentSkipListSet<>(DESCENDING));
+        }
+    }
+
+    /**
+     * Заполняет рейтинги активными пулами из БД
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Mono.fromCallable(poolRepository::findByActiveTrue)
+                .subscribeOn(persistenceScheduler)
+                .subscribe(pools -> {
+                    pools.forEach(this::update);
+                    log.info("Pool rankings loaded: {} pools", states.size());
+                }, e -> log.error("Error loading pool rankings: {}", e.getMessage(), e));
+    }
+
+    /**
+     * Обновляет позиции пула во всех рейтингах
+     * Вызывается после изменения пула, в его полосе
+     */
+    public void update(RaydiumPool pool) {
+        if (pool.getAddress() == null || !pool.isActive()) {
+            remove(pool.getAddress());
+            return;
+        }
+
+        RankedState state = states.computeIfAbsent(pool.getAddress(), RankedState::new);
+        synchronized (state) {
+            if (state.removed) {
+                // Пул удален параллельно, берем новое состояние
+                update(pool);
+                return;
+            }
+            state.pool = new PoolValues(pool.getTokenAMint(), pool.getTokenBMint(), pool.getPrice(),
+                    pool.getLiquidityA(), pool.getLiquidityB(), pool.getVolume24h());
+            state.quoteMint = pool.getTokenBMint();
+            if (pool.getPrice() != null) {
+                state.recordPrice(clock.instant().getEpochSecond() / 3600, pool.getPrice().doubleValue());
+            }
+
+            rank(state, Metric.LIQUIDITY, toDouble(pool.getLiquidityB()));
+            rank(state, Metric.VOLUME, toDouble(pool.getVolume24h()));
+            rank(state, Metric.PRICE_CHANGE, state.priceChange(clock.instant().getEpochSecond() / 3600));
+        }
+    }
+
+    /**
+     * Убирает пул из рейтингов
+     */
+    public void remove(String poolAddress) {
+        if (poolAddress == null) {
+            return;
+        }
+        RankedState state = states.remove(poolAddress);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            for (Metric metric : Metric.values()) {
+                rank(state, metric, Double.NaN);
+            }
+            state.removed = true;
+        }
+    }
+
+    /**
+     * Страница рейтинга
+     *
+     * @param quoteMint котируемый токен для показателей в его единицах; для остальных не используется
+     * @param ascending true - от меньших значений к большим
+     */
+    public List<RankedPool> top(Metric metric, String quoteMint, int offset, int limit, boolean ascending) {
+        String group = metric.isPerQuoteMint() ? quoteMint : ALL_QUOTES;
+        if (group == null) {
+            return List.of();
+        }
+        NavigableSet<Key> ranking = rankings.get(metric).subSet(
+                new Key(group, Double.POSITIVE_INFINITY, ""), true,
+                new Key(group, Double.NEGATIVE_INFINITY, "\uffff"), true);
+        Iterator<Key> keys = ascending ? ranking.descendingIterator() : ranking.iterator();
+
+        List<RankedPool> page = new ArrayList<>(limit);
+        int position = 0;
+        while (keys.hasNext() && page.size() < limit) {
+            Key key = keys.next();
+            if (position++ < offset) {
+                continue;
+            }
+            RankedState state = states.get(key.address());
+            if (state == null) {
+                continue;
+            }
+            page.add(toRankedPool(position, state));
+        }
+        return page;
+    }
+
+    /**
+     * Количество пулов в рейтингах
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Пересчитывает объемы: окно 24 часа сдвигается и без новых свопов пула
+     */
+    @Scheduled(fixedDelayString = "${app.ranking.volume-refresh-interval:1m}")
+    public void refreshVolumes() {
+        long hour = clock.instant().getEpochSecond() / 3600;
+        for (RankedState state : states.values()) {
+            synchronized (state) {
+                if (state.removed) {
+                    continue;
+                }
+                rank(state, Metric.VOLUME, volumeEngine.volumeB(state.address, RollingVolumeEngine.Window.DAY));
+                rank(state, Metric.PRICE_CHANGE, state.priceChange(hour));
+            }
+        }
+    }
+
+    /**
+     * Переставляет пул в рейтинге; NaN или неизвестный котируемый токен убирает его из рейтинга
+     * Вызывается под блокировкой состояния пула
+     */
+    private void rank(RankedState state, Metric metric, double score) {
+        String group = metric.isPerQuoteMint() ? state.quoteMint : ALL_QUOTES;
+        if (group == null) {
+            score = Double.NaN;
+        }
+
+        NavigableSet<Key> ranking = rankings.get(metric);
+        Key previous = state.keys.get(metric);
+        if (previous != null && Double.compare(previous.score(), score) == 0 && previous.quoteMint().equals(group)) {
+            return;
+        }
+        if (previous != null) {
+            ranking.remove(previous);
+            state.keys.remove(metric);
+        }
+        if (!Double.isNaN(score)) {
+            Key key = new Key(group, score, state.address);
+            ranking.add(key);
+            state.keys.put(metric, key);
+        }
+    }
+
+    private RankedPool toRankedPool(int rank, RankedState state) {
+        synchronized (state) {
+            PoolValues pool = state.pool;
+            double change = state.priceChange(clock.instant().getEpochSecond() / 3600);
+            return new RankedPool(rank, state.address, pool.tokenAMint(), pool.tokenBMint(), pool.price(),
+                    pool.liquidityA(), pool.liquidityB(), pool.volume24h(), Double.isNaN(change) ? 0 : change);
+        }
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * Позиция пула в рейтинге котируемого токена
+     */
+    private record Key(String quoteMint, double score, String address) {
+    }
+
+    private record PoolValues(String tokenAMint, String tokenBMint, BigDecimal price,
+                              BigDecimal liquidityA, BigDecimal liquidityB, BigDecimal volume24h) {
+    }
+
+    /**
+     * Состояние пула в рейтингах: последние значения, текущие позиции и первая цена каждого часа
+     */
+    private static final class RankedState {
+        private final String address;
+        private final Map<Metric, Key> keys = new EnumMap<>(Metric.class);
+        private final double[] hourlyOpen = new double[HOURS + 1];
+        private final long[] hourStamps = new long[HOURS + 1];
+        private PoolValues pool;
+        private String quoteMint;
+        private double lastPrice = Double.NaN;
+        private boolean removed;
+
+        private RankedState(String address) {
+            this.address = address;
+            Arrays.fill(hourStamps, -1);
+        }
+
+        private void recordPrice(long hour, double price) {
+            int slot = (int) (hour % hourStamps.length);
+            if (hourStamps[slot] != hour) {
+                hourStamps[slot] = hour;
+                hourlyOpen[slot] = price;
+            }
+            lastPrice = price;
+        }
+
+        /**
+         * Изменение последней цены относительно первой цены в окне 24 часа, в процентах
+         */
+        private double priceChange(long hour) {
+            if (Double.isNaN(lastPrice)) {
+                return Double.NaN;
+            }
+            for (long candidate = hour - HOURS; candidate <= hour; candidate++) {
+                int slot = (int) (candidate % hourStamps.length);
+                if (hourStamps[slot] == candidate && hourlyOpen[slot] > 0) {
+                    return Math.round((lastPrice / hourlyOpen[slot] - 1) * 1_000_000) / 10_000.0;
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package ru.levandr.heliusapianalyzer.service.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import ru.levandr.heliusapianalyzer.codec.Base58;
+import ru.levandr.heliusapianalyzer.codec.RaydiumAmmAccount;
+import ru.levandr.heliusapianalyzer.codec.RaydiumSwapInstruction;
+import ru.levandr.heliusapianalyzer.codec.SplTokenAccount;
+import ru.levandr.heliusapianalyzer.service.capture.CaptureReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Набор записанных транзакций и аккаунтов для воспроизведения
+ * <p>
+ * Транзакции берутся из страниц журнала {@code CaptureLog} и из файлов {@code *_raw_response.json},
+ * которые сохранялись до него, без повторов и в порядке времени блока. Ответ каждой транзакции хранится сериализованным,
+ * чтобы заглушка отдавала страницы без повторной сериализации.
+ * Аккаунты читаются из {@code accounts.json} ({"адрес": "данные в base64"}); для пулов, которых там нет,
+ * аккаунт пула и хранилищ восстанавливается по инструкции свопа и переводам в хранилища
+ */
+@Slf4j
+public final class ReplayCorpus {
+    static final String PAGE_SUFFIX = "_raw_response.json";
+    static final String ACCOUNTS_FILE = "accounts.json";
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final List<CapturedTransaction> transactions;
+    private final Map<String, byte[]> accounts;
+
+    ReplayCorpus(List<CapturedTransaction> transactions, Map<String, byte[]> accounts) {
+        this.transactions = transactions;
+        this.accounts = accounts;
+    }
+
+    /**
+     * Загружает набор из каталога
+     *
+     * @throws IOException если каталог не читается или в нем нет транзакций
+     */
+    public static ReplayCorpus load(Path directory, ObjectMapper objectMapper) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(PAGE_SUFFIX)).sorted().toList();
+        }
+
+        Pages pages = new Pages(objectMapper);
+        for (Path file : files) {
+            pages.add(objectMapper.readTree(file.toFile()), file.toString());
+        }
+        try {
+            new CaptureReader(directory).forEach(record -> {
+                try {
+                    pages.add(objectMapper.readTree(record.data()), "capture record " + record.timestamp());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<CapturedTransaction> transactions = pages.transactions;
+        Map<String, byte[]> accounts = pages.accounts;
+        if (transactions.isEmpty()) {
+            throw new IOException("No captured transactions in " + directory);
+        }
+        // Страницы Helius идут от новых к старым, воспроизводим от старых к новым
+        transactions.sort(Comparator.comparingLong(CapturedTransaction::timestamp));
+
+        Path accountsFile = directory.resolve(ACCOUNTS_FILE);
+        if (Files.exists(accountsFile)) {
+            Iterator<Map.Entry<String, JsonNode>> fields = objectMapper.readTree(accountsFile.toFile()).fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                accounts.put(field.getKey(), Base64.getDecoder().decode(field.getValue().asText()));
+            }
+        }
+
+        log.info("Loaded replay corpus: {} transactions from {} pages, {} accounts",
+                transactions.size(), pages.count, accounts.size());
+        return new ReplayCorpus(List.copyOf(transactions), accounts);
+    }
+
+    /**
+     * Транзакции в порядке времени блока
+     */
+    public List<CapturedTransaction> transactions() {
+        return transactions;
+    }
+
+    /**
+     * Полные данные аккаунта или null, если аккаунт неизвестен
+     */
+    public byte[] account(String address) {
+        return accounts.get(address);
+    }
+
+    /**
+     * Восстанавливает аккаунт пула и хранилищ по свопу, если их нет в наборе
+     * Токены хранилищ определяются по переводам в них или из них; без этого пул пропускается
+     */
+    private static void restoreAccounts(JsonNode tx, Map<String, byte[]> accounts) {
+        RaydiumSwapInstruction swap = findSwap(tx.path("instructions"));
+        if (swap == null || accounts.containsKey(swap.amm())) {
+            return;
+        }
+
+        byte[] baseMint = pubkey(vaultMint(tx, swap.baseVault()));
+        byte[] quoteMint = pubkey(vaultMint(tx, swap.quoteVault()));
+        byte[] baseVault = pubkey(swap.baseVault());
+        byte[] quoteVault = pubkey(swap.quoteVault());
+        if (baseMint == null || quoteMint == null || baseVault == null || quoteVault == null) {
+            return;
+        }
+
+        byte[] pool = new byte[RaydiumAmmAccount.ACCOUNT_LENGTH];
+        putPubkey(pool, RaydiumAmmAccount.BASE_VAULT, baseVault);
+        putPubkey(pool, RaydiumAmmAccount.QUOTE_VAULT, quoteVault);
+        putPubkey(pool, RaydiumAmmAccount.BASE_MINT, baseMint);
+        putPubkey(pool, RaydiumAmmAccount.QUOTE_MINT, quoteMint);
+        accounts.put(swap.amm(), pool);
+        accounts.putIfAbsent(swap.baseVault(), tokenAccount(swap.baseVault(), baseMint));
+        accounts.putIfAbsent(swap.quoteVault(), tokenAccount(swap.quoteVault(), quoteMint));
+    }
+
+    private static RaydiumSwapInstruction findSwap(JsonNode instructions) {
+        for (JsonNode instruction : instructions) {
+            RaydiumSwapInstruction swap = decodeSwap(instruction);
+            if (swap != null) {
+                return swap;
+            }
+            for (JsonNode inner : instruction.path("innerInstructions")) {
+                swap = decodeSwap(inner);
+                if (swap != null) {
+                    return swap;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static RaydiumSwapInstruction decodeSwap(JsonNode instruction) {
+        if (!RaydiumSwapInstruction.PROGRAM_ID.equals(instruction.path("programId").asText())) {
+            return null;
+        }
+        List<String> accounts = new ArrayList<>();
+        instruction.path("accounts").forEach(account -> accounts.add(account.asText()));
+        return RaydiumSwapInstruction.decode(instruction.path("data").asText(null), accounts);
+    }
+
+    private static String vaultMint(JsonNode tx, String vault) {
+        for (JsonNode transfer : tx.path("tokenTransfers")) {
+            if (vault.equals(transfer.path("toTokenAccount").asText())
+                    || vault.equals(transfer.path("fromTokenAccount").asText())) {
+                return transfer.path("mint").asText(null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Токен-аккаунт хранилища с постоянным балансом, зависящим от адреса (от 10^9 до ~10^15)
+     */
+    private static byte[] tokenAccount(String address, byte[] mint) {
+        byte[] account = new byte[SplTokenAccount.ACCOUNT_LENGTH];
+        putPubkey(account, SplTokenAccount.MINT_OFFSET, mint);
+        long amount = 1_000_000_000L + Math.floorMod(address.hashCode(), 1_000_000) * 1_000_000_000L;
+        LONG_LE.set(account, SplTokenAccount.AMOUNT_OFFSET, amount);
+        return account;
+    }
+
+    private static void putPubkey(byte[] account, int offset, byte[] key) {
+        System.arraycopy(key, 0, account, offset, RaydiumAmmAccount.PUBKEY_LENGTH);
+    }
+
+    private static byte[] pubkey(String address) {
+        if (address == null) {
+            return null;
+        }
+        try {
+            byte[] key = Base58.decode(address);
+            return key.length == RaydiumAmmAccount.PUBKEY_LENGTH ? key : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Транзакции и восстановленные аккаунты по мере чтения страниц, без повторов подписей
+     */
+    private static final class Pages {
+        private final ObjectMapper objectMapper;
+        private final List<CapturedTransaction> transactions = new ArrayList<>();
+        private final Map<String, byte[]> accounts = new HashMap<>();
+        private final Set<String> signatures = new HashSet<>();
+        private int count;
+
+        private Pages(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+
+        private void add(JsonNode root, String source) throws IOException {
+            if (!root.isArray()) {
+                log.warn("Skipping {}: not a transaction page", source);
+                return;
+            }
+            count++;
+            for (JsonNode tx : root) {
+                String signature = tx.path("signature").asText(null);
+                if (signature == null || !signatures.add(signature)) {
+                    continue;
+                }
+                transactions.add(new CapturedTransaction(signature, tx.path("timestamp").asLong(),
+                        objectMapper.writeValueAsBytes(tx)));
+                if ("SWAP".equals(tx.path("type").asText())) {
+                    restoreAccounts(tx, accounts);
+                }
+            }
+        }
+    }
+
+    /**
+     * Записанная транзакция
+     *
+     * @param signature подпись
+     * @param timestamp время блока (unix, секунды)
+     * @param json      транзакция в формате ответа Helius
+     */
+    public record CapturedTransaction(String signature, long timestamp, byte[] json) {
+    }
+}
@@ -0,0 +1,153 @@
+package ru.levandr.heliusapianalyzer.service.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.properties.ReplayProperties;
+import ru.levandr.heliusapianalyzer.service.HeliusService;
+import ru.levandr.heliusapianalyzer.service.quota.RequestPriority;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Нагрузочный прогон по записанным ответам Helius без сети и ключа API
+ * <p>
+ * Поднимает {@link ReplayStubServer} и опрашивает его через настоящие HeliusService и
+ * RaydiumPoolService так же, как {@code TransactionIngester}: каждый опрос листает страницы
+ * от новых транзакций до курсора, следующая страница запрашивается после обработки предыдущей.
+ * Курсор хранится в памяти, поэтому прогон не зависит от таблиц загрузки.
+ * По окончании пишет в лог пропускную способность, процентили задержек этапов и аллокации
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReplayRunner {
+    private final ReplayProperties replayProperties;
+    private final HeliusProperties heliusProperties;
+    private final HeliusService heliusService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private volatile ReplayStubServer server;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!replayProperties.isEnabled()) {
+            return;
+        }
+
+        ReplayCorpus corpus;
+        try {
+            corpus = ReplayCorpus.load(Path.of(replayProperties.getCorpus()), objectMapper);
+        } catch (IOException e) {
+            log.error("Replay not started: {}", e.getMessage());
+            return;
+        }
+
+        ReplayStubServer stub = new ReplayStubServer(corpus, objectMapper, replayProperties.getSpeed(),
+                replayProperties.getApiLatency(), replayProperties.getRpcLatency());
+        stub.start(replayProperties.getPort());
+        server = stub;
+
+        ReplayStats stats = ReplayStats.start(meterRegistry);
+        Disposable progress = Flux.interval(replayProperties.getReportInterval())
+                .subscribe(tick -> log.info("Replay: released {}/{} transactions, {} swaps, {} swaps/s",
+                        stub.released(), stub.size(), (long) stats.swaps(), Math.round(stats.swapsPerSecond())));
+
+        replay(stub, heliusProperties.getIngest().getAddress(), new Cursor())
+                .doFinally(signal -> {
+                    progress.dispose();
+                    log.info("Replay finished ({})", signal);
+                    stats.summary().forEach(line -> log.info("Replay: {}", line));
+                })
+                .subscribe(null, error -> log.error("Replay failed: {}", error.getMessage(), error));
+    }
+
+    @PreDestroy
+    void stop() {
+        ReplayStubServer current = server;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Опрашивает заглушку, пока не будет обработан весь набор
+     * Если к началу опроса набор уже весь доступен, этот опрос последний
+     */
+    private Mono<Void> replay(ReplayStubServer stub, String address, Cursor cursor) {
+        return Mono.defer(() -> {
+            boolean last = stub.exhausted();
+            return walk(address, null, cursor, new Walk())
+                    .then(Mono.defer(() -> last
+                            ? Mono.empty()
+                            : Mono.delay(heliusProperties.getIngest().getPollInterval())
+                            .then(replay(stub, address, cursor))));
+        });
+    }
+
+    /**
+     * Листает страницы от before к курсору; курсор переносится после последней страницы
+     */
+    private Mono<Void> walk(String address, String before, Cursor cursor, Walk walk) {
+        int pageSize = heliusProperties.getIngest().getPageSize();
+        Page page = new Page();
+
+        return heliusService.processSwaps(heliusService.fetchTransactions(address, before, cursor.signature,
+                                pageSize, RequestPriority.NORMAL)
+                        .doOnNext(page::observe))
+                .then(Mono.defer(() -> {
+                    if (walk.newestSignature == null) {
+                        walk.newestSignature = page.newestSignature;
+                    }
+                    if (page.count < pageSize) {
+                        if (walk.newestSignature != null) {
+                            cursor.signature = walk.newestSignature;
+                        }
+                        return Mono.empty();
+                    }
+                    return walk(address, page.oldestSignature, cursor, walk);
+                }));
+    }
+
+    /**
+     * Самая новая обработанная транзакция
+     */
+    private static final class Cursor {
+        private volatile String signature;
+    }
+
+    /**
+     * Состояние одного опроса
+     */
+    private static final class Walk {
+        private String newestSignature;
+    }
+
+    /**
+     * Границы страницы
+     */
+    private static final class Page {
+        private int count;
+        private String newestSignature;
+        private String oldestSignature;
+
+        private void observe(RaydiumSwapTransaction tx) {
+            if (count++ == 0) {
+                newestSignature = tx.getSignature();
+            }
+            oldestSignature = tx.getSignature();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ru.levandr.heliusapianalyzer.service.replay;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Показатели прогона воспроизведения относительно его начала
+ * Пропускная способность и аллокации считаются как разница со снимком при старте,
+ * задержки этапов берутся из таймеров конвейера (процентили задаются в профиле replay)
+ */
+final class ReplayStats {
+    // Таймеры конвейера, по которым строится отчет
+    static final List<String> STAGE_TIMERS = List.of(
+            "pool.swap.stage", "helius.api.pages", "helius.quota.wait", "solana.rpc.requests", "db.flush");
+
+    private static final String SWAPS_COUNTER = "helius.swaps.processed";
+
+    private final MeterRegistry meterRegistry;
+    private final com.sun.management.ThreadMXBean threads;
+    private final long startedNanos;
+    private final double swapsAtStart;
+    private final long allocatedAtStart;
+    private final long gcCountAtStart;
+    private final long gcTimeAtStart;
+
+    private ReplayStats(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.startedNanos = System.nanoTime();
+        this.swapsAtStart = swapsTotal();
+        this.allocatedAtStart = allocatedTotal();
+        this.gcCountAtStart = gcCount();
+        this.gcTimeAtStart = gcTime();
+    }
+
+    /**
+     * Запоминает состояние счетчиков перед прогоном
+     */
+    static ReplayStats start(MeterRegistry meterRegistry) {
+        return new ReplayStats(meterRegistry);
+    }
+
+    double elapsedSeconds() {
+        return (System.nanoTime() - startedNanos) / 1e9;
+    }
+
+    double swaps() {
+        return swapsTotal() - swapsAtStart;
+    }
+
+    double swapsPerSecond() {
+        double elapsed = elapsedSeconds();
+        return elapsed > 0 ? swaps() / elapsed : 0;
+    }
+
+    /**
+     * Байты, выделенные всеми потоками JVM за прогон; -1, если JVM этого не измеряет
+     */
+    long allocatedBytes() {
+        long allocated = allocatedTotal();
+        return allocated < 0 || allocatedAtStart < 0 ? -1 : allocated - allocatedAtStart;
+    }
+
+    /**
+     * Итоговый отчет по строкам
+     */
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        double swaps = swaps();
+        long allocated = allocatedBytes();
+        lines.add(String.format(Locale.ROOT, "duration %.1f s, swaps %.0f, sustained %.1f swaps/s",
+                elapsedSeconds(), swaps, swapsPerSecond()));
+        lines.add(String.format(Locale.ROOT, "heap: allocated %.1f MB (%s per swap), gc %d collections, %d ms",
+                allocated / 1e6, allocated >= 0 && swaps > 0 ? String.format(Locale.ROOT, "%.0f B", allocated / swaps)
+                        : "n/a",
+                gcCount() - gcCountAtStart, gcTime() - gcTimeAtStart));
+        for (String name : STAGE_TIMERS) {
+            for (Timer timer : meterRegistry.find(name).timers()) {
+                if (timer.count() > 0) {
+                    lines.add(describe(timer));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String describe(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder line = new StringBuilder(timer.getId().getName());
+        String tags = timer.getId().getTags().stream()
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(","));
+        if (!tags.isEmpty()) {
+            line.append('{').append(tags).append('}');
+        }
+        line.append(String.format(Locale.ROOT, " count=%d mean=%.2fms",
+                snapshot.count(), snapshot.mean(TimeUnit.MILLISECONDS)));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            line.append(String.format(Locale.ROOT, " p%s=%.2fms",
+                    formatPercentile(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        line.append(String.format(Locale.ROOT, " max=%.2fms", snapshot.max(TimeUnit.MILLISECONDS)));
+        return line.toString();
+    }
+
+    private static String formatPercentile(double percentile) {
+        double value = percentile * 100;
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private double swapsTotal() {
+        Counter counter = meterRegistry.find(SWAPS_COUNTER).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private long allocatedTotal() {
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()
+                ? threads.getTotalThreadAllocatedBytes()
+                : -1;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(time -> time > 0)
+                .sum();
+    }
+}
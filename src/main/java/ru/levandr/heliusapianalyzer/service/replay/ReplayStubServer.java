@@ -0,0 +1,248 @@
+package ru.levandr.heliusapianalyzer.service.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Локальные заглушки REST API Helius и Solana RPC поверх записанного набора
+ * <p>
+ * Транзакции становятся доступны по часам воспроизведения: время набора идет от первой транзакции
+ * со скоростью speed относительно реального времени, при speed = 0 доступен весь набор сразу.
+ * История отдается как в Helius: от новых к старым с before/until/limit.
+ * RPC отвечает на getMultipleAccounts данными из набора с учетом dataSlice
+ */
+@Slf4j
+public class ReplayStubServer implements AutoCloseable {
+    private static final String TRANSACTIONS_PATH = "/v0/addresses/{address}/transactions";
+    private static final int MAX_LIMIT = 100;
+    private static final String TOKEN_PROGRAM_ID = "TokenkegQfeZyiNwAJbNbGKPFXCWuBvf9Ss623VQ5DA";
+
+    private final ReplayCorpus corpus;
+    private final ObjectMapper objectMapper;
+    private final double speed;
+    private final Duration apiLatency;
+    private final Duration rpcLatency;
+    private final LongSupplier nanoTime;
+
+    private final long[] timestamps;
+    private final Map<String, Integer> positions;
+
+    private volatile long startedNanos;
+    private DisposableServer server;
+
+    public ReplayStubServer(ReplayCorpus corpus, ObjectMapper objectMapper, double speed,
+                            Duration apiLatency, Duration rpcLatency) {
+        this(corpus, objectMapper, speed, apiLatency, rpcLatency, System::nanoTime);
+    }
+
+    ReplayStubServer(ReplayCorpus corpus, ObjectMapper objectMapper, double speed,
+                     Duration apiLatency, Duration rpcLatency, LongSupplier nanoTime) {
+        this.corpus = corpus;
+        this.objectMapper = objectMapper;
+        this.speed = speed;
+        this.apiLatency = apiLatency;
+        this.rpcLatency = rpcLatency;
+        this.nanoTime = nanoTime;
+
+        List<ReplayCorpus.CapturedTransaction> transactions = corpus.transactions();
+        this.timestamps = new long[transactions.size()];
+        this.positions = new HashMap<>(transactions.size() * 2);
+        for (int i = 0; i < transactions.size(); i++) {
+            timestamps[i] = transactions.get(i).timestamp();
+            positions.put(transactions.get(i).signature(), i);
+        }
+    }
+
+    /**
+     * Запускает заглушки и часы воспроизведения
+     *
+     * @param port порт на 127.0.0.1; 0 - любой свободный
+     */
+    public void start(int port) {
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .route(routes -> routes
+                        .get(TRANSACTIONS_PATH, this::transactions)
+                        .post("/", this::rpc))
+                .bindNow();
+        startedNanos = nanoTime.getAsLong();
+        log.info("Replay stubs listening on port {}, speed {}", server.port(),
+                speed > 0 ? speed + "x" : "unlimited");
+    }
+
+    public int port() {
+        return server.port();
+    }
+
+    /**
+     * Количество транзакций, уже доступных по часам воспроизведения
+     */
+    public int released() {
+        if (speed <= 0) {
+            return timestamps.length;
+        }
+        double elapsedSeconds = (nanoTime.getAsLong() - startedNanos) / 1e9;
+        long now = timestamps[0] + (long) (elapsedSeconds * speed);
+        // Число транзакций со временем не больше текущего
+        int low = 0;
+        int high = timestamps.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] <= now) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Весь набор уже доступен
+     */
+    public boolean exhausted() {
+        return released() == timestamps.length;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private Publisher<Void> transactions(HttpServerRequest request, HttpServerResponse response) {
+        Map<String, List<String>> query = new QueryStringDecoder(request.uri()).parameters();
+        int limit = Math.min(MAX_LIMIT, Integer.parseInt(param(query, "limit", String.valueOf(MAX_LIMIT))));
+        Mono<byte[]> body = Mono.fromCallable(() -> page(param(query, "before", null), param(query, "until", null),
+                limit));
+        return json(response, delayed(body, apiLatency));
+    }
+
+    private Publisher<Void> rpc(HttpServerRequest request, HttpServerResponse response) {
+        Mono<byte[]> body = request.receive().aggregate().asByteArray().map(this::answer);
+        return json(response, delayed(body, rpcLatency));
+    }
+
+    /**
+     * Страница истории от новых к старым
+     *
+     * @param before вернуть транзакции старше этой подписи
+     * @param until  остановиться на этой подписи, не включая ее
+     */
+    byte[] page(String before, String until, int limit) {
+        int from = released() - 1;
+        if (before != null) {
+            Integer position = positions.get(before);
+            if (position == null) {
+                return new byte[]{'[', ']'};
+            }
+            from = Math.min(from, position - 1);
+        }
+        Integer stop = until == null ? null : positions.get(until);
+        int lowest = stop == null ? 0 : stop + 1;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        out.write('[');
+        int count = 0;
+        for (int i = from; i >= lowest && count < limit; i--, count++) {
+            if (count > 0) {
+                out.write(',');
+            }
+            out.writeBytes(corpus.transactions().get(i).json());
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * Ответ на вызов JSON-RPC
+     */
+    byte[] answer(byte[] body) {
+        try {
+            JsonNode request = objectMapper.readTree(body);
+            ObjectNode response = objectMapper.createObjectNode().put("jsonrpc", "2.0");
+            response.set("id", request.path("id"));
+
+            switch (request.path("method").asText()) {
+                case "getMultipleAccounts" -> response.set("result",
+                        multipleAccounts(request.path("params").path(0), request.path("params").path(1)));
+                case "getHealth" -> response.put("result", "ok");
+                default -> response.putObject("error")
+                        .put("code", -32601)
+                        .put("message", "Method not found");
+            }
+            return objectMapper.writeValueAsBytes(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectNode multipleAccounts(JsonNode keys, JsonNode config) {
+        JsonNode slice = config.path("dataSlice");
+        ObjectNode result = objectMapper.createObjectNode();
+        result.putObject("context").put("slot", 0);
+        ArrayNode values = result.putArray("value");
+        for (JsonNode key : keys) {
+            byte[] data = corpus.account(key.asText());
+            if (data == null) {
+                values.addNull();
+                continue;
+            }
+
+            int offset = Math.min(slice.path("offset").asInt(0), data.length);
+            int length = slice.has("length") ? Math.min(slice.path("length").asInt(), data.length - offset)
+                    : data.length - offset;
+            ObjectNode account = values.addObject();
+            account.putArray("data")
+                    .add(Base64.getEncoder().encodeToString(Arrays.copyOfRange(data, offset, offset + length)))
+                    .add("base64");
+            account.put("executable", false)
+                    .put("lamports", 2_039_280L)
+                    .put("owner", TOKEN_PROGRAM_ID)
+                    .put("rentEpoch", 0)
+                    .put("space", data.length);
+        }
+        return result;
+    }
+
+    private static Mono<byte[]> delayed(Mono<byte[]> body, Duration latency) {
+        return latency.isZero() ? body : Mono.delay(latency).then(body);
+    }
+
+    private static Publisher<Void> json(HttpServerResponse response, Mono<byte[]> body) {
+        return response.header(HttpHeaderNames.CONTENT_TYPE, "application/json").sendByteArray(body);
+    }
+
+    private static String param(Map<String, List<String>> query, String name, String defaultValue) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
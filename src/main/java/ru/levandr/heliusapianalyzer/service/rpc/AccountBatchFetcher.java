@@ -0,0 +1,145 @@
+package ru.levandr.heliusapianalyzer.service.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Объединяет параллельные запросы данных аккаунтов в пакетные вызовы getMultipleAccounts
+ * Запросы, пришедшие в пределах окна (но не более лимита ключей RPC), уходят одним вызовом,
+ * а декодированные данные раздаются обратно каждому вызывающему
+ */
+@Slf4j
+public class AccountBatchFetcher {
+    public static final int MAX_KEYS_PER_REQUEST = 100; // Лимит ключей getMultipleAccounts
+    private static final Sinks.EmitFailureHandler EMIT_RETRY =
+            Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
+
+    private final HedgedRpcClient rpcClient;
+    private final Map<String, Object> accountConfig;
+    private final Sinks.Many<PendingRequest> requests = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable subscription;
+
+    /**
+     * @param rpcClient клиент JSON-RPC с квотой, таймаутами и размыкателями
+     * @param window    окно накопления запросов
+     * @param maxKeys   максимум ключей в одном вызове (не больше {@link #MAX_KEYS_PER_REQUEST})
+     * @param dataSlice срез данных аккаунта (offset/length) или null для полного аккаунта
+     */
+    public AccountBatchFetcher(HedgedRpcClient rpcClient, Duration window, int maxKeys,
+                               Map<String, Object> dataSlice) {
+        this.rpcClient = rpcClient;
+        this.accountConfig = dataSlice == null
+                ? Map.of("encoding", "base64", "commitment", "confirmed")
+                : Map.of("encoding", "base64", "commitment", "confirmed", "dataSlice", dataSlice);
+
+        int batchSize = Math.min(Math.max(maxKeys, 1), MAX_KEYS_PER_REQUEST);
+        this.subscription = requests.asFlux()
+                .bufferTimeout(batchSize, window)
+                .flatMap(this::executeBatch)
+                .subscribe();
+    }
+
+    /**
+     * Ставит аккаунт в очередь ближайшего пакетного запроса
+     *
+     * @param address адрес аккаунта
+     * @return данные аккаунта; пустой Mono, если аккаунт не найден
+     */
+    public Mono<byte[]> fetch(String address) {
+        return Mono.defer(() -> {
+            Sinks.One<byte[]> result = Sinks.one();
+            requests.emitNext(new PendingRequest(address, result), EMIT_RETRY);
+            return result.asMono();
+        });
+    }
+
+    /**
+     * Останавливает обработку очереди
+     */
+    public void close() {
+        requests.emitComplete(EMIT_RETRY);
+        subscription.dispose();
+    }
+
+    /**
+     * Выполняет один вызов getMultipleAccounts для пакета запросов
+     */
+    private Mono<Void> executeBatch(List<PendingRequest> batch) {
+        // Один и тот же аккаунт может быть запрошен несколькими вызывающими
+        Map<String, List<Sinks.One<byte[]>>> waiters = new LinkedHashMap<>();
+        for (PendingRequest request : batch) {
+            waiters.computeIfAbsent(request.address(), key -> new ArrayList<>(1)).add(request.result());
+        }
+        List<String> keys = new ArrayList<>(waiters.keySet());
+
+        Map<String, Object> body = Map.of(
+                "jsonrpc", "2.0",
+                "id", 1,
+                "method", "getMultipleAccounts",
+                "params", List.of(keys, accountConfig)
+        );
+
+        log.debug("Fetching {} accounts in one getMultipleAccounts call ({} callers)", keys.size(), batch.size());
+
+        return rpcClient.call(body)
+                .doOnNext(response -> dispatch(keys, waiters, response))
+                .doOnError(error -> {
+                    log.error("getMultipleAccounts failed for {} accounts: {}", keys.size(), error.getMessage());
+                    waiters.values().forEach(sinks -> sinks.forEach(sink -> sink.tryEmitError(error)));
+                })
+                .doFinally(signal -> waiters.values().forEach(sinks -> sinks.forEach(Sinks.One::tryEmitEmpty)))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Раздает результаты вызова ожидающим по порядку ключей
+     */
+    private void dispatch(List<String> keys, Map<String, List<Sinks.One<byte[]>>> waiters, JsonNode response) {
+        JsonNode values = response.path("result").path("value");
+        if (!values.isArray() || values.size() != keys.size()) {
+            IllegalStateException error = new IllegalStateException(
+                    "Invalid getMultipleAccounts response: " + response.path("error"));
+            waiters.values().forEach(sinks -> sinks.forEach(sink -> sink.tryEmitError(error)));
+            return;
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] data = decodeAccountData(values.get(i));
+            for (Sinks.One<byte[]> sink : waiters.get(keys.get(i))) {
+                if (data == null) {
+                    sink.tryEmitEmpty();
+                } else {
+                    sink.tryEmitValue(data);
+                }
+            }
+        }
+    }
+
+    /**
+     * Декодирует поле data аккаунта из base64
+     */
+    private byte[] decodeAccountData(JsonNode account) {
+        if (account == null || account.isNull()) {
+            return null;
+        }
+        JsonNode data = account.path("data");
+        if (!data.isArray() || data.isEmpty() || data.get(0).asText().isEmpty()) {
+            return null;
+        }
+        return Base64.getDecoder().decode(data.get(0).asText());
+    }
+
+    private record PendingRequest(String address, Sinks.One<byte[]> result) {
+    }
+}
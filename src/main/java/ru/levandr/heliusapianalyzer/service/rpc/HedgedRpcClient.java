@@ -0,0 +1,108 @@
+package ru.levandr.heliusapianalyzer.service.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler;
+import ru.levandr.heliusapianalyzer.service.quota.RequestPriority;
+
+/**
+ * JSON-RPC клиент с дублированием медленных запросов на резервный RPC
+ * Запрос уходит на основной адрес; если ответа нет дольше квантиля его задержек
+ * (по умолчанию p95), тот же запрос отправляется на резервный и берется первый успешный ответ.
+ * Задержка дублирования отсчитывается с момента, когда очередь квоты пропустила запрос.
+ * При открытом размыкателе основного адреса запросы сразу идут на резервный
+ */
+@Slf4j
+public class HedgedRpcClient {
+    private final WebClient webClient;
+    private final HeliusRequestScheduler requestScheduler;
+    private final RpcEndpoint primary;
+    private final RpcEndpoint secondary;
+    private final HeliusProperties.RpcResilience resilience;
+
+    /**
+     * @param webClient        клиент для JSON-RPC вызовов
+     * @param requestScheduler очередь квоты, через которую проходят вызовы основного адреса
+     * @param primary          основной адрес
+     * @param secondary        резервный адрес или null, если дублирование отключено
+     * @param resilience       таймауты и задержки дублирования
+     */
+    public HedgedRpcClient(WebClient webClient, HeliusRequestScheduler requestScheduler,
+                           RpcEndpoint primary, RpcEndpoint secondary, HeliusProperties.RpcResilience resilience) {
+        this.webClient = webClient;
+        this.requestScheduler = requestScheduler;
+        this.primary = primary;
+        this.secondary = secondary;
+        this.resilience = resilience;
+    }
+
+    /**
+     * Выполняет JSON-RPC вызов
+     *
+     * @param body тело запроса
+     * @return ответ; ошибка, если не ответил ни один адрес
+     */
+    public Mono<JsonNode> call(Object body) {
+        if (secondary == null) {
+            return callPrimary(body, null);
+        }
+        if (!primary.isCallPermitted()) {
+            log.debug("Circuit {} is open, calling {}", primary.getName(), secondary.getName());
+            return callSecondary(body);
+        }
+
+        return Mono.defer(() -> {
+            // Ожидание квоты - не медленный ответ основного адреса, поэтому дублирование ждет ее выдачи
+            Sinks.Empty<Void> permitted = Sinks.empty();
+            Mono<JsonNode> hedge = permitted.asMono()
+                    .then(Mono.defer(() -> Mono.delay(
+                            primary.latencyQuantile(resilience.getHedgeDelay(), resilience.getMinHedgeDelay()))))
+                    .then(Mono.defer(() -> {
+                        if (!secondary.isCallPermitted()) {
+                            return Mono.<JsonNode>empty();
+                        }
+                        log.debug("No response from {} within hedge delay, calling {}",
+                                primary.getName(), secondary.getName());
+                        return callSecondary(body);
+                    }));
+
+            // Первый успешный ответ; ошибка - только если не ответили оба адреса
+            // Если основной адрес не дождался квоты, дублирование начинается сразу после его ошибки
+            return Mono.firstWithValue(callPrimary(body, permitted).doOnError(error -> permitted.tryEmitEmpty()),
+                    hedge);
+        });
+    }
+
+    /**
+     * Есть ли хотя бы один адрес с закрытым размыкателем
+     */
+    public boolean isHealthy() {
+        return primary.isCallPermitted() || (secondary != null && secondary.isCallPermitted());
+    }
+
+    /**
+     * Вызов основного адреса через очередь квоты
+     * Общий таймаут ограничивает и ожидание квоты, и повторы после 429
+     *
+     * @param permitted сигнал выдачи квоты для отсчета задержки дублирования или null
+     */
+    private Mono<JsonNode> callPrimary(Object body, Sinks.Empty<Void> permitted) {
+        // Данные пулов нужны для свежих свопов, поэтому вызовы идут с наивысшим приоритетом
+        return requestScheduler.schedule(HeliusRequestScheduler.Upstream.RPC, RequestPriority.LIVE, () -> {
+                    if (permitted != null) {
+                        // При повторе после 429 сигнал уже выдан, повторная выдача игнорируется
+                        permitted.tryEmitEmpty();
+                    }
+                    return primary.call(webClient, body, resilience.getTimeout());
+                })
+                .timeout(resilience.getTotalTimeout());
+    }
+
+    private Mono<JsonNode> callSecondary(Object body) {
+        return secondary.call(webClient, body, resilience.getTimeout());
+    }
+}
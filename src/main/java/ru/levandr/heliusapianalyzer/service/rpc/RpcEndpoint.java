@@ -0,0 +1,155 @@
+package ru.levandr.heliusapianalyzer.service.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Один адрес Solana RPC со своим размыкателем и статистикой задержек
+ * Каждый вызов ограничен таймаутом; ошибки и медленные ответы учитываются размыкателем,
+ * а задержки ответов - в скользящем окне для расчета квантиля.
+ * Длительность и исход каждого вызова (HTTP статус или код ошибки JSON-RPC) пишутся в метрику solana.rpc.requests
+ */
+public class RpcEndpoint {
+    private static final int LATENCY_WINDOW = 256;
+    private static final int RECALCULATE_EVERY = 16;
+
+    private final String name;
+    private final String url;
+    private final CircuitBreaker circuitBreaker;
+    private final double quantile;
+    private final MeterRegistry meterRegistry;
+    private final Timer successTimer;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int recorded;
+    private volatile long quantileNanos = -1;
+
+    /**
+     * @param name           имя адреса для логов и метрик
+     * @param url            полный адрес RPC (вместе с api-key)
+     * @param circuitBreaker размыкатель этого адреса
+     * @param quantile       квантиль задержек, например 0.95
+     * @param meterRegistry  реестр метрик
+     */
+    public RpcEndpoint(String name, String url, CircuitBreaker circuitBreaker, double quantile,
+                       MeterRegistry meterRegistry) {
+        this.name = name;
+        this.url = url;
+        this.circuitBreaker = circuitBreaker;
+        this.quantile = quantile;
+        this.meterRegistry = meterRegistry;
+        this.successTimer = timer("success", "none");
+    }
+
+    /**
+     * Выполняет JSON-RPC вызов через размыкатель
+     * При открытом размыкателе сразу завершается CallNotPermittedException без обращения к сети
+     *
+     * @param webClient клиент для вызова
+     * @param body      тело JSON-RPC запроса
+     * @param timeout   максимальное время ответа
+     */
+    public Mono<JsonNode> call(WebClient webClient, Object body, Duration timeout) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return webClient.post()
+                    .uri(url)
+                    .bodyValue(body)
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .timeout(timeout)
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .doOnNext(response -> {
+                        long elapsed = System.nanoTime() - started;
+                        recordLatency(elapsed);
+                        JsonNode error = response.get("error");
+                        Timer timer = error == null
+                                ? successTimer
+                                : timer("rpc_error", error.path("code").asText("unknown"));
+                        timer.record(elapsed, TimeUnit.NANOSECONDS);
+                    })
+                    .doOnError(error -> failureTimer(error).record(System.nanoTime() - started, TimeUnit.NANOSECONDS))
+                    // Отмененный дублем вызов учитываем снизу, иначе квантиль занижается
+                    .doOnCancel(() -> recordLatency(System.nanoTime() - started));
+        });
+    }
+
+    /**
+     * Разрешает ли размыкатель вызовы (закрыт или полуоткрыт)
+     */
+    public boolean isCallPermitted() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    /**
+     * Квантиль задержек ответов
+     *
+     * @param fallback значение, пока статистика не накоплена
+     * @param minimum  нижняя граница результата
+     */
+    public Duration latencyQuantile(Duration fallback, Duration minimum) {
+        long nanos = quantileNanos;
+        if (nanos < 0) {
+            return fallback;
+        }
+        return Duration.ofNanos(Math.max(nanos, minimum.toNanos()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private Timer failureTimer(Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            return timer("rejected", "circuit_open");
+        }
+        if (error instanceof TimeoutException) {
+            return timer("timeout", "none");
+        }
+        if (error instanceof WebClientResponseException response) {
+            return timer("http_error", String.valueOf(response.getStatusCode().value()));
+        }
+        return timer("error", error.getClass().getSimpleName());
+    }
+
+    private Timer timer(String outcome, String code) {
+        return Timer.builder("solana.rpc.requests")
+                .description("Вызовы Solana RPC")
+                .tag("endpoint", name)
+                .tag("outcome", outcome)
+                .tag("code", code)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пишет задержку в кольцевой буфер и периодически пересчитывает квантиль
+     */
+    synchronized void recordLatency(long nanos) {
+        latencies[recorded % LATENCY_WINDOW] = nanos;
+        recorded++;
+        if (recorded % RECALCULATE_EVERY == 0) {
+            int size = Math.min(recorded, LATENCY_WINDOW);
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(size - 1, Math.ceil(quantile * size) - 1);
+            quantileNanos = sorted[Math.max(index, 0)];
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package ru.levandr.heliusapianalyzer.service.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import ru.levandr.heliusapianalyzer.codec.RaydiumAmmAccount;
+import ru.levandr.heliusapianalyzer.codec.SplTokenAccount;
+import ru.levandr.heliusapianalyzer.model.PoolReserves;
+import ru.levandr.heliusapianalyzer.model.PoolSnapshot;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.SolanaRpcService;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Потоковое обновление резервов пулов через WebSocket accountSubscribe
+ * Для каждого отслеживаемого пула подписывается на аккаунт пула (невыведенная прибыль)
+ * и на оба хранилища (балансы). Начальное состояние берется из RPC снимка,
+ * далее резервы обновляются по уведомлениям без запросов на каждый своп
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PoolAccountStreamer {
+    private static final int INITIAL_SNAPSHOT_CONCURRENCY = 16;
+
+    private final HeliusProperties heliusProperties;
+    private final SolanaRpcService solanaRpcService;
+    private final RaydiumPoolRepository poolRepository;
+    private final Scheduler persistenceScheduler;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, StreamedPool> pools = new ConcurrentHashMap<>();
+    private final Map<String, AccountBinding> accounts = new ConcurrentHashMap<>();
+    private final Sinks.Many<ReservesUpdate> updates = Sinks.many().multicast().directBestEffort();
+    private final RaydiumAmmAccount ammAccount = new RaydiumAmmAccount();
+
+    private volatile SolanaAccountSubscriber subscriber;
+
+    /**
+     * Подключается к WebSocket и подписывается на все активные пулы
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        HeliusProperties.Stream stream = heliusProperties.getStream();
+        if (!stream.isEnabled()) {
+            return;
+        }
+
+        URI endpoint = URI.create(String.format("%s?api-key=%s",
+                heliusProperties.getWsEndpoint(), heliusProperties.getApiKey()));
+        subscriber = new SolanaAccountSubscriber(new ReactorNettyWebSocketClient(), endpoint, objectMapper,
+                this::onAccountUpdate, stream.getMinBackoff(), stream.getMaxBackoff());
+        subscriber.start();
+
+        Mono.fromCallable(poolRepository::findByActiveTrue)
+                .subscribeOn(persistenceScheduler)
+                .flatMapIterable(activePools -> activePools)
+                .map(RaydiumPool::getAddress)
+                .flatMap(address -> solanaRpcService.getPoolSnapshot(address)
+                        .doOnNext(snapshot -> track(address, snapshot)), INITIAL_SNAPSHOT_CONCURRENCY)
+                .doOnComplete(() -> log.info("Streaming reserves for {} pools", pools.size()))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (subscriber != null) {
+            subscriber.stop();
+        }
+    }
+
+    public boolean isEnabled() {
+        return subscriber != null;
+    }
+
+    /**
+     * Начинает отслеживать пул, а для уже отслеживаемого обновляет состояние по снимку
+     *
+     * @param poolAddress адрес пула
+     * @param snapshot    состояние пула из RPC
+     */
+    public void track(String poolAddress, PoolSnapshot snapshot) {
+        SolanaAccountSubscriber current = subscriber;
+        if (current == null) {
+            return;
+        }
+
+        StreamedPool streamed = new StreamedPool(poolAddress, snapshot);
+        StreamedPool existing = pools.putIfAbsent(poolAddress, streamed);
+        if (existing != null) {
+            existing.refresh(snapshot);
+            return;
+        }
+
+        bind(current, poolAddress, new AccountBinding(streamed, AccountRole.POOL));
+        bind(current, snapshot.baseVault(), new AccountBinding(streamed, AccountRole.BASE_VAULT));
+        bind(current, snapshot.quoteVault(), new AccountBinding(streamed, AccountRole.QUOTE_VAULT));
+    }
+
+    /**
+     * Прекращает отслеживать пул
+     */
+    public void untrack(String poolAddress) {
+        StreamedPool streamed = pools.remove(poolAddress);
+        SolanaAccountSubscriber current = subscriber;
+        if (streamed == null || current == null) {
+            return;
+        }
+
+        for (String account : new String[]{poolAddress, streamed.baseVault, streamed.quoteVault}) {
+            accounts.remove(account);
+            current.unsubscribe(account);
+        }
+    }
+
+    /**
+     * Текущие резервы пула по данным потока
+     * Пустой результат, если пул не отслеживается или данные старше max-staleness:
+     * после обрыва соединения пропущенные уведомления не досылаются, и резервы нужно взять из RPC
+     */
+    public Optional<PoolReserves> currentReserves(String poolAddress) {
+        StreamedPool streamed = pools.get(poolAddress);
+        if (streamed == null) {
+            return Optional.empty();
+        }
+
+        long maxStalenessMillis = heliusProperties.getStream().getMaxStaleness().toMillis();
+        if (System.currentTimeMillis() - streamed.updatedAt > maxStalenessMillis) {
+            return Optional.empty();
+        }
+        return Optional.of(streamed.reserves());
+    }
+
+    /**
+     * Поток изменений резервов отслеживаемых пулов
+     */
+    public Flux<ReservesUpdate> updates() {
+        return updates.asFlux();
+    }
+
+    private void bind(SolanaAccountSubscriber current, String account, AccountBinding binding) {
+        accounts.put(account, binding);
+        current.subscribe(account);
+    }
+
+    /**
+     * Применяет уведомление об изменении аккаунта к состоянию пула
+     * Уведомления приходят последовательно из одного соединения
+     */
+    private void onAccountUpdate(String account, byte[] data) {
+        AccountBinding binding = accounts.get(account);
+        if (binding == null) {
+            return;
+        }
+
+        StreamedPool streamed = binding.pool();
+        switch (binding.role()) {
+            case POOL -> {
+                ammAccount.wrap(data, 0);
+                streamed.baseNeedTakePnl = ammAccount.baseNeedTakePnl();
+                streamed.quoteNeedTakePnl = ammAccount.quoteNeedTakePnl();
+            }
+            case BASE_VAULT -> streamed.baseVaultAmount = SplTokenAccount.amount(data, 0);
+            case QUOTE_VAULT -> streamed.quoteVaultAmount = SplTokenAccount.amount(data, 0);
+        }
+        streamed.updatedAt = System.currentTimeMillis();
+
+        updates.tryEmitNext(new ReservesUpdate(streamed.poolAddress, streamed.reserves()));
+    }
+
+    /**
+     * Изменение резервов пула
+     */
+    public record ReservesUpdate(String poolAddress, PoolReserves reserves) {
+    }
+
+    private enum AccountRole {
+        POOL, BASE_VAULT, QUOTE_VAULT
+    }
+
+    private record AccountBinding(StreamedPool pool, AccountRole role) {
+    }
+
+    /**
+     * Последнее известное состояние пула
+     */
+    private static final class StreamedPool {
+        private final String poolAddress;
+        private final String baseVault;
+        private final String quoteVault;
+        private volatile long baseVaultAmount;
+        private volatile long quoteVaultAmount;
+        private volatile long baseNeedTakePnl;
+        private volatile long quoteNeedTakePnl;
+        // Время последнего уведомления или снимка
+        private volatile long updatedAt;
+
+        private StreamedPool(String poolAddress, PoolSnapshot snapshot) {
+            this.poolAddress = poolAddress;
+            this.baseVault = snapshot.baseVault();
+            this.quoteVault = snapshot.quoteVault();
+            refresh(snapshot);
+        }
+
+        private void refresh(PoolSnapshot snapshot) {
+            this.baseVaultAmount = snapshot.baseVaultAmount();
+            this.quoteVaultAmount = snapshot.quoteVaultAmount();
+            this.baseNeedTakePnl = snapshot.baseNeedTakePnl();
+            this.quoteNeedTakePnl = snapshot.quoteNeedTakePnl();
+            this.updatedAt = System.currentTimeMillis();
+        }
+
+        private PoolReserves reserves() {
+            return new PoolSnapshot(baseVault, quoteVault, baseVaultAmount, quoteVaultAmount,
+                    baseNeedTakePnl, quoteNeedTakePnl).reserves();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.levandr.heliusapianalyzer.service.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Управляет подписками accountSubscribe на одном WebSocket соединении с Solana RPC
+ * Набор подписок хранится независимо от соединения: после обрыва клиент переподключается
+ * с экспоненциальной задержкой и заново подписывается на все аккаунты
+ */
+@Slf4j
+public class SolanaAccountSubscriber {
+
+    /**
+     * Получатель обновлений аккаунтов
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onAccountUpdate(String account, byte[] data);
+    }
+
+    private final WebSocketClient client;
+    private final URI endpoint;
+    private final ObjectMapper objectMapper;
+    private final Listener listener;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+
+    private final Set<String> accounts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+    private final AtomicLong requestIds = new AtomicLong();
+    private volatile Sinks.Many<Command> commands;
+    private volatile Disposable connection;
+
+    public SolanaAccountSubscriber(WebSocketClient client, URI endpoint, ObjectMapper objectMapper,
+                                   Listener listener, Duration minBackoff, Duration maxBackoff) {
+        this.client = client;
+        this.endpoint = endpoint;
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Открывает соединение и поддерживает его до вызова {@link #stop()}
+     */
+    public void start() {
+        connection = Mono.defer(() -> client.execute(endpoint, this::handleSession))
+                // Закрытие соединения сервером обрабатываем так же, как ошибку
+                .then(Mono.<Void>error(new IllegalStateException("WebSocket connection closed")))
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                    Duration delay = nextBackoff();
+                    log.warn("Account stream disconnected, reconnecting in {}: {}",
+                            delay, signal.failure().getMessage());
+                    return Mono.delay(delay);
+                })))
+                .subscribe();
+    }
+
+    public void stop() {
+        Disposable current = connection;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    /**
+     * Добавляет аккаунт в набор подписок
+     */
+    public void subscribe(String account) {
+        if (accounts.add(account)) {
+            send(new Command(account, true));
+        }
+    }
+
+    /**
+     * Удаляет аккаунт из набора подписок
+     */
+    public void unsubscribe(String account) {
+        if (accounts.remove(account)) {
+            send(new Command(account, false));
+        }
+    }
+
+    public int subscriptionCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Передает команду текущему соединению
+     * Вызовы идут из разных потоков, поэтому при конкурентной записи в очередь повторяем попытку.
+     * Без соединения команда не нужна: при подключении отправляется весь текущий набор
+     */
+    private void send(Command command) {
+        Sinks.Many<Command> current = commands;
+        if (current == null) {
+            return;
+        }
+
+        Sinks.EmitResult result;
+        while ((result = current.tryEmitNext(command)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            Thread.onSpinWait();
+        }
+        if (result.isFailure()) {
+            log.debug("{} command for {} not sent: {}",
+                    command.subscribe() ? "Subscribe" : "Unsubscribe", command.account(), result);
+        }
+    }
+
+    /**
+     * Обслуживает одно соединение: подписывает все аккаунты и разбирает уведомления
+     */
+    private Mono<Void> handleSession(WebSocketSession session) {
+        SessionState state = new SessionState();
+        log.info("Account stream connected, subscribing {} accounts", accounts.size());
+
+        // Очередь команд своя у каждого соединения и не теряет их при медленной отправке
+        Sinks.Many<Command> sessionCommands = Sinks.many().unicast().onBackpressureBuffer();
+        commands = sessionCommands;
+
+        // Сначала слушаем новые команды, затем досылаем текущий набор, чтобы ничего не потерять
+        Flux<String> requests = Flux.merge(
+                        sessionCommands.asFlux(),
+                        Flux.defer(() -> Flux.fromIterable(accounts)).map(account -> new Command(account, true)))
+                .concatMap(command -> Mono.justOrEmpty(toRequest(state, command)));
+
+        Mono<Void> outbound = session.send(requests.map(session::textMessage));
+        Mono<Void> inbound = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .doOnNext(payload -> handleMessage(state, payload))
+                .then();
+
+        return Mono.firstWithSignal(outbound, inbound);
+    }
+
+    /**
+     * Формирует JSON-RPC запрос подписки или отписки
+     */
+    private String toRequest(SessionState state, Command command) {
+        long id = requestIds.incrementAndGet();
+        Map<String, Object> request;
+        if (command.subscribe()) {
+            if (!state.subscribed.add(command.account())) {
+                return null;
+            }
+            state.pending.put(id, command.account());
+            request = Map.of("jsonrpc", "2.0", "id", id, "method", "accountSubscribe",
+                    "params", List.of(command.account(), Map.of("encoding", "base64", "commitment", "confirmed")));
+        } else {
+            state.subscribed.remove(command.account());
+            Long subscriptionId = state.subscriptionsByAccount.remove(command.account());
+            if (subscriptionId == null) {
+                return null;
+            }
+            state.accountsBySubscription.remove(subscriptionId);
+            request = Map.of("jsonrpc", "2.0", "id", id, "method", "accountUnsubscribe",
+                    "params", List.of(subscriptionId));
+        }
+
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (Exception e) {
+            log.error("Error serializing {} request for {}", request.get("method"), command.account(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Разбирает ответ на подписку или уведомление об изменении аккаунта
+     */
+    private void handleMessage(SessionState state, String payload) {
+        try {
+            JsonNode message = objectMapper.readTree(payload);
+            // Соединение работает - сбрасываем задержку переподключения
+            failedAttempts.set(0);
+
+            if (message.has("error")) {
+                log.warn("Account stream error: {}", message.get("error"));
+                return;
+            }
+
+            if (message.has("id") && message.has("result")) {
+                String account = state.pending.remove(message.get("id").asLong());
+                if (account != null && message.get("result").canConvertToLong()) {
+                    long subscriptionId = message.get("result").asLong();
+                    state.accountsBySubscription.put(subscriptionId, account);
+                    state.subscriptionsByAccount.put(account, subscriptionId);
+                }
+                return;
+            }
+
+            if (!"accountNotification".equals(message.path("method").asText())) {
+                return;
+            }
+
+            JsonNode params = message.path("params");
+            String account = state.accountsBySubscription.get(params.path("subscription").asLong());
+            JsonNode data = params.path("result").path("value").path("data");
+            if (account == null || !data.isArray() || data.isEmpty()) {
+                return;
+            }
+            listener.onAccountUpdate(account, Base64.getDecoder().decode(data.get(0).asText()));
+        } catch (Exception e) {
+            log.error("Error handling account stream message: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Экспоненциальная задержка переподключения с ограничением сверху
+     */
+    private Duration nextBackoff() {
+        int attempt = Math.min(failedAttempts.getAndIncrement(), 16);
+        Duration delay = minBackoff.multipliedBy(1L << attempt);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private record Command(String account, boolean subscribe) {
+    }
+
+    /**
+     * Состояние подписок в рамках одного соединения
+     */
+    private static final class SessionState {
+        private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+        private final Map<Long, String> pending = new ConcurrentHashMap<>();
+        private final Map<Long, String> accountsBySubscription = new ConcurrentHashMap<>();
+        private final Map<String, Long> subscriptionsByAccount = new ConcurrentHashMap<>();
+    }
+}
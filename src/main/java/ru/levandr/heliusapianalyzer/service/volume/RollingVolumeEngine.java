@@ -0,0 +1,192 @@
+package ru.levandr.heliusapianalyzer.service.volume;
+
+import org.springframework.stereotype.Component;
+import ru.levandr.heliusapianalyzer.model.VolumeStats;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Скользящие объемы торгов пулов на примитивных массивах
+ * <p>
+ * Для каждого пула и каждой стороны (токен A, токен B) хранится кольцо из 60 минутных корзин
+ * (окно 1 час) и кольцо из 24 часовых корзин (окна 6 и 24 часа). Корзина помечена номером
+ * минуты/часа: запись в корзину с устаревшей меткой сначала обнуляет ее, поэтому устаревание - O(1)
+ * и не требует фоновой очистки. Чтение суммирует только корзины с метками внутри окна.
+ * Часовые окна имеют точность до часа: текущий неполный час плюс предыдущие полные.
+ * <p>
+ * Состояние пулов лежит в блоках по {@value #BLOCK_SIZE} слотов: около 1.7 КБ на пул без объектов
+ * на пул, кроме индекса адресов. Запись для пула выполняет его полоса обработки, чтение допускается
+ * из любого потока и может не увидеть свопы, применяемые в этот момент
+ */
+@Component
+public class RollingVolumeEngine {
+    static final int MINUTES = 60;
+    static final int HOURS = 24;
+    private static final int BLOCK_SIZE = 1024;
+    private static final int BLOCK_SHIFT = 10;
+    private static final int SIX_HOURS = 6;
+
+    /**
+     * Окно объема
+     */
+    public enum Window {
+        ONE_HOUR, SIX_HOURS, DAY
+    }
+
+    private final Clock clock;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile Block[] blocks = new Block[0];
+    private int nextSlot;
+
+    public RollingVolumeEngine() {
+        this(Clock.systemUTC());
+    }
+
+    RollingVolumeEngine(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Учитывает своп в объемах пула
+     * Свопы старше окна 24 часа игнорируются
+     *
+     * @param poolAddress адрес пула
+     * @param epochSecond время свопа (unix, секунды)
+     * @param amountA     объем в токене A
+     * @param amountB     объем в токене B
+     */
+    public void record(String poolAddress, long epochSecond, double amountA, double amountB) {
+        int minute = (int) Math.floorDiv(epochSecond, 60L);
+        int hour = Math.floorDiv(minute, 60);
+        if (hour <= currentHour() - HOURS) {
+            return;
+        }
+
+        int slot = slots.computeIfAbsent(poolAddress, key -> allocate());
+        Block block = blocks[slot >>> BLOCK_SHIFT];
+        int offset = slot & (BLOCK_SIZE - 1);
+
+        int minuteIndex = offset * MINUTES + Math.floorMod(minute, MINUTES);
+        int minuteStamp = block.minuteStamps[minuteIndex];
+        if (minuteStamp < minute) {
+            block.minuteStamps[minuteIndex] = minute;
+            block.minuteA[minuteIndex] = amountA;
+            block.minuteB[minuteIndex] = amountB;
+        } else if (minuteStamp == minute) {
+            block.minuteA[minuteIndex] += amountA;
+            block.minuteB[minuteIndex] += amountB;
+        }
+        // Корзина уже занята более новой минутой: своп старше часового окна, учитывается только по часам
+
+        int hourIndex = offset * HOURS + Math.floorMod(hour, HOURS);
+        int hourStamp = block.hourStamps[hourIndex];
+        if (hourStamp < hour) {
+            block.hourStamps[hourIndex] = hour;
+            block.hourA[hourIndex] = amountA;
+            block.hourB[hourIndex] = amountB;
+        } else if (hourStamp == hour) {
+            block.hourA[hourIndex] += amountA;
+            block.hourB[hourIndex] += amountB;
+        }
+    }
+
+    /**
+     * Объем пула в токене A за окно
+     */
+    public double volumeA(String poolAddress, Window window) {
+        return volume(poolAddress, window, true);
+    }
+
+    /**
+     * Объем пула в токене B за окно
+     */
+    public double volumeB(String poolAddress, Window window) {
+        return volume(poolAddress, window, false);
+    }
+
+    /**
+     * Объемы пула за все окна
+     */
+    public VolumeStats stats(String poolAddress) {
+        return new VolumeStats(
+                volumeA(poolAddress, Window.ONE_HOUR), volumeB(poolAddress, Window.ONE_HOUR),
+                volumeA(poolAddress, Window.SIX_HOURS), volumeB(poolAddress, Window.SIX_HOURS),
+                volumeA(poolAddress, Window.DAY), volumeB(poolAddress, Window.DAY));
+    }
+
+    /**
+     * Число пулов с учтенными объемами
+     */
+    public int trackedPools() {
+        return slots.size();
+    }
+
+    private double volume(String poolAddress, Window window, boolean sideA) {
+        Integer slot = slots.get(poolAddress);
+        if (slot == null) {
+            return 0;
+        }
+        Block block = blocks[slot >>> BLOCK_SHIFT];
+        int offset = slot & (BLOCK_SIZE - 1);
+
+        return switch (window) {
+            case ONE_HOUR -> sum(sideA ? block.minuteA : block.minuteB, block.minuteStamps,
+                    offset * MINUTES, MINUTES, currentMinute(), MINUTES);
+            case SIX_HOURS -> sum(sideA ? block.hourA : block.hourB, block.hourStamps,
+                    offset * HOURS, HOURS, currentHour(), SIX_HOURS);
+            case DAY -> sum(sideA ? block.hourA : block.hourB, block.hourStamps,
+                    offset * HOURS, HOURS, currentHour(), HOURS);
+        };
+    }
+
+    /**
+     * Суммирует корзины кольца, метки которых попадают в (now - span, now]
+     */
+    private static double sum(double[] values, int[] stamps, int from, int length, int now, int span) {
+        double total = 0;
+        for (int i = from; i < from + length; i++) {
+            int age = now - stamps[i];
+            if (age >= 0 && age < span) {
+                total += values[i];
+            }
+        }
+        return total;
+    }
+
+    private int currentMinute() {
+        return (int) Math.floorDiv(clock.millis(), 60_000L);
+    }
+
+    private int currentHour() {
+        return Math.floorDiv(currentMinute(), 60);
+    }
+
+    /**
+     * Выделяет слот пула, при необходимости добавляя блок
+     */
+    private synchronized int allocate() {
+        int slot = nextSlot++;
+        int blockIndex = slot >>> BLOCK_SHIFT;
+        if (blockIndex >= blocks.length) {
+            Block[] grown = new Block[blockIndex + 1];
+            System.arraycopy(blocks, 0, grown, 0, blocks.length);
+            grown[blockIndex] = new Block();
+            blocks = grown;
+        }
+        return slot;
+    }
+
+    /**
+     * Корзины {@value #BLOCK_SIZE} пулов в плоских массивах
+     */
+    private static final class Block {
+        private final double[] minuteA = new double[BLOCK_SIZE * MINUTES];
+        private final double[] minuteB = new double[BLOCK_SIZE * MINUTES];
+        private final int[] minuteStamps = new int[BLOCK_SIZE * MINUTES];
+        private final double[] hourA = new double[BLOCK_SIZE * HOURS];
+        private final double[] hourB = new double[BLOCK_SIZE * HOURS];
+        private final int[] hourStamps = new int[BLOCK_SIZE * HOURS];
+    }
+}
@@ -0,0 +1,142 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет смещения полей аккаунта пула Raydium AMM v4 и токен-аккаунта SPL
+ * Аккаунты собираются вручную по смещениям раскладки, а не по константам декодеров
+ */
+class RaydiumAmmAccountTest {
+    private static final byte[] BASE_VAULT = key(1);
+    private static final byte[] QUOTE_VAULT = key(2);
+    private static final byte[] BASE_MINT = key(3);
+    private static final byte[] QUOTE_MINT = key(4);
+
+    @Test
+    void readsFieldsOfFullAccount() {
+        RaydiumAmmAccount account = new RaydiumAmmAccount().wrap(ammAccount(), 0);
+
+        assertThat(account.tradeFeeNumerator()).isEqualTo(25);
+        assertThat(account.tradeFeeDenominator()).isEqualTo(10_000);
+        assertThat(account.baseNeedTakePnl()).isEqualTo(1_234);
+        // Максимальный u64 возвращается как long -1
+        assertThat(account.quoteNeedTakePnl()).isEqualTo(-1L);
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.BASE_VAULT)).isEqualTo(base58(BASE_VAULT));
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_VAULT)).isEqualTo(base58(QUOTE_VAULT));
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.BASE_MINT)).isEqualTo(base58(BASE_MINT));
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_MINT)).isEqualTo(base58(QUOTE_MINT));
+        assertThat(account.pubkeyEquals(RaydiumAmmAccount.BASE_VAULT, BASE_VAULT)).isTrue();
+        assertThat(account.pubkeyEquals(RaydiumAmmAccount.BASE_VAULT, QUOTE_VAULT)).isFalse();
+    }
+
+    @Test
+    void readsFieldsOfReservesSlice() {
+        // Срез, который запрашивает RPC: от trade fee до quoteMint
+        byte[] slice = Arrays.copyOfRange(ammAccount(), 144, 464);
+        assertThat(slice).hasSize(RaydiumAmmAccount.RESERVES_SLICE_LENGTH);
+
+        RaydiumAmmAccount account = new RaydiumAmmAccount().wrap(slice, RaydiumAmmAccount.RESERVES_SLICE_OFFSET);
+
+        assertThat(account.baseNeedTakePnl()).isEqualTo(1_234);
+        assertThat(account.quoteNeedTakePnl()).isEqualTo(-1L);
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.BASE_VAULT)).isEqualTo(base58(BASE_VAULT));
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_VAULT)).isEqualTo(base58(QUOTE_VAULT));
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.BASE_MINT)).isEqualTo(base58(BASE_MINT));
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_MINT)).isEqualTo(base58(QUOTE_MINT));
+        // Поля вне среза не читаются
+        assertThat(account.covers(RaydiumAmmAccount.LP_MINT, RaydiumAmmAccount.PUBKEY_LENGTH)).isFalse();
+        assertThatThrownBy(account::status).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void rejectsDataOutsideOfAccount() {
+        RaydiumAmmAccount account = new RaydiumAmmAccount();
+
+        assertThatThrownBy(() -> account.wrap(null, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> account.wrap(new byte[RaydiumAmmAccount.ACCOUNT_LENGTH + 1], 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> account.wrap(new byte[RaydiumAmmAccount.RESERVES_SLICE_LENGTH], 500))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> account.wrap(new byte[8], -1)).isInstanceOf(IllegalArgumentException.class);
+
+        // Укороченный аккаунт принимается как срез, но поля за его концом не читаются
+        account.wrap(Arrays.copyOf(ammAccount(), 350), 0);
+        assertThat(account.baseNeedTakePnl()).isEqualTo(1_234);
+        assertThatThrownBy(() -> account.pubkeyBase58(RaydiumAmmAccount.BASE_VAULT))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void readsTokenAccountAmountAndMint() {
+        byte[] tokenAccount = tokenAccount(QUOTE_MINT, 5_000_000_000L);
+
+        assertThat(tokenAccount).hasSize(SplTokenAccount.ACCOUNT_LENGTH);
+        assertThat(Arrays.copyOfRange(tokenAccount, SplTokenAccount.MINT_OFFSET,
+                SplTokenAccount.MINT_OFFSET + RaydiumAmmAccount.PUBKEY_LENGTH)).isEqualTo(QUOTE_MINT);
+        assertThat(SplTokenAccount.amount(tokenAccount, 0)).isEqualTo(5_000_000_000L);
+
+        // Срез баланса, который запрашивает RPC
+        byte[] slice = Arrays.copyOfRange(tokenAccount, 64, 72);
+        assertThat(SplTokenAccount.amount(slice, SplTokenAccount.AMOUNT_OFFSET)).isEqualTo(5_000_000_000L);
+    }
+
+    @Test
+    void rejectsTokenAccountDataWithoutAmount() {
+        byte[] tokenAccount = tokenAccount(QUOTE_MINT, 1);
+
+        assertThatThrownBy(() -> SplTokenAccount.amount(Arrays.copyOf(tokenAccount, 70), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SplTokenAccount.amount(new byte[4], SplTokenAccount.AMOUNT_OFFSET))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SplTokenAccount.amount(new byte[8], SplTokenAccount.AMOUNT_OFFSET + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Аккаунт пула по раскладке LIQUIDITY_STATE_LAYOUT_V4
+     */
+    private static byte[] ammAccount() {
+        ByteBuffer buffer = ByteBuffer.allocate(752).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(0, 6);
+        buffer.putLong(144, 25);
+        buffer.putLong(152, 10_000);
+        buffer.putLong(192, 1_234);
+        buffer.putLong(200, -1L);
+        buffer.put(336, BASE_VAULT);
+        buffer.put(368, QUOTE_VAULT);
+        buffer.put(400, BASE_MINT);
+        buffer.put(432, QUOTE_MINT);
+        buffer.put(464, key(5));
+        return buffer.array();
+    }
+
+    /**
+     * Токен-аккаунт SPL: mint, owner, amount и остальные поля до 165 байт
+     */
+    private static byte[] tokenAccount(byte[] mint, long amount) {
+        ByteBuffer buffer = ByteBuffer.allocate(165).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(0, mint);
+        buffer.put(32, key(9));
+        buffer.putLong(64, amount);
+        return buffer.array();
+    }
+
+    private static byte[] key(int seed) {
+        byte[] key = new byte[32];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) (seed * 31 + i);
+        }
+        return key;
+    }
+
+    private static String base58(byte[] key) {
+        return Base58.encode(key, 0, key.length);
+    }
+}
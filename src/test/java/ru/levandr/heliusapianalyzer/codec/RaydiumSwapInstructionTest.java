@@ -0,0 +1,100 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RaydiumSwapInstructionTest {
+
+    @Test
+    void base58DecodeReversesEncode() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            byte[] data = new byte[random.nextInt(40)];
+            random.nextBytes(data);
+            // Ведущие нули кодируются отдельно, проверяем и их
+            for (int j = 0; j < Math.min(data.length, random.nextInt(3)); j++) {
+                data[j] = 0;
+            }
+
+            assertThat(Base58.decode(Base58.encode(data, 0, data.length))).isEqualTo(data);
+        }
+
+        assertThat(Base58.decode("11")).containsExactly(0, 0);
+        assertThatThrownBy(() -> Base58.decode("0OIl")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(Base58.decode("zzzzzzzzzz", new byte[2])).isEqualTo(-1);
+    }
+
+    @Test
+    void decodesSwapBaseInWithTargetOrders() {
+        RaydiumSwapInstruction swap = RaydiumSwapInstruction.decode(
+                data(9, 1_500_000_000L, -2L), accounts(18));
+
+        assertThat(swap).isNotNull();
+        assertThat(swap.kind()).isEqualTo(RaydiumSwapInstruction.Kind.SWAP_BASE_IN);
+        assertThat(swap.exactIn()).isTrue();
+        assertThat(swap.amountIn()).isEqualTo(1_500_000_000L);
+        // Суммы - u64: максимальное значение читается как беззнаковое
+        assertThat(Long.toUnsignedString(swap.amountOut())).isEqualTo("18446744073709551614");
+        assertThat(swap.amm()).isEqualTo("account-1");
+        assertThat(swap.baseVault()).isEqualTo("account-5");
+        assertThat(swap.quoteVault()).isEqualTo("account-6");
+        assertThat(swap.userSource()).isEqualTo("account-15");
+        assertThat(swap.userDestination()).isEqualTo("account-16");
+        assertThat(swap.userOwner()).isEqualTo("account-17");
+    }
+
+    @Test
+    void decodesSwapBaseOutWithoutTargetOrders() {
+        RaydiumSwapInstruction swap = RaydiumSwapInstruction.decode(data(11, 700L, 500L), accounts(17));
+
+        assertThat(swap).isNotNull();
+        assertThat(swap.kind()).isEqualTo(RaydiumSwapInstruction.Kind.SWAP_BASE_OUT);
+        assertThat(swap.exactIn()).isFalse();
+        assertThat(swap.amountIn()).isEqualTo(700L);
+        assertThat(swap.amountOut()).isEqualTo(500L);
+        assertThat(swap.amm()).isEqualTo("account-1");
+        assertThat(swap.baseVault()).isEqualTo("account-4");
+        assertThat(swap.quoteVault()).isEqualTo("account-5");
+        assertThat(swap.userSource()).isEqualTo("account-14");
+        assertThat(swap.userDestination()).isEqualTo("account-15");
+        assertThat(swap.userOwner()).isEqualTo("account-16");
+    }
+
+    @Test
+    void rejectsOtherInstructions() {
+        // Deposit (3), неподходящее число аккаунтов, лишние байты и некорректный base58
+        assertThat(RaydiumSwapInstruction.decode(data(3, 1, 1), accounts(18))).isNull();
+        assertThat(RaydiumSwapInstruction.decode(data(9, 1, 1), accounts(16))).isNull();
+        assertThat(RaydiumSwapInstruction.decode(
+                Base58.encode(new byte[]{9, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17}, 0, 18),
+                accounts(18))).isNull();
+        assertThat(RaydiumSwapInstruction.decode("0OIl", accounts(18))).isNull();
+        assertThat(RaydiumSwapInstruction.decode(null, accounts(18))).isNull();
+    }
+
+    private static String data(int discriminator, long first, long second) {
+        byte[] bytes = ByteBuffer.allocate(RaydiumSwapInstruction.DATA_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) discriminator)
+                .putLong(first)
+                .putLong(second)
+                .array();
+        return Base58.encode(bytes, 0, bytes.length);
+    }
+
+    private static List<String> accounts(int count) {
+        List<String> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add("account-" + i);
+        }
+        return accounts;
+    }
+}
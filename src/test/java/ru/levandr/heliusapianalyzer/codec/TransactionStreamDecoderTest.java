@@ -0,0 +1,101 @@
+package ru.levandr.heliusapianalyzer.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionStreamDecoderTest {
+    private static final String PAGE = """
+            [
+              {"description": "swap", "type": "SWAP", "fee": 5000, "signature": "sig-1", "timestamp": 1700000001,
+               "nativeTransfers": [{"amount": 1}],
+               "tokenTransfers": [{"mint": "mint-a", "tokenAmount": 1.5, "fromUserAccount": "u1"}],
+               "instructions": [{"programId": "p", "accounts": ["a", "b", "c"], "data": "x",
+                                 "innerInstructions": [{"type": "TRANSFER", "accounts": []}]}],
+               "events": {"swap": {"nativeInput": null}}},
+              {"type": "TRANSFER", "signature": "sig-2", "timestamp": 1700000000,
+               "tokenTransfers": [{"mint": "mint-b"}], "instructions": []},
+              {"signature": "sig-3", "timestamp": null, "type": "SWAP", "tokenTransfers": [], "instructions": []}
+            ]
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void decodesElementsAcrossArbitraryChunkBoundaries() {
+        for (int chunkSize : new int[]{1, 7, 64, PAGE.length()}) {
+            List<RaydiumSwapTransaction> decoded = TransactionStreamDecoder.decode(chunks(PAGE, chunkSize), objectMapper)
+                    .collectList()
+                    .block();
+
+            assertThat(decoded).extracting(RaydiumSwapTransaction::getSignature)
+                    .containsExactly("sig-1", "sig-2", "sig-3");
+
+            RaydiumSwapTransaction swap = decoded.get(0);
+            assertThat(swap.getType()).isEqualTo("SWAP");
+            assertThat(swap.getTimestamp()).isEqualTo(1700000001L);
+            assertThat(swap.getFee()).isEqualTo(5000L);
+            assertThat(swap.getTokenTransfers()).singleElement()
+                    .satisfies(transfer -> assertThat(transfer.getMint()).isEqualTo("mint-a"));
+            assertThat(swap.getInstructions()).singleElement()
+                    .satisfies(instruction -> assertThat(instruction.getAccounts()).containsExactly("a", "b", "c"));
+
+            // Транзакция другого типа не связывается: только поля для постраничной загрузки
+            RaydiumSwapTransaction transfer = decoded.get(1);
+            assertThat(transfer.getType()).isEqualTo("TRANSFER");
+            assertThat(transfer.getTimestamp()).isEqualTo(1700000000L);
+            assertThat(transfer.getTokenTransfers()).isNull();
+
+            assertThat(decoded.get(2).getTimestamp()).isNull();
+            assertThat(decoded.get(2).getTokenTransfers()).isEmpty();
+        }
+    }
+
+    @Test
+    void emitsElementsBeforeResponseEnds() {
+        String firstElement = PAGE.substring(0, PAGE.indexOf("{\"type\": \"TRANSFER\""));
+
+        StepVerifier.create(TransactionStreamDecoder.decode(
+                        chunks(firstElement, 16).concatWith(Flux.never()), objectMapper))
+                .assertNext(tx -> assertThat(tx.getSignature()).isEqualTo("sig-1"))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void failsOnTruncatedResponse() {
+        String truncated = PAGE.substring(0, PAGE.indexOf("sig-3"));
+
+        StepVerifier.create(TransactionStreamDecoder.decode(chunks(truncated, 32), objectMapper))
+                .expectNextCount(2)
+                .expectError()
+                .verify();
+    }
+
+    @Test
+    void rejectsNonArrayResponse() {
+        StepVerifier.create(TransactionStreamDecoder.decode(chunks("{\"error\": \"bad\"}", 4), objectMapper))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    private static Flux<DataBuffer> chunks(String json, int chunkSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> parts = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            parts.add(Arrays.copyOfRange(bytes, offset, Math.min(bytes.length, offset + chunkSize)));
+        }
+        return Flux.fromIterable(parts).map(DefaultDataBufferFactory.sharedInstance::wrap);
+    }
+}
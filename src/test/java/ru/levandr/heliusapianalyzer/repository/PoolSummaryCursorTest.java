@@ -0,0 +1,86 @@
+package ru.levandr.heliusapianalyzer.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет чтение курсора по запросу и освобождение соединения при любом завершении потока
+ */
+class PoolSummaryCursorTest {
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet resultSet = mock(ResultSet.class);
+    private final PoolSummaryCursor cursor = new PoolSummaryCursor(dataSource, Schedulers.immediate());
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getString("address")).thenReturn("pool-1", "pool-2", "pool-3");
+    }
+
+    @Test
+    void streamsRowsInTransactionAndReleasesConnection() throws SQLException {
+        StepVerifier.create(cursor.streamActive().map(PoolSummary::address))
+                .expectNext("pool-1", "pool-2", "pool-3")
+                .verifyComplete();
+
+        verify(connection).setAutoCommit(false);
+        verify(statement).setFetchSize(500);
+        assertReleased();
+    }
+
+    @Test
+    void releasesConnectionWhenSubscriberCancels() throws SQLException {
+        StepVerifier.create(cursor.streamActive().map(PoolSummary::address), 1)
+                .expectNext("pool-1")
+                .thenCancel()
+                .verify();
+
+        // Остальные строки не читались
+        verify(resultSet, times(1)).next();
+        assertReleased();
+    }
+
+    @Test
+    void releasesConnectionWhenReadFails() throws SQLException {
+        when(resultSet.next()).thenReturn(true).thenThrow(new SQLException("connection reset"));
+
+        StepVerifier.create(cursor.streamActive().map(PoolSummary::address))
+                .expectNext("pool-1")
+                .expectErrorMessage("connection reset")
+                .verify();
+
+        assertReleased();
+    }
+
+    private void assertReleased() throws SQLException {
+        InOrder order = inOrder(connection);
+        order.verify(connection).rollback();
+        order.verify(connection).setAutoCommit(true);
+        verify(resultSet).close();
+        verify(statement).close();
+        verify(connection).close();
+    }
+}
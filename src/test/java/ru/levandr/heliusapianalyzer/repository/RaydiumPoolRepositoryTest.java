@@ -0,0 +1,65 @@
+package ru.levandr.heliusapianalyzer.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет постраничное чтение активных пулов по ключу на встроенной БД
+ */
+@DataJpaTest
+class RaydiumPoolRepositoryTest {
+
+    @Autowired
+    private RaydiumPoolRepository poolRepository;
+
+    @BeforeEach
+    void setUp() {
+        poolRepository.save(pool("pool-3", true));
+        poolRepository.save(pool("pool-1", true));
+        poolRepository.save(pool("pool-2", false));
+        poolRepository.save(pool("pool-4", true));
+    }
+
+    @Test
+    void pagesActivePoolsByAddress() {
+        assertThat(poolRepository.findActiveSummariesAfter("", Limit.of(2)))
+                .extracting(PoolSummary::address)
+                .containsExactly("pool-1", "pool-3");
+        // Неактивный pool-2 пропускается, следующая страница начинается строго после ключа
+        assertThat(poolRepository.findActiveSummariesAfter("pool-1", Limit.of(2)))
+                .extracting(PoolSummary::address)
+                .containsExactly("pool-3", "pool-4");
+        assertThat(poolRepository.findActiveSummariesAfter("pool-4", Limit.of(2))).isEmpty();
+    }
+
+    @Test
+    void mapsPoolColumnsToSummary() {
+        assertThat(poolRepository.findActiveSummariesAfter("pool-3", Limit.of(1))).singleElement()
+                .satisfies(summary -> {
+                    assertThat(summary.tokenAMint()).isEqualTo("mint-A");
+                    assertThat(summary.tokenBMint()).isEqualTo("mint-B");
+                    assertThat(summary.liquidityB()).isEqualByComparingTo("200");
+                });
+    }
+
+    private static RaydiumPool pool(String address, boolean active) {
+        RaydiumPool pool = new RaydiumPool();
+        pool.setAddress(address);
+        pool.setTokenAMint("mint-A");
+        pool.setTokenBMint("mint-B");
+        pool.setPrice(BigDecimal.ONE);
+        pool.setLiquidityA(BigDecimal.valueOf(100));
+        pool.setLiquidityB(BigDecimal.valueOf(200));
+        pool.setActive(active);
+        return pool;
+    }
+}
@@ -0,0 +1,226 @@
+package ru.levandr.heliusapianalyzer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.codec.Base58;
+import ru.levandr.heliusapianalyzer.codec.RaydiumSwapInstruction;
+import ru.levandr.heliusapianalyzer.model.InstructionData;
+import ru.levandr.heliusapianalyzer.model.PoolPage;
+import ru.levandr.heliusapianalyzer.model.PoolReserves;
+import ru.levandr.heliusapianalyzer.model.PoolSummary;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.model.TokenTransfer;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.repository.PoolSummaryCursor;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.cache.PoolStateCache;
+import ru.levandr.heliusapianalyzer.service.candle.CandleAggregator;
+import ru.levandr.heliusapianalyzer.service.events.SwapEventWriter;
+import ru.levandr.heliusapianalyzer.service.execution.ProcessingExecution;
+import ru.levandr.heliusapianalyzer.service.graph.PoolGraph;
+import ru.levandr.heliusapianalyzer.service.partition.PoolLaneExecutor;
+import ru.levandr.heliusapianalyzer.service.ranking.PoolRanking;
+import ru.levandr.heliusapianalyzer.service.stream.PoolAccountStreamer;
+import ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет границы страниц списка активных пулов и проверку изменения цены при свопе
+ */
+class RaydiumPoolServiceTest {
+    private static final String POOL = "account-1";
+
+    private final RaydiumPoolRepository poolRepository = mock(RaydiumPoolRepository.class);
+    private final PoolStateCache poolStateCache = mock(PoolStateCache.class);
+    private final PoolAccountStreamer poolAccountStreamer = mock(PoolAccountStreamer.class);
+    private final PoolLaneExecutor poolLaneExecutor = mock(PoolLaneExecutor.class);
+    private final CandleAggregator candleAggregator = mock(CandleAggregator.class);
+    private final PoolGraph poolGraph = mock(PoolGraph.class);
+    private final PoolRanking poolRanking = mock(PoolRanking.class);
+    private final Sinks.Many<PoolAccountStreamer.ReservesUpdate> streamed = Sinks.many().multicast().directBestEffort();
+    private final RaydiumPoolService service = new RaydiumPoolService(poolRepository,
+            mock(SolanaRpcService.class), poolStateCache, poolAccountStreamer,
+            poolLaneExecutor, mock(RollingVolumeEngine.class), mock(SwapEventWriter.class),
+            candleAggregator, poolGraph, poolRanking,
+            mock(PoolSummaryCursor.class), Schedulers.immediate(), mock(ProcessingExecution.class),
+            new HeliusProperties(), new SimpleMeterRegistry());
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Полоса применяет изменения сразу в вызывающем потоке
+        when(poolLaneExecutor.submit(anyString(), any(), any())).thenAnswer(invocation -> {
+            Mono<Object> prepare = invocation.getArgument(1);
+            Consumer<Object> apply = invocation.getArgument(2);
+            return prepare.doOnNext(apply).then();
+        });
+        when(poolLaneExecutor.execute(anyString(), any()))
+                .thenAnswer(invocation -> Mono.fromRunnable(invocation.getArgument(1)));
+        when(poolAccountStreamer.updates()).thenReturn(streamed.asFlux());
+        service.init();
+    }
+
+    @Test
+    void fullPageLinksToNextPage() {
+        when(poolRepository.findActiveSummariesAfter("", Limit.of(2)))
+                .thenReturn(List.of(summary("pool-1"), summary("pool-2")));
+        when(poolRepository.findActiveSummariesAfter("pool-2", Limit.of(2)))
+                .thenReturn(List.of(summary("pool-3")));
+
+        PoolPage first = service.getActivePools("", 2).block(Duration.ofSeconds(1));
+        assertThat(first.pools()).extracting(PoolSummary::address).containsExactly("pool-1", "pool-2");
+        assertThat(first.next()).isEqualTo("pool-2");
+
+        PoolPage last = service.getActivePools(first.next(), 2).block(Duration.ofSeconds(1));
+        assertThat(last.pools()).extracting(PoolSummary::address).containsExactly("pool-3");
+        assertThat(last.next()).isNull();
+    }
+
+    @Test
+    void pageOfExactlyLimitIsFollowedByEmptyLastPage() {
+        when(poolRepository.findActiveSummariesAfter("", Limit.of(2)))
+                .thenReturn(List.of(summary("pool-1"), summary("pool-2")));
+        when(poolRepository.findActiveSummariesAfter("pool-2", Limit.of(2)))
+                .thenReturn(List.of());
+
+        // Полная страница не знает, что она последняя, поэтому отдает ключ продолжения
+        PoolPage first = service.getActivePools("", 2).block(Duration.ofSeconds(1));
+        assertThat(first.next()).isEqualTo("pool-2");
+
+        PoolPage last = service.getActivePools(first.next(), 2).block(Duration.ofSeconds(1));
+        assertThat(last.pools()).isEmpty();
+        assertThat(last.next()).isNull();
+    }
+
+    @Test
+    void rejectedPriceChangeLeavesCachedPoolAndGraphUnchanged() {
+        RaydiumPool pool = pool();
+        when(poolStateCache.getOrLoad(POOL)).thenReturn(Mono.just(pool));
+        // Цена выросла вдвое при допустимых 20%
+        when(poolAccountStreamer.currentReserves(POOL))
+                .thenReturn(Optional.of(new PoolReserves(2_000_000, 1_000_000)));
+
+        service.processPoolFromSwap(swap("sig-1")).block(Duration.ofSeconds(1));
+
+        assertThat(pool.getPrice()).isEqualByComparingTo(BigDecimal.ONE);
+        assertThat(pool.getLiquidityA()).isEqualByComparingTo(BigDecimal.valueOf(1_000_000));
+        assertThat(pool.getLiquidityB()).isEqualByComparingTo(BigDecimal.valueOf(1_000_000));
+        verify(poolGraph, never()).update(anyString(), any(), any(), anyLong(), anyLong());
+        verify(poolStateCache, never()).markDirty(any());
+        verify(poolRanking, never()).update(any());
+    }
+
+    @Test
+    void acceptedPriceChangeUpdatesCachedPoolAndGraph() {
+        RaydiumPool pool = pool();
+        when(poolStateCache.getOrLoad(POOL)).thenReturn(Mono.just(pool));
+        when(poolAccountStreamer.currentReserves(POOL))
+                .thenReturn(Optional.of(new PoolReserves(1_100_000, 1_000_000)));
+
+        service.processPoolFromSwap(swap("sig-1")).block(Duration.ofSeconds(1));
+
+        assertThat(pool.getPrice()).isEqualByComparingTo(new BigDecimal("1.1"));
+        assertThat(pool.getLiquidityA()).isEqualByComparingTo(BigDecimal.valueOf(1_100_000));
+        verify(poolGraph).update(POOL, "mint-A", "mint-B", 1_100_000, 1_000_000);
+        verify(poolStateCache).markDirty(pool);
+        verify(candleAggregator).onSwap(eq(POOL), anyLong(), eq(1.1), eq(1.0), eq(2.0));
+    }
+
+    @Test
+    void validatesPriceChangeOfStreamedReserves() {
+        RaydiumPool pool = pool();
+        when(poolStateCache.getIfPresent(POOL)).thenReturn(Optional.of(pool));
+
+        streamed.tryEmitNext(new PoolAccountStreamer.ReservesUpdate(POOL, new PoolReserves(2_000_000, 1_000_000)));
+
+        assertThat(pool.getPrice()).isEqualByComparingTo(BigDecimal.ONE);
+        assertThat(pool.getLiquidityA()).isEqualByComparingTo(BigDecimal.valueOf(1_000_000));
+        verify(poolGraph, never()).update(anyString(), any(), any(), anyLong(), anyLong());
+        verify(poolStateCache, never()).markDirty(any());
+
+        streamed.tryEmitNext(new PoolAccountStreamer.ReservesUpdate(POOL, new PoolReserves(1_100_000, 1_000_000)));
+
+        assertThat(pool.getPrice()).isEqualByComparingTo(new BigDecimal("1.1"));
+        verify(poolGraph).update(POOL, "mint-A", "mint-B", 1_100_000, 1_000_000);
+        verify(poolStateCache).markDirty(pool);
+    }
+
+    private static RaydiumPool pool() {
+        RaydiumPool pool = new RaydiumPool();
+        pool.setAddress(POOL);
+        pool.setActive(true);
+        pool.setTokenAMint("mint-A");
+        pool.setTokenBMint("mint-B");
+        pool.setLiquidityA(BigDecimal.valueOf(1_000_000));
+        pool.setLiquidityB(BigDecimal.valueOf(1_000_000));
+        pool.setPrice(BigDecimal.ONE);
+        return pool;
+    }
+
+    /**
+     * SwapBaseIn по пулу account-1: 1 токена A в хранилище account-5, 2 токена B из хранилища account-6
+     */
+    private static RaydiumSwapTransaction swap(String signature) {
+        byte[] data = ByteBuffer.allocate(RaydiumSwapInstruction.DATA_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) RaydiumSwapInstruction.Kind.SWAP_BASE_IN.discriminator())
+                .putLong(1_000)
+                .putLong(0)
+                .array();
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 18; i++) {
+            accounts.add("account-" + i);
+        }
+
+        InstructionData instruction = new InstructionData();
+        instruction.setProgramId(RaydiumSwapInstruction.PROGRAM_ID);
+        instruction.setData(Base58.encode(data, 0, data.length));
+        instruction.setAccounts(accounts);
+
+        RaydiumSwapTransaction swapTx = new RaydiumSwapTransaction();
+        swapTx.setSignature(signature);
+        swapTx.setTimestamp(System.currentTimeMillis() / 1000);
+        swapTx.setTokenTransfers(List.of(
+                transfer("mint-A", 1.0, "account-15", "account-5"),
+                transfer("mint-B", 2.0, "account-6", "account-16")));
+        swapTx.setInstructions(List.of(instruction));
+        return swapTx;
+    }
+
+    private static TokenTransfer transfer(String mint, double amount, String from, String to) {
+        TokenTransfer transfer = new TokenTransfer();
+        transfer.setMint(mint);
+        transfer.setTokenAmount(amount);
+        transfer.setFromTokenAccount(from);
+        transfer.setToTokenAccount(to);
+        return transfer;
+    }
+
+    private static PoolSummary summary(String address) {
+        return new PoolSummary(address, "mint-A", "mint-B", null, null, null, null, null);
+    }
+}
@@ -0,0 +1,138 @@
+package ru.levandr.heliusapianalyzer.service.amm;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Сверяет фиксированную точку с прежним расчетом на BigDecimal
+ */
+class AmmMathTest {
+    private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+
+    @Test
+    void divide128MatchesBigInteger() {
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            long divisor = random.nextLong();
+            if (divisor == 0) {
+                continue;
+            }
+            long high = Long.remainderUnsigned(random.nextLong(), divisor);
+            long low = random.nextLong();
+
+            BigInteger expected = unsigned(high).shiftLeft(64).add(unsigned(low)).divide(unsigned(divisor));
+            assertThat(unsigned(AmmMath.divide128(high, low, divisor))).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void amountInMatchesBigIntegerCeiling() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long reserveIn = 1 + (long) (random.nextDouble() * Math.pow(10, 1 + random.nextInt(15)));
+            long reserveOut = 2 + (long) (random.nextDouble() * Math.pow(10, 1 + random.nextInt(15)));
+            long amountOut = 1 + (long) (random.nextDouble() * (reserveOut - 1));
+            if (amountOut >= reserveOut) {
+                continue;
+            }
+
+            BigInteger[] division = unsigned(reserveIn).multiply(unsigned(amountOut))
+                    .divideAndRemainder(unsigned(reserveOut - amountOut));
+            BigInteger expected = division[1].signum() == 0 ? division[0] : division[0].add(BigInteger.ONE);
+            assertThat(unsigned(AmmMath.getAmountIn(reserveIn, reserveOut, amountOut))).isEqualTo(expected);
+        }
+
+        assertThatThrownBy(() -> AmmMath.getAmountIn(1_000, 1_000, 1_000))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void slippageMatchesBigDecimalImplementation() {
+        Random random = new Random(42);
+        int compared = 0;
+        for (int i = 0; i < 200_000; i++) {
+            long reserveIn = 1 + (long) (random.nextDouble() * Math.pow(10, random.nextInt(19)));
+            long reserveOut = 1 + (long) (random.nextDouble() * Math.pow(10, random.nextInt(19)));
+            long amountIn = 1 + (long) (random.nextDouble() * Math.pow(10, random.nextInt(19)));
+
+            BigDecimal expected;
+            try {
+                expected = bigDecimalSlippage(reserveIn, reserveOut, amountIn);
+            } catch (ArithmeticException e) {
+                // Спотовая цена округлилась до нуля - фиксированная точка тоже должна отказать
+                assertThatThrownBy(() -> AmmMath.slippage(reserveIn, reserveOut, amountIn))
+                        .isInstanceOf(ArithmeticException.class);
+                continue;
+            }
+
+            long actual;
+            try {
+                actual = AmmMath.slippage(reserveIn, reserveOut, amountIn);
+            } catch (ArithmeticException e) {
+                // Цена больше диапазона фиксированной точки, RaydiumPoolService откатывается на BigDecimal
+                continue;
+            }
+            assertThat(BigDecimal.valueOf(actual, AmmMath.SCALE)).isEqualByComparingTo(expected);
+            compared++;
+        }
+        assertThat(compared).isGreaterThan(100_000);
+    }
+
+    @Test
+    void amountOutAndSpotPriceMatchExactValues() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long reserveIn = 1 + (random.nextLong() >>> 2);
+            long reserveOut = 1 + (random.nextLong() >>> 2);
+            long amountIn = 1 + (random.nextLong() >>> 2);
+
+            BigInteger expectedOut = BigInteger.valueOf(reserveOut).multiply(BigInteger.valueOf(amountIn))
+                    .divide(BigInteger.valueOf(reserveIn).add(BigInteger.valueOf(amountIn)));
+            assertThat(AmmMath.getAmountOut(reserveIn, reserveOut, amountIn)).isEqualTo(expectedOut.longValueExact());
+
+            BigDecimal expectedSpot = BigDecimal.valueOf(reserveOut)
+                    .divide(BigDecimal.valueOf(reserveIn), 8, RoundingMode.HALF_UP);
+            assertThat(BigDecimal.valueOf(AmmMath.spotPrice(reserveIn, reserveOut), AmmMath.SCALE))
+                    .isEqualByComparingTo(expectedSpot);
+        }
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThatThrownBy(() -> AmmMath.slippage(100, 100, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AmmMath.slippage(0, 100, 10)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static BigInteger unsigned(long value) {
+        BigInteger result = BigInteger.valueOf(value);
+        return value < 0 ? result.add(TWO_64) : result;
+    }
+
+    /**
+     * Прежняя реализация на BigDecimal
+     */
+    private static BigDecimal bigDecimalSlippage(long rawReserveIn, long rawReserveOut, long rawAmountIn) {
+        BigDecimal reserveIn = BigDecimal.valueOf(rawReserveIn);
+        BigDecimal reserveOut = BigDecimal.valueOf(rawReserveOut);
+        BigDecimal inputAmount = BigDecimal.valueOf(rawAmountIn);
+
+        BigDecimal k = reserveIn.multiply(reserveOut);
+        BigDecimal newReserveIn = reserveIn.add(inputAmount);
+        BigDecimal newReserveOut = k.divide(newReserveIn, 8, RoundingMode.HALF_UP);
+        BigDecimal outputAmount = reserveOut.subtract(newReserveOut);
+
+        BigDecimal spotPrice = reserveOut.divide(reserveIn, 8, RoundingMode.HALF_UP);
+        BigDecimal effectivePrice = outputAmount.divide(inputAmount, 8, RoundingMode.HALF_UP);
+        return BigDecimal.ONE
+                .subtract(effectivePrice.divide(spotPrice, 8, RoundingMode.HALF_UP))
+                .multiply(BigDecimal.valueOf(100))
+                .abs();
+    }
+}
@@ -0,0 +1,153 @@
+package ru.levandr.heliusapianalyzer.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.properties.PoolCacheProperties;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет отложенную запись пулов, повтор неудачного сброса и вытеснение
+ */
+class PoolStateCacheTest {
+    private final RaydiumPoolRepository poolRepository = mock(RaydiumPoolRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PoolCacheProperties properties = new PoolCacheProperties();
+    private PoolStateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(poolRepository.findById(anyString())).thenReturn(Optional.empty());
+        cache = new PoolStateCache(poolRepository, jdbcTemplate, Schedulers.boundedElastic(), properties,
+                new SimpleMeterRegistry(), 50);
+    }
+
+    @Test
+    void upsertsDirtyPoolOnceAndClearsFlag() {
+        RaydiumPool pool = load("pool-1");
+        cache.markDirty(pool);
+
+        cache.flush();
+        cache.flush();
+
+        List<Collection<Object[]>> batches = batches(1);
+        assertThat(batches.get(0)).singleElement()
+                .satisfies(row -> assertThat(row[0]).isEqualTo("pool-1"));
+    }
+
+    @Test
+    void retriesFailedBatch() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[0][]);
+        cache.markDirty(load("pool-1"));
+
+        cache.flush();
+        cache.flush();
+        cache.flush();
+
+        // Неудачный пакет помечается снова и пишется при следующем сбросе, после успеха - больше нет
+        List<Collection<Object[]>> batches = batches(2);
+        assertThat(batches).allSatisfy(rows -> assertThat(rows).hasSize(1));
+    }
+
+    @Test
+    void neverEvictsDirtyPools() {
+        properties.setIdleTimeout(Duration.ZERO);
+        properties.setMaxSize(0);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        RaydiumPool pool = load("pool-1");
+        cache.markDirty(pool);
+
+        cache.flush();
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getIfPresent("pool-1")).containsSame(pool);
+    }
+
+    @Test
+    void evictsIdlePools() {
+        load("pool-1");
+        cache.flush();
+        assertThat(cache.size()).isEqualTo(1);
+
+        properties.setIdleTimeout(Duration.ZERO);
+        cache.flush();
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getIfPresent("pool-1")).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPoolsAboveMaxSize() {
+        properties.setMaxSize(2);
+        load("pool-1");
+        load("pool-2");
+        load("pool-3");
+        // Обращение к первому пулу делает самым старым второй
+        cache.getIfPresent("pool-1");
+
+        cache.flush();
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getIfPresent("pool-1")).isPresent();
+        assertThat(cache.getIfPresent("pool-2")).isEmpty();
+        assertThat(cache.getIfPresent("pool-3")).isPresent();
+    }
+
+    @Test
+    void concurrentLoadsReturnSameInstance() {
+        // Обе загрузки из БД завершаются только после того, как начались обе
+        CountDownLatch loading = new CountDownLatch(2);
+        when(poolRepository.findById("pool-1")).thenAnswer(invocation -> {
+            loading.countDown();
+            loading.await(1, TimeUnit.SECONDS);
+            RaydiumPool pool = new RaydiumPool();
+            pool.setAddress("pool-1");
+            return Optional.of(pool);
+        });
+
+        Tuple2<RaydiumPool, RaydiumPool> loaded = Mono.zip(cache.getOrLoad("pool-1"), cache.getOrLoad("pool-1"))
+                .block(Duration.ofSeconds(5));
+
+        verify(poolRepository, times(2)).findById("pool-1");
+        assertThat(loaded.getT1()).isSameAs(loaded.getT2());
+        assertThat(cache.getIfPresent("pool-1")).containsSame(loaded.getT1());
+    }
+
+    private RaydiumPool load(String address) {
+        return cache.getOrLoad(address).block(Duration.ofSeconds(1));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Collection<Object[]>> batches(int expected) {
+        ArgumentCaptor<Collection<Object[]>> rows = ArgumentCaptor.forClass((Class) Collection.class);
+        verify(jdbcTemplate, times(expected)).batchUpdate(anyString(), rows.capture(), anyInt(), any());
+        return rows.getAllValues();
+    }
+}
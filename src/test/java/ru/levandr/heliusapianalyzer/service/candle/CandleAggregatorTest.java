@@ -0,0 +1,110 @@
+package ru.levandr.heliusapianalyzer.service.candle;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.model.Candle;
+import ru.levandr.heliusapianalyzer.properties.CandleProperties;
+import ru.levandr.heliusapianalyzer.service.candle.CandleStore.FinishedCandle;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class CandleAggregatorTest {
+    // Начало часа, чтобы границы таймфреймов были предсказуемыми
+    private static final long START = 1_700_002_800L;
+
+    private final CandleStore store = mock(CandleStore.class);
+    private final List<FinishedCandle> saved = new ArrayList<>();
+    private final CandleAggregator aggregator = new CandleAggregator(store, Schedulers.immediate(),
+            new CandleProperties(), new SimpleMeterRegistry(),
+            Clock.fixed(Instant.ofEpochSecond(START), ZoneOffset.UTC));
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> saved.addAll(invocation.getArgument(0))).when(store).save(anyList());
+    }
+
+    @Test
+    void buildsSecondCandleFromTicks() {
+        aggregator.onSwap("pool", START, 10, 1, 10);
+        aggregator.onSwap("pool", START, 12, 2, 24);
+        aggregator.onPrice("pool", START, 9);
+        aggregator.onSwap("pool", START + 1, 11, 1, 11);
+        aggregator.flush();
+
+        assertThat(saved).containsExactly(new FinishedCandle("pool", Timeframe.S1,
+                new Candle(START, 10, 12, 9, 9, 3, 34, 2), START, START));
+    }
+
+    @Test
+    void rollsClosedCandlesIntoHigherTimeframes() {
+        aggregator.onSwap("pool", START + 5, 10, 1, 10);
+        aggregator.onSwap("pool", START + 30, 14, 1, 14);
+        aggregator.onSwap("pool", START + 70, 8, 1, 8);
+
+        assertThat(aggregator.openCandle("pool", Timeframe.M1))
+                .contains(new Candle(START + 60, 8, 8, 8, 8, 1, 8, 1));
+        assertThat(aggregator.openCandle("pool", Timeframe.M5))
+                .contains(new Candle(START, 10, 14, 8, 8, 3, 32, 3));
+
+        aggregator.closeExpired(START + 3600);
+        aggregator.flush();
+
+        assertThat(saved).filteredOn(candle -> candle.timeframe() == Timeframe.M1)
+                .extracting(FinishedCandle::candle)
+                .containsExactly(
+                        new Candle(START, 10, 14, 10, 14, 2, 24, 2),
+                        new Candle(START + 60, 8, 8, 8, 8, 1, 8, 1));
+        assertThat(saved).filteredOn(candle -> candle.timeframe() == Timeframe.H1)
+                .extracting(FinishedCandle::candle)
+                .containsExactly(new Candle(START, 10, 14, 8, 8, 3, 32, 3));
+        assertThat(aggregator.trackedPools()).isZero();
+    }
+
+    @Test
+    void writesLateTicksSeparatelyWithoutPrice() {
+        aggregator.onSwap("pool", START + 120, 10, 1, 10);
+        aggregator.onSwap("pool", START + 10, 20, 2, 40);
+        aggregator.flush();
+
+        assertThat(saved).extracting(FinishedCandle::timeframe)
+                .containsExactly(Timeframe.S1, Timeframe.M1, Timeframe.M5, Timeframe.H1);
+        // Цена пула относится к более позднему времени, поэтому записывается только объем
+        assertThat(saved.get(1).hasPrice()).isFalse();
+        assertThat(saved.get(1).candle())
+                .isEqualTo(new Candle(START, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 2, 40, 1));
+        // Открытая свеча не изменилась
+        assertThat(aggregator.openCandle("pool", Timeframe.S1))
+                .contains(new Candle(START + 120, 10, 10, 10, 10, 1, 10, 1));
+    }
+
+    @Test
+    void usesOnlyVolumeOfSwapsOlderThanCloseDelay() {
+        aggregator.onSwap("pool", START - 3600, 20, 2, 40);
+        aggregator.onSwap("pool", START - 3600, 30, 1, 30);
+
+        assertThat(aggregator.openCandle("pool", Timeframe.S1)).hasValueSatisfying(candle -> {
+            assertThat(candle.close()).isNaN();
+            assertThat(candle.volumeB()).isEqualTo(70);
+            assertThat(candle.trades()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void ignoresInvalidPrices() {
+        aggregator.onPrice("pool", START, 0);
+        aggregator.onPrice("pool", START, Double.NaN);
+
+        assertThat(aggregator.trackedPools()).isZero();
+    }
+}
@@ -0,0 +1,158 @@
+package ru.levandr.heliusapianalyzer.service.capture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.levandr.heliusapianalyzer.properties.CaptureProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptureLogTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+
+    private final CaptureProperties properties = new CaptureProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.setDirectory(tempDir.toString());
+        properties.setSegmentSize(DataSize.ofKilobytes(4));
+        properties.setIndexInterval(DataSize.ofBytes(512));
+    }
+
+    @Test
+    void readsBackRecordsAcrossSegments() throws IOException {
+        CaptureLog captureLog = new CaptureLog(properties, clockAt(START));
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String page = page(i);
+            written.add(page);
+            captureLog.append(START + i, bytes(page), 0, page.length());
+        }
+        captureLog.close();
+
+        assertThat(CaptureFormat.segments(tempDir)).hasSizeGreaterThan(1);
+        assertThat(read(captureLog.reader(), Long.MIN_VALUE, Long.MAX_VALUE)).containsExactlyElementsOf(written);
+    }
+
+    @Test
+    void storesIncompressibleRecordsUncompressed() throws IOException {
+        CaptureLog captureLog = new CaptureLog(properties, clockAt(START));
+        byte[] random = new byte[1000];
+        new Random(1).nextBytes(random);
+        captureLog.append(START, random, 0, random.length);
+        captureLog.append(START + 1, new byte[0], 0, 0);
+
+        List<CaptureRecord> records = new ArrayList<>();
+        captureLog.reader().forEach(records::add);
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).data()).isEqualTo(random);
+        assertThat(records.get(1).data()).isEmpty();
+    }
+
+    @Test
+    void seeksByTimestampWithinAndAcrossSegments() throws IOException {
+        CaptureLog captureLog = new CaptureLog(properties, clockAt(START));
+        for (int i = 0; i < 200; i++) {
+            String page = page(i);
+            // По две записи на каждую миллисекунду
+            captureLog.append(START + i / 2, bytes(page), 0, page.length());
+        }
+
+        // Читается и текущий, еще открытый сегмент
+        assertThat(read(captureLog.reader(), START + 40, START + 42))
+                .containsExactly(page(80), page(81), page(82), page(83), page(84), page(85));
+        assertThat(read(captureLog.reader(), START + 99, Long.MAX_VALUE)).containsExactly(page(198), page(199));
+        assertThat(read(captureLog.reader(), START + 100, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void keepsTimestampsMonotonicAndContinuesAfterRestart() throws IOException {
+        CaptureLog first = new CaptureLog(properties, clockAt(START));
+        first.append(START + 10, bytes("a"), 0, 1);
+        assertThat(first.append(START + 5, bytes("b"), 0, 1)).isEqualTo(START + 10);
+        first.close();
+
+        CaptureLog second = new CaptureLog(properties, clockAt(START));
+        second.append(START + 20, bytes("c"), 0, 1);
+
+        assertThat(CaptureFormat.segments(tempDir)).hasSize(2);
+        assertThat(read(second.reader(), Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void skipsSegmentsWithEmptyIndex() throws IOException {
+        CaptureLog first = new CaptureLog(properties, clockAt(START));
+        first.append(START + 10, bytes("a"), 0, 1);
+        first.close();
+        CaptureLog second = new CaptureLog(properties, clockAt(START));
+        second.append(START + 20, bytes("b"), 0, 1);
+        second.close();
+
+        // Сегмент, открытый перед сбоем до первой записи
+        CaptureFormat.Segment empty = CaptureFormat.segment(tempDir, 2);
+        Files.write(empty.data(), ByteBuffer.allocate(CaptureFormat.SEGMENT_HEADER)
+                .putInt(CaptureFormat.MAGIC).putInt(CaptureFormat.VERSION).putLong(0).array());
+        Files.write(empty.index(), new byte[0]);
+
+        CaptureReader reader = first.reader();
+        assertThat(read(reader, START + 15, Long.MAX_VALUE)).containsExactly("b");
+        assertThat(read(reader, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly("a", "b");
+    }
+
+    @Test
+    void deletesSegmentsOlderThanRetention() throws IOException {
+        properties.setRetention(Duration.ofHours(1));
+        CaptureLog old = new CaptureLog(properties, clockAt(START));
+        for (int i = 0; i < 200; i++) {
+            old.append(START + i, bytes(page(i)), 0, page(i).length());
+        }
+        old.close();
+        assertThat(CaptureFormat.segments(tempDir)).hasSizeGreaterThan(2);
+
+        long later = START + Duration.ofHours(2).toMillis();
+        CaptureLog captureLog = new CaptureLog(properties, clockAt(later));
+        captureLog.append(bytes("fresh"));
+
+        // Последний старый сегмент остается: его записи не позже начала нового
+        assertThat(CaptureFormat.segments(tempDir)).hasSize(2);
+        List<String> remaining = read(captureLog.reader(), Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(remaining).endsWith(page(199), "fresh");
+        assertThat(remaining).doesNotContain(page(0));
+    }
+
+    private static List<String> read(CaptureReader reader, long from, long to) throws IOException {
+        List<String> pages = new ArrayList<>();
+        reader.scan(from, to, record -> pages.add(new String(record.data(), StandardCharsets.UTF_8)));
+        return pages;
+    }
+
+    private static String page(int i) {
+        return "[{\"signature\":\"sig-" + i + "\",\"type\":\"SWAP\",\"timestamp\":" + (1_700_000_000 + i)
+                + ",\"description\":\"" + "swap ".repeat(40) + "\"}]";
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Clock clockAt(long millis) {
+        return Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
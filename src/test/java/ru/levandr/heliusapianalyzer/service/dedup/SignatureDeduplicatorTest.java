@@ -0,0 +1,152 @@
+package ru.levandr.heliusapianalyzer.service.dedup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.levandr.heliusapianalyzer.properties.DedupProperties;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignatureDeduplicatorTest {
+    private static final long START = 1_700_002_800L;
+
+    @TempDir
+    Path tempDir;
+
+    private final MutableClock clock = new MutableClock(START);
+    private final DedupProperties properties = new DedupProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.setExactWindow(Duration.ofMinutes(10));
+        properties.setGenerationSpan(Duration.ofHours(1));
+        properties.setGenerations(4);
+        properties.setExpectedPerGeneration(1_000);
+        properties.setSnapshotPath(tempDir.resolve("dedup.bin").toString());
+    }
+
+    @Test
+    void dropsRepeatsFromExactSet() {
+        SignatureDeduplicator deduplicator = new SignatureDeduplicator(properties, clock);
+
+        assertThat(deduplicator.markIfNew("sig-1", START)).isTrue();
+        assertThat(deduplicator.markIfNew("sig-2", START)).isTrue();
+        assertThat(deduplicator.markIfNew("sig-1", START)).isFalse();
+        assertThat(deduplicator.duplicateCount()).isEqualTo(1);
+    }
+
+    @Test
+    void usesBloomFilterOnlyForTransactionsOlderThanExactWindow() {
+        SignatureDeduplicator deduplicator = new SignatureDeduplicator(properties, clock);
+        deduplicator.markIfNew("sig-1", START);
+
+        clock.advance(30 * 60);
+        assertThat(deduplicator.recentSize()).isZero();
+
+        // Старая транзакция найдена в фильтре Блума
+        assertThat(deduplicator.markIfNew("sig-1", START)).isFalse();
+        // Попадание в фильтр для свежей транзакции не считается повтором
+        assertThat(deduplicator.markIfNew("sig-1", clock.seconds())).isTrue();
+    }
+
+    @Test
+    void forgetsSignaturesAfterAllGenerationsRotate() {
+        SignatureDeduplicator deduplicator = new SignatureDeduplicator(properties, clock);
+        deduplicator.markIfNew("sig-1", START);
+
+        clock.advance(3 * 3600);
+        assertThat(deduplicator.markIfNew("sig-1", START)).isFalse();
+
+        clock.advance(3600);
+        assertThat(deduplicator.markIfNew("sig-1", START)).isTrue();
+    }
+
+    @Test
+    void acceptsForgottenSignatureAgain() {
+        SignatureDeduplicator deduplicator = new SignatureDeduplicator(properties, clock);
+        deduplicator.markIfNew("sig-1", START);
+        deduplicator.markIfNew("sig-2", START - 3600);
+
+        deduplicator.forget("sig-1");
+        deduplicator.forget("sig-2");
+
+        assertThat(deduplicator.markIfNew("sig-1", START)).isTrue();
+        // Старая транзакция есть в фильтре Блума, но забытая подпись не считается повтором
+        assertThat(deduplicator.markIfNew("sig-2", START - 3600)).isTrue();
+        assertThat(deduplicator.markIfNew("sig-2", START - 3600)).isFalse();
+
+        // Повтор свежей транзакции после точного окна снова отсекает фильтр Блума
+        clock.advance(30 * 60);
+        assertThat(deduplicator.markIfNew("sig-1", START)).isFalse();
+    }
+
+    @Test
+    void restoresStateFromSnapshot() {
+        SignatureDeduplicator first = new SignatureDeduplicator(properties, clock);
+        first.markIfNew("sig-1", START);
+        first.markIfNew("sig-2", START - 3600);
+        first.snapshot();
+
+        SignatureDeduplicator restored = new SignatureDeduplicator(properties, clock);
+        restored.restore();
+
+        assertThat(restored.recentSize()).isEqualTo(2);
+        assertThat(restored.markIfNew("sig-1", START)).isFalse();
+        assertThat(restored.markIfNew("sig-3", START)).isTrue();
+
+        clock.advance(30 * 60);
+        assertThat(restored.markIfNew("sig-2", START - 3600)).isFalse();
+    }
+
+    @Test
+    void ignoresSnapshotWithDifferentParameters() {
+        SignatureDeduplicator first = new SignatureDeduplicator(properties, clock);
+        first.markIfNew("sig-1", START);
+        first.snapshot();
+
+        properties.setGenerations(8);
+        SignatureDeduplicator restored = new SignatureDeduplicator(properties, clock);
+        restored.restore();
+
+        assertThat(restored.recentSize()).isZero();
+        assertThat(restored.markIfNew("sig-1", START)).isTrue();
+    }
+
+    private static final class MutableClock extends Clock {
+        private long seconds;
+
+        private MutableClock(long seconds) {
+            this.seconds = seconds;
+        }
+
+        private void advance(long delta) {
+            seconds += delta;
+        }
+
+        private long seconds() {
+            return seconds;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochSecond(seconds);
+        }
+    }
+}
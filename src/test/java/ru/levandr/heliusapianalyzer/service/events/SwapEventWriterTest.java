@@ -0,0 +1,98 @@
+package ru.levandr.heliusapianalyzer.service.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.levandr.heliusapianalyzer.model.SwapEvent;
+import ru.levandr.heliusapianalyzer.properties.SwapEventProperties;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SwapEventWriterTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SwapEventPartitionManager partitionManager = mock(SwapEventPartitionManager.class);
+    private final SwapEventProperties properties = new SwapEventProperties();
+    private SwapEventWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        properties.setQueueCapacity(3);
+        properties.setBatchSize(2);
+        writer = new SwapEventWriter(jdbcTemplate, partitionManager, properties, new SimpleMeterRegistry());
+        when(partitionManager.isSchemaReady()).thenReturn(true);
+    }
+
+    @Test
+    void formatsCopyTextRow() {
+        StringBuilder rows = new StringBuilder();
+        SwapEventWriter.appendRow(rows, new SwapEvent("sig\t1", "pool", 1_700_000_000L, "mintA", null,
+                1.5, 2.0, 5000L, new BigDecimal("0.12345678")));
+
+        assertThat(rows).hasToString(
+                "sig\\t1\tpool\t2023-11-14T22:13:20Z\tmintA\t\\N\t1.5\t2.0\t5000\t0.12345678\n");
+    }
+
+    @Test
+    void dropsEventsWhenQueueIsFull() {
+        for (int i = 0; i < 5; i++) {
+            writer.append(event("sig-" + i));
+        }
+
+        assertThat(writer.backlog()).isEqualTo(3);
+        assertThat(writer.droppedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void writesInBatchesAndRetriesFailedBatch() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(null);
+        writer.append(event("sig-1"));
+        writer.append(event("sig-2"));
+        writer.append(event("sig-3"));
+
+        writer.flush();
+        assertThat(writer.writtenCount()).isZero();
+
+        writer.flush();
+        assertThat(writer.writtenCount()).isEqualTo(3);
+        assertThat(writer.backlog()).isZero();
+        verify(jdbcTemplate, times(3)).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    void waitsForSchema() {
+        when(partitionManager.isSchemaReady()).thenReturn(false);
+        writer.append(event("sig-1"));
+
+        writer.flush();
+
+        assertThat(writer.backlog()).isEqualTo(1);
+        verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    void parsesPartitionNames() {
+        LocalDate day = LocalDate.of(2024, 3, 7);
+
+        assertThat(SwapEventPartitionManager.partitionName(day)).isEqualTo("swap_events_p20240307");
+        assertThat(SwapEventPartitionManager.partitionDay("swap_events_p20240307")).contains(day);
+        assertThat(SwapEventPartitionManager.partitionDay("swap_events_default")).isEmpty();
+    }
+
+    private static SwapEvent event(String signature) {
+        return new SwapEvent(signature, "pool", 1_700_000_000L, "mintA", "mintB", 1.0, 2.0, 5000L, null);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.levandr.heliusapianalyzer.service.execution;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessingExecutionTest {
+
+    @Test
+    void gatedExecutorRunsOnVirtualThreadsWithinPermits() throws InterruptedException {
+        GatedExecutorService executor = new GatedExecutorService("test", 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicBoolean allVirtual = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            executor.execute(() -> {
+                allVirtual.compareAndSet(true, Thread.currentThread().isVirtual());
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(3);
+        assertThat(allVirtual).isTrue();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void virtualThreadsModeLimitsConcurrentRpc() {
+        ProcessingExecution execution = execution(HeliusProperties.Processing.Execution.VIRTUAL_THREADS, 4);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicBoolean onVirtualThread = new AtomicBoolean(true);
+
+        Flux.range(0, 40)
+                .flatMap(i -> execution.processSwap(() -> {
+                    onVirtualThread.compareAndSet(true, Thread.currentThread().isVirtual());
+                    return execution.limitRpc(Mono.defer(() -> {
+                                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                                return Mono.delay(Duration.ofMillis(5));
+                            })
+                            .doFinally(signal -> inFlight.decrementAndGet()));
+                }), 40)
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(maxInFlight.get()).isEqualTo(4);
+        assertThat(onVirtualThread).isTrue();
+        execution.shutdown();
+    }
+
+    @Test
+    void reactiveModeKeepsCallerThreadAndDoesNotLimitRpc() {
+        ProcessingExecution execution = execution(HeliusProperties.Processing.Execution.REACTIVE, 1);
+        Thread caller = Thread.currentThread();
+        Mono<Long> request = Mono.delay(Duration.ofMillis(1));
+
+        Thread processed = execution.processSwap(() -> Mono.fromCallable(Thread::currentThread)).block();
+
+        assertThat(processed).isSameAs(caller);
+        assertThat(execution.limitRpc(request)).isSameAs(request);
+    }
+
+    private static ProcessingExecution execution(HeliusProperties.Processing.Execution mode, int rpcConcurrency) {
+        HeliusProperties properties = new HeliusProperties();
+        properties.getProcessing().setExecution(mode);
+        properties.getProcessing().setRpcConcurrency(rpcConcurrency);
+        return new ProcessingExecution(properties);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.levandr.heliusapianalyzer.service.graph;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.model.RouteQuote;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.amm.AmmMath;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class PoolGraphTest {
+    private final PoolGraph graph = new PoolGraph(mock(RaydiumPoolRepository.class), Schedulers.immediate());
+
+    @Test
+    void quotesDirectPool() {
+        graph.update("pool-ab", "A", "B", 1_000_000, 2_000_000);
+
+        RouteQuote quote = graph.quote("A", "B", 1_000, 3).orElseThrow();
+
+        assertThat(quote.amountOut()).isEqualTo(AmmMath.getAmountOut(1_000_000, 2_000_000, 1_000));
+        assertThat(quote.hops()).extracting(RouteQuote.Hop::pool).containsExactly("pool-ab");
+
+        // Обратное направление использует резервы в обратном порядке
+        assertThat(graph.quote("B", "A", 1_000, 1).orElseThrow().amountOut())
+                .isEqualTo(AmmMath.getAmountOut(2_000_000, 1_000_000, 1_000));
+    }
+
+    @Test
+    void prefersBetterMultiHopRoute() {
+        // Прямой пул мелкий, маршрут через C и D глубже
+        graph.update("pool-ab", "A", "B", 10_000, 10_000);
+        graph.update("pool-ac", "A", "C", 10_000_000, 10_000_000);
+        graph.update("pool-cd", "C", "D", 10_000_000, 10_000_000);
+        graph.update("pool-db", "D", "B", 10_000_000, 10_000_000);
+
+        RouteQuote threeHops = graph.quote("A", "B", 5_000, 3).orElseThrow();
+        assertThat(threeHops.hops()).extracting(RouteQuote.Hop::pool)
+                .containsExactly("pool-ac", "pool-cd", "pool-db");
+        assertThat(threeHops.hops().get(1).amountIn()).isEqualTo(threeHops.hops().get(0).amountOut());
+        assertThat(threeHops.hops()).extracting(RouteQuote.Hop::outputMint).containsExactly("C", "D", "B");
+
+        // С ограничением в два обмена остается только прямой пул
+        assertThat(graph.quote("A", "B", 5_000, 2).orElseThrow().hops())
+                .extracting(RouteQuote.Hop::pool).containsExactly("pool-ab");
+    }
+
+    @Test
+    void followsReserveAndTokenUpdates() {
+        graph.update("pool-1", "A", "B", 1_000_000, 1_000_000);
+        graph.update("pool-1", "A", "B", 1_000_000, 4_000_000);
+        assertThat(graph.quote("A", "B", 1_000, 1).orElseThrow().amountOut())
+                .isEqualTo(AmmMath.getAmountOut(1_000_000, 4_000_000, 1_000));
+
+        graph.update("pool-1", "A", "C", 1_000_000, 1_000_000);
+        assertThat(graph.quote("A", "B", 1_000, 3)).isEmpty();
+        assertThat(graph.poolsOf("C")).containsExactly("pool-1");
+        assertThat(graph.poolsOf("B")).isEmpty();
+
+        graph.remove("pool-1");
+        assertThat(graph.quote("A", "C", 1_000, 3)).isEmpty();
+        assertThat(graph.poolCount()).isZero();
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        for (int i = 0; i < 3_000; i++) {
+            graph.update("pool-" + i, "HUB", "T" + i, 1_000_000, 1_000_000);
+        }
+
+        assertThat(graph.quote("T1", "T2999", 1_000, 2).orElseThrow().hops()).hasSize(2);
+        assertThat(graph.poolsOf("HUB")).hasSize(3_000);
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> graph.quote("A", "B", 0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> graph.quote("A", "B", 1, 4)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
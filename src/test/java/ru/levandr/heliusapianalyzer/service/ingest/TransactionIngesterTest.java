@@ -0,0 +1,150 @@
+package ru.levandr.heliusapianalyzer.service.ingest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.model.RaydiumSwapTransaction;
+import ru.levandr.heliusapianalyzer.model.entity.IngestionCursor;
+import ru.levandr.heliusapianalyzer.model.entity.IngestionGap;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.repository.IngestionCursorRepository;
+import ru.levandr.heliusapianalyzer.repository.IngestionGapRepository;
+import ru.levandr.heliusapianalyzer.service.HeliusService;
+import ru.levandr.heliusapianalyzer.service.quota.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionIngesterTest {
+    private static final String ADDRESS = "raydium";
+
+    private final HeliusService heliusService = mock(HeliusService.class);
+    private final IngestionCursorRepository cursorRepository = mock(IngestionCursorRepository.class);
+    private final IngestionGapRepository gapRepository = mock(IngestionGapRepository.class);
+    private final HeliusProperties properties = new HeliusProperties();
+    private final List<String> processed = new ArrayList<>();
+    private final List<IngestionGap> gaps = new ArrayList<>();
+
+    // История адреса от новых к старым: s100 ... s1
+    private int newest = 100;
+    private IngestionCursor cursor;
+    private TransactionIngester ingester;
+
+    @BeforeEach
+    void setUp() {
+        properties.getIngest().setPageSize(10);
+        properties.getIngest().setMaxPagesPerPoll(2);
+        properties.getIngest().setBackfillPagesPerPoll(5);
+
+        when(heliusService.fetchTransactions(anyString(), nullable(String.class), nullable(String.class), anyInt(),
+                any(RequestPriority.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(page(invocation.getArgument(1),
+                        invocation.getArgument(2), invocation.getArgument(3))));
+        when(heliusService.processSwaps(any())).thenAnswer(invocation -> {
+            Flux<RaydiumSwapTransaction> transactions = invocation.getArgument(0);
+            return transactions.doOnNext(tx -> processed.add(tx.getSignature())).then();
+        });
+
+        when(cursorRepository.findById(ADDRESS)).thenAnswer(invocation -> Optional.ofNullable(cursor));
+        when(cursorRepository.save(any())).thenAnswer(invocation -> cursor = invocation.getArgument(0));
+        when(gapRepository.findFirstByAddressOrderByCreatedAtDesc(ADDRESS))
+                .thenAnswer(invocation -> gaps.isEmpty() ? Optional.empty() : Optional.of(gaps.get(gaps.size() - 1)));
+        when(gapRepository.save(any())).thenAnswer(invocation -> {
+            IngestionGap gap = invocation.getArgument(0);
+            if (!gaps.contains(gap)) {
+                gaps.add(gap);
+            }
+            return gap;
+        });
+        doAnswer(invocation -> gaps.remove((IngestionGap) invocation.getArgument(0)))
+                .when(gapRepository).delete(any());
+
+        ingester = new TransactionIngester(heliusService, properties, cursorRepository, gapRepository,
+                Schedulers.immediate());
+    }
+
+    @Test
+    void firstRunStartsFromLatestPage() {
+        ingester.ingest(ADDRESS).block();
+
+        assertThat(processed).hasSize(10).startsWith("s100").endsWith("s91");
+        assertThat(cursor.getLastSignature()).isEqualTo("s100");
+        assertThat(gaps).isEmpty();
+    }
+
+    @Test
+    void processesOnlyTransactionsNewerThanCursor() {
+        cursor = cursor("s95");
+
+        ingester.ingest(ADDRESS).block();
+
+        assertThat(processed).containsExactly("s100", "s99", "s98", "s97", "s96");
+        assertThat(cursor.getLastSignature()).isEqualTo("s100");
+        assertThat(gaps).isEmpty();
+    }
+
+    @Test
+    void savesGapAfterDowntimeAndBackfillsIt() {
+        cursor = cursor("s50");
+
+        ingester.ingest(ADDRESS).block();
+
+        // Две страницы новых транзакций, затем заполнение пропуска s80..s51 в том же опросе
+        assertThat(cursor.getLastSignature()).isEqualTo("s100");
+        assertThat(processed).hasSize(50).doesNotHaveDuplicates().endsWith("s51").doesNotContain("s50");
+        assertThat(gaps).isEmpty();
+
+        processed.clear();
+        newest = 103;
+        ingester.ingest(ADDRESS).block();
+        assertThat(processed).containsExactly("s103", "s102", "s101");
+    }
+
+    @Test
+    void backfillResumesFromLastProcessedPage() {
+        cursor = cursor("s10");
+        properties.getIngest().setBackfillPagesPerPoll(2);
+
+        ingester.ingest(ADDRESS).block();
+        assertThat(gaps).singleElement()
+                .satisfies(gap -> assertThat(gap.getBeforeSignature()).isEqualTo("s61"));
+
+        ingester.ingest(ADDRESS).block();
+        ingester.ingest(ADDRESS).block();
+
+        assertThat(processed).hasSize(90).doesNotHaveDuplicates().endsWith("s11");
+        assertThat(gaps).isEmpty();
+    }
+
+    private IngestionCursor cursor(String lastSignature) {
+        IngestionCursor cursor = new IngestionCursor();
+        cursor.setAddress(ADDRESS);
+        cursor.setLastSignature(lastSignature);
+        return cursor;
+    }
+
+    private List<RaydiumSwapTransaction> page(String before, String until, int limit) {
+        int from = before == null ? newest : Integer.parseInt(before.substring(1)) - 1;
+        int to = until == null ? 1 : Integer.parseInt(until.substring(1)) + 1;
+        List<RaydiumSwapTransaction> page = new ArrayList<>();
+        for (int i = from; i >= to && page.size() < limit; i--) {
+            RaydiumSwapTransaction tx = new RaydiumSwapTransaction();
+            tx.setSignature("s" + i);
+            tx.setType("SWAP");
+            tx.setTimestamp((long) i);
+            page.add(tx);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.levandr.heliusapianalyzer.service.partition;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PoolLaneExecutorTest {
+    private final PoolLaneExecutor executor = new PoolLaneExecutor(properties(4));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void appliesTasksOfOnePoolInSubmissionOrderWithoutLostUpdates() {
+        int pools = 20;
+        int swapsPerPool = 200;
+        Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+        long[] counters = new long[pools];
+
+        Flux.range(0, pools * swapsPerPool)
+                .flatMapSequential(i -> {
+                    int pool = i % pools;
+                    // Подготовка завершается в случайном порядке
+                    Mono<Integer> prepare = Mono.just(i)
+                            .delayElement(Duration.ofMillis(ThreadLocalRandom.current().nextInt(3)));
+                    return executor.submit("pool-" + pool, prepare, value -> {
+                        applied.computeIfAbsent("pool-" + pool, key -> new ArrayList<>()).add(value);
+                        counters[pool]++; // Без синхронизации: пул меняет только его полоса
+                    });
+                }, 512)
+                .blockLast(Duration.ofSeconds(30));
+
+        for (int pool = 0; pool < pools; pool++) {
+            List<Integer> order = applied.get("pool-" + pool);
+            assertThat(order).hasSize(swapsPerPool).isSorted();
+            assertThat(counters[pool]).isEqualTo(swapsPerPool);
+        }
+    }
+
+    @Test
+    void spreadsPoolsAcrossLanesAndThreads() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Set<Integer> lanes = ConcurrentHashMap.newKeySet();
+
+        Flux.range(0, 200)
+                .flatMap(i -> {
+                    String pool = "pool-" + i;
+                    lanes.add(executor.laneOf(pool));
+                    return executor.execute(pool, () -> threads.add(Thread.currentThread().getName()));
+                })
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(lanes).hasSize(executor.laneCount());
+        assertThat(threads).hasSize(executor.laneCount()).allMatch(name -> name.startsWith("pool-lane"));
+    }
+
+    @Test
+    void reportsFailuresWithoutStoppingTheLane() {
+        Mono<Void> failedPrepare = executor.submit("pool", Mono.error(new IllegalStateException("rpc")), value -> {
+        });
+        Mono<Void> failedApply = executor.execute("pool", () -> {
+            throw new IllegalArgumentException("apply");
+        });
+
+        assertThat(failedPrepare.onErrorResume(e -> Mono.empty()).thenReturn("done").block()).isEqualTo("done");
+        assertThat(failedApply.then(Mono.just("ok")).onErrorReturn("failed").block()).isEqualTo("failed");
+        assertThat(executor.execute("pool", () -> {
+        }).thenReturn("next").block(Duration.ofSeconds(5))).isEqualTo("next");
+    }
+
+    private static HeliusProperties properties(int lanes) {
+        HeliusProperties properties = new HeliusProperties();
+        properties.getProcessing().setLanes(lanes);
+        return properties;
+    }
+}
@@ -0,0 +1,148 @@
+package ru.levandr.heliusapianalyzer.service.quota;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler.Upstream.RPC;
+
+class HeliusRequestSchedulerTest {
+
+    @Test
+    void releasesHigherPriorityFirst() {
+        HeliusRequestScheduler scheduler = scheduler(20, 1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        // Первый запрос забирает единственный кредит, остальные ждут пополнения
+        Flux.merge(
+                        scheduler.schedule(RPC, RequestPriority.NORMAL, () -> record(order, "first")),
+                        scheduler.schedule(RPC, RequestPriority.BACKFILL, () -> record(order, "backfill")),
+                        scheduler.schedule(RPC, RequestPriority.NORMAL, () -> record(order, "normal")),
+                        scheduler.schedule(RPC, RequestPriority.LIVE, () -> record(order, "live")))
+                .blockLast(Duration.ofSeconds(5));
+
+        assertThat(order).containsExactly("first", "live", "normal", "backfill");
+    }
+
+    @Test
+    void lowersRateAndRetriesAfterTooManyRequests() {
+        HeliusRequestScheduler scheduler = scheduler(20, 1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = scheduler.schedule(RPC, RequestPriority.LIVE, () -> attempts.incrementAndGet() == 1
+                        ? Mono.error(tooManyRequests("0"))
+                        : Mono.just("ok"))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(2);
+        assertThat(scheduler.currentRate(RPC)).isLessThan(20);
+    }
+
+    @Test
+    void recoversRateAfterSuccessfulResponses() {
+        HeliusRequestScheduler scheduler = scheduler(20, 20);
+        AtomicInteger attempts = new AtomicInteger();
+        scheduler.schedule(RPC, RequestPriority.LIVE, () -> attempts.incrementAndGet() == 1
+                        ? Mono.error(tooManyRequests(null))
+                        : Mono.just("ok"))
+                .block(Duration.ofSeconds(5));
+        double throttled = scheduler.currentRate(RPC);
+
+        Flux.range(0, 20)
+                .flatMap(i -> scheduler.schedule(RPC, RequestPriority.NORMAL, () -> Mono.just(i)))
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(scheduler.currentRate(RPC)).isGreaterThan(throttled).isLessThanOrEqualTo(20);
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        HeliusProperties properties = properties(100, 1);
+        properties.getQuota().setMaxRetries(2);
+        HeliusRequestScheduler scheduler = new HeliusRequestScheduler(properties, new SimpleMeterRegistry());
+        AtomicInteger attempts = new AtomicInteger();
+
+        Mono<String> request = scheduler.schedule(RPC, RequestPriority.LIVE, () -> {
+            attempts.incrementAndGet();
+            return Mono.error(tooManyRequests("0"));
+        });
+
+        assertThat(request.onErrorResume(e -> Mono.just("failed")).block(Duration.ofSeconds(5))).isEqualTo("failed");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void publishesWaitTimeAndThrottlingMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HeliusRequestScheduler scheduler = new HeliusRequestScheduler(properties(20, 1), registry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Flux.range(0, 3)
+                .flatMap(i -> scheduler.schedule(RPC, RequestPriority.LIVE, () -> Mono.just(i)))
+                .blockLast(Duration.ofSeconds(5));
+        scheduler.schedule(RPC, RequestPriority.LIVE, () -> attempts.incrementAndGet() == 1
+                        ? Mono.error(tooManyRequests("0"))
+                        : Mono.just(0))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(registry.get("helius.quota.wait").tag("upstream", "rpc").tag("priority", "live")
+                .timer().count()).isEqualTo(5);
+        assertThat(registry.get("helius.quota.throttled").tag("upstream", "rpc").counter().count()).isEqualTo(1);
+        assertThat(registry.get("helius.quota.queue").tag("upstream", "rpc").gauge().value()).isZero();
+        assertThat(scheduler.queueDepth(RPC)).isZero();
+    }
+
+    @Test
+    void parsesRetryAfterSecondsAndDate() {
+        assertThat(HeliusRequestScheduler.retryAfter(tooManyRequests("3"))).isEqualTo(Duration.ofSeconds(3));
+        assertThat(HeliusRequestScheduler.retryAfter(tooManyRequests(null))).isEqualTo(Duration.ZERO);
+        assertThat(HeliusRequestScheduler.retryAfter(tooManyRequests("Wed, 21 Oct 2015 07:28:00 GMT")))
+                .isEqualTo(Duration.ZERO);
+        assertThat(HeliusRequestScheduler.retryAfter(tooManyRequests(
+                        DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30))))
+                .toSeconds())
+                .isCloseTo(30, within(2L));
+    }
+
+    private static Mono<String> record(List<String> order, String name) {
+        return Mono.fromSupplier(() -> {
+            order.add(name);
+            return name;
+        });
+    }
+
+    private static HeliusRequestScheduler scheduler(double maxRate, int burst) {
+        return new HeliusRequestScheduler(properties(maxRate, burst), new SimpleMeterRegistry());
+    }
+
+    private static HeliusProperties properties(double maxRate, int burst) {
+        HeliusProperties properties = new HeliusProperties();
+        properties.getQuota().setRpc(new HeliusProperties.Limit(maxRate, burst));
+        return properties;
+    }
+
+    private static WebClientResponseException tooManyRequests(String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.add(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return WebClientResponseException.create(429, "Too Many Requests", headers, new byte[0],
+                StandardCharsets.UTF_8);
+    }
+}
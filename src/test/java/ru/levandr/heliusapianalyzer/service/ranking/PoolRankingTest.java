@@ -0,0 +1,158 @@
+package ru.levandr.heliusapianalyzer.service.ranking;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+import ru.levandr.heliusapianalyzer.model.RankedPool;
+import ru.levandr.heliusapianalyzer.model.entity.RaydiumPool;
+import ru.levandr.heliusapianalyzer.repository.RaydiumPoolRepository;
+import ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static ru.levandr.heliusapianalyzer.service.ranking.PoolRanking.Metric.LIQUIDITY;
+import static ru.levandr.heliusapianalyzer.service.ranking.PoolRanking.Metric.PRICE_CHANGE;
+import static ru.levandr.heliusapianalyzer.service.ranking.PoolRanking.Metric.VOLUME;
+
+class PoolRankingTest {
+    private static final long START = 1_700_002_800L;
+
+    private final MutableClock clock = new MutableClock(START);
+    private final RollingVolumeEngine volumeEngine = mock(RollingVolumeEngine.class);
+    private final PoolRanking ranking = new PoolRanking(mock(RaydiumPoolRepository.class), volumeEngine,
+            Schedulers.immediate(), clock);
+
+    @Test
+    void ranksAndPaginates() {
+        for (int i = 1; i <= 5; i++) {
+            ranking.update(pool("pool-" + i, "1", String.valueOf(i * 100), String.valueOf(10 - i)));
+        }
+
+        assertThat(ranking.top(LIQUIDITY, "B", 0, 2, false)).extracting(RankedPool::address)
+                .containsExactly("pool-5", "pool-4");
+        assertThat(ranking.top(LIQUIDITY, "B", 2, 2, false)).extracting(RankedPool::rank)
+                .containsExactly(3, 4);
+        assertThat(ranking.top(VOLUME, "B", 0, 2, false)).extracting(RankedPool::address)
+                .containsExactly("pool-1", "pool-2");
+        assertThat(ranking.top(LIQUIDITY, "B", 0, 1, true)).extracting(RankedPool::address)
+                .containsExactly("pool-1");
+        assertThat(ranking.top(LIQUIDITY, "B", 5, 10, false)).isEmpty();
+    }
+
+    @Test
+    void movesPoolOnUpdateAndRemovesIt() {
+        ranking.update(pool("pool-1", "1", "100", "0"));
+        ranking.update(pool("pool-2", "1", "200", "0"));
+        ranking.update(pool("pool-1", "1", "300", "0"));
+
+        assertThat(ranking.top(LIQUIDITY, "B", 0, 10, false)).extracting(RankedPool::address)
+                .containsExactly("pool-1", "pool-2");
+
+        ranking.remove("pool-1");
+        assertThat(ranking.top(LIQUIDITY, "B", 0, 10, false)).extracting(RankedPool::address)
+                .containsExactly("pool-2");
+
+        RaydiumPool inactive = pool("pool-2", "1", "200", "0");
+        inactive.setActive(false);
+        ranking.update(inactive);
+        assertThat(ranking.size()).isZero();
+        assertThat(ranking.top(VOLUME, "B", 0, 10, false)).isEmpty();
+    }
+
+    @Test
+    void ranksLiquidityAndVolumePerQuoteMint() {
+        RaydiumPool quotedInC = pool("pool-c", "1", "1000000", "1000");
+        quotedInC.setTokenBMint("C");
+        ranking.update(quotedInC);
+        ranking.update(pool("pool-b", "2", "10", "10"));
+
+        assertThat(ranking.top(LIQUIDITY, "B", 0, 10, false)).extracting(RankedPool::address)
+                .containsExactly("pool-b");
+        assertThat(ranking.top(VOLUME, "C", 0, 10, false)).extracting(RankedPool::address)
+                .containsExactly("pool-c");
+        assertThat(ranking.top(LIQUIDITY, "D", 0, 10, false)).isEmpty();
+        // Изменение цены безразмерно и сравнивается по всем пулам
+        assertThat(ranking.top(PRICE_CHANGE, null, 0, 10, false)).hasSize(2);
+    }
+
+    @Test
+    void measuresPriceChangeOverDay() {
+        ranking.update(pool("up", "1.0", "1", "0"));
+        ranking.update(pool("down", "2.0", "1", "0"));
+
+        clock.advance(3600);
+        ranking.update(pool("up", "1.5", "1", "0"));
+        ranking.update(pool("down", "1.0", "1", "0"));
+
+        assertThat(ranking.top(PRICE_CHANGE, null, 0, 10, false))
+                .extracting(RankedPool::address, RankedPool::priceChange24h)
+                .containsExactly(tuple("up", 50.0),
+                        tuple("down", -50.0));
+
+        // Через сутки база сравнения сдвигается на первую цену следующего часа
+        clock.advance(24 * 3600);
+        ranking.refreshVolumes();
+        assertThat(ranking.top(PRICE_CHANGE, null, 0, 1, false).get(0).priceChange24h()).isZero();
+    }
+
+    @Test
+    void refreshesDecayingVolumes() {
+        ranking.update(pool("pool-1", "1", "1", "500"));
+        ranking.update(pool("pool-2", "1", "1", "100"));
+        when(volumeEngine.volumeB(eq("pool-1"), any())).thenReturn(0.0);
+        when(volumeEngine.volumeB(eq("pool-2"), any())).thenReturn(100.0);
+
+        ranking.refreshVolumes();
+
+        assertThat(ranking.top(VOLUME, "B", 0, 10, false)).extracting(RankedPool::address)
+                .containsExactly("pool-2", "pool-1");
+    }
+
+    private static RaydiumPool pool(String address, String price, String liquidityB, String volume) {
+        RaydiumPool pool = new RaydiumPool();
+        pool.setAddress(address);
+        pool.setTokenAMint("A");
+        pool.setTokenBMint("B");
+        pool.setPrice(new BigDecimal(price));
+        pool.setLiquidityA(BigDecimal.ONE);
+        pool.setLiquidityB(new BigDecimal(liquidityB));
+        pool.setVolume24h(new BigDecimal(volume));
+        return pool;
+    }
+
+    private static final class MutableClock extends Clock {
+        private long seconds;
+
+        private MutableClock(long seconds) {
+            this.seconds = seconds;
+        }
+
+        private void advance(long delta) {
+            seconds += delta;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochSecond(seconds);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.levandr.heliusapianalyzer.service.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.levandr.heliusapianalyzer.codec.Base58;
+import ru.levandr.heliusapianalyzer.codec.RaydiumAmmAccount;
+import ru.levandr.heliusapianalyzer.codec.RaydiumSwapInstruction;
+import ru.levandr.heliusapianalyzer.codec.SplTokenAccount;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет выдачу записанного набора заглушками: страницы по часам воспроизведения и аккаунты
+ */
+class ReplayStubServerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private ReplayStubServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void pagesFromNewestToOldestWithBeforeAndUntil() throws IOException {
+        server = stub(corpus(1_000, 1_001, 1_002, 1_003, 1_004), 0);
+
+        assertThat(signatures(server.page(null, null, 2))).containsExactly("tx-4", "tx-3");
+        assertThat(signatures(server.page("tx-3", null, 2))).containsExactly("tx-2", "tx-1");
+        assertThat(signatures(server.page(null, "tx-1", 100))).containsExactly("tx-4", "tx-3", "tx-2");
+        assertThat(signatures(server.page("tx-0", null, 100))).isEmpty();
+    }
+
+    @Test
+    void releasesTransactionsByReplayClock() throws IOException {
+        server = stub(corpus(1_000, 1_010, 1_020, 1_030), 10);
+        server.start(0);
+
+        assertThat(server.released()).isEqualTo(1);
+        nanoTime.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(server.released()).isEqualTo(3);
+        assertThat(signatures(server.page(null, null, 100))).containsExactly("tx-2", "tx-1", "tx-0");
+        assertThat(server.exhausted()).isFalse();
+
+        nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(server.exhausted()).isTrue();
+    }
+
+    @Test
+    void servesHistoryAndAccountSlicesOverHttp(@TempDir Path directory) throws IOException {
+        Random random = new Random(7);
+        String amm = pubkey(random);
+        String baseVault = pubkey(random);
+        String quoteVault = pubkey(random);
+        String baseMint = pubkey(random);
+        String quoteMint = pubkey(random);
+        Files.writeString(directory.resolve("20250101_000000" + ReplayCorpus.PAGE_SUFFIX),
+                swapPage(random, amm, baseVault, quoteVault, baseMint, quoteMint));
+
+        ReplayCorpus corpus = ReplayCorpus.load(directory, objectMapper);
+        server = new ReplayStubServer(corpus, objectMapper, 0, Duration.ZERO, Duration.ZERO);
+        server.start(0);
+        WebClient client = WebClient.create("http://127.0.0.1:" + server.port());
+
+        JsonNode page = client.get()
+                .uri("/v0/addresses/{address}/transactions?api-key=replay&limit=100",
+                        RaydiumSwapInstruction.PROGRAM_ID)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .block(Duration.ofSeconds(5));
+        assertThat(page).hasSize(1);
+        assertThat(page.get(0).path("signature").asText()).isEqualTo("swap-1");
+
+        JsonNode response = client.post()
+                .uri("/?api-key=replay")
+                .bodyValue(Map.of("jsonrpc", "2.0", "id", 1, "method", "getMultipleAccounts",
+                        "params", List.of(List.of(amm, baseVault, "unknown"), Map.of("encoding", "base64",
+                                "dataSlice", Map.of("offset", RaydiumAmmAccount.RESERVES_SLICE_OFFSET,
+                                        "length", RaydiumAmmAccount.RESERVES_SLICE_LENGTH)))))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .block(Duration.ofSeconds(5));
+        JsonNode values = response.path("result").path("value");
+        assertThat(values).hasSize(3);
+        assertThat(values.get(2).isNull()).isTrue();
+
+        RaydiumAmmAccount account = new RaydiumAmmAccount().wrap(
+                Base64.getDecoder().decode(values.get(0).path("data").get(0).asText()),
+                RaydiumAmmAccount.RESERVES_SLICE_OFFSET);
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.BASE_VAULT)).isEqualTo(baseVault);
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_VAULT)).isEqualTo(quoteVault);
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.BASE_MINT)).isEqualTo(baseMint);
+        assertThat(account.pubkeyBase58(RaydiumAmmAccount.QUOTE_MINT)).isEqualTo(quoteMint);
+
+        assertThat(SplTokenAccount.amount(corpus.account(baseVault), 0)).isPositive();
+    }
+
+    private ReplayStubServer stub(ReplayCorpus corpus, double speed) {
+        return new ReplayStubServer(corpus, objectMapper, speed, Duration.ZERO, Duration.ZERO, nanoTime::get);
+    }
+
+    private static ReplayCorpus corpus(long... timestamps) {
+        List<ReplayCorpus.CapturedTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            String json = "{\"signature\":\"tx-" + i + "\",\"type\":\"SWAP\",\"timestamp\":" + timestamps[i] + "}";
+            transactions.add(new ReplayCorpus.CapturedTransaction("tx-" + i, timestamps[i],
+                    json.getBytes(StandardCharsets.UTF_8)));
+        }
+        return new ReplayCorpus(transactions, Map.of());
+    }
+
+    private List<String> signatures(byte[] page) throws IOException {
+        List<String> signatures = new ArrayList<>();
+        objectMapper.readTree(page).forEach(tx -> signatures.add(tx.path("signature").asText()));
+        return signatures;
+    }
+
+    private static String swapPage(Random random, String amm, String baseVault, String quoteVault,
+                                   String baseMint, String quoteMint) {
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 18; i++) {
+            accounts.add(pubkey(random));
+        }
+        accounts.set(1, amm);
+        accounts.set(5, baseVault);
+        accounts.set(6, quoteVault);
+
+        byte[] data = new byte[RaydiumSwapInstruction.DATA_LENGTH];
+        data[0] = (byte) RaydiumSwapInstruction.Kind.SWAP_BASE_IN.discriminator();
+        data[1] = 100;
+        String accountList = String.join("\",\"", accounts);
+        return "[{\"signature\":\"swap-1\",\"type\":\"SWAP\",\"timestamp\":1700000000,\"fee\":5000,"
+                + "\"tokenTransfers\":["
+                + "{\"mint\":\"" + baseMint + "\",\"tokenAmount\":1.5,\"fromTokenAccount\":\"" + accounts.get(15)
+                + "\",\"toTokenAccount\":\"" + baseVault + "\"},"
+                + "{\"mint\":\"" + quoteMint + "\",\"tokenAmount\":200,\"fromTokenAccount\":\"" + quoteVault
+                + "\",\"toTokenAccount\":\"" + accounts.get(16) + "\"}],"
+                + "\"instructions\":[{\"programId\":\"" + RaydiumSwapInstruction.PROGRAM_ID + "\","
+                + "\"data\":\"" + Base58.encode(data, 0, data.length) + "\","
+                + "\"accounts\":[\"" + accountList + "\"],\"innerInstructions\":[]}]}]";
+    }
+
+    private static String pubkey(Random random) {
+        byte[] key = new byte[RaydiumAmmAccount.PUBKEY_LENGTH];
+        random.nextBytes(key);
+        return Base58.encode(key, 0, key.length);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.levandr.heliusapianalyzer.service.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет объединение запросов на локальном заглушечном JSON-RPC сервере
+ */
+class AccountBatchFetcherTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final HeliusRequestScheduler requestScheduler =
+            new HeliusRequestScheduler(new HeliusProperties(), new SimpleMeterRegistry());
+    private HttpServer server;
+    private String rpcUrl;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            JsonNode keys = request.get("params").get(0);
+            batchSizes.add(keys.size());
+
+            List<Object> values = new ArrayList<>();
+            for (JsonNode key : keys) {
+                String address = key.asText();
+                values.add(address.startsWith("missing") ? null : Map.of(
+                        "data", List.of(Base64.getEncoder().encodeToString(
+                                address.getBytes(StandardCharsets.UTF_8)), "base64")));
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("value", values);
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("jsonrpc", "2.0", "id", 1, "result", result));
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        rpcUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private HedgedRpcClient rpcClient() {
+        HeliusProperties.RpcResilience resilience = new HeliusProperties.RpcResilience();
+        RpcEndpoint primary = new RpcEndpoint("primary", rpcUrl, CircuitBreaker.ofDefaults("primary"), 0.95,
+                new SimpleMeterRegistry());
+        return new HedgedRpcClient(WebClient.create(), requestScheduler, primary, null, resilience);
+    }
+
+    @Test
+    void coalescesConcurrentLookupsIntoOneCall() {
+        AccountBatchFetcher fetcher = new AccountBatchFetcher(
+                rpcClient(), Duration.ofMillis(200), 100, null);
+
+        List<String> results = Flux.range(0, 50)
+                .flatMap(i -> fetcher.fetch("pool-" + i)
+                        .map(data -> new String(data, StandardCharsets.UTF_8)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(results).hasSize(50).contains("pool-0", "pool-49");
+        assertThat(batchSizes).containsExactly(50);
+        fetcher.close();
+    }
+
+    @Test
+    void splitsBatchesAtKeyLimitAndDeduplicatesKeys() {
+        AccountBatchFetcher fetcher = new AccountBatchFetcher(
+                rpcClient(), Duration.ofMillis(200), 100, null);
+
+        Long fetched = Flux.range(0, 250)
+                .flatMap(i -> fetcher.fetch("pool-" + (i % 2 == 0 ? i : i - 1)))
+                .count()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(fetched).isEqualTo(250);
+        assertThat(batchSizes).hasSize(3);
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(125);
+        fetcher.close();
+    }
+
+    @Test
+    void completesEmptyForMissingAccount() {
+        AccountBatchFetcher fetcher = new AccountBatchFetcher(
+                rpcClient(), Duration.ofMillis(10), 100, null);
+
+        assertThat(fetcher.fetch("missing-pool").blockOptional(Duration.ofSeconds(5))).isEmpty();
+        fetcher.close();
+    }
+}
@@ -0,0 +1,199 @@
+package ru.levandr.heliusapianalyzer.service.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.levandr.heliusapianalyzer.config.ResilienceConfig;
+import ru.levandr.heliusapianalyzer.properties.HeliusProperties;
+import ru.levandr.heliusapianalyzer.service.quota.HeliusRequestScheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет дублирование запросов и размыкатели на двух заглушечных RPC серверах
+ */
+class HedgedRpcClientTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HeliusProperties heliusProperties = new HeliusProperties();
+    private final HeliusProperties.RpcResilience resilience = heliusProperties.getRpcResilience();
+    private final AtomicInteger primaryCalls = new AtomicInteger();
+    private final AtomicInteger secondaryCalls = new AtomicInteger();
+    private final AtomicInteger primaryThrottled = new AtomicInteger();
+    private volatile long primaryDelayMillis;
+    private HttpServer primaryServer;
+    private HttpServer secondaryServer;
+
+    @BeforeEach
+    void startStubs() throws IOException {
+        resilience.setTimeout(Duration.ofMillis(500));
+        resilience.setHedgeDelay(Duration.ofMillis(50));
+        primaryServer = stub("primary", primaryCalls, () -> primaryDelayMillis, primaryThrottled);
+        secondaryServer = stub("secondary", secondaryCalls, () -> 0L, new AtomicInteger());
+    }
+
+    @AfterEach
+    void stopStubs() {
+        primaryServer.stop(0);
+        secondaryServer.stop(0);
+    }
+
+    @Test
+    void usesPrimaryWhenItAnswersWithinHedgeDelay() {
+        HedgedRpcClient client = client(CircuitBreaker.ofDefaults("primary"), true);
+
+        assertThat(call(client)).isEqualTo("primary");
+        assertThat(secondaryCalls).hasValue(0);
+    }
+
+    @Test
+    void hedgesSlowPrimaryToSecondary() {
+        primaryDelayMillis = 300;
+        HedgedRpcClient client = client(CircuitBreaker.ofDefaults("primary"), true);
+
+        assertThat(call(client)).isEqualTo("secondary");
+        assertThat(primaryCalls).hasValue(1);
+        assertThat(secondaryCalls).hasValue(1);
+    }
+
+    @Test
+    void skipsPrimaryWhileItsCircuitIsOpen() {
+        CircuitBreaker breaker = CircuitBreaker.ofDefaults("primary");
+        breaker.transitionToOpenState();
+        HedgedRpcClient client = client(breaker, true);
+
+        assertThat(call(client)).isEqualTo("secondary");
+        assertThat(primaryCalls).hasValue(0);
+        assertThat(client.isHealthy()).isTrue();
+    }
+
+    @Test
+    void boundsPrimaryCallByTimeoutAndRecordsFailure() {
+        primaryDelayMillis = 2_000;
+        CircuitBreaker breaker = CircuitBreaker.ofDefaults("primary");
+        HedgedRpcClient client = client(breaker, false);
+
+        assertThatThrownBy(() -> call(client)).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(breaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+        assertThat(meterRegistry.get("solana.rpc.requests").tag("endpoint", "primary").tag("outcome", "timeout")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void boundsQuotaWaitByTotalTimeout() {
+        // Один запрос в секунду: второй вызов ждет квоту дольше общего таймаута
+        heliusProperties.getQuota().setRpc(new HeliusProperties.Limit(1, 1));
+        resilience.setTotalTimeout(Duration.ofMillis(300));
+        HedgedRpcClient client = client(CircuitBreaker.ofDefaults("primary"), false);
+
+        assertThat(call(client)).isEqualTo("primary");
+        assertThatThrownBy(() -> call(client)).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(primaryCalls).hasValue(1);
+    }
+
+    @Test
+    void startsHedgeDelayAfterQuotaPermit() {
+        // Второй вызов ждет квоту около 500 мс - много дольше задержки дублирования
+        heliusProperties.getQuota().setRpc(new HeliusProperties.Limit(2, 1));
+        HedgedRpcClient client = client(CircuitBreaker.ofDefaults("primary"), true);
+
+        assertThat(call(client)).isEqualTo("primary");
+        assertThat(call(client)).isEqualTo("primary");
+        assertThat(primaryCalls).hasValue(2);
+        assertThat(secondaryCalls).hasValue(0);
+    }
+
+    @Test
+    void doesNotCountThrottledResponsesAsFailures() {
+        // Размыкатель открылся бы после первой же учтенной ошибки
+        resilience.setSlidingWindowSize(1);
+        resilience.setMinimumCalls(1);
+        CircuitBreaker breaker = new ResilienceConfig().circuitBreakerRegistry(heliusProperties, meterRegistry)
+                .circuitBreaker("primary");
+        primaryThrottled.set(1);
+        HedgedRpcClient client = client(breaker, false);
+
+        // 429 пережидает очередь квоты, а повтор проходит через закрытый размыкатель
+        assertThat(call(client)).isEqualTo("primary");
+        assertThat(primaryCalls).hasValue(2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    private HedgedRpcClient client(CircuitBreaker primaryBreaker, boolean withSecondary) {
+        RpcEndpoint primary = new RpcEndpoint("primary", url(primaryServer), primaryBreaker, 0.95, meterRegistry);
+        RpcEndpoint secondary = withSecondary
+                ? new RpcEndpoint("secondary", url(secondaryServer), CircuitBreaker.ofDefaults("secondary"),
+                        0.95, meterRegistry)
+                : null;
+        return new HedgedRpcClient(WebClient.create(), new HeliusRequestScheduler(heliusProperties, meterRegistry),
+                primary, secondary, resilience);
+    }
+
+    private String call(HedgedRpcClient client) {
+        JsonNode response = client.call(Map.of("jsonrpc", "2.0", "id", 1, "method", "getHealth"))
+                .block(Duration.ofSeconds(5));
+        return response.path("result").asText();
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @param throttled сколько первых запросов получат ответ 429
+     */
+    private static HttpServer stub(String name, AtomicInteger calls, DelaySupplier delay, AtomicInteger throttled)
+            throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            calls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delay.millis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (throttled.getAndDecrement() > 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = ("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"" + name + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            try {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (IOException ignored) {
+                // Клиент уже отменил запрос
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    @FunctionalInterface
+    private interface DelaySupplier {
+        long millis();
+    }
+}
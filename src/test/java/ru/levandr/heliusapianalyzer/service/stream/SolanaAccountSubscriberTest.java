@@ -0,0 +1,168 @@
+package ru.levandr.heliusapianalyzer.service.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет подписки, уведомления и переподключение на локальном заглушечном WebSocket сервере
+ */
+class SolanaAccountSubscriberTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> subscribeRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private DisposableServer server;
+    private SolanaAccountSubscriber subscriber;
+
+    @AfterEach
+    void tearDown() {
+        if (subscriber != null) {
+            subscriber.stop();
+        }
+        server.disposeNow();
+    }
+
+    @Test
+    void deliversNotificationsForSubscribedAccounts() {
+        startStub(false);
+        List<String> updates = new CopyOnWriteArrayList<>();
+        subscriber = newSubscriber((account, data) ->
+                updates.add(account + "=" + new String(data, StandardCharsets.UTF_8)));
+
+        subscriber.subscribe("vault-1");
+        subscriber.start();
+        subscriber.subscribe("vault-2");
+
+        waitUntil(() -> updates.size() >= 2);
+        assertThat(updates).containsExactlyInAnyOrder("vault-1=vault-1", "vault-2=vault-2");
+        assertThat(subscribeRequests).containsExactlyInAnyOrder("vault-1", "vault-2");
+    }
+
+    @Test
+    void resubscribesAfterServerClosesConnection() {
+        startStub(true);
+        List<String> updates = new CopyOnWriteArrayList<>();
+        subscriber = newSubscriber((account, data) -> updates.add(account));
+
+        subscriber.subscribe("pool-1");
+        subscriber.start();
+
+        waitUntil(() -> connections.get() >= 2 && subscribeRequests.size() >= 2);
+        assertThat(subscribeRequests).allMatch("pool-1"::equals);
+        assertThat(updates).isNotEmpty();
+    }
+
+    @Test
+    void sendsAccountsSubscribedFromManyThreads() throws InterruptedException {
+        startStub(false);
+        subscriber = newSubscriber((account, data) -> {
+        });
+        subscriber.start();
+        waitUntil(() -> connections.get() >= 1);
+
+        List<String> expected = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 25; i++) {
+                    String account = "vault-" + thread + "-" + i;
+                    expected.add(account);
+                    subscriber.subscribe(account);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        waitUntil(() -> subscribeRequests.size() >= expected.size());
+        assertThat(subscribeRequests).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    private SolanaAccountSubscriber newSubscriber(SolanaAccountSubscriber.Listener listener) {
+        return new SolanaAccountSubscriber(new ReactorNettyWebSocketClient(),
+                URI.create("ws://127.0.0.1:" + server.port() + "/"), objectMapper, listener,
+                Duration.ofMillis(20), Duration.ofMillis(100));
+    }
+
+    /**
+     * Заглушка: подтверждает подписку и сразу присылает уведомление с именем аккаунта в данных
+     *
+     * @param closeAfterFirstReply закрывать соединение после первого ответа
+     */
+    private void startStub(boolean closeAfterFirstReply) {
+        AtomicInteger subscriptionIds = new AtomicInteger(100);
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.ws("/", (in, out) -> {
+                    connections.incrementAndGet();
+                    Flux<String> replies = in.receive().asString()
+                            .concatMap(payload -> {
+                                JsonNode request = readTree(payload);
+                                String account = request.get("params").get(0).asText();
+                                subscribeRequests.add(account);
+                                int subscription = subscriptionIds.incrementAndGet();
+                                return Flux.just(
+                                        write(Map.of("jsonrpc", "2.0", "id", request.get("id").asLong(),
+                                                "result", subscription)),
+                                        write(Map.of("jsonrpc", "2.0", "method", "accountNotification",
+                                                "params", Map.of("subscription", subscription,
+                                                        "result", Map.of("value", Map.of("data", List.of(
+                                                                Base64.getEncoder().encodeToString(
+                                                                        account.getBytes(StandardCharsets.UTF_8)),
+                                                                "base64")))))));
+                            });
+                    return out.sendString(closeAfterFirstReply ? replies.take(2) : replies);
+                }))
+                .bindNow();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private JsonNode readTree(String payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.levandr.heliusapianalyzer.service.volume;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine.Window.DAY;
+import static ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine.Window.ONE_HOUR;
+import static ru.levandr.heliusapianalyzer.service.volume.RollingVolumeEngine.Window.SIX_HOURS;
+
+class RollingVolumeEngineTest {
+    // Начало часа, чтобы границы окон были предсказуемыми
+    private static final long START = 1_700_002_800L;
+
+    private final MutableClock clock = new MutableClock(START);
+    private final RollingVolumeEngine engine = new RollingVolumeEngine(clock);
+
+    @Test
+    void tracksSidesSeparately() {
+        engine.record("pool", START, 10, 2);
+        engine.record("pool", START + 5, 1, 0.5);
+
+        assertThat(engine.volumeA("pool", ONE_HOUR)).isEqualTo(11);
+        assertThat(engine.volumeB("pool", ONE_HOUR)).isEqualTo(2.5);
+        assertThat(engine.volumeA("pool", DAY)).isEqualTo(11);
+        assertThat(engine.volumeB("other", DAY)).isZero();
+    }
+
+    @Test
+    void expiresBucketsAsTimeMoves() {
+        engine.record("pool", START, 1, 1);
+        clock.advance(30 * 60);
+        engine.record("pool", clock.seconds(), 2, 2);
+
+        clock.advance(45 * 60); // Первый своп вышел из часового окна
+        assertThat(engine.volumeA("pool", ONE_HOUR)).isEqualTo(2);
+        assertThat(engine.volumeA("pool", SIX_HOURS)).isEqualTo(3);
+
+        clock.advance(6 * 3600);
+        assertThat(engine.volumeA("pool", SIX_HOURS)).isZero();
+        assertThat(engine.volumeA("pool", DAY)).isEqualTo(3);
+
+        clock.advance(24 * 3600);
+        assertThat(engine.volumeA("pool", DAY)).isZero();
+        assertThat(engine.stats("pool").volume24hB()).isZero();
+    }
+
+    @Test
+    void reusesExpiredBucketsWithoutCarryingOldVolume() {
+        engine.record("pool", START, 100, 100);
+        clock.advance(24 * 3600); // Та же корзина часа и минуты через сутки
+
+        engine.record("pool", clock.seconds(), 1, 1);
+
+        assertThat(engine.volumeA("pool", ONE_HOUR)).isEqualTo(1);
+        assertThat(engine.volumeA("pool", DAY)).isEqualTo(1);
+    }
+
+    @Test
+    void acceptsLateSwapsWithinDayAndIgnoresOlder() {
+        clock.advance(3 * 3600);
+        engine.record("pool", clock.seconds(), 1, 0);
+        engine.record("pool", clock.seconds() - 2 * 3600, 5, 0); // Вне часового окна, но в суточном
+        engine.record("pool", clock.seconds() - 25 * 3600, 7, 0); // Старше суток
+
+        assertThat(engine.volumeA("pool", ONE_HOUR)).isEqualTo(1);
+        assertThat(engine.volumeA("pool", DAY)).isEqualTo(6);
+    }
+
+    @Test
+    void allocatesManyPoolsAcrossBlocks() {
+        for (int i = 0; i < 5_000; i++) {
+            engine.record("pool-" + i, START, i, 0);
+        }
+
+        assertThat(engine.trackedPools()).isEqualTo(5_000);
+        assertThat(engine.volumeA("pool-4999", DAY)).isCloseTo(4999, within(1e-9));
+        assertThat(engine.volumeA("pool-1024", ONE_HOUR)).isEqualTo(1024);
+    }
+
+    private static final class MutableClock extends Clock {
+        private long seconds;
+
+        private MutableClock(long seconds) {
+            this.seconds = seconds;
+        }
+
+        private void advance(long delta) {
+            seconds += delta;
+        }
+
+        private long seconds() {
+            return seconds;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochSecond(seconds);
+        }
+    }
+}